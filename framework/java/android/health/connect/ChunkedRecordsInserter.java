@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.AttributionSource;
+import android.health.connect.aidl.HealthConnectExceptionParcel;
+import android.health.connect.aidl.IHealthConnectService;
+import android.health.connect.aidl.IInsertRecordsResponseCallback;
+import android.health.connect.aidl.InsertRecordsResponseParcel;
+import android.health.connect.aidl.RecordsParcel;
+import android.health.connect.datatypes.Record;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.ratelimiter.RateLimiter;
+import android.os.Binder;
+import android.os.OutcomeReceiver;
+import android.os.RemoteException;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Inserts a list of records of any size as consecutive chunks that each stay within the size
+ * limits of the service, keeping up to {@link #MAX_CHUNKS_IN_FLIGHT} chunks in flight. The next
+ * chunk is encoded and sent as soon as one completes, so that encoding and IPC overlap with the
+ * inserts of the service.
+ *
+ * <p>Clients can't read the limits configured for the service, so chunks are cut to its default
+ * limits.
+ *
+ * <p>After a chunk fails no further chunks are sent, but the chunk already in flight after it may
+ * still be inserted. The callback is only invoked once it has completed, so the records of every
+ * inserted chunk have their IDs set. The error is the one of the failed chunk earliest in the list.
+ *
+ * @hide
+ */
+public final class ChunkedRecordsInserter {
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+    private final IHealthConnectService mService;
+    private final AttributionSource mAttributionSource;
+    private final List<Record> mRecords;
+    private final Executor mExecutor;
+    private final OutcomeReceiver<InsertRecordsResponse, HealthConnectException> mCallback;
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private final RecordsParcel.ChunkEncoder mChunkEncoder;
+
+    @GuardedBy("mLock")
+    private int mChunksInFlight;
+
+    @GuardedBy("mLock")
+    @Nullable
+    private HealthConnectException mError;
+
+    // Position in the list of the first record of the chunk which failed with mError.
+    @GuardedBy("mLock")
+    private int mErrorFromIndex;
+
+    @GuardedBy("mLock")
+    private boolean mFinished;
+
+    public ChunkedRecordsInserter(
+            @NonNull IHealthConnectService service,
+            @NonNull AttributionSource attributionSource,
+            @NonNull List<Record> records,
+            @NonNull List<RecordInternal<?>> recordInternals,
+            @NonNull Executor executor,
+            @NonNull OutcomeReceiver<InsertRecordsResponse, HealthConnectException> callback) {
+        this(
+                service,
+                attributionSource,
+                records,
+                recordInternals,
+                executor,
+                callback,
+                RateLimiter.CHUNK_SIZE_LIMIT_IN_BYTES_DEFAULT,
+                RateLimiter.RECORD_SIZE_LIMIT_IN_BYTES_DEFAULT);
+    }
+
+    @VisibleForTesting
+    public ChunkedRecordsInserter(
+            @NonNull IHealthConnectService service,
+            @NonNull AttributionSource attributionSource,
+            @NonNull List<Record> records,
+            @NonNull List<RecordInternal<?>> recordInternals,
+            @NonNull Executor executor,
+            @NonNull OutcomeReceiver<InsertRecordsResponse, HealthConnectException> callback,
+            long maxChunkSize,
+            long maxRecordSize) {
+        mService = service;
+        mAttributionSource = attributionSource;
+        mRecords = records;
+        mExecutor = executor;
+        mCallback = callback;
+        mChunkEncoder =
+                new RecordsParcel.ChunkEncoder(recordInternals, maxChunkSize, maxRecordSize);
+    }
+
+    /** Starts sending the chunks. The callback is invoked once all of them have completed. */
+    public void start() {
+        sendChunks();
+    }
+
+    private void sendChunks() {
+        while (true) {
+            RecordsParcel chunk = null;
+            int fromIndex = 0;
+            HealthConnectException error;
+            synchronized (mLock) {
+                if (mError == null
+                        && mChunkEncoder.hasNext()
+                        && mChunksInFlight < MAX_CHUNKS_IN_FLIGHT) {
+                    fromIndex = mChunkEncoder.getNextIndex();
+                    try {
+                        chunk = mChunkEncoder.next();
+                        mChunksInFlight++;
+                    } catch (HealthConnectException e) {
+                        mError = e;
+                        mErrorFromIndex = fromIndex;
+                    }
+                }
+                if (chunk == null) {
+                    if (mFinished
+                            || mChunksInFlight > 0
+                            || (mError == null && mChunkEncoder.hasNext())) {
+                        return;
+                    }
+                    mFinished = true;
+                }
+                error = mError;
+            }
+
+            if (chunk == null) {
+                deliverResult(error);
+                return;
+            }
+            sendChunk(chunk, fromIndex);
+        }
+    }
+
+    private void sendChunk(@NonNull RecordsParcel chunk, int fromIndex) {
+        int count = chunk.getRecords().size();
+        try {
+            mService.insertRecords(
+                    mAttributionSource,
+                    chunk,
+                    new IInsertRecordsResponseCallback.Stub() {
+                        @Override
+                        public void onResult(InsertRecordsResponseParcel parcel) {
+                            Binder.clearCallingIdentity();
+                            List<String> uids = parcel.getUids();
+                            for (int i = 0; i < count; i++) {
+                                mRecords.get(fromIndex + i).getMetadata().setId(uids.get(i));
+                            }
+                            onChunkCompleted(fromIndex, count, null);
+                        }
+
+                        @Override
+                        public void onError(HealthConnectExceptionParcel exception) {
+                            Binder.clearCallingIdentity();
+                            onChunkCompleted(
+                                    fromIndex, count, exception.getHealthConnectException());
+                        }
+                    });
+        } catch (RemoteException e) {
+            onChunkCompleted(
+                    fromIndex,
+                    count,
+                    new HealthConnectException(
+                            HealthConnectException.ERROR_INTERNAL, e.getMessage()));
+        } finally {
+            chunk.recycle();
+        }
+    }
+
+    private void onChunkCompleted(
+            int fromIndex, int count, @Nullable HealthConnectException exception) {
+        synchronized (mLock) {
+            mChunksInFlight--;
+            if (exception != null && (mError == null || fromIndex < mErrorFromIndex)) {
+                mErrorFromIndex = fromIndex;
+                mError =
+                        new HealthConnectException(
+                                exception.getErrorCode(),
+                                "Records "
+                                        + fromIndex
+                                        + " to "
+                                        + (fromIndex + count - 1)
+                                        + " were not inserted: "
+                                        + exception.getMessage());
+            }
+        }
+        sendChunks();
+    }
+
+    private void deliverResult(@Nullable HealthConnectException error) {
+        mExecutor.execute(
+                () -> {
+                    if (error != null) {
+                        mCallback.onError(error);
+                    } else {
+                        mCallback.onResult(new InsertRecordsResponse(mRecords));
+                    }
+                });
+    }
+}
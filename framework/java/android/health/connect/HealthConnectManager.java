@@ -527,6 +527,49 @@ public class HealthConnectManager {
         }
     }
 
+    /**
+     * Inserts {@code records} into the HealthConnect database, splitting them into chunks that stay
+     * within the size limits of the HealthConnect service, so that a list of any size can be
+     * inserted in one call. Chunks are sent as earlier ones are inserted, with a bounded number in
+     * flight. The records returned in {@link InsertRecordsResponse} contain the unique IDs of the
+     * input records, in the same order as {@code records}.
+     *
+     * <p>Unlike {@link #insertRecords}, the records are not inserted atomically: each chunk is
+     * inserted on its own. In case of an error, {@link OutcomeReceiver#onError} will be invoked
+     * with a {@link HealthConnectException} for the earliest chunk in {@code records} that failed,
+     * naming the positions of its records. No further chunks are sent after an error, but up to
+     * one chunk after the failed one may already be in flight and still be inserted. The callback
+     * is only invoked once that chunk has completed. The records of every inserted chunk have
+     * their IDs set in their {@link android.health.connect.datatypes.Metadata}, and the IDs of the
+     * other records are left empty.
+     *
+     * @param records list of records to be inserted.
+     * @param executor Executor on which to invoke the callback.
+     * @param callback Callback to receive result of performing this operation.
+     * @throws RuntimeException for internal errors
+     */
+    public void insertRecordsInChunks(
+            @NonNull List<Record> records,
+            @NonNull @CallbackExecutor Executor executor,
+            @NonNull OutcomeReceiver<InsertRecordsResponse, HealthConnectException> callback) {
+        Objects.requireNonNull(records);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(callback);
+        // Unset any set ids for insert. This is to prevent random string ids from creating
+        // illegal argument exception.
+        records.forEach((record) -> record.getMetadata().setId(""));
+        List<RecordInternal<?>> recordInternals =
+                records.stream().map(Record::toRecordInternal).collect(Collectors.toList());
+        new ChunkedRecordsInserter(
+                        mService,
+                        mContext.getAttributionSource(),
+                        records,
+                        recordInternals,
+                        executor,
+                        callback)
+                .start();
+    }
+
     /**
      * Get aggregations corresponding to {@code request}.
      *
@@ -1193,6 +1236,39 @@ public class HealthConnectManager {
         }
     }
 
+    /**
+     * API to read all pages of records matching a {@link ReadRecordsRequestUsingFilters}, starting
+     * from its page token. Up to {@code prefetchDepth} pages are read ahead of the page being
+     * processed by the caller, and the next page is requested as soon as one is taken from the
+     * returned iterator.
+     *
+     * <p>Each page is read like a call to {@link #readRecords}, and counts towards the read quota
+     * of the caller. Pages are only read ahead while fewer than {@code prefetchDepth} pages are
+     * waiting to be taken, and not at all once the iterator is closed. If the quota is exceeded,
+     * {@link ReadRecordsPageIterator#hasNext} throws a {@link HealthConnectException} with {@link
+     * HealthConnectException#ERROR_RATE_LIMIT_EXCEEDED} after the pages read before.
+     *
+     * <p>The methods of the returned iterator block until the next page is read, so they must not
+     * be called on the main thread.
+     *
+     * @param request Read request, whose page token is the first page to read.
+     * @param prefetchDepth Maximum number of pages read ahead of the caller.
+     * @throws IllegalArgumentException if {@code prefetchDepth} is less than 1, or if request page
+     *     size set is more than 5000.
+     * @throws SecurityException if app without read or write permission tries to read.
+     * @hide
+     */
+    @NonNull
+    public <T extends Record> ReadRecordsPageIterator<T> readRecordsInPages(
+            @NonNull ReadRecordsRequestUsingFilters<T> request,
+            @IntRange(from = 1) int prefetchDepth) {
+        Objects.requireNonNull(request);
+        if (prefetchDepth < 1) {
+            throw new IllegalArgumentException("Prefetch depth must be at least 1");
+        }
+        return new ReadRecordsPageIterator<>(this, request, prefetchDepth);
+    }
+
     /**
      * Updates {@code records} into the HealthConnect database. In case of an error or a permission
      * failure the HealthConnect service, {@link OutcomeReceiver#onError} will be invoked with a
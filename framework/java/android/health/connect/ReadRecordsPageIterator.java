@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.datatypes.Record;
+import android.os.OutcomeReceiver;
+
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the pages of records matching a {@link ReadRecordsRequestUsingFilters}, reading
+ * up to a fixed number of pages ahead of the one being processed. The next page is requested as
+ * soon as a page is taken, so that the service reads it while the caller processes the current
+ * one.
+ *
+ * <p>Each page read counts towards the read quota of the caller like a call to {@link
+ * HealthConnectManager#readRecords}. At most the prefetch depth of pages is read ahead, and no
+ * further pages are read once the iterator is closed. Errors, including {@link
+ * HealthConnectException#ERROR_RATE_LIMIT_EXCEEDED}, are thrown by {@link #hasNext} once the pages
+ * read before them have been returned, and end the iteration. {@link #next} never throws them, so
+ * it always returns a page after {@link #hasNext} returned true.
+ *
+ * <p>{@link #hasNext} and {@link #next} block until the next page is read, so they must not be
+ * called on the main thread.
+ *
+ * @param <T> the type of the Record for the request
+ * @see HealthConnectManager#readRecordsInPages
+ * @hide
+ */
+public final class ReadRecordsPageIterator<T extends Record>
+        implements Iterator<ReadRecordsResponse<T>>, AutoCloseable {
+    private final HealthConnectManager mHealthConnectManager;
+    private final int mPrefetchDepth;
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private final ArrayDeque<ReadRecordsResponse<T>> mPages = new ArrayDeque<>();
+
+    // The request for the page after the last one read, or null once there are no more pages.
+    @GuardedBy("mLock")
+    @Nullable
+    private ReadRecordsRequestUsingFilters<T> mNextRequest;
+
+    @GuardedBy("mLock")
+    private boolean mRequestInFlight;
+
+    @GuardedBy("mLock")
+    @Nullable
+    private HealthConnectException mError;
+
+    @GuardedBy("mLock")
+    private boolean mClosed;
+
+    ReadRecordsPageIterator(
+            @NonNull HealthConnectManager healthConnectManager,
+            @NonNull ReadRecordsRequestUsingFilters<T> request,
+            int prefetchDepth) {
+        mHealthConnectManager = healthConnectManager;
+        mNextRequest = request;
+        mPrefetchDepth = prefetchDepth;
+        requestNextPageIfNeeded();
+    }
+
+    /**
+     * Returns whether there is another page. Blocks until the next page is read.
+     *
+     * @throws HealthConnectException if reading the next page failed. There are no more pages
+     *     afterwards.
+     */
+    @Override
+    public boolean hasNext() {
+        synchronized (mLock) {
+            waitForNextPageLocked();
+            if (mPages.isEmpty() && mError != null) {
+                HealthConnectException error = mError;
+                mError = null;
+                throw error;
+            }
+            return !mPages.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the next page of records. Blocks until it is read.
+     *
+     * @throws HealthConnectException if reading the page failed, and {@link #hasNext} wasn't
+     *     called before.
+     * @throws NoSuchElementException if there are no more pages.
+     */
+    @NonNull
+    @Override
+    public ReadRecordsResponse<T> next() {
+        ReadRecordsResponse<T> page;
+        synchronized (mLock) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            page = mPages.poll();
+        }
+        requestNextPageIfNeeded();
+        return page;
+    }
+
+    /** Stops reading further pages. Pages already read are dropped. */
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            mClosed = true;
+            mNextRequest = null;
+            mPages.clear();
+            mError = null;
+            mLock.notifyAll();
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void waitForNextPageLocked() {
+        while (mPages.isEmpty() && mError == null && mRequestInFlight && !mClosed) {
+            try {
+                mLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HealthConnectException(
+                        HealthConnectException.ERROR_INTERNAL,
+                        "Interrupted while waiting for the next page of records");
+            }
+        }
+    }
+
+    private void requestNextPageIfNeeded() {
+        ReadRecordsRequestUsingFilters<T> request;
+        synchronized (mLock) {
+            if (mNextRequest == null || mRequestInFlight || mPages.size() >= mPrefetchDepth) {
+                return;
+            }
+            request = mNextRequest;
+            mRequestInFlight = true;
+        }
+
+        try {
+            mHealthConnectManager.readRecords(
+                    request,
+                    Runnable::run,
+                    new OutcomeReceiver<>() {
+                        @Override
+                        public void onResult(ReadRecordsResponse<T> response) {
+                            onPageRead(request, response);
+                        }
+
+                        @Override
+                        public void onError(HealthConnectException exception) {
+                            onPageFailed(exception);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            onPageFailed(
+                    e instanceof HealthConnectException
+                            ? (HealthConnectException) e
+                            : new HealthConnectException(
+                                    HealthConnectException.ERROR_INTERNAL, e.getMessage()));
+        }
+    }
+
+    private void onPageRead(
+            @NonNull ReadRecordsRequestUsingFilters<T> request,
+            @NonNull ReadRecordsResponse<T> response) {
+        synchronized (mLock) {
+            mRequestInFlight = false;
+            if (mClosed) {
+                return;
+            }
+            mPages.add(response);
+            long nextPageToken = response.getNextPageToken();
+            mNextRequest =
+                    nextPageToken == DEFAULT_LONG ? null : request.withPageToken(nextPageToken);
+            mLock.notifyAll();
+        }
+        requestNextPageIfNeeded();
+    }
+
+    private void onPageFailed(@NonNull HealthConnectException exception) {
+        synchronized (mLock) {
+            mRequestInFlight = false;
+            if (mClosed) {
+                return;
+            }
+            mError = exception;
+            mNextRequest = null;
+            mLock.notifyAll();
+        }
+    }
+}
@@ -109,6 +109,17 @@ public final class ReadRecordsRequestUsingFilters<T extends Record> extends Read
         return new ReadRecordsRequestParcel(this);
     }
 
+    /**
+     * Returns a copy of this request that reads the page of {@code pageToken}.
+     *
+     * @hide
+     */
+    @NonNull
+    public ReadRecordsRequestUsingFilters<T> withPageToken(long pageToken) {
+        return new ReadRecordsRequestUsingFilters<>(
+                mTimeRangeFilter, getRecordType(), mDataOrigins, mPageSize, pageToken, mAscending);
+    }
+
     /** Builder class for {@link ReadRecordsRequestUsingFilters} */
     public static final class Builder<T extends Record> {
         private final Class<T> mRecordType;
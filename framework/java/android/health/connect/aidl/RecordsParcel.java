@@ -18,10 +18,12 @@ package android.health.connect.aidl;
 
 import android.annotation.NonNull;
 import android.annotation.Nullable;
+import android.health.connect.HealthConnectException;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.internal.ParcelUtils;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.ParcelRecordConverter;
+import android.health.connect.internal.datatypes.utils.ParcelStringDictionary;
 import android.os.Parcel;
 import android.os.Parcelable;
 
@@ -50,25 +52,53 @@ public class RecordsParcel implements Parcelable {
                 }
             };
 
+    /**
+     * Marks the compact layout, which writes UUIDs as two longs and the strings repeated across
+     * records once in a {@link ParcelStringDictionary}. It is negative so that it can't be mistaken
+     * for the number of records, which starts the original layout.
+     */
+    private static final int COMPACT_LAYOUT_VERSION = -1;
+
     private final List<RecordInternal<?>> mRecordInternals;
     private long mRecordsChunkSize;
     private List<Long> mRecordsSize;
+    // Set for parcels created by ChunkEncoder, which encodes the records while measuring them.
+    @Nullable private ParcelStringDictionary mDictionary;
+    @Nullable private Parcel mEncodedRecords;
 
     public RecordsParcel(@NonNull List<RecordInternal<?>> recordInternals) {
         mRecordInternals = recordInternals;
     }
 
+    private RecordsParcel(
+            @NonNull List<RecordInternal<?>> recordInternals,
+            @NonNull ParcelStringDictionary dictionary,
+            @NonNull Parcel encodedRecords) {
+        mRecordInternals = recordInternals;
+        mDictionary = dictionary;
+        mEncodedRecords = encodedRecords;
+    }
+
     private RecordsParcel(@NonNull Parcel in) {
         in = ParcelUtils.getParcelForSharedMemoryIfRequired(in);
+        mRecordsChunkSize = in.dataAvail();
         int size = in.readInt();
+        ParcelStringDictionary dictionary = null;
+        if (size == COMPACT_LAYOUT_VERSION) {
+            dictionary = ParcelStringDictionary.readFromParcel(in);
+            size = in.readInt();
+        }
         mRecordInternals = new ArrayList<>(size);
         mRecordsSize = new ArrayList<>(size);
         long remainingParcelSize = in.dataAvail();
-        mRecordsChunkSize = remainingParcelSize;
+        ParcelRecordConverter parcelRecordConverter = ParcelRecordConverter.getInstance();
         for (int i = 0; i < size; i++) {
             int identifier = in.readInt();
             try {
-                mRecordInternals.add(ParcelRecordConverter.getInstance().getRecord(in, identifier));
+                mRecordInternals.add(
+                        dictionary == null
+                                ? parcelRecordConverter.getRecord(in, identifier)
+                                : parcelRecordConverter.getRecord(in, identifier, dictionary));
                 // Calculating record size based on before and after values of parcel size.
                 mRecordsSize.add(remainingParcelSize - in.dataAvail());
                 remainingParcelSize = in.dataAvail();
@@ -111,11 +141,136 @@ public class RecordsParcel implements Parcelable {
         return mRecordsChunkSize;
     }
 
+    /**
+     * Releases the records encoded by {@link ChunkEncoder}. Must be called once the parcel has been
+     * written, and no-op for other parcels.
+     */
+    public void recycle() {
+        if (mEncodedRecords != null) {
+            mEncodedRecords.recycle();
+            mEncodedRecords = null;
+        }
+    }
+
     private void writeToParcelInternal(@NonNull Parcel dest) {
+        if (mEncodedRecords != null) {
+            dest.writeInt(COMPACT_LAYOUT_VERSION);
+            mDictionary.writeToParcel(dest);
+            dest.writeInt(mRecordInternals.size());
+            dest.appendFrom(mEncodedRecords, 0, mEncodedRecords.dataSize());
+            return;
+        }
+
+        ParcelStringDictionary dictionary = new ParcelStringDictionary();
+        for (RecordInternal<?> recordInternal : mRecordInternals) {
+            recordInternal.addStringsTo(dictionary);
+        }
+
+        dest.writeInt(COMPACT_LAYOUT_VERSION);
+        dictionary.writeToParcel(dest);
         dest.writeInt(mRecordInternals.size());
+        ParcelRecordConverter parcelRecordConverter = ParcelRecordConverter.getInstance();
         for (RecordInternal<?> recordInternal : mRecordInternals) {
-            dest.writeInt(recordInternal.getRecordType());
-            recordInternal.writeToParcel(dest);
+            parcelRecordConverter.writeRecord(dest, recordInternal, dictionary);
+        }
+    }
+
+    /**
+     * Splits records into {@link RecordsParcel}s that each stay within the chunk and record size
+     * limits, as measured by the service when reading them. Each record is encoded once, into the
+     * parcel that carries it, so that measuring doesn't add to the cost of encoding.
+     */
+    public static final class ChunkEncoder {
+        // Layout version, number of dictionary strings and number of records.
+        private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+        private final List<RecordInternal<?>> mRecordInternals;
+        private final long mMaxChunkSize;
+        private final long mMaxRecordSize;
+        private int mNextIndex;
+
+        public ChunkEncoder(
+                @NonNull List<RecordInternal<?>> recordInternals,
+                long maxChunkSize,
+                long maxRecordSize) {
+            mRecordInternals = recordInternals;
+            mMaxChunkSize = maxChunkSize;
+            mMaxRecordSize = maxRecordSize;
+        }
+
+        /** Returns whether there are records left to encode. */
+        public boolean hasNext() {
+            return mNextIndex < mRecordInternals.size();
+        }
+
+        /** Returns the index of the first record of the next chunk. */
+        public int getNextIndex() {
+            return mNextIndex;
+        }
+
+        /**
+         * Returns a parcel with as many of the remaining records as fit within the size limits.
+         * {@link RecordsParcel#recycle} must be called on it once written.
+         *
+         * @throws HealthConnectException with error code {@link
+         *     HealthConnectException#ERROR_RATE_LIMIT_EXCEEDED} if the next record exceeds the
+         *     record size limit.
+         */
+        @NonNull
+        public RecordsParcel next() {
+            int fromIndex = mNextIndex;
+            ParcelRecordConverter parcelRecordConverter = ParcelRecordConverter.getInstance();
+            ParcelStringDictionary dictionary = new ParcelStringDictionary();
+            Parcel encodedRecords = Parcel.obtain();
+            Parcel scratch = Parcel.obtain();
+            try {
+                long dictionarySize = 0;
+                while (mNextIndex < mRecordInternals.size()) {
+                    RecordInternal<?> recordInternal = mRecordInternals.get(mNextIndex);
+                    int numberOfStrings = dictionary.size();
+                    recordInternal.addStringsTo(dictionary);
+                    scratch.setDataSize(0);
+                    dictionary.writeStrings(scratch, numberOfStrings);
+                    int addedStringsSize = scratch.dataSize();
+
+                    scratch.setDataSize(0);
+                    parcelRecordConverter.writeRecord(scratch, recordInternal, dictionary);
+                    int recordSize = scratch.dataSize();
+                    long chunkSize =
+                            HEADER_SIZE
+                                    + dictionarySize
+                                    + addedStringsSize
+                                    + encodedRecords.dataSize()
+                                    + recordSize;
+                    if (mNextIndex > fromIndex
+                            && (chunkSize > mMaxChunkSize || recordSize > mMaxRecordSize)) {
+                        // Leave the record to the next chunk, which reports it if too large.
+                        dictionary.truncate(numberOfStrings);
+                        break;
+                    }
+                    if (recordSize > mMaxRecordSize) {
+                        throw new HealthConnectException(
+                                HealthConnectException.ERROR_RATE_LIMIT_EXCEEDED,
+                                "Record at index "
+                                        + mNextIndex
+                                        + " exceeded the single record size limit: "
+                                        + mMaxRecordSize
+                                        + ", was: "
+                                        + recordSize);
+                    }
+                    dictionarySize += addedStringsSize;
+                    encodedRecords.appendFrom(scratch, 0, recordSize);
+                    mNextIndex++;
+                }
+            } catch (RuntimeException e) {
+                encodedRecords.recycle();
+                throw e;
+            } finally {
+                scratch.recycle();
+            }
+
+            return new RecordsParcel(
+                    mRecordInternals.subList(fromIndex, mNextIndex), dictionary, encodedRecords);
         }
     }
 }
@@ -59,11 +59,11 @@ public final class BasalBodyTemperatureRecord extends InstantRecord {
         Objects.requireNonNull(temperature);
         if (!skipValidation) {
             ValidationUtils.requireInRange(temperature.getInCelsius(), 0.0, 100, "temperature");
+            validateIntDefValue(
+                    measurementLocation,
+                    BodyTemperatureMeasurementLocation.VALID_TYPES,
+                    BodyTemperatureMeasurementLocation.class.getSimpleName());
         }
-        validateIntDefValue(
-                measurementLocation,
-                BodyTemperatureMeasurementLocation.VALID_TYPES,
-                BodyTemperatureMeasurementLocation.class.getSimpleName());
         mMeasurementLocation = measurementLocation;
         mTemperature = temperature;
     }
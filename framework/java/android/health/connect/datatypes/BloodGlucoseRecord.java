@@ -67,14 +67,16 @@ public final class BloodGlucoseRecord extends InstantRecord {
         Objects.requireNonNull(level);
         if (!skipValidation) {
             ValidationUtils.requireInRange(level.getInMillimolesPerLiter(), 0.0, 50.0, "level");
+            validateIntDefValue(
+                    specimenSource,
+                    SpecimenSource.VALID_TYPES,
+                    SpecimenSource.class.getSimpleName());
+            validateIntDefValue(
+                    relationToMeal,
+                    RelationToMealType.VALID_TYPES,
+                    RelationToMealType.class.getSimpleName());
+            validateIntDefValue(mealType, MealType.VALID_TYPES, MealType.class.getSimpleName());
         }
-        validateIntDefValue(
-                specimenSource, SpecimenSource.VALID_TYPES, SpecimenSource.class.getSimpleName());
-        validateIntDefValue(
-                relationToMeal,
-                RelationToMealType.VALID_TYPES,
-                RelationToMealType.class.getSimpleName());
-        validateIntDefValue(mealType, MealType.VALID_TYPES, MealType.class.getSimpleName());
         mSpecimenSource = specimenSource;
         mLevel = level;
         mRelationToMeal = relationToMeal;
@@ -141,18 +141,18 @@ public final class BloodPressureRecord extends InstantRecord {
         Objects.requireNonNull(zoneOffset);
         Objects.requireNonNull(systolic);
         Objects.requireNonNull(diastolic);
-        validateIntDefValue(
-                measurementLocation,
-                BloodPressureMeasurementLocation.VALID_TYPES,
-                BloodPressureMeasurementLocation.class.getSimpleName());
         if (!skipValidation) {
+            validateIntDefValue(
+                    measurementLocation,
+                    BloodPressureMeasurementLocation.VALID_TYPES,
+                    BloodPressureMeasurementLocation.class.getSimpleName());
             ValidationUtils.requireInRange(
                     systolic.getInMillimetersOfMercury(), 20.0, 200.0, "systolic");
             ValidationUtils.requireInRange(
                     diastolic.getInMillimetersOfMercury(), 10.0, 180.0, "diastolic");
+            validateIntDefValue(
+                    bodyPosition, BodyPosition.VALID_TYPES, BodyPosition.class.getSimpleName());
         }
-        validateIntDefValue(
-                bodyPosition, BodyPosition.VALID_TYPES, BodyPosition.class.getSimpleName());
         mMeasurementLocation = measurementLocation;
         mSystolic = systolic;
         mDiastolic = diastolic;
@@ -58,11 +58,11 @@ public final class BodyTemperatureRecord extends InstantRecord {
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
         Objects.requireNonNull(temperature);
-        validateIntDefValue(
-                measurementLocation,
-                BodyTemperatureMeasurementLocation.VALID_TYPES,
-                BodyTemperatureMeasurementLocation.class.getSimpleName());
         if (!skipValidation) {
+            validateIntDefValue(
+                    measurementLocation,
+                    BodyTemperatureMeasurementLocation.VALID_TYPES,
+                    BodyTemperatureMeasurementLocation.class.getSimpleName());
             ValidationUtils.requireInRange(temperature.getInCelsius(), 0.0, 100, "temperature");
         }
         mMeasurementLocation = measurementLocation;
@@ -58,14 +58,16 @@ public final class CervicalMucusRecord extends InstantRecord {
         Objects.requireNonNull(metadata);
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
-        validateIntDefValue(
-                sensation,
-                CervicalMucusSensation.VALID_TYPES,
-                CervicalMucusSensation.class.getSimpleName());
-        validateIntDefValue(
-                appearance,
-                CervicalMucusAppearance.VALID_TYPES,
-                CervicalMucusAppearance.class.getSimpleName());
+        if (!skipValidation) {
+            validateIntDefValue(
+                    sensation,
+                    CervicalMucusSensation.VALID_TYPES,
+                    CervicalMucusSensation.class.getSimpleName());
+            validateIntDefValue(
+                    appearance,
+                    CervicalMucusAppearance.VALID_TYPES,
+                    CervicalMucusAppearance.class.getSimpleName());
+        }
         mSensation = sensation;
         mAppearance = appearance;
     }
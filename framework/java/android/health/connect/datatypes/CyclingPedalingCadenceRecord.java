@@ -23,10 +23,8 @@ import android.health.connect.internal.datatypes.CyclingPedalingCadenceRecordInt
 
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /** Captures the user's cycling pedaling cadence. */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_CYCLING_PEDALING_CADENCE)
@@ -334,17 +332,18 @@ public final class CyclingPedalingCadenceRecord extends IntervalRecord {
                                 .setModel(getMetadata().getDevice().getModel())
                                 .setDeviceType(getMetadata().getDevice().getType())
                                 .setRecordingMethod(getMetadata().getRecordingMethod());
-        Set<CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample> samples =
-                new HashSet<>(getSamples().size());
-
+        List<CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample> samples =
+                getSamples();
+        long[] epochMillis = new long[samples.size()];
+        double[] revolutionsPerMinute = new double[samples.size()];
+        int i = 0;
         for (CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample
-                cyclingPedalingCadenceRecordSample : getSamples()) {
-            samples.add(
-                    new CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample(
-                            cyclingPedalingCadenceRecordSample.getRevolutionsPerMinute(),
-                            cyclingPedalingCadenceRecordSample.getTime().toEpochMilli()));
+                cyclingPedalingCadenceRecordSample : samples) {
+            epochMillis[i] = cyclingPedalingCadenceRecordSample.getTime().toEpochMilli();
+            revolutionsPerMinute[i] = cyclingPedalingCadenceRecordSample.getRevolutionsPerMinute();
+            i++;
         }
-        recordInternal.setSamples(samples);
+        recordInternal.setSamples(epochMillis, revolutionsPerMinute);
         recordInternal.setStartTime(getStartTime().toEpochMilli());
         recordInternal.setEndTime(getEndTime().toEpochMilli());
         recordInternal.setStartZoneOffset(getStartZoneOffset().getTotalSeconds());
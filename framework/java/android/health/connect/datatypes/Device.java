@@ -67,7 +67,16 @@ public final class Device {
         /** Build and return {@link Device} object */
         @NonNull
         public Device build() {
-            return new Device(mManufacturer, mModel, mType);
+            return new Device(mManufacturer, mModel, mType, false);
+        }
+
+        /**
+         * @return Object of {@link Device} without validating the values.
+         * @hide
+         */
+        @NonNull
+        public Device buildWithoutValidation() {
+            return new Device(mManufacturer, mModel, mType, true);
         }
     }
 
@@ -90,9 +99,13 @@ public final class Device {
      * @param manufacturer An optional client supplied manufacturer of the device
      * @param model An optional client supplied model of the device
      * @param type An optional client supplied type of the device
+     * @param skipValidation Boolean flag to skip validation of record values.
      */
-    private Device(String manufacturer, String model, @DeviceType int type) {
-        validateIntDefValue(type, Device.VALID_TYPES, DeviceType.class.getSimpleName());
+    private Device(
+            String manufacturer, String model, @DeviceType int type, boolean skipValidation) {
+        if (!skipValidation) {
+            validateIntDefValue(type, Device.VALID_TYPES, DeviceType.class.getSimpleName());
+        }
         mManufacturer = manufacturer;
         mModel = model;
         mType = type;
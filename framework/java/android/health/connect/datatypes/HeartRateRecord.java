@@ -26,10 +26,8 @@ import android.health.connect.internal.datatypes.HeartRateRecordInternal;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /** Captures the user's heart rate. Each record represents a series of measurements. */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_HEART_RATE)
@@ -340,15 +338,16 @@ public final class HeartRateRecord extends IntervalRecord {
                                 .setModel(getMetadata().getDevice().getModel())
                                 .setDeviceType(getMetadata().getDevice().getType())
                                 .setRecordingMethod(getMetadata().getRecordingMethod());
-        Set<HeartRateRecordInternal.HeartRateSample> samples = new HashSet<>(getSamples().size());
-
-        for (HeartRateRecord.HeartRateSample heartRateSample : getSamples()) {
-            samples.add(
-                    new HeartRateRecordInternal.HeartRateSample(
-                            (int) heartRateSample.getBeatsPerMinute(),
-                            heartRateSample.getTime().toEpochMilli()));
+        List<HeartRateRecord.HeartRateSample> samples = getSamples();
+        long[] epochMillis = new long[samples.size()];
+        int[] beatsPerMinute = new int[samples.size()];
+        int i = 0;
+        for (HeartRateRecord.HeartRateSample heartRateSample : samples) {
+            epochMillis[i] = heartRateSample.getTime().toEpochMilli();
+            beatsPerMinute[i] = (int) heartRateSample.getBeatsPerMinute();
+            i++;
         }
-        recordInternal.setSamples(samples);
+        recordInternal.setSamples(epochMillis, beatsPerMinute);
         recordInternal.setStartTime(getStartTime().toEpochMilli());
         recordInternal.setEndTime(getEndTime().toEpochMilli());
         recordInternal.setStartZoneOffset(getStartZoneOffset().getTotalSeconds());
@@ -39,7 +39,7 @@ public abstract class InstantRecord extends Record {
             @NonNull Instant time,
             @NonNull ZoneOffset zoneOffset,
             boolean skipValidation) {
-        super(metadata);
+        super(metadata, skipValidation);
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
         if (!skipValidation && time.isAfter(Instant.now())) {
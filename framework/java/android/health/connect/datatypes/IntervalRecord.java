@@ -44,7 +44,7 @@ public abstract class IntervalRecord extends Record {
             @NonNull Instant endTime,
             @NonNull ZoneOffset endZoneOffset,
             boolean skipValidation) {
-        super(metadata);
+        super(metadata, skipValidation);
         Objects.requireNonNull(startTime);
         Objects.requireNonNull(startZoneOffset);
         Objects.requireNonNull(endTime);
@@ -54,8 +54,12 @@ public final class MenstruationFlowRecord extends InstantRecord {
         Objects.requireNonNull(metadata);
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
-        validateIntDefValue(
-                flow, MenstruationFlowType.VALID_TYPES, MenstruationFlowType.class.getSimpleName());
+        if (!skipValidation) {
+            validateIntDefValue(
+                    flow,
+                    MenstruationFlowType.VALID_TYPES,
+                    MenstruationFlowType.class.getSimpleName());
+        }
         mFlow = flow;
     }
 
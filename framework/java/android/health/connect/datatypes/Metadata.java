@@ -98,6 +98,7 @@ public final class Metadata {
      *     precedence. {@code clientRecordVersion} starts with 0. @see clientRecordId
      * @param recordingMethod Optional client supplied data recording method to help to understand
      *     how the data was recorded.
+     * @param skipValidation Boolean flag to skip validation of record values.
      */
     private Metadata(
             Device device,
@@ -106,8 +107,12 @@ public final class Metadata {
             Instant lastModifiedTime,
             String clientRecordId,
             long clientRecordVersion,
-            @RecordingMethod int recordingMethod) {
-        validateIntDefValue(recordingMethod, VALID_TYPES, RecordingMethod.class.getSimpleName());
+            @RecordingMethod int recordingMethod,
+            boolean skipValidation) {
+        if (!skipValidation) {
+            validateIntDefValue(
+                    recordingMethod, VALID_TYPES, RecordingMethod.class.getSimpleName());
+        }
         mDevice = device;
         mDataOrigin = dataOrigin;
         mId = id;
@@ -238,8 +243,12 @@ public final class Metadata {
      * @see Metadata
      */
     public static final class Builder {
-        private Device mDevice = new Device.Builder().build();
-        private DataOrigin mDataOrigin = new DataOrigin.Builder().build();
+        // Both are immutable, so the defaults are shared between all builders.
+        private static final Device DEFAULT_DEVICE = new Device.Builder().build();
+        private static final DataOrigin DEFAULT_DATA_ORIGIN = new DataOrigin.Builder().build();
+
+        private Device mDevice = DEFAULT_DEVICE;
+        private DataOrigin mDataOrigin = DEFAULT_DATA_ORIGIN;
         private String mId = "";
         private Instant mLastModifiedTime = Instant.EPOCH;
         private String mClientRecordId;
@@ -347,7 +356,25 @@ public final class Metadata {
                     mLastModifiedTime,
                     mClientRecordId,
                     mClientRecordVersion,
-                    mRecordingMethod);
+                    mRecordingMethod,
+                    false);
+        }
+
+        /**
+         * @return {@link Metadata} object without validating the values.
+         * @hide
+         */
+        @NonNull
+        public Metadata buildWithoutValidation() {
+            return new Metadata(
+                    mDevice,
+                    mDataOrigin,
+                    mId,
+                    mLastModifiedTime,
+                    mClientRecordId,
+                    mClientRecordVersion,
+                    mRecordingMethod,
+                    true);
         }
     }
 }
@@ -1369,8 +1369,8 @@ public final class NutritionRecord extends IntervalRecord {
             @Nullable Mass sugar,
             boolean skipValidation) {
         super(metadata, startTime, startZoneOffset, endTime, endZoneOffset, skipValidation);
-        validateIntDefValue(mealType, MealType.VALID_TYPES, MealType.class.getSimpleName());
         if (!skipValidation) {
+            validateIntDefValue(mealType, MealType.VALID_TYPES, MealType.class.getSimpleName());
             requireInRangeIfExists(unsaturatedFat, MASS_0_0, MASS_100000, "unsaturatedFat");
             requireInRangeIfExists(potassium, MASS_0_0, MASS_100, "potassium");
             requireInRangeIfExists(thiamin, MASS_0_0, MASS_100, "thiamin");
@@ -51,8 +51,12 @@ public final class OvulationTestRecord extends InstantRecord {
         Objects.requireNonNull(metadata);
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
-        validateIntDefValue(
-                result, OvulationTestResult.VALID_TYPES, OvulationTestResult.class.getSimpleName());
+        if (!skipValidation) {
+            validateIntDefValue(
+                    result,
+                    OvulationTestResult.VALID_TYPES,
+                    OvulationTestResult.class.getSimpleName());
+        }
         mResult = result;
     }
 
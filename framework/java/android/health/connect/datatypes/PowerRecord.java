@@ -26,10 +26,8 @@ import android.health.connect.internal.datatypes.PowerRecordInternal;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /** Captures the power generated by the user, e.g. during cycling or rowing with a power meter. */
 @Identifier(recordIdentifier = RECORD_TYPE_POWER)
@@ -321,15 +319,16 @@ public final class PowerRecord extends IntervalRecord {
                                 .setModel(getMetadata().getDevice().getModel())
                                 .setDeviceType(getMetadata().getDevice().getType())
                                 .setRecordingMethod(getMetadata().getRecordingMethod());
-        Set<PowerRecordInternal.PowerRecordSample> samples = new HashSet<>(getSamples().size());
-
-        for (PowerRecord.PowerRecordSample powerRecordSample : getSamples()) {
-            samples.add(
-                    new PowerRecordInternal.PowerRecordSample(
-                            powerRecordSample.getPower().getInWatts(),
-                            powerRecordSample.getTime().toEpochMilli()));
+        List<PowerRecord.PowerRecordSample> samples = getSamples();
+        long[] epochMillis = new long[samples.size()];
+        double[] watts = new double[samples.size()];
+        int i = 0;
+        for (PowerRecord.PowerRecordSample powerRecordSample : samples) {
+            epochMillis[i] = powerRecordSample.getTime().toEpochMilli();
+            watts[i] = powerRecordSample.getPower().getInWatts();
+            i++;
         }
-        recordInternal.setSamples(samples);
+        recordInternal.setSamples(epochMillis, watts);
         recordInternal.setStartTime(getStartTime().toEpochMilli());
         recordInternal.setEndTime(getEndTime().toEpochMilli());
         recordInternal.setStartZoneOffset(getStartZoneOffset().getTotalSeconds());
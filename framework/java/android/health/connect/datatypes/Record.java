@@ -33,15 +33,18 @@ public abstract class Record {
 
     /**
      * @param metadata Metadata to be associated with the record. See {@link Metadata}
+     * @param skipValidation Boolean flag to skip validation of record values.
      */
-    Record(@NonNull Metadata metadata) {
+    Record(@NonNull Metadata metadata, boolean skipValidation) {
         Objects.requireNonNull(metadata);
         Identifier annotation = getClass().getAnnotation(Identifier.class);
         Objects.requireNonNull(annotation);
-        validateIntDefValue(
-                annotation.recordIdentifier(),
-                RecordTypeIdentifier.VALID_TYPES,
-                RecordTypeIdentifier.class.getSimpleName());
+        if (!skipValidation) {
+            validateIntDefValue(
+                    annotation.recordIdentifier(),
+                    RecordTypeIdentifier.VALID_TYPES,
+                    RecordTypeIdentifier.class.getSimpleName());
+        }
         mRecordIdentifier = annotation.recordIdentifier();
         mMetadata = metadata;
     }
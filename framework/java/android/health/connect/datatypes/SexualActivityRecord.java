@@ -54,10 +54,12 @@ public final class SexualActivityRecord extends InstantRecord {
         Objects.requireNonNull(metadata);
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
-        validateIntDefValue(
-                protectionUsed,
-                SexualActivityProtectionUsed.VALID_TYPES,
-                SexualActivityProtectionUsed.class.getSimpleName());
+        if (!skipValidation) {
+            validateIntDefValue(
+                    protectionUsed,
+                    SexualActivityProtectionUsed.VALID_TYPES,
+                    SexualActivityProtectionUsed.class.getSimpleName());
+        }
         mProtectionUsed = protectionUsed;
     }
 
@@ -24,10 +24,8 @@ import android.health.connect.internal.datatypes.SpeedRecordInternal;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /** Captures the user's speed, e.g. during running or cycling. */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_SPEED)
@@ -327,15 +325,16 @@ public final class SpeedRecord extends IntervalRecord {
                                 .setModel(getMetadata().getDevice().getModel())
                                 .setDeviceType(getMetadata().getDevice().getType())
                                 .setRecordingMethod(getMetadata().getRecordingMethod());
-        Set<SpeedRecordInternal.SpeedRecordSample> samples = new HashSet<>(getSamples().size());
-
-        for (SpeedRecord.SpeedRecordSample speedRecordSample : getSamples()) {
-            samples.add(
-                    new SpeedRecordInternal.SpeedRecordSample(
-                            speedRecordSample.getSpeed().getInMetersPerSecond(),
-                            speedRecordSample.getTime().toEpochMilli()));
+        List<SpeedRecord.SpeedRecordSample> samples = getSamples();
+        long[] epochMillis = new long[samples.size()];
+        double[] metersPerSecond = new double[samples.size()];
+        int i = 0;
+        for (SpeedRecord.SpeedRecordSample speedRecordSample : samples) {
+            epochMillis[i] = speedRecordSample.getTime().toEpochMilli();
+            metersPerSecond[i] = speedRecordSample.getSpeed().getInMetersPerSecond();
+            i++;
         }
-        recordInternal.setSamples(samples);
+        recordInternal.setSamples(epochMillis, metersPerSecond);
         recordInternal.setStartTime(getStartTime().toEpochMilli());
         recordInternal.setEndTime(getEndTime().toEpochMilli());
         recordInternal.setStartZoneOffset(getStartZoneOffset().getTotalSeconds());
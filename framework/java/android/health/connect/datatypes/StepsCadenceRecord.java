@@ -23,10 +23,8 @@ import android.health.connect.internal.datatypes.StepsCadenceRecordInternal;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /** Captures the user's steps cadence. */
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_STEPS_CADENCE)
@@ -321,16 +319,16 @@ public final class StepsCadenceRecord extends IntervalRecord {
                                 .setModel(getMetadata().getDevice().getModel())
                                 .setDeviceType(getMetadata().getDevice().getType())
                                 .setRecordingMethod(getMetadata().getRecordingMethod());
-        Set<StepsCadenceRecordInternal.StepsCadenceRecordSample> samples =
-                new HashSet<>(getSamples().size());
-
-        for (StepsCadenceRecord.StepsCadenceRecordSample stepsCadenceRecordSample : getSamples()) {
-            samples.add(
-                    new StepsCadenceRecordInternal.StepsCadenceRecordSample(
-                            stepsCadenceRecordSample.getRate(),
-                            stepsCadenceRecordSample.getTime().toEpochMilli()));
+        List<StepsCadenceRecord.StepsCadenceRecordSample> samples = getSamples();
+        long[] epochMillis = new long[samples.size()];
+        double[] rates = new double[samples.size()];
+        int i = 0;
+        for (StepsCadenceRecord.StepsCadenceRecordSample stepsCadenceRecordSample : samples) {
+            epochMillis[i] = stepsCadenceRecordSample.getTime().toEpochMilli();
+            rates[i] = stepsCadenceRecordSample.getRate();
+            i++;
         }
-        recordInternal.setSamples(samples);
+        recordInternal.setSamples(epochMillis, rates);
         recordInternal.setStartTime(getStartTime().toEpochMilli());
         recordInternal.setEndTime(getEndTime().toEpochMilli());
         recordInternal.setStartZoneOffset(getStartZoneOffset().getTotalSeconds());
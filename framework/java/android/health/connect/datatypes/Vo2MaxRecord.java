@@ -56,11 +56,11 @@ public final class Vo2MaxRecord extends InstantRecord {
         Objects.requireNonNull(metadata);
         Objects.requireNonNull(time);
         Objects.requireNonNull(zoneOffset);
-        validateIntDefValue(
-                measurementMethod,
-                Vo2MaxMeasurementMethod.VALID_TYPES,
-                Vo2MaxMeasurementMethod.class.getSimpleName());
         if (!skipValidation) {
+            validateIntDefValue(
+                    measurementMethod,
+                    Vo2MaxMeasurementMethod.VALID_TYPES,
+                    Vo2MaxMeasurementMethod.class.getSimpleName());
             ValidationUtils.requireInRange(
                     vo2MillilitersPerMinuteKilogram, 0.0, 100.0, "vo2MillilitersPerMinuteKilogram");
         }
@@ -81,6 +81,14 @@ public final class BloodGlucoseRecordInternal extends InstantRecordInternal<Bloo
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && BloodGlucoseRecord.SpecimenSource.VALID_TYPES.contains(mSpecimenSource)
+                && BloodGlucoseRecord.RelationToMealType.VALID_TYPES.contains(mRelationToMeal)
+                && MealType.VALID_TYPES.contains(mMealType);
+    }
+
     @NonNull
     @Override
     public BloodGlucoseRecord toExternalRecord() {
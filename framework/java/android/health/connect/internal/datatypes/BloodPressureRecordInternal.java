@@ -18,6 +18,7 @@ package android.health.connect.internal.datatypes;
 import android.annotation.NonNull;
 import android.health.connect.datatypes.BloodPressureRecord;
 import android.health.connect.datatypes.BloodPressureRecord.BloodPressureMeasurementLocation;
+import android.health.connect.datatypes.BloodPressureRecord.BodyPosition;
 import android.health.connect.datatypes.BloodPressureRecord.BodyPosition.BodyPositionType;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -81,6 +82,13 @@ public final class BloodPressureRecordInternal extends InstantRecordInternal<Blo
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && BloodPressureMeasurementLocation.VALID_TYPES.contains(mMeasurementLocation)
+                && BodyPosition.VALID_TYPES.contains(mBodyPosition);
+    }
+
     @NonNull
     @Override
     public BloodPressureRecord toExternalRecord() {
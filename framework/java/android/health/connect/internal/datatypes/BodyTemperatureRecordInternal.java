@@ -56,6 +56,12 @@ public final class BodyTemperatureRecordInternal
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && BodyTemperatureMeasurementLocation.VALID_TYPES.contains(mMeasurementLocation);
+    }
+
     @NonNull
     @Override
     public BodyTemperatureRecord toExternalRecord() {
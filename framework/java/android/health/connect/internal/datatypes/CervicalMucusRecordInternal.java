@@ -56,6 +56,13 @@ public final class CervicalMucusRecordInternal extends InstantRecordInternal<Cer
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && CervicalMucusSensation.VALID_TYPES.contains(mSensation)
+                && CervicalMucusAppearance.VALID_TYPES.contains(mAppearance);
+    }
+
     @NonNull
     @Override
     public CervicalMucusRecord toExternalRecord() {
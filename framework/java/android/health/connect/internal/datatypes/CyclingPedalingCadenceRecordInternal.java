@@ -17,6 +17,7 @@
 package android.health.connect.internal.datatypes;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.datatypes.CyclingPedalingCadenceRecord;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -38,23 +39,67 @@ public class CyclingPedalingCadenceRecordInternal
         extends SeriesRecordInternal<
                 CyclingPedalingCadenceRecord,
                 CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample> {
-    private Set<CyclingPedalingCadenceRecordSample> mCyclingPedalingCadenceRecordSamples;
+    @Nullable private double[] mRevolutionsPerMinute;
 
+    /**
+     * Returns a set with a {@link CyclingPedalingCadenceRecordSample} per sample, or {@code null}
+     * if the samples are not set. Prefer {@link #getSampleTimes()} and {@link #getSampleValues()}.
+     */
     @Override
-    @NonNull
+    @Nullable
     public Set<CyclingPedalingCadenceRecordSample> getSamples() {
-        return mCyclingPedalingCadenceRecordSamples;
+        long[] sampleTimes = getSampleTimes();
+        if (sampleTimes == null) {
+            return null;
+        }
+        Set<CyclingPedalingCadenceRecordSample> samples = new HashSet<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            samples.add(
+                    new CyclingPedalingCadenceRecordSample(
+                            mRevolutionsPerMinute[i], sampleTimes[i]));
+        }
+        return samples;
     }
 
     @NonNull
     @Override
     public CyclingPedalingCadenceRecordInternal setSamples(Set<? extends Sample> samples) {
         Objects.requireNonNull(samples);
-        this.mCyclingPedalingCadenceRecordSamples =
-                (Set<CyclingPedalingCadenceRecordSample>) samples;
+        long[] epochMillis = new long[samples.size()];
+        double[] revolutionsPerMinute = new double[samples.size()];
+        int i = 0;
+        for (Sample sample : samples) {
+            CyclingPedalingCadenceRecordSample cyclingPedalingCadenceRecordSample =
+                    (CyclingPedalingCadenceRecordSample) sample;
+            epochMillis[i] = cyclingPedalingCadenceRecordSample.getEpochMillis();
+            revolutionsPerMinute[i] = cyclingPedalingCadenceRecordSample.getRevolutionsPerMinute();
+            i++;
+        }
+        return setSamples(epochMillis, revolutionsPerMinute);
+    }
+
+    /**
+     * Sets the samples from parallel arrays of times and values, which must not be modified
+     * afterwards.
+     */
+    @NonNull
+    public CyclingPedalingCadenceRecordInternal setSamples(
+            @NonNull long[] epochMillis, @NonNull double[] revolutionsPerMinute) {
+        checkSampleArrayLengths(epochMillis, revolutionsPerMinute.length);
+        mRevolutionsPerMinute = reorder(revolutionsPerMinute, setSampleTimes(epochMillis));
         return this;
     }
 
+    /**
+     * Returns the cadence in revolutions per minute of each sample, in the order of {@link
+     * #getSampleTimes()}, or {@code null} if the samples are not set. The array must not be
+     * modified.
+     */
+    @Nullable
+    public double[] getSampleValues() {
+        return mRevolutionsPerMinute;
+    }
+
     @Override
     @NonNull
     public CyclingPedalingCadenceRecord toExternalRecord() {
@@ -67,39 +112,28 @@ public class CyclingPedalingCadenceRecordInternal
 
     @Override
     void populateIntervalRecordFrom(@NonNull Parcel parcel) {
-        int size = parcel.readInt();
-        mCyclingPedalingCadenceRecordSamples = new HashSet<>(size);
-        for (int i = 0; i < size; i++) {
-            mCyclingPedalingCadenceRecordSamples.add(
-                    new CyclingPedalingCadenceRecordSample(parcel.readDouble(), parcel.readLong()));
-        }
+        long[] epochMillis = parcel.createLongArray();
+        double[] revolutionsPerMinute = parcel.createDoubleArray();
+        setSamples(epochMillis, revolutionsPerMinute);
     }
 
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
-        parcel.writeInt(mCyclingPedalingCadenceRecordSamples.size());
-        for (CyclingPedalingCadenceRecordSample cyclingPedalingCadenceRecordSample :
-                mCyclingPedalingCadenceRecordSamples) {
-            parcel.writeDouble(cyclingPedalingCadenceRecordSample.getRevolutionsPerMinute());
-            parcel.writeLong(cyclingPedalingCadenceRecordSample.getEpochMillis());
-        }
+        parcel.writeLongArray(getSampleTimes());
+        parcel.writeDoubleArray(mRevolutionsPerMinute);
     }
 
     private List<CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample>
             getExternalSamples() {
-        List<CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample>
-                cyclingPedalingCadenceRecords =
-                        new ArrayList<>(mCyclingPedalingCadenceRecordSamples.size());
-        for (CyclingPedalingCadenceRecordSample cyclingPedalingCadenceRecordSample :
-                mCyclingPedalingCadenceRecordSamples) {
-            cyclingPedalingCadenceRecords.add(
+        long[] sampleTimes = getSampleTimes();
+        List<CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample> externalSamples =
+                new ArrayList<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            externalSamples.add(
                     new CyclingPedalingCadenceRecord.CyclingPedalingCadenceRecordSample(
-                            cyclingPedalingCadenceRecordSample.getRevolutionsPerMinute(),
-                            Instant.ofEpochMilli(
-                                    cyclingPedalingCadenceRecordSample.getEpochMillis()),
-                            true));
+                            mRevolutionsPerMinute[i], Instant.ofEpochMilli(sampleTimes[i]), true));
         }
-        return cyclingPedalingCadenceRecords;
+        return externalSamples;
     }
 
     /**
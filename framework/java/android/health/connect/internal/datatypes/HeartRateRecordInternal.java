@@ -70,20 +70,62 @@ public class HeartRateRecordInternal
         }
     }
 
-    private Set<HeartRateSample> mHeartRateHeartRateSamples;
+    @Nullable private int[] mBeatsPerMinute;
 
+    /**
+     * Returns a set with a {@link HeartRateSample} per sample, or {@code null} if the samples are
+     * not set. Prefer {@link #getSampleTimes()} and {@link #getSampleValues()}.
+     */
     @Override
     @Nullable
     public Set<HeartRateSample> getSamples() {
-        return mHeartRateHeartRateSamples;
+        long[] sampleTimes = getSampleTimes();
+        if (sampleTimes == null) {
+            return null;
+        }
+        Set<HeartRateSample> samples = new HashSet<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            samples.add(new HeartRateSample(mBeatsPerMinute[i], sampleTimes[i]));
+        }
+        return samples;
     }
 
     @Override
     public HeartRateRecordInternal setSamples(Set<? extends Sample> samples) {
-        this.mHeartRateHeartRateSamples = (Set<HeartRateSample>) samples;
+        Objects.requireNonNull(samples);
+        long[] epochMillis = new long[samples.size()];
+        int[] beatsPerMinute = new int[samples.size()];
+        int i = 0;
+        for (Sample sample : samples) {
+            HeartRateSample heartRateSample = (HeartRateSample) sample;
+            epochMillis[i] = heartRateSample.getEpochMillis();
+            beatsPerMinute[i] = heartRateSample.getBeatsPerMinute();
+            i++;
+        }
+        return setSamples(epochMillis, beatsPerMinute);
+    }
+
+    /**
+     * Sets the samples from parallel arrays of times and heart rates, which must not be modified
+     * afterwards.
+     */
+    @NonNull
+    public HeartRateRecordInternal setSamples(
+            @NonNull long[] epochMillis, @NonNull int[] beatsPerMinute) {
+        checkSampleArrayLengths(epochMillis, beatsPerMinute.length);
+        mBeatsPerMinute = reorder(beatsPerMinute, setSampleTimes(epochMillis));
         return this;
     }
 
+    /**
+     * Returns the heart rate of each sample, in the order of {@link #getSampleTimes()}, or {@code
+     * null} if the samples are not set. The array must not be modified.
+     */
+    @Nullable
+    public int[] getSampleValues() {
+        return mBeatsPerMinute;
+    }
+
     @Override
     @NonNull
     public HeartRateRecord toExternalRecord() {
@@ -96,33 +138,26 @@ public class HeartRateRecordInternal
 
     @Override
     void populateIntervalRecordFrom(@NonNull Parcel parcel) {
-        int size = parcel.readInt();
-        mHeartRateHeartRateSamples = new HashSet<>(size);
-        for (int i = 0; i < size; i++) {
-            mHeartRateHeartRateSamples.add(
-                    new HeartRateSample(parcel.readInt(), parcel.readLong()));
-        }
+        long[] epochMillis = parcel.createLongArray();
+        int[] beatsPerMinute = parcel.createIntArray();
+        setSamples(epochMillis, beatsPerMinute);
     }
 
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
-        parcel.writeInt(mHeartRateHeartRateSamples.size());
-        for (HeartRateSample heartRateSample : mHeartRateHeartRateSamples) {
-            parcel.writeInt(heartRateSample.getBeatsPerMinute());
-            parcel.writeLong(heartRateSample.getEpochMillis());
-        }
+        parcel.writeLongArray(getSampleTimes());
+        parcel.writeIntArray(mBeatsPerMinute);
     }
 
     private List<HeartRateRecord.HeartRateSample> getExternalSamples() {
+        long[] sampleTimes = getSampleTimes();
         List<HeartRateRecord.HeartRateSample> heartRateRecords =
-                new ArrayList<>(mHeartRateHeartRateSamples.size());
+                new ArrayList<>(sampleTimes.length);
 
-        for (HeartRateSample heartRateSample : mHeartRateHeartRateSamples) {
+        for (int i = 0; i < sampleTimes.length; i++) {
             heartRateRecords.add(
                     new HeartRateRecord.HeartRateSample(
-                            heartRateSample.getBeatsPerMinute(),
-                            Instant.ofEpochMilli(heartRateSample.getEpochMillis()),
-                            true));
+                            mBeatsPerMinute[i], Instant.ofEpochMilli(sampleTimes[i]), true));
         }
 
         return heartRateRecords;
@@ -43,6 +43,12 @@ public final class MenstruationFlowRecordInternal
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && MenstruationFlowType.VALID_TYPES.contains(mFlow);
+    }
+
     @NonNull
     @Override
     public MenstruationFlowRecord toExternalRecord() {
@@ -563,6 +563,12 @@ public final class NutritionRecordInternal extends IntervalRecordInternal<Nutrit
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && MealType.VALID_TYPES.contains(mMealType);
+    }
+
     @NonNull
     @Override
     public NutritionRecord toExternalRecord() {
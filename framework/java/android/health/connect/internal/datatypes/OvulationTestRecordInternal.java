@@ -42,6 +42,12 @@ public final class OvulationTestRecordInternal extends InstantRecordInternal<Ovu
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && OvulationTestResult.VALID_TYPES.contains(mResult);
+    }
+
     @NonNull
     @Override
     public OvulationTestRecord toExternalRecord() {
@@ -17,6 +17,7 @@
 package android.health.connect.internal.datatypes;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.PowerRecord;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -37,31 +38,62 @@ import java.util.Set;
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_POWER)
 public class PowerRecordInternal
         extends SeriesRecordInternal<PowerRecord, PowerRecord.PowerRecordSample> {
-    private Set<PowerRecordSample> mPowerRecordSamples;
-
-    @Override
-    void populateIntervalRecordFrom(@NonNull Parcel parcel) {
-        int size = parcel.readInt();
-        mPowerRecordSamples = new HashSet<>(size);
-        for (int i = 0; i < size; i++) {
-            mPowerRecordSamples.add(new PowerRecordSample(parcel.readDouble(), parcel.readLong()));
-        }
-    }
+    @Nullable private double[] mPowerWatts;
 
+    /**
+     * Returns a set with a {@link PowerRecordSample} per sample, or {@code null} if the samples are
+     * not set. Prefer {@link #getSampleTimes()} and {@link #getSampleValues()}.
+     */
     @Override
-    @NonNull
+    @Nullable
     public Set<PowerRecordSample> getSamples() {
-        return mPowerRecordSamples;
+        long[] sampleTimes = getSampleTimes();
+        if (sampleTimes == null) {
+            return null;
+        }
+        Set<PowerRecordSample> samples = new HashSet<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            samples.add(new PowerRecordSample(mPowerWatts[i], sampleTimes[i]));
+        }
+        return samples;
     }
 
     @NonNull
     @Override
     public PowerRecordInternal setSamples(Set<? extends Sample> samples) {
         Objects.requireNonNull(samples);
-        this.mPowerRecordSamples = (Set<PowerRecordSample>) samples;
+        long[] epochMillis = new long[samples.size()];
+        double[] watts = new double[samples.size()];
+        int i = 0;
+        for (Sample sample : samples) {
+            PowerRecordSample powerRecordSample = (PowerRecordSample) sample;
+            epochMillis[i] = powerRecordSample.getEpochMillis();
+            watts[i] = powerRecordSample.getPower();
+            i++;
+        }
+        return setSamples(epochMillis, watts);
+    }
+
+    /**
+     * Sets the samples from parallel arrays of times and values, which must not be modified
+     * afterwards.
+     */
+    @NonNull
+    public PowerRecordInternal setSamples(@NonNull long[] epochMillis, @NonNull double[] watts) {
+        checkSampleArrayLengths(epochMillis, watts.length);
+        mPowerWatts = reorder(watts, setSampleTimes(epochMillis));
         return this;
     }
 
+    /**
+     * Returns the power in watts of each sample, in the order of {@link #getSampleTimes()}, or
+     * {@code null} if the samples are not set. The array must not be modified.
+     */
+    @Nullable
+    public double[] getSampleValues() {
+        return mPowerWatts;
+    }
+
     @Override
     @NonNull
     public PowerRecord toExternalRecord() {
@@ -72,26 +104,30 @@ public class PowerRecordInternal
                 .buildWithoutValidation();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull Parcel parcel) {
+        long[] epochMillis = parcel.createLongArray();
+        double[] watts = parcel.createDoubleArray();
+        setSamples(epochMillis, watts);
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
-        parcel.writeInt(mPowerRecordSamples.size());
-        for (PowerRecordSample powerRecordSample : mPowerRecordSamples) {
-            parcel.writeDouble(powerRecordSample.getPower());
-            parcel.writeLong(powerRecordSample.getEpochMillis());
-        }
+        parcel.writeLongArray(getSampleTimes());
+        parcel.writeDoubleArray(mPowerWatts);
     }
 
     private List<PowerRecord.PowerRecordSample> getExternalSamples() {
-        List<PowerRecord.PowerRecordSample> powerRecords =
-                new ArrayList<>(mPowerRecordSamples.size());
-        for (PowerRecordSample powerRecordSample : mPowerRecordSamples) {
-            powerRecords.add(
+        long[] sampleTimes = getSampleTimes();
+        List<PowerRecord.PowerRecordSample> externalSamples = new ArrayList<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            externalSamples.add(
                     new PowerRecord.PowerRecordSample(
-                            Power.fromWatts(powerRecordSample.getPower()),
-                            Instant.ofEpochMilli(powerRecordSample.getEpochMillis()),
+                            Power.fromWatts(mPowerWatts[i]),
+                            Instant.ofEpochMilli(sampleTimes[i]),
                             true));
         }
-        return powerRecords;
+        return externalSamples;
     }
 
     /**
@@ -27,6 +27,7 @@ import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.Metadata;
 import android.health.connect.datatypes.Record;
 import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.datatypes.utils.ParcelStringDictionary;
 import android.os.Parcel;
 
 import java.time.Instant;
@@ -109,6 +110,61 @@ public abstract class RecordInternal<T extends Record> {
         populateRecordTo(parcel);
     }
 
+    /**
+     * Populates self with the data present in {@code parcel}, written by {@link
+     * #writeToParcel(Parcel, ParcelStringDictionary)} using the same strings as {@code dictionary}
+     */
+    public final void populateUsing(
+            @NonNull Parcel parcel, @NonNull ParcelStringDictionary dictionary) {
+        if (parcel.readBoolean()) {
+            mUuid = new UUID(parcel.readLong(), parcel.readLong());
+        }
+        mPackageName = dictionary.readString(parcel);
+        mAppName = dictionary.readString(parcel);
+        mLastModifiedTime = parcel.readLong();
+        mClientRecordId = parcel.readString();
+        mClientRecordVersion = parcel.readLong();
+        mManufacturer = dictionary.readString(parcel);
+        mModel = dictionary.readString(parcel);
+        mDeviceType = parcel.readInt();
+        mRecordingMethod = parcel.readInt();
+
+        populateRecordFrom(parcel);
+    }
+
+    /**
+     * Populates {@code parcel} with the self information in a compact form, with the UUID as two
+     * longs and the strings shared between records as indices into {@code dictionary}. The
+     * strings must have been added to {@code dictionary} with {@link #addStringsTo} before.
+     */
+    public final void writeToParcel(
+            @NonNull Parcel parcel, @NonNull ParcelStringDictionary dictionary) {
+        parcel.writeBoolean(mUuid != null);
+        if (mUuid != null) {
+            parcel.writeLong(mUuid.getMostSignificantBits());
+            parcel.writeLong(mUuid.getLeastSignificantBits());
+        }
+        dictionary.writeString(parcel, mPackageName);
+        dictionary.writeString(parcel, mAppName);
+        parcel.writeLong(mLastModifiedTime);
+        parcel.writeString(mClientRecordId);
+        parcel.writeLong(mClientRecordVersion);
+        dictionary.writeString(parcel, mManufacturer);
+        dictionary.writeString(parcel, mModel);
+        parcel.writeInt(mDeviceType);
+        parcel.writeInt(mRecordingMethod);
+
+        populateRecordTo(parcel);
+    }
+
+    /** Adds the strings usually shared with other records of the same app to {@code dictionary}. */
+    public final void addStringsTo(@NonNull ParcelStringDictionary dictionary) {
+        dictionary.add(mPackageName);
+        dictionary.add(mAppName);
+        dictionary.add(mManufacturer);
+        dictionary.add(mModel);
+    }
+
     @Nullable
     public UUID getUuid() {
         return mUuid;
@@ -270,6 +326,16 @@ public abstract class RecordInternal<T extends Record> {
     /** Child class must implement this method and return an external record for this record */
     public abstract T toExternalRecord();
 
+    /**
+     * Returns whether all the intdef values of this record are known to this version of the
+     * module. Records written by a newer version may hold unknown values, and are left out of
+     * reads rather than converted to external records.
+     */
+    public boolean hasValidIntDefValues() {
+        return Metadata.VALID_TYPES.contains(mRecordingMethod)
+                && Device.VALID_TYPES.contains(mDeviceType);
+    }
+
     @NonNull
     Metadata buildMetaData() {
         return new Metadata.Builder()
@@ -284,8 +350,8 @@ public abstract class RecordInternal<T extends Record> {
                                 .setManufacturer(getManufacturer())
                                 .setType(getDeviceType())
                                 .setModel(getModel())
-                                .build())
-                .build();
+                                .buildWithoutValidation())
+                .buildWithoutValidation();
     }
 
     /**
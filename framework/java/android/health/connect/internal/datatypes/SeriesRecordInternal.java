@@ -17,8 +17,11 @@
 package android.health.connect.internal.datatypes;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.datatypes.IntervalRecord;
 
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -26,16 +29,148 @@ import java.util.Set;
  *
  * <p>U -> Sample type for series record
  *
+ * <p>Samples are stored as parallel arrays of times, held here, and values, held by the subclass,
+ * sorted by time with a single sample per time. This avoids an object per sample, and lets the
+ * samples be written to and read from parcels as bulk arrays. {@link #getSamples()} and {@link
+ * #setSamples(Set)} convert from and to this representation, and allocate an object per sample.
+ *
  * @hide
  */
 public abstract class SeriesRecordInternal<T extends IntervalRecord, U>
         extends IntervalRecordInternal<T> {
-    @NonNull
+    @Nullable private long[] mSampleTimes;
+
+    /** Returns an object per sample, or {@code null} if the samples are not set. */
+    @Nullable
     public abstract Set<? extends Sample> getSamples();
 
     @NonNull
     public abstract SeriesRecordInternal setSamples(Set<? extends Sample> samples);
 
+    /** Returns the number of samples, or 0 if the samples are not set. */
+    public final int getSampleCount() {
+        return mSampleTimes == null ? 0 : mSampleTimes.length;
+    }
+
+    /**
+     * Returns the times of the samples in epoch millis, sorted and unique, or {@code null} if the
+     * samples are not set. The array must not be modified.
+     */
+    @Nullable
+    public final long[] getSampleTimes() {
+        return mSampleTimes;
+    }
+
+    /**
+     * Sets the times of the samples, sorted and keeping only the first sample of each time.
+     *
+     * @return the indices in {@code epochMillis} of the samples kept, in their sorted order, or
+     *     {@code null} if the times were already sorted and unique. Subclasses reorder their sample
+     *     values with it, see {@link #reorder(int[], int[])}.
+     */
+    @Nullable
+    final int[] setSampleTimes(@NonNull long[] epochMillis) {
+        Objects.requireNonNull(epochMillis);
+        if (isStrictlyIncreasing(epochMillis)) {
+            mSampleTimes = epochMillis;
+            return null;
+        }
+
+        int[] order = getStableSortOrder(epochMillis);
+        int uniqueCount = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (uniqueCount == 0
+                    || epochMillis[order[i]] != epochMillis[order[uniqueCount - 1]]) {
+                order[uniqueCount++] = order[i];
+            }
+        }
+        order = Arrays.copyOf(order, uniqueCount);
+
+        long[] sampleTimes = new long[uniqueCount];
+        for (int i = 0; i < uniqueCount; i++) {
+            sampleTimes[i] = epochMillis[order[i]];
+        }
+        mSampleTimes = sampleTimes;
+        return order;
+    }
+
+    /** Returns {@code values} reordered by {@code order}, or as is if {@code order} is null. */
+    @NonNull
+    static int[] reorder(@NonNull int[] values, @Nullable int[] order) {
+        if (order == null) {
+            return values;
+        }
+        int[] reordered = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            reordered[i] = values[order[i]];
+        }
+        return reordered;
+    }
+
+    /** Returns {@code values} reordered by {@code order}, or as is if {@code order} is null. */
+    @NonNull
+    static double[] reorder(@NonNull double[] values, @Nullable int[] order) {
+        if (order == null) {
+            return values;
+        }
+        double[] reordered = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            reordered[i] = values[order[i]];
+        }
+        return reordered;
+    }
+
+    /** Checks that a sample value array has one value per sample time. */
+    static void checkSampleArrayLengths(@NonNull long[] epochMillis, int valuesLength) {
+        if (epochMillis.length != valuesLength) {
+            throw new IllegalArgumentException(
+                    "Got " + epochMillis.length + " sample times and " + valuesLength + " values");
+        }
+    }
+
+    private static boolean isStrictlyIncreasing(@NonNull long[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] <= values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the indices of {@code keys} in stably sorted order, with a bottom-up merge sort. */
+    @NonNull
+    private static int[] getStableSortOrder(@NonNull long[] keys) {
+        int length = keys.length;
+        int[] order = new int[length];
+        int[] buffer = new int[length];
+        for (int i = 0; i < length; i++) {
+            order[i] = i;
+        }
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+                int left = start;
+                int right = middle;
+                int out = start;
+                while (left < middle && right < end) {
+                    buffer[out++] =
+                            keys[order[right]] < keys[order[left]] ? order[right++] : order[left++];
+                }
+                while (left < middle) {
+                    buffer[out++] = order[left++];
+                }
+                while (right < end) {
+                    buffer[out++] = order[right++];
+                }
+            }
+            int[] sorted = buffer;
+            buffer = order;
+            order = sorted;
+        }
+        return order;
+    }
+
     /** Base class for the series data stored in {@link SeriesRecordInternal} types */
     public interface Sample {}
 }
@@ -43,6 +43,12 @@ public final class SexualActivityRecordInternal
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && SexualActivityProtectionUsed.VALID_TYPES.contains(mProtectionUsed);
+    }
+
     @NonNull
     @Override
     public SexualActivityRecord toExternalRecord() {
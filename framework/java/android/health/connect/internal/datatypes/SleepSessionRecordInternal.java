@@ -99,6 +99,21 @@ public final class SleepSessionRecordInternal extends IntervalRecordInternal<Sle
         mStages = SleepStageInternal.populateStagesFromParcel(parcel);
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        if (!super.hasValidIntDefValues()) {
+            return false;
+        }
+        if (mStages != null) {
+            for (SleepStageInternal stage : mStages) {
+                if (!SleepSessionRecord.StageType.VALID_TYPES.contains(stage.getStageType())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @NonNull
     @Override
     public SleepSessionRecord toExternalRecord() {
@@ -17,6 +17,7 @@
 package android.health.connect.internal.datatypes;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.SpeedRecord;
@@ -37,31 +38,64 @@ import java.util.Set;
 @Identifier(recordIdentifier = RecordTypeIdentifier.RECORD_TYPE_SPEED)
 public class SpeedRecordInternal
         extends SeriesRecordInternal<SpeedRecord, SpeedRecord.SpeedRecordSample> {
-    private Set<SpeedRecordSample> mSpeedRecordSamples;
-
-    @Override
-    void populateIntervalRecordFrom(@NonNull Parcel parcel) {
-        int size = parcel.readInt();
-        mSpeedRecordSamples = new HashSet<>(size);
-        for (int i = 0; i < size; i++) {
-            mSpeedRecordSamples.add(new SpeedRecordSample(parcel.readDouble(), parcel.readLong()));
-        }
-    }
+    @Nullable private double[] mSpeedMetersPerSecond;
 
+    /**
+     * Returns a set with a {@link SpeedRecordSample} per sample, or {@code null} if the samples are
+     * not set. Prefer {@link #getSampleTimes()} and {@link #getSampleValues()}.
+     */
     @Override
-    @NonNull
+    @Nullable
     public Set<SpeedRecordSample> getSamples() {
-        return mSpeedRecordSamples;
+        long[] sampleTimes = getSampleTimes();
+        if (sampleTimes == null) {
+            return null;
+        }
+        Set<SpeedRecordSample> samples = new HashSet<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            samples.add(new SpeedRecordSample(mSpeedMetersPerSecond[i], sampleTimes[i]));
+        }
+        return samples;
     }
 
     @NonNull
     @Override
     public SpeedRecordInternal setSamples(Set<? extends Sample> samples) {
         Objects.requireNonNull(samples);
-        this.mSpeedRecordSamples = (Set<SpeedRecordSample>) samples;
+        long[] epochMillis = new long[samples.size()];
+        double[] metersPerSecond = new double[samples.size()];
+        int i = 0;
+        for (Sample sample : samples) {
+            SpeedRecordSample speedRecordSample = (SpeedRecordSample) sample;
+            epochMillis[i] = speedRecordSample.getEpochMillis();
+            metersPerSecond[i] = speedRecordSample.getSpeed();
+            i++;
+        }
+        return setSamples(epochMillis, metersPerSecond);
+    }
+
+    /**
+     * Sets the samples from parallel arrays of times and values, which must not be modified
+     * afterwards.
+     */
+    @NonNull
+    public SpeedRecordInternal setSamples(
+            @NonNull long[] epochMillis, @NonNull double[] metersPerSecond) {
+        checkSampleArrayLengths(epochMillis, metersPerSecond.length);
+        mSpeedMetersPerSecond = reorder(metersPerSecond, setSampleTimes(epochMillis));
         return this;
     }
 
+    /**
+     * Returns the speed in meters per second of each sample, in the order of {@link
+     * #getSampleTimes()}, or {@code null} if the samples are not set. The array must not be
+     * modified.
+     */
+    @Nullable
+    public double[] getSampleValues() {
+        return mSpeedMetersPerSecond;
+    }
+
     @Override
     @NonNull
     public SpeedRecord toExternalRecord() {
@@ -72,26 +106,30 @@ public class SpeedRecordInternal
                 .buildWithoutValidation();
     }
 
+    @Override
+    void populateIntervalRecordFrom(@NonNull Parcel parcel) {
+        long[] epochMillis = parcel.createLongArray();
+        double[] metersPerSecond = parcel.createDoubleArray();
+        setSamples(epochMillis, metersPerSecond);
+    }
+
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
-        parcel.writeInt(mSpeedRecordSamples.size());
-        for (SpeedRecordSample speedRecordSample : mSpeedRecordSamples) {
-            parcel.writeDouble(speedRecordSample.getSpeed());
-            parcel.writeLong(speedRecordSample.getEpochMillis());
-        }
+        parcel.writeLongArray(getSampleTimes());
+        parcel.writeDoubleArray(mSpeedMetersPerSecond);
     }
 
     private List<SpeedRecord.SpeedRecordSample> getExternalSamples() {
-        List<SpeedRecord.SpeedRecordSample> speedRecords =
-                new ArrayList<>(mSpeedRecordSamples.size());
-        for (SpeedRecordSample speedRecordSample : mSpeedRecordSamples) {
-            speedRecords.add(
+        long[] sampleTimes = getSampleTimes();
+        List<SpeedRecord.SpeedRecordSample> externalSamples = new ArrayList<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            externalSamples.add(
                     new SpeedRecord.SpeedRecordSample(
-                            Velocity.fromMetersPerSecond(speedRecordSample.getSpeed()),
-                            Instant.ofEpochMilli(speedRecordSample.getEpochMillis()),
+                            Velocity.fromMetersPerSecond(mSpeedMetersPerSecond[i]),
+                            Instant.ofEpochMilli(sampleTimes[i]),
                             true));
         }
-        return speedRecords;
+        return externalSamples;
     }
 
     /**
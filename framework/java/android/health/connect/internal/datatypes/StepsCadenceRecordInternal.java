@@ -17,6 +17,7 @@
 package android.health.connect.internal.datatypes;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.health.connect.datatypes.Identifier;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.StepsCadenceRecord;
@@ -37,22 +38,64 @@ import java.util.Set;
 public class StepsCadenceRecordInternal
         extends SeriesRecordInternal<
                 StepsCadenceRecord, StepsCadenceRecord.StepsCadenceRecordSample> {
-    private Set<StepsCadenceRecordSample> mStepsCadenceRecordSamples;
+    @Nullable private double[] mRates;
 
+    /**
+     * Returns a set with a {@link StepsCadenceRecordSample} per sample, or {@code null} if the
+     * samples are not set. Prefer {@link #getSampleTimes()} and {@link #getSampleValues()}.
+     */
     @Override
-    @NonNull
+    @Nullable
     public Set<StepsCadenceRecordSample> getSamples() {
-        return mStepsCadenceRecordSamples;
+        long[] sampleTimes = getSampleTimes();
+        if (sampleTimes == null) {
+            return null;
+        }
+        Set<StepsCadenceRecordSample> samples = new HashSet<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            samples.add(new StepsCadenceRecordSample(mRates[i], sampleTimes[i]));
+        }
+        return samples;
     }
 
     @NonNull
     @Override
     public StepsCadenceRecordInternal setSamples(Set<? extends Sample> samples) {
         Objects.requireNonNull(samples);
-        this.mStepsCadenceRecordSamples = (Set<StepsCadenceRecordSample>) samples;
+        long[] epochMillis = new long[samples.size()];
+        double[] rates = new double[samples.size()];
+        int i = 0;
+        for (Sample sample : samples) {
+            StepsCadenceRecordSample stepsCadenceRecordSample = (StepsCadenceRecordSample) sample;
+            epochMillis[i] = stepsCadenceRecordSample.getEpochMillis();
+            rates[i] = stepsCadenceRecordSample.getRate();
+            i++;
+        }
+        return setSamples(epochMillis, rates);
+    }
+
+    /**
+     * Sets the samples from parallel arrays of times and values, which must not be modified
+     * afterwards.
+     */
+    @NonNull
+    public StepsCadenceRecordInternal setSamples(
+            @NonNull long[] epochMillis, @NonNull double[] rates) {
+        checkSampleArrayLengths(epochMillis, rates.length);
+        mRates = reorder(rates, setSampleTimes(epochMillis));
         return this;
     }
 
+    /**
+     * Returns the rate in steps per minute of each sample, in the order of {@link
+     * #getSampleTimes()}, or {@code null} if the samples are not set. The array must not be
+     * modified.
+     */
+    @Nullable
+    public double[] getSampleValues() {
+        return mRates;
+    }
+
     @Override
     @NonNull
     public StepsCadenceRecord toExternalRecord() {
@@ -65,34 +108,27 @@ public class StepsCadenceRecordInternal
 
     @Override
     void populateIntervalRecordFrom(@NonNull Parcel parcel) {
-        int size = parcel.readInt();
-        mStepsCadenceRecordSamples = new HashSet<>(size);
-        for (int i = 0; i < size; i++) {
-            mStepsCadenceRecordSamples.add(
-                    new StepsCadenceRecordSample(parcel.readDouble(), parcel.readLong()));
-        }
-    }
-
-    private List<StepsCadenceRecord.StepsCadenceRecordSample> getExternalSamples() {
-        List<StepsCadenceRecord.StepsCadenceRecordSample> stepsCadenceRecords =
-                new ArrayList<>(mStepsCadenceRecordSamples.size());
-        for (StepsCadenceRecordSample stepsCadenceRecordSample : mStepsCadenceRecordSamples) {
-            stepsCadenceRecords.add(
-                    new StepsCadenceRecord.StepsCadenceRecordSample(
-                            stepsCadenceRecordSample.getRate(),
-                            Instant.ofEpochMilli(stepsCadenceRecordSample.getEpochMillis()),
-                            true));
-        }
-        return stepsCadenceRecords;
+        long[] epochMillis = parcel.createLongArray();
+        double[] rates = parcel.createDoubleArray();
+        setSamples(epochMillis, rates);
     }
 
     @Override
     void populateIntervalRecordTo(@NonNull Parcel parcel) {
-        parcel.writeInt(mStepsCadenceRecordSamples.size());
-        for (StepsCadenceRecordSample stepsCadenceRecordSample : mStepsCadenceRecordSamples) {
-            parcel.writeDouble(stepsCadenceRecordSample.getRate());
-            parcel.writeLong(stepsCadenceRecordSample.getEpochMillis());
+        parcel.writeLongArray(getSampleTimes());
+        parcel.writeDoubleArray(mRates);
+    }
+
+    private List<StepsCadenceRecord.StepsCadenceRecordSample> getExternalSamples() {
+        long[] sampleTimes = getSampleTimes();
+        List<StepsCadenceRecord.StepsCadenceRecordSample> externalSamples =
+                new ArrayList<>(sampleTimes.length);
+        for (int i = 0; i < sampleTimes.length; i++) {
+            externalSamples.add(
+                    new StepsCadenceRecord.StepsCadenceRecordSample(
+                            mRates[i], Instant.ofEpochMilli(sampleTimes[i]), true));
         }
+        return externalSamples;
     }
 
     /**
@@ -55,6 +55,12 @@ public final class Vo2MaxRecordInternal extends InstantRecordInternal<Vo2MaxReco
         return this;
     }
 
+    @Override
+    public boolean hasValidIntDefValues() {
+        return super.hasValidIntDefValues()
+                && Vo2MaxMeasurementMethod.VALID_TYPES.contains(mMeasurementMethod);
+    }
+
     @NonNull
     @Override
     public Vo2MaxRecord toExternalRecord() {
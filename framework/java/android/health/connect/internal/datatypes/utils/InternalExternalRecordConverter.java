@@ -16,8 +16,6 @@
 
 package android.health.connect.internal.datatypes.utils;
 
-import static android.health.connect.datatypes.validation.ValidationUtils.INTDEF_VALIDATION_ERROR_PREFIX;
-
 import android.annotation.NonNull;
 import android.health.connect.datatypes.Record;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -77,20 +75,18 @@ public final class InternalExternalRecordConverter {
         return recordInternal;
     }
 
-    /** Returns a record for {@param record} */
+    /**
+     * Returns external records for {@code recordInternals}, which the service validated when they
+     * were written, so they are built without validating their values again. Records holding
+     * intdef values unknown to this version of the module are left out.
+     */
     @NonNull
     public List<Record> getExternalRecords(@NonNull List<RecordInternal<?>> recordInternals) {
         List<Record> externalRecordList = new ArrayList<>(recordInternals.size());
 
         for (RecordInternal<?> recordInternal : recordInternals) {
-            try {
-            externalRecordList.add(recordInternal.toExternalRecord());
-            } catch (IllegalArgumentException illegalArgumentException) {
-                if (!illegalArgumentException
-                        .getMessage()
-                        .contains(INTDEF_VALIDATION_ERROR_PREFIX)) {
-                    throw illegalArgumentException;
-                }
+            if (recordInternal.hasValidIntDefValues()) {
+                externalRecordList.add(recordInternal.toExternalRecord());
             }
         }
 
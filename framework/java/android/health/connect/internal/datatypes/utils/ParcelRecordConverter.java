@@ -55,10 +55,46 @@ public final class ParcelRecordConverter {
             @NonNull Parcel parcel, @RecordTypeIdentifier.RecordType int type)
             throws InstantiationException, IllegalAccessException, NoSuchMethodException,
                     InvocationTargetException {
-        Class<? extends RecordInternal<?>> recordClass = mDataTypeClassMap.get(type);
-        Objects.requireNonNull(recordClass);
-        RecordInternal<?> recordInternal = recordClass.getConstructor().newInstance();
+        RecordInternal<?> recordInternal = newRecord(type);
         recordInternal.populateUsing(parcel);
         return recordInternal;
     }
+
+    /**
+     * Returns a record for {@code parcel} written in the compact form, assuming it is of type
+     * represented by {@code type}, reading the strings shared between records from {@code
+     * dictionary}
+     */
+    @NonNull
+    public RecordInternal<?> getRecord(
+            @NonNull Parcel parcel,
+            @RecordTypeIdentifier.RecordType int type,
+            @NonNull ParcelStringDictionary dictionary)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException,
+                    InvocationTargetException {
+        RecordInternal<?> recordInternal = newRecord(type);
+        recordInternal.populateUsing(parcel, dictionary);
+        return recordInternal;
+    }
+
+    /**
+     * Writes {@code recordInternal} to {@code parcel} in the compact form read by {@link
+     * #getRecord(Parcel, int, ParcelStringDictionary)}
+     */
+    public void writeRecord(
+            @NonNull Parcel parcel,
+            @NonNull RecordInternal<?> recordInternal,
+            @NonNull ParcelStringDictionary dictionary) {
+        parcel.writeInt(recordInternal.getRecordType());
+        recordInternal.writeToParcel(parcel, dictionary);
+    }
+
+    @NonNull
+    private RecordInternal<?> newRecord(@RecordTypeIdentifier.RecordType int type)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException,
+                    InvocationTargetException {
+        Class<? extends RecordInternal<?>> recordClass = mDataTypeClassMap.get(type);
+        Objects.requireNonNull(recordClass);
+        return recordClass.getConstructor().newInstance();
+    }
 }
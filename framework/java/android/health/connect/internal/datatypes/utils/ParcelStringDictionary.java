@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.internal.datatypes.utils;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Holds the strings repeated across the records of a single parcel, such as package, app and
+ * device names. Each string is written to the parcel once, and records refer to it by its index.
+ *
+ * @hide
+ */
+public final class ParcelStringDictionary {
+    private static final int NULL_INDEX = -1;
+
+    private final List<String> mStrings;
+    private final Map<String, Integer> mIndices;
+
+    /** Creates an empty dictionary, to add the strings of the records about to be written. */
+    public ParcelStringDictionary() {
+        mStrings = new ArrayList<>();
+        mIndices = new HashMap<>();
+    }
+
+    private ParcelStringDictionary(@NonNull List<String> strings) {
+        mStrings = strings;
+        mIndices = null;
+    }
+
+    /** Reads a dictionary written by {@link #writeToParcel}. */
+    @NonNull
+    public static ParcelStringDictionary readFromParcel(@NonNull Parcel parcel) {
+        int size = parcel.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(parcel.readString());
+        }
+        return new ParcelStringDictionary(strings);
+    }
+
+    /** Adds {@code value} to the dictionary, if not already present. */
+    public void add(@Nullable String value) {
+        if (value != null && mIndices.putIfAbsent(value, mStrings.size()) == null) {
+            mStrings.add(value);
+        }
+    }
+
+    /** Returns the number of strings in the dictionary. */
+    public int size() {
+        return mStrings.size();
+    }
+
+    /** Removes the strings added after the dictionary held {@code size} strings. */
+    public void truncate(int size) {
+        for (int i = mStrings.size() - 1; i >= size; i--) {
+            mIndices.remove(mStrings.remove(i));
+        }
+    }
+
+    /** Writes all the strings of the dictionary to {@code parcel}. */
+    public void writeToParcel(@NonNull Parcel parcel) {
+        parcel.writeInt(mStrings.size());
+        writeStrings(parcel, /* fromIndex= */ 0);
+    }
+
+    /**
+     * Writes the strings from {@code fromIndex} on to {@code parcel}, without their count. Used to
+     * measure the size added to the dictionary by new strings.
+     */
+    public void writeStrings(@NonNull Parcel parcel, int fromIndex) {
+        for (int i = fromIndex; i < mStrings.size(); i++) {
+            parcel.writeString(mStrings.get(i));
+        }
+    }
+
+    /** Writes the index of {@code value}, which must have been added before, to {@code parcel}. */
+    public void writeString(@NonNull Parcel parcel, @Nullable String value) {
+        parcel.writeInt(value == null ? NULL_INDEX : Objects.requireNonNull(mIndices.get(value)));
+    }
+
+    /** Reads a string written by {@link #writeString} from {@code parcel}. */
+    @Nullable
+    public String readString(@NonNull Parcel parcel) {
+        int index = parcel.readInt();
+        return index == NULL_INDEX ? null : mStrings.get(index);
+    }
+}
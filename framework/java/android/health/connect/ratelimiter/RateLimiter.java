@@ -44,6 +44,9 @@ public final class RateLimiter {
     public static final String CHUNK_SIZE_LIMIT_IN_BYTES = "chunk_size_limit_in_bytes";
     // The maximum size in bytes of a single record a client can insert in one go.
     public static final String RECORD_SIZE_LIMIT_IN_BYTES = "record_size_limit_in_bytes";
+    // The default values of the limits above, also used by clients to split large inserts.
+    public static final int CHUNK_SIZE_LIMIT_IN_BYTES_DEFAULT = 5000000;
+    public static final int RECORD_SIZE_LIMIT_IN_BYTES_DEFAULT = 1000000;
     private static final int DEFAULT_API_CALL_COST = 1;
 
     private static final ReentrantReadWriteLock sLockAcrossAppQuota = new ReentrantReadWriteLock();
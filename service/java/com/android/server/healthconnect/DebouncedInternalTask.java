@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static java.util.Objects.requireNonNull;
+
+import android.annotation.NonNull;
+import android.util.Slog;
+
+import com.android.modules.utils.BackgroundThread;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a task on the internal background executor a fixed delay after it is first scheduled, so
+ * that all the changes made meanwhile are handled by a single run. Used to write buffered state in
+ * batches.
+ *
+ * <p>Runs are serialized, so that {@link #runNow} returns only once all the changes made before it
+ * are handled.
+ *
+ * @hide
+ */
+public final class DebouncedInternalTask {
+    private static final String TAG = "HealthConnectDebouncedTask";
+
+    private final Runnable mTask;
+    private final long mDelayMillis;
+    private final Object mRunLock = new Object();
+    private final AtomicBoolean mIsScheduled = new AtomicBoolean();
+
+    public DebouncedInternalTask(@NonNull Runnable task, long delayMillis) {
+        mTask = requireNonNull(task);
+        mDelayMillis = delayMillis;
+    }
+
+    /** Schedules a run of the task, unless one is already scheduled and hasn't started yet. */
+    public void schedule() {
+        if (mIsScheduled.compareAndSet(false, true)) {
+            BackgroundThread.getHandler().postDelayed(this::scheduleRun, mDelayMillis);
+        }
+    }
+
+    /** Runs the task on the calling thread. */
+    public void runNow() {
+        synchronized (mRunLock) {
+            mTask.run();
+        }
+    }
+
+    private void scheduleRun() {
+        // Changes made from now on may be missed by the run, so they schedule another one. This
+        // also covers a run dropped from the queue when the thread pools are shut down.
+        mIsScheduled.set(false);
+        try {
+            HealthConnectThreadScheduler.scheduleInternalTask(this::runNow);
+        } catch (RejectedExecutionException e) {
+            // The thread pools are shut down during a user switch, which handles the changes of
+            // the previous user itself.
+            Slog.w(TAG, "Skipped a scheduled run while the thread pools are shut down", e);
+        }
+    }
+}
@@ -18,7 +18,10 @@ package com.android.server.healthconnect;
 
 import android.annotation.NonNull;
 import android.annotation.Nullable;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.ratelimiter.RateLimiter;
 import android.os.Process;
@@ -26,6 +29,7 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.Slog;
 
+import com.android.modules.utils.BackgroundThread;
 import com.android.server.SystemService;
 import com.android.server.healthconnect.migration.MigrationBroadcastScheduler;
 import com.android.server.healthconnect.migration.MigrationCleaner;
@@ -40,6 +44,7 @@ import com.android.server.healthconnect.permission.HealthConnectPermissionHelper
 import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
 import com.android.server.healthconnect.permission.PermissionPackageChangesOrchestrator;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.DatabaseHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper;
@@ -55,6 +60,7 @@ public class HealthConnectManagerService extends SystemService {
     private static final String TAG = "HealthConnectManagerService";
     private final Context mContext;
     private final PermissionPackageChangesOrchestrator mPermissionPackageChangesOrchestrator;
+    private final FirstGrantTimeManager mFirstGrantTimeManager;
     private final HealthConnectServiceImpl mHealthConnectService;
     private final TransactionManager mTransactionManager;
     private final UserManager mUserManager;
@@ -70,6 +76,7 @@ public class HealthConnectManagerService extends SystemService {
         FirstGrantTimeManager firstGrantTimeManager =
                 new FirstGrantTimeManager(
                         context, permissionIntentTracker, FirstGrantTimeDatastore.createInstance());
+        mFirstGrantTimeManager = firstGrantTimeManager;
         HealthConnectPermissionHelper permissionHelper =
                 new HealthConnectPermissionHelper(
                         context,
@@ -125,6 +132,8 @@ public class HealthConnectManagerService extends SystemService {
         new MigratorPackageChangesReceiver(MigrationStateManager.getInitialisedInstance())
                 .registerBroadcastReceiver(mContext);
         publishBinderService(Context.HEALTHCONNECT_SERVICE, mHealthConnectService);
+        registerShutdownReceiver();
+        HealthConnectThreadScheduler.startUidImportanceTracking(mContext);
         HealthConnectDeviceConfigManager.getInitialisedInstance().updateRateLimiterValues();
     }
 
@@ -138,11 +147,15 @@ public class HealthConnectManagerService extends SystemService {
             // We need to cancel any pending timers for the foreground user before it goes into the
             // background.
             mHealthConnectService.cancelBackupRestoreTimeouts();
+            // A write scheduled on the thread pools may be dropped when they get shut down.
+            mFirstGrantTimeManager.writePendingGrantTimes();
         }
 
         HealthConnectThreadScheduler.shutdownThreadPools();
-        DatabaseHelper.clearAllCache();
+        // Closes the database of the previous user, after writing its buffered state which the
+        // caches cleared below still hold.
         mTransactionManager.onUserSwitching();
+        DatabaseHelper.clearAllCache();
         RateLimiter.clearCache();
         HealthConnectThreadScheduler.resetThreadPools();
         MigrationStateManager migrationStateManager =
@@ -181,6 +194,20 @@ public class HealthConnectManagerService extends SystemService {
         return !(Objects.requireNonNull(userManager).isProfile());
     }
 
+    private void registerShutdownReceiver() {
+        mContext.registerReceiver(
+                new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        AccessLogsHelper.getInstance().flushPendingAccessLogs();
+                        mFirstGrantTimeManager.writePendingGrantTimes();
+                    }
+                },
+                new IntentFilter(Intent.ACTION_SHUTDOWN),
+                /* broadcastPermission= */ null,
+                BackgroundThread.getHandler());
+    }
+
     private void switchToSetupForUser(UserHandle user) {
         // Note: This is for test setup debugging, please don't surround with DEBUG flag
         Slog.d(TAG, "switchToSetupForUser: " + user);
@@ -17,90 +17,228 @@
 package com.android.server.healthconnect;
 
 import android.annotation.NonNull;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
 
+import java.util.ArrayDeque;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.LongSupplier;
 
 /**
- * A scheduler class to run the tasks in a Round Robin fashion based on client package names.
+ * A scheduler class to run the tasks fairly across client uids, using deficit round robin.
+ *
+ * <p>Uids are visited in a round robin fashion, and each visit grants the uid a quantum of
+ * execution time. A uid keeps running tasks while it has time left, and the measured execution
+ * time of each task is charged to it afterwards. This way a uid sending expensive requests gets
+ * proportionally fewer turns than one sending cheap requests, instead of the same number of turns.
+ *
+ * <p>Adding a task doesn't take the scheduler lock, and the number of pending tasks per uid is
+ * capped. Uids are removed once their queue is drained and they don't owe any time.
  *
  * @hide
  */
 public final class HealthConnectRoundRobinScheduler {
     private static final String TAG = "HealthConnectScheduler";
-    private final ConcurrentSkipListMap<Integer, Queue<Runnable>> mTasks =
-            new ConcurrentSkipListMap<>();
+
+    /** Execution time granted to a uid each time it is visited. */
+    @VisibleForTesting static final long QUANTUM_NANOS = 5_000_000L; // 5 ms
+
+    /** Upper bound of the execution time a uid can owe, so a single task isn't charged forever. */
+    @VisibleForTesting static final long MAX_DEBT_NANOS = 1_000_000_000L; // 1 s
+
+    /** Maximum number of tasks which can be pending for a single uid. */
+    @VisibleForTesting static final int MAX_PENDING_TASKS_PER_UID = 1000;
+
+    private final ConcurrentSkipListMap<Integer, UidTasks> mTasks = new ConcurrentSkipListMap<>();
     private final Object mLock = new Object();
+    private final LongSupplier mNanoClock;
 
-    @GuardedBy("mLock")
-    private boolean mPauseScheduler;
+    private volatile boolean mPauseScheduler;
 
     @SuppressWarnings("NullAway.Init")
     @GuardedBy("mLock")
     private Integer mLastKeyUsed;
 
+    HealthConnectRoundRobinScheduler() {
+        this(SystemClock::elapsedRealtimeNanos);
+    }
+
+    @VisibleForTesting
+    HealthConnectRoundRobinScheduler(@NonNull LongSupplier nanoClock) {
+        mNanoClock = nanoClock;
+    }
+
     void resume() {
-        synchronized (mLock) {
-            mPauseScheduler = false;
-        }
+        mPauseScheduler = false;
     }
 
-    @SuppressWarnings("NullAway")
-    void addTask(int uid, Runnable task) {
-        synchronized (mLock) {
-            // If the scheduler is currently paused (this can happen if the platform is doing a user
-            // switch), ignore this request. This most likely means that we won't be able to deliver
-            // the result back anyway.
-            if (mPauseScheduler) {
-                Log.e(TAG, "Unable to schedule task for uid: " + uid);
-                return;
-            }
+    boolean isPaused() {
+        return mPauseScheduler;
+    }
+
+    /**
+     * Adds a task for the given uid.
+     *
+     * @return {@code false} if the task was rejected, either because the scheduler is paused or
+     *     because the uid has too many pending tasks. {@link #getNextTask()} must only be called
+     *     for accepted tasks.
+     */
+    boolean addTask(int uid, Runnable task) {
+        // If the scheduler is currently paused (this can happen if the platform is doing a user
+        // switch), ignore this request. This most likely means that we won't be able to deliver
+        // the result back anyway.
+        if (mPauseScheduler) {
+            Log.e(TAG, "Unable to schedule task for uid: " + uid);
+            return false;
+        }
 
-            mTasks.putIfAbsent(uid, new LinkedBlockingQueue<>());
-            mTasks.get(uid).add(task);
+        while (true) {
+            UidTasks uidTasks = mTasks.computeIfAbsent(uid, key -> new UidTasks());
+            synchronized (uidTasks) {
+                if (uidTasks.mRemoved) {
+                    // The uid was removed after the lookup, add the task to a new entry instead.
+                    continue;
+                }
+                if (uidTasks.mQueue.size() >= MAX_PENDING_TASKS_PER_UID) {
+                    Log.e(TAG, "Too many pending tasks for uid: " + uid);
+                    return false;
+                }
+                uidTasks.mQueue.add(task);
+                return true;
+            }
         }
     }
 
+    @VisibleForTesting
+    boolean hasEntryForUid(int uid) {
+        return mTasks.containsKey(uid);
+    }
+
     @NonNull
     Runnable getNextTask() {
         synchronized (mLock) {
-            if (mLastKeyUsed == null) {
-                mLastKeyUsed = mTasks.firstKey();
+            if (mTasks.isEmpty()) {
+                throw new InternalError("Task scheduled but none found");
             }
 
-            Map.Entry<Integer, Queue<Runnable>> entry = mTasks.higherEntry(mLastKeyUsed);
-            while (entry != null && entry.getValue().isEmpty()) {
-                mTasks.remove(entry.getKey());
-                entry = mTasks.higherEntry(entry.getKey());
-            }
+            while (true) {
+                UidTasks current = mLastKeyUsed == null ? null : mTasks.get(mLastKeyUsed);
+                if (current != null && current.mDeficitNanos >= 0) {
+                    Runnable task;
+                    synchronized (current) {
+                        task = current.mQueue.poll();
+                    }
+                    if (task != null) {
+                        return getChargingTask(current, task);
+                    }
+                    // Credit is not kept while a uid is idle, only debt is.
+                    current.mDeficitNanos = 0;
+                    removeIfIdleLocked(mLastKeyUsed, current);
+                }
 
-            if (entry == null) {
-                // Reached the end, no tasks found. Reset to first entry and try again.
-                entry = mTasks.firstEntry();
-                while (entry != null && entry.getValue().isEmpty()) {
-                    mTasks.remove(entry.getKey());
-                    entry = mTasks.higherEntry(entry.getKey());
+                Map.Entry<Integer, UidTasks> entry = getNextEntryWithTasks();
+                if (entry == null) {
+                    throw new InternalError("Task scheduled but none found");
                 }
-            }
 
-            if (entry != null) {
                 mLastKeyUsed = entry.getKey();
-                return entry.getValue().poll();
+                entry.getValue().mDeficitNanos += QUANTUM_NANOS;
             }
-
-            throw new InternalError("Task scheduled but none found");
         }
     }
 
     void killTasksAndPauseScheduler() {
+        mPauseScheduler = true;
         synchronized (mLock) {
-            mPauseScheduler = true;
             mTasks.clear();
+            mLastKeyUsed = null;
         }
     }
+
+    /**
+     * Returns the next entry after {@link #mLastKeyUsed} which has pending tasks, if any.
+     *
+     * <p>Idle uids passed over are granted their quantum too, so that their debt is repaid over
+     * time and they can be removed.
+     */
+    @GuardedBy("mLock")
+    private Map.Entry<Integer, UidTasks> getNextEntryWithTasks() {
+        Map.Entry<Integer, UidTasks> entry =
+                mLastKeyUsed == null ? mTasks.firstEntry() : mTasks.higherEntry(mLastKeyUsed);
+        while (entry != null && isIdleLocked(entry)) {
+            entry = mTasks.higherEntry(entry.getKey());
+        }
+
+        if (entry == null) {
+            // Reached the end, no tasks found. Reset to first entry and try again.
+            entry = mTasks.firstEntry();
+            while (entry != null && isIdleLocked(entry)) {
+                entry = mTasks.higherEntry(entry.getKey());
+            }
+        }
+
+        return entry;
+    }
+
+    /** Returns whether the uid of {@code entry} has no pending tasks, removing it if possible. */
+    @GuardedBy("mLock")
+    private boolean isIdleLocked(@NonNull Map.Entry<Integer, UidTasks> entry) {
+        UidTasks uidTasks = entry.getValue();
+        synchronized (uidTasks) {
+            if (!uidTasks.mQueue.isEmpty()) {
+                return false;
+            }
+        }
+        uidTasks.mDeficitNanos = Math.min(uidTasks.mDeficitNanos + QUANTUM_NANOS, 0);
+        removeIfIdleLocked(entry.getKey(), uidTasks);
+        return true;
+    }
+
+    /** Removes the entry of {@code uid} if it has no pending tasks and doesn't owe any time. */
+    @GuardedBy("mLock")
+    private void removeIfIdleLocked(int uid, @NonNull UidTasks uidTasks) {
+        if (uidTasks.mDeficitNanos < 0) {
+            return;
+        }
+        synchronized (uidTasks) {
+            if (uidTasks.mQueue.isEmpty()) {
+                uidTasks.mRemoved = true;
+                mTasks.remove(uid, uidTasks);
+            }
+        }
+    }
+
+    /** Returns a task which charges its execution time to {@code uidTasks} once it has run. */
+    private Runnable getChargingTask(@NonNull UidTasks uidTasks, @NonNull Runnable task) {
+        return () -> {
+            long startTimeNanos = mNanoClock.getAsLong();
+            try {
+                task.run();
+            } finally {
+                long executionTimeNanos = mNanoClock.getAsLong() - startTimeNanos;
+                synchronized (mLock) {
+                    uidTasks.mDeficitNanos =
+                            Math.max(uidTasks.mDeficitNanos - executionTimeNanos, -MAX_DEBT_NANOS);
+                }
+            }
+        };
+    }
+
+    /** Pending tasks and scheduling state of a single uid. */
+    private static final class UidTasks {
+        @GuardedBy("this")
+        private final Queue<Runnable> mQueue = new ArrayDeque<>();
+
+        /** Whether this entry was removed, so no more tasks can be added to it. */
+        @GuardedBy("this")
+        private boolean mRemoved;
+
+        /** Execution time the uid can still use in its current turn, negative if it owes time. */
+        private long mDeficitNanos;
+    }
 }
@@ -21,6 +21,7 @@ import static android.content.pm.PackageManager.PERMISSION_GRANTED;
 import static android.health.connect.Constants.DEFAULT_LONG;
 import static android.health.connect.Constants.READ;
 import static android.health.connect.HealthConnectException.ERROR_INTERNAL;
+import static android.health.connect.HealthConnectException.ERROR_RATE_LIMIT_EXCEEDED;
 import static android.health.connect.HealthConnectException.ERROR_SECURITY;
 import static android.health.connect.HealthPermissions.MANAGE_HEALTH_DATA_PERMISSION;
 import static android.health.connect.HealthPermissions.READ_HEALTH_DATA_IN_BACKGROUND;
@@ -119,6 +120,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.LocalManagerRegistry;
 import com.android.server.appop.AppOpsManagerLocal;
 import com.android.server.healthconnect.backuprestore.BackupRestore;
+import com.android.server.healthconnect.logging.ApiLatencyStats;
 import com.android.server.healthconnect.logging.HealthConnectServiceLogger;
 import com.android.server.healthconnect.migration.DataMigrationManager;
 import com.android.server.healthconnect.migration.MigrationCleaner;
@@ -136,17 +138,21 @@ import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsRequestHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.DatabaseHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.DatabaseStatsCollector;
 import com.android.server.healthconnect.storage.datatypehelpers.DeviceInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.request.AggregateTransactionRequest;
 import com.android.server.healthconnect.storage.request.DeleteTransactionRequest;
+import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -158,6 +164,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -186,6 +193,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
 
     private static final String TAG_DELETE_SUBTASKS = "HealthConnectDeleteSubtasks";
     private static final String TAG_READ_SUBTASKS = "HealthConnectReadSubtasks";
+    // Measuring the table sizes reads the whole database, so it is only done when asked for.
+    private static final String DUMP_ARG_TABLE_SIZES = "--table-sizes";
     private static final int TRACE_TAG_INSERT = TAG_INSERT.hashCode();
     private static final int TRACE_TAG_READ = TAG_READ.hashCode();
     private static final int TRACE_TAG_GRANT_PERMISSION = TAG_GRANT_PERMISSION.hashCode();
@@ -233,6 +242,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         mMigrationStateManager = migrationStateManager;
         mDataPermissionEnforcer =
                 new DataPermissionEnforcer(mPermissionManager, mContext, deviceConfigManager);
+        mFirstGrantTimeManager.addOnPermissionsChangedListener(mDataPermissionEnforcer);
+        mFirstGrantTimeManager.addOnPermissionsChangedListener(mPermissionHelper);
         mAppOpsManagerLocal = LocalManagerRegistry.getManager(AppOpsManagerLocal.class);
         mBackupRestore =
                 new BackupRestore(mFirstGrantTimeManager, mMigrationStateManager, mContext);
@@ -272,6 +283,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
 
         throwIllegalStateExceptionIfDataSyncInProgress();
         mPermissionHelper.revokeHealthPermission(packageName, permissionName, reason, user);
+        // Don't wait for onPermissionsChanged to stop reporting the permissions as granted.
+        mDataPermissionEnforcer.clearGrantedPermissionsCache();
     }
 
     @Override
@@ -281,6 +294,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
 
         throwIllegalStateExceptionIfDataSyncInProgress();
         mPermissionHelper.revokeAllHealthPermissions(packageName, reason, user);
+        // Don't wait for onPermissionsChanged to stop reporting the permissions as granted.
+        mDataPermissionEnforcer.clearGrantedPermissionsCache();
     }
 
     @Override
@@ -365,6 +380,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -380,6 +396,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                         logger.setNumberOfRecords(recordInternals.size());
                         throwExceptionIfDataSyncInProgress();
                         boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                        logger.setCallerForegroundState(isInForeground);
                         tryAcquireApiCallQuota(
                                 uid,
                                 QuotaCategory.QUOTA_CATEGORY_WRITE,
@@ -388,6 +405,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                 recordsParcel.getRecordsChunkSize());
                         mDataPermissionEnforcer.enforceRecordsWritePermissions(
                                 recordInternals, attributionSource);
+                        logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
                         Trace.traceBegin(TRACE_TAG_INSERT, TAG_INSERT);
                         UpsertTransactionRequest insertRequest =
                                 new UpsertTransactionRequest(
@@ -434,7 +452,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                false);
+                false,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     private void postInsertTasks(
@@ -479,6 +498,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -532,6 +552,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                         } else {
                             startDateAccess = request.getStartTime();
                         }
+                        logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
                         callback.onResult(
                                 new AggregateTransactionRequest(
                                                 attributionSource.getPackageName(),
@@ -566,7 +587,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                holdsDataManagementPermission);
+                holdsDataManagementPermission,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     /**
@@ -599,6 +621,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -675,6 +698,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                             startDateAccessInstant.toEpochMilli();
                                 }
                             }
+                            logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
 
                             ReadTransactionRequest readTransactionRequest =
                                     new ReadTransactionRequest(
@@ -684,8 +708,13 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                             enforceSelfRead,
                                             extraReadPermsToGrantState);
                             // throw an exception if read requested is not for a single record type
-                            // i.e. size of read table request is not equal to 1.
-                            if (readTransactionRequest.getReadRequests().size() != 1) {
+                            // i.e. size of read table request is not equal to 1. Reads by ids may
+                            // be split into several read table requests for the same record type.
+                            if (readTransactionRequest.getReadRequests().stream()
+                                            .map(ReadTableRequest::getRecordHelper)
+                                            .distinct()
+                                            .count()
+                                    != 1) {
                                 throw new IllegalArgumentException(
                                         "Read requested is not for a single record type");
                             }
@@ -724,9 +753,11 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                         .addAccessLog(callingPackageName, recordTypes, READ);
                                 Trace.traceEnd(TRACE_TAG_READ_SUBTASKS);
                             }
+                            logger.startStage();
                             callback.onResult(
                                     new ReadRecordsResponseParcel(
                                             new RecordsParcel(records), pageToken));
+                            logger.endStage(ApiLatencyStats.STAGE_PARCEL);
                             if (requiresLogging) {
                                 logRecordTypeSpecificReadMetrics(records, callingPackageName);
                             }
@@ -782,7 +813,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                holdsDataManagementPermission);
+                holdsDataManagementPermission,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     private void maybeEnforceOnlyCallingPackageDataRequested(
@@ -824,6 +856,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -839,6 +872,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                         logger.setNumberOfRecords(recordInternals.size());
                         throwExceptionIfDataSyncInProgress();
                         boolean isInForeground = mAppOpsManagerLocal.isUidInForeground(uid);
+                        logger.setCallerForegroundState(isInForeground);
                         tryAcquireApiCallQuota(
                                 uid,
                                 QuotaCategory.QUOTA_CATEGORY_WRITE,
@@ -847,6 +881,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                 recordsParcel.getRecordsChunkSize());
                         mDataPermissionEnforcer.enforceRecordsWritePermissions(
                                 recordInternals, attributionSource);
+                        logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
                         UpsertTransactionRequest request =
                                 new UpsertTransactionRequest(
                                         attributionSource.getPackageName(),
@@ -904,7 +939,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                false);
+                false,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     /**
@@ -925,6 +961,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -968,7 +1005,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                false);
+                false,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     /**
@@ -993,6 +1031,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -1020,6 +1059,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                 mPermissionHelper.getHealthDataStartDateAccessOrThrow(
                                         callerPackageName, userHandle);
                         long startDateAccessEpochMilli = startDateAccessInstant.toEpochMilli();
+                        logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
                         final ChangeLogsHelper.ChangeLogsResponse changeLogsResponse =
                                 ChangeLogsHelper.getInstance()
                                         .getChangeLogs(changeLogsTokenRequest, request);
@@ -1044,12 +1084,14 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                                 ChangeLogsHelper.getDeletedLogs(
                                         changeLogsResponse.getChangeLogsMap());
 
+                        logger.startStage();
                         callback.onResult(
                                 new ChangeLogsResponse(
                                         new RecordsParcel(recordInternals),
                                         deletedLogs,
                                         changeLogsResponse.getNextPageToken(),
                                         changeLogsResponse.hasMorePages()));
+                        logger.endStage(ApiLatencyStats.STAGE_PARCEL);
                         logger.setHealthDataServiceApiStatusSuccess()
                                 .setNumberOfRecords(recordInternals.size() + deletedLogs.size())
                                 .setDataTypesFromRecordInternals(recordInternals);
@@ -1091,7 +1133,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                false);
+                false,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     /**
@@ -1120,6 +1163,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
@@ -1145,6 +1189,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                             mDataPermissionEnforcer.enforceRecordIdsWritePermissions(
                                     recordTypeIdsToDelete, attributionSource);
                         }
+                        logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
 
                         deleteUsingFiltersInternal(
                                 attributionSource,
@@ -1187,7 +1232,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                holdsDataManagementPermission);
+                holdsDataManagementPermission,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     /**
@@ -1215,11 +1261,13 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.startTask();
                     try {
                         enforceIsForegroundUser(userHandle);
                         verifyPackageNameFromUid(uid, attributionSource);
                         throwExceptionIfDataSyncInProgress();
                         mContext.enforcePermission(MANAGE_HEALTH_DATA_PERMISSION, pid, uid, null);
+                        logger.endStage(ApiLatencyStats.STAGE_PERMISSION);
                         List<Integer> recordTypeIdsToDelete =
                                 (!request.getRecordTypeFilters().isEmpty())
                                         ? request.getRecordTypeFilters()
@@ -1269,7 +1317,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                holdsDataManagementPermission);
+                holdsDataManagementPermission,
+                e -> tryAndThrowException(callback, e, ERROR_RATE_LIMIT_EXCEEDED));
     }
 
     private void deleteUsingFiltersInternal(
@@ -2316,10 +2365,36 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         Trace.traceEnd(TRACE_TAG_DELETE_SUBTASKS);
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        if (mContext.checkCallingOrSelfPermission(Manifest.permission.DUMP)
+                != PackageManager.PERMISSION_GRANTED) {
+            pw.println("Permission Denial: can't dump " + TAG);
+            return;
+        }
+
+        ApiLatencyStats.getInstance().dump(pw);
+        if (args != null && Arrays.asList(args).contains(DUMP_ARG_TABLE_SIZES)) {
+            dumpTableSizes(pw);
+        } else {
+            pw.println("Table sizes: pass " + DUMP_ARG_TABLE_SIZES + " to include them");
+        }
+    }
+
+    private static void dumpTableSizes(PrintWriter pw) {
+        pw.println("Table sizes (bytes):");
+        Map<String, Long> sizes = new TreeMap<>(DatabaseStatsCollector.getSizeOfTables());
+        for (Entry<String, Long> size : sizes.entrySet()) {
+            pw.println("  " + size.getKey() + ": " + size.getValue());
+        }
+    }
+
     private static void tryAndReturnResult(
             IEmptyResponseCallback callback, HealthConnectServiceLogger.Builder logger) {
         try {
+            logger.startStage();
             callback.onResult();
+            logger.endStage(ApiLatencyStats.STAGE_PARCEL);
             logger.setHealthDataServiceApiStatusSuccess();
         } catch (RemoteException e) {
             Slog.e(TAG, "Remote call failed", e);
@@ -2332,7 +2407,9 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
             List<String> uuids,
             HealthConnectServiceLogger.Builder logger) {
         try {
+            logger.startStage();
             callback.onResult(new InsertRecordsResponseParcel(uuids));
+            logger.endStage(ApiLatencyStats.STAGE_PARCEL);
             logger.setHealthDataServiceApiStatusSuccess();
         } catch (RemoteException e) {
             Slog.e(TAG, "Remote call failed", e);
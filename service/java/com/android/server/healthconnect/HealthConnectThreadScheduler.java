@@ -17,6 +17,7 @@
 package com.android.server.healthconnect;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.util.Slog;
@@ -28,6 +29,7 @@ import java.util.Objects;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * A scheduler class to schedule task on the most relevant thread-pool.
@@ -44,12 +46,15 @@ public final class HealthConnectThreadScheduler {
     private static final int NUM_EXECUTOR_THREADS_CONTROLLER = 1;
     private static final long KEEP_ALIVE_TIME_CONTROLLER = 60L;
 
-    // Scheduler to run the tasks in a RR fashion based on client package names.
+    // Scheduler to run the background tasks fairly across client uids.
     private static final HealthConnectRoundRobinScheduler
             HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER =
                     new HealthConnectRoundRobinScheduler();
     private static final String TAG = "HealthConnectScheduler";
 
+    // Cached foreground state of uids, null until uid importance tracking has been started.
+    @Nullable private static volatile UidImportanceTracker sUidImportanceTracker;
+
     // Executor to run HC background tasks
     @VisibleForTesting
     static volatile ThreadPoolExecutor sBackgroundThreadExecutor =
@@ -131,6 +136,29 @@ public final class HealthConnectThreadScheduler {
         sControllerExecutor.shutdownNow();
     }
 
+    /**
+     * Starts tracking uid importance changes, so that the foreground state of a uid no longer needs
+     * to be queried from {@link ActivityManager} every time a task is scheduled.
+     */
+    static void startUidImportanceTracking(@NonNull Context context) {
+        if (sUidImportanceTracker != null) {
+            return;
+        }
+
+        ActivityManager activityManager = context.getSystemService(ActivityManager.class);
+        if (activityManager == null) {
+            return;
+        }
+        UidImportanceTracker tracker = new UidImportanceTracker(activityManager);
+        try {
+            tracker.startTracking();
+        } catch (SecurityException e) {
+            Slog.e(TAG, "Unable to track uid importance, falling back to querying it", e);
+            return;
+        }
+        sUidImportanceTracker = tracker;
+    }
+
     /** Schedules the task on the executor dedicated for performing internal tasks */
     public static void scheduleInternalTask(Runnable task) {
         sInternalBackgroundExecutor.execute(getSafeRunnable(task));
@@ -141,8 +169,19 @@ public final class HealthConnectThreadScheduler {
         sControllerExecutor.execute(getSafeRunnable(task));
     }
 
-    /** Schedules the task on the best possible executor based on the parameters */
-    static void schedule(Context context, @NonNull Runnable task, int uid, boolean isController) {
+    /**
+     * Schedules the task on the best possible executor based on the parameters.
+     *
+     * <p>Tasks of a uid which already has too many pending background tasks are rejected instead of
+     * being queued or run, and {@code onRejected} is called on the calling thread with the error to
+     * return to the app. It must only answer the app's callback.
+     */
+    static void schedule(
+            Context context,
+            @NonNull Runnable task,
+            int uid,
+            boolean isController,
+            @NonNull Consumer<Exception> onRejected) {
         if (isController) {
             sControllerExecutor.execute(getSafeRunnable(task));
             return;
@@ -158,30 +197,46 @@ public final class HealthConnectThreadScheduler {
                                     // only be used by the foreground app and since the request of
                                     // this task is no longer in foreground we don't want it to
                                     // consume foreground resource anymore.
-                                    HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.addTask(
-                                            uid, task);
-                                    sBackgroundThreadExecutor.execute(
-                                            () ->
-                                                    HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER
-                                                            .getNextTask()
-                                                            .run());
+                                    scheduleBackgroundTask(uid, task, onRejected);
                                     return;
                                 }
 
                                 task.run();
                             }));
         } else {
-            HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.addTask(uid, task);
-            sBackgroundThreadExecutor.execute(
-                    getSafeRunnable(
-                            () ->
-                                    HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER
-                                            .getNextTask()
-                                            .run()));
+            scheduleBackgroundTask(uid, task, onRejected);
+        }
+    }
+
+    private static void scheduleBackgroundTask(
+            int uid, @NonNull Runnable task, @NonNull Consumer<Exception> onRejected) {
+        if (!HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.addTask(uid, task)) {
+            if (!HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.isPaused()) {
+                // The uid has too many pending tasks. Fail the task instead of running it on the
+                // calling thread, which is a binder thread or the foreground executor, so that the
+                // uid can't bypass the fair scheduling of background tasks.
+                getSafeRunnable(
+                                () ->
+                                        onRejected.accept(
+                                                new IllegalStateException(
+                                                        "Too many pending requests for uid: "
+                                                                + uid)))
+                        .run();
+            }
+            return;
         }
+
+        sBackgroundThreadExecutor.execute(
+                getSafeRunnable(
+                        () -> HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.getNextTask().run()));
     }
 
     private static boolean isUidInForeground(Context context, int uid) {
+        UidImportanceTracker tracker = sUidImportanceTracker;
+        if (tracker != null) {
+            return tracker.isUidInForeground(uid);
+        }
+
         ActivityManager activityManager = context.getSystemService(ActivityManager.class);
         Objects.requireNonNull(activityManager);
         List<ActivityManager.RunningAppProcessInfo> runningAppProcesses =
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_GONE;
+
+import android.annotation.NonNull;
+import android.app.ActivityManager;
+import android.util.SparseBooleanArray;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Objects;
+
+/**
+ * Keeps track of which uids are in the foreground, so that scheduling a task doesn't need to query
+ * the list of running app processes.
+ *
+ * <p>The foreground state of a uid is fetched from {@link ActivityManager} the first time it is
+ * requested, and is kept up to date by a uid importance listener afterwards.
+ *
+ * @hide
+ */
+final class UidImportanceTracker {
+    private final ActivityManager mActivityManager;
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private final SparseBooleanArray mForegroundUids = new SparseBooleanArray();
+
+    UidImportanceTracker(@NonNull ActivityManager activityManager) {
+        mActivityManager = Objects.requireNonNull(activityManager);
+    }
+
+    /** Starts listening to uid importance changes. */
+    void startTracking() {
+        mActivityManager.addOnUidImportanceListener(
+                this::onUidImportance, IMPORTANCE_FOREGROUND);
+    }
+
+    /** Returns {@code true} if the given uid is currently in the foreground. */
+    boolean isUidInForeground(int uid) {
+        synchronized (mLock) {
+            int index = mForegroundUids.indexOfKey(uid);
+            if (index >= 0) {
+                return mForegroundUids.valueAt(index);
+            }
+        }
+
+        boolean isInForeground = isForegroundImportance(mActivityManager.getUidImportance(uid));
+        synchronized (mLock) {
+            // A change delivered by the listener while we were querying is more recent than the
+            // value we fetched, so keep it.
+            if (mForegroundUids.indexOfKey(uid) < 0) {
+                mForegroundUids.put(uid, isInForeground);
+            }
+            return mForegroundUids.get(uid);
+        }
+    }
+
+    @VisibleForTesting
+    void onUidImportance(int uid, int importance) {
+        synchronized (mLock) {
+            if (importance == IMPORTANCE_GONE) {
+                mForegroundUids.delete(uid);
+            } else {
+                mForegroundUids.put(uid, isForegroundImportance(importance));
+            }
+        }
+    }
+
+    private static boolean isForegroundImportance(int importance) {
+        return importance <= IMPORTANCE_FOREGROUND;
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+import static android.health.connect.Constants.PARENT_KEY;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
+
+import android.annotation.NonNull;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.util.Slog;
+
+import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.DeviceInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.request.CreateTableRequest;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Writes and applies incremental backup deltas.
+ *
+ * <p>A delta is a SQLite database with the same schema as the health connect database. It holds
+ * the current version of every record touched by the change logs since the last acknowledged
+ * backup, along with the app and device info tables, and a table listing every touched UUID. On
+ * restore, the delta is replayed onto the staged base database: every touched record is removed
+ * from the base and the rows present in the delta are inserted back, which covers upserts and
+ * deletes alike.
+ *
+ * <p>If the change logs no longer cover the requested range, a full delta is written instead, which
+ * replaces all the records of the base on restore.
+ *
+ * <p>Each delta records the change log it starts from. A delta is only applied onto a base that
+ * covers that change log, as the changes made in between would be missing otherwise. This is the
+ * case when the transport didn't keep the last full database that was sent.
+ *
+ * @hide
+ */
+final class BackupDeltaHelper {
+    private static final String TAG = "HealthConnectBackupDelta";
+    private static final String SOURCE_SCHEMA = "source";
+    private static final String BASE_SCHEMA = "base";
+    private static final String DELTA_SCHEMA = "main";
+
+    private static final String DELTA_UUIDS_TABLE_NAME = "backup_delta_uuids_table";
+    private static final String DELTA_INFO_TABLE_NAME = "backup_delta_info_table";
+    private static final String RECORD_TYPE_COLUMN_NAME = "record_type";
+    private static final String SINCE_ROW_ID_COLUMN_NAME = "since_change_log_row_id";
+    private static final String UNTIL_ROW_ID_COLUMN_NAME = "until_change_log_row_id";
+    private static final String IS_FULL_COLUMN_NAME = "is_full";
+
+    /**
+     * Writes all the changes made to {@code sourceDbFile} after the change log {@code
+     * sinceChangeLogRowId} to {@code deltaFile}.
+     *
+     * <p>{@code sourceDbFile} is attached read-only, so only a read transaction is held on it while
+     * the delta is written and it can be the live database.
+     *
+     * @param sinceChangeLogRowId the change log watermark of the last acknowledged backup, or
+     *     {@link android.health.connect.Constants#DEFAULT_LONG} if there is none.
+     * @return the change log watermark covered by the written delta.
+     */
+    static long writeDelta(
+            @NonNull File sourceDbFile, @NonNull File deltaFile, long sinceChangeLogRowId) {
+        deltaFile.delete();
+        try (SQLiteDatabase deltaDb =
+                SQLiteDatabase.openDatabase(
+                        deltaFile,
+                        new SQLiteDatabase.OpenParams.Builder()
+                                .addOpenFlags(SQLiteDatabase.CREATE_IF_NECESSARY)
+                                .build())) {
+            attachReadOnly(deltaDb, sourceDbFile, SOURCE_SCHEMA);
+            try {
+                copySchema(deltaDb);
+                deltaDb.setVersion(getVersion(deltaDb, SOURCE_SCHEMA));
+
+                deltaDb.beginTransaction();
+                try {
+                    long untilChangeLogRowId = getLatestChangeLogRowId(deltaDb);
+                    boolean isFull =
+                            sinceChangeLogRowId == DEFAULT_LONG
+                                    || !ChangeLogsHelper.hasAllChangeLogsAfter(
+                                            deltaDb, SOURCE_SCHEMA, sinceChangeLogRowId);
+                    if (!isFull) {
+                        writeChangedUuids(
+                                deltaDb,
+                                ChangeLogsHelper.getUuidsChangedAfter(
+                                        deltaDb, SOURCE_SCHEMA, sinceChangeLogRowId));
+                    }
+                    writeDeltaInfo(deltaDb, sinceChangeLogRowId, untilChangeLogRowId, isFull);
+
+                    copyTable(deltaDb, SOURCE_SCHEMA, DELTA_SCHEMA, AppInfoHelper.TABLE_NAME, "");
+                    copyTable(
+                            deltaDb,
+                            SOURCE_SCHEMA,
+                            DELTA_SCHEMA,
+                            DeviceInfoHelper.getInstance().getTableName(),
+                            "");
+                    for (RecordHelper<?> helper : getRecordHelpers()) {
+                        CreateTableRequest request = helper.getCreateTableRequest();
+                        String filter =
+                                isFull
+                                        ? ""
+                                        : " WHERE "
+                                                + UUID_COLUMN_NAME
+                                                + " IN "
+                                                + getChangedUuidsQuery(
+                                                        helper.getRecordIdentifier());
+                        copyTable(
+                                deltaDb,
+                                SOURCE_SCHEMA,
+                                DELTA_SCHEMA,
+                                request.getTableName(),
+                                filter);
+                        copyChildTables(deltaDb, SOURCE_SCHEMA, DELTA_SCHEMA, request);
+                    }
+                    deltaDb.setTransactionSuccessful();
+                    Slog.i(
+                            TAG,
+                            "Wrote "
+                                    + (isFull ? "full" : "incremental")
+                                    + " backup delta until change log "
+                                    + untilChangeLogRowId);
+                    return untilChangeLogRowId;
+                } finally {
+                    deltaDb.endTransaction();
+                }
+            } finally {
+                detach(deltaDb, SOURCE_SCHEMA);
+            }
+        }
+    }
+
+    /**
+     * Replays the delta in {@code deltaFile} onto the staged base database {@code baseDbFile}.
+     *
+     * <p>Both databases must have been upgraded to the same version beforehand. The delta is
+     * skipped otherwise, as its rows may not fit the tables of the base. It is skipped as well if
+     * the base doesn't cover the change log the delta starts from.
+     */
+    static void applyDelta(@NonNull File baseDbFile, @NonNull File deltaFile) {
+        try (SQLiteDatabase deltaDb =
+                SQLiteDatabase.openDatabase(
+                        deltaFile, new SQLiteDatabase.OpenParams.Builder().build())) {
+            // Needed for the cascading deletes of the child tables in the base.
+            deltaDb.setForeignKeyConstraintsEnabled(true);
+            attach(deltaDb, baseDbFile, BASE_SCHEMA);
+            try {
+                int baseVersion = getVersion(deltaDb, BASE_SCHEMA);
+                if (baseVersion != deltaDb.getVersion()) {
+                    Slog.e(
+                            TAG,
+                            "Not applying backup delta of version "
+                                    + deltaDb.getVersion()
+                                    + " onto base of version "
+                                    + baseVersion);
+                    return;
+                }
+
+                deltaDb.beginTransaction();
+                try {
+                    boolean isFull = isFullDelta(deltaDb);
+                    if (!isFull && isBaseBehind(deltaDb)) {
+                        return;
+                    }
+
+                    // App and device infos are never deleted, and the ids are shared with the
+                    // base as both come from the same source database.
+                    insertOrIgnoreAll(deltaDb, AppInfoHelper.TABLE_NAME);
+                    insertOrIgnoreAll(deltaDb, DeviceInfoHelper.getInstance().getTableName());
+                    for (RecordHelper<?> helper : getRecordHelpers()) {
+                        CreateTableRequest request = helper.getCreateTableRequest();
+                        String filter =
+                                isFull
+                                        ? ""
+                                        : " WHERE "
+                                                + UUID_COLUMN_NAME
+                                                + " IN "
+                                                + getChangedUuidsQuery(
+                                                        helper.getRecordIdentifier());
+                        // Child rows are removed through the cascading foreign keys.
+                        deltaDb.execSQL(
+                                "DELETE FROM "
+                                        + BASE_SCHEMA
+                                        + "."
+                                        + request.getTableName()
+                                        + filter);
+                        copyTable(
+                                deltaDb, DELTA_SCHEMA, BASE_SCHEMA, request.getTableName(), "");
+                        copyChildTables(deltaDb, DELTA_SCHEMA, BASE_SCHEMA, request);
+                    }
+                    deltaDb.setTransactionSuccessful();
+                } finally {
+                    deltaDb.endTransaction();
+                }
+            } finally {
+                detach(deltaDb, BASE_SCHEMA);
+            }
+        }
+    }
+
+    private static List<RecordHelper<?>> getRecordHelpers() {
+        return new ArrayList<>(RecordHelperProvider.getInstance().getRecordHelpers().values());
+    }
+
+    private static void attach(SQLiteDatabase db, File file, String schemaName) {
+        db.execSQL(
+                "ATTACH DATABASE ? AS " + schemaName, new Object[] {file.getAbsolutePath()});
+    }
+
+    /**
+     * Attaches {@code file} without write access. SQLite then only takes a read transaction on it
+     * in the transactions of {@code db}, so its writers aren't blocked.
+     */
+    private static void attachReadOnly(SQLiteDatabase db, File file, String schemaName) {
+        String readOnlyUri =
+                Uri.fromFile(file)
+                        .buildUpon()
+                        .appendQueryParameter("mode", "ro")
+                        .build()
+                        .toString();
+        db.execSQL("ATTACH DATABASE ? AS " + schemaName, new Object[] {readOnlyUri});
+    }
+
+    private static void detach(SQLiteDatabase db, String schemaName) {
+        db.execSQL("DETACH DATABASE " + schemaName);
+    }
+
+    private static int getVersion(SQLiteDatabase db, String schemaName) {
+        try (Cursor cursor = db.rawQuery("PRAGMA " + schemaName + ".user_version", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /** Creates all the tables of the source database in the delta database. */
+    private static void copySchema(SQLiteDatabase deltaDb) {
+        List<String> createStatements = new ArrayList<>();
+        try (Cursor cursor =
+                deltaDb.rawQuery(
+                        "SELECT sql FROM "
+                                + SOURCE_SCHEMA
+                                + ".sqlite_master WHERE type = 'table'"
+                                + " AND name NOT LIKE 'sqlite_%'",
+                        null)) {
+            while (cursor.moveToNext()) {
+                createStatements.add(cursor.getString(0));
+            }
+        }
+        createStatements.forEach(deltaDb::execSQL);
+        deltaDb.execSQL(
+                "CREATE TABLE "
+                        + DELTA_UUIDS_TABLE_NAME
+                        + " ("
+                        + RECORD_TYPE_COLUMN_NAME
+                        + " INTEGER NOT NULL, "
+                        + UUID_COLUMN_NAME
+                        + " BLOB NOT NULL, PRIMARY KEY ("
+                        + RECORD_TYPE_COLUMN_NAME
+                        + ", "
+                        + UUID_COLUMN_NAME
+                        + "))");
+        deltaDb.execSQL(
+                "CREATE TABLE "
+                        + DELTA_INFO_TABLE_NAME
+                        + " ("
+                        + SINCE_ROW_ID_COLUMN_NAME
+                        + " INTEGER, "
+                        + UNTIL_ROW_ID_COLUMN_NAME
+                        + " INTEGER, "
+                        + IS_FULL_COLUMN_NAME
+                        + " INTEGER)");
+    }
+
+    private static long getLatestChangeLogRowId(SQLiteDatabase deltaDb) {
+        try (Cursor cursor =
+                deltaDb.rawQuery(
+                        StorageUtils.getMaxPrimaryKeyQuery(
+                                SOURCE_SCHEMA + "." + ChangeLogsHelper.TABLE_NAME),
+                        null)) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static void writeChangedUuids(
+            SQLiteDatabase deltaDb, Map<Integer, Set<UUID>> uuidsByRecordType) {
+        try (SQLiteStatement statement =
+                deltaDb.compileStatement(
+                        "INSERT OR IGNORE INTO "
+                                + DELTA_UUIDS_TABLE_NAME
+                                + " VALUES (?, ?)")) {
+            for (Map.Entry<Integer, Set<UUID>> entry : uuidsByRecordType.entrySet()) {
+                for (UUID uuid : entry.getValue()) {
+                    statement.bindLong(1, entry.getKey());
+                    statement.bindBlob(2, StorageUtils.convertUUIDToBytes(uuid));
+                    statement.executeInsert();
+                }
+            }
+        }
+    }
+
+    private static void writeDeltaInfo(
+            SQLiteDatabase deltaDb, long sinceRowId, long untilRowId, boolean isFull) {
+        deltaDb.execSQL(
+                "INSERT INTO " + DELTA_INFO_TABLE_NAME + " VALUES (?, ?, ?)",
+                new Object[] {sinceRowId, untilRowId, isFull ? 1 : 0});
+    }
+
+    private static boolean isFullDelta(SQLiteDatabase deltaDb) {
+        try (Cursor cursor =
+                deltaDb.rawQuery(
+                        "SELECT " + IS_FULL_COLUMN_NAME + " FROM " + DELTA_INFO_TABLE_NAME,
+                        null)) {
+            return !cursor.moveToFirst() || cursor.getInt(0) != 0;
+        }
+    }
+
+    /**
+     * Returns whether the base was taken before the start of the delta, in which case the changes
+     * in between are missing from both and the delta must not be applied.
+     */
+    private static boolean isBaseBehind(SQLiteDatabase deltaDb) {
+        long baseRowId;
+        try (Cursor cursor =
+                deltaDb.rawQuery(
+                        StorageUtils.getMaxPrimaryKeyQuery(
+                                BASE_SCHEMA + "." + ChangeLogsHelper.TABLE_NAME),
+                        null)) {
+            baseRowId = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+        }
+        try (Cursor cursor =
+                deltaDb.rawQuery(
+                        "SELECT " + SINCE_ROW_ID_COLUMN_NAME + " FROM " + DELTA_INFO_TABLE_NAME,
+                        null)) {
+            if (cursor.moveToFirst() && cursor.getLong(0) > baseRowId) {
+                Slog.e(
+                        TAG,
+                        "Not applying backup delta starting at change log "
+                                + cursor.getLong(0)
+                                + " onto base only covering up to "
+                                + baseRowId);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getChangedUuidsQuery(int recordType) {
+        return "(SELECT "
+                + UUID_COLUMN_NAME
+                + " FROM "
+                + DELTA_SCHEMA
+                + "."
+                + DELTA_UUIDS_TABLE_NAME
+                + " WHERE "
+                + RECORD_TYPE_COLUMN_NAME
+                + " = "
+                + recordType
+                + ")";
+    }
+
+    private static void insertOrIgnoreAll(SQLiteDatabase deltaDb, String tableName) {
+        String columns = String.join(", ", getInsertableColumns(deltaDb, tableName));
+        deltaDb.execSQL(
+                "INSERT OR IGNORE INTO "
+                        + BASE_SCHEMA
+                        + "."
+                        + tableName
+                        + " ("
+                        + columns
+                        + ") SELECT "
+                        + columns
+                        + " FROM "
+                        + DELTA_SCHEMA
+                        + "."
+                        + tableName);
+    }
+
+    /** Copies the rows of {@code tableName} matching {@code filter} between the two schemas. */
+    private static void copyTable(
+            SQLiteDatabase db,
+            String fromSchema,
+            String toSchema,
+            String tableName,
+            String filter) {
+        String columns = String.join(", ", getInsertableColumns(db, tableName));
+        db.execSQL(
+                "INSERT INTO "
+                        + toSchema
+                        + "."
+                        + tableName
+                        + " ("
+                        + columns
+                        + ") SELECT "
+                        + columns
+                        + " FROM "
+                        + fromSchema
+                        + "."
+                        + tableName
+                        + filter);
+    }
+
+    /**
+     * Copies the rows of all the child tables of {@code parentRequest} that belong to the parent
+     * rows already present in {@code toSchema}.
+     */
+    private static void copyChildTables(
+            SQLiteDatabase db,
+            String fromSchema,
+            String toSchema,
+            CreateTableRequest parentRequest) {
+        for (CreateTableRequest childRequest : parentRequest.getChildTableRequests()) {
+            String filter =
+                    " WHERE "
+                            + PARENT_KEY
+                            + " IN (SELECT "
+                            + PRIMARY_COLUMN_NAME
+                            + " FROM "
+                            + toSchema
+                            + "."
+                            + parentRequest.getTableName()
+                            + ")";
+            copyTable(db, fromSchema, toSchema, childRequest.getTableName(), filter);
+            copyChildTables(db, fromSchema, toSchema, childRequest);
+        }
+    }
+
+    /**
+     * Returns the columns of {@code tableName} that can be inserted into. Generated columns are
+     * not listed by {@code table_info}.
+     */
+    private static List<String> getInsertableColumns(SQLiteDatabase db, String tableName) {
+        List<String> columns = new ArrayList<>();
+        try (Cursor cursor =
+                db.rawQuery("PRAGMA " + DELTA_SCHEMA + ".table_info(" + tableName + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex));
+            }
+        }
+        return columns;
+    }
+
+    private BackupDeltaHelper() {}
+}
@@ -51,6 +51,7 @@ import android.content.Context;
 import android.content.ContextWrapper;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.health.connect.HealthConnectDataState;
 import android.health.connect.HealthConnectException;
 import android.health.connect.HealthConnectManager.DataDownloadState;
@@ -84,6 +85,7 @@ import com.android.server.healthconnect.permission.UserGrantTimeState;
 import com.android.server.healthconnect.storage.HealthConnectDatabase;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
@@ -91,6 +93,7 @@ import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.utils.FilesUtil;
 import com.android.server.healthconnect.utils.RunnableWithThrowable;
 
@@ -193,6 +196,14 @@ public final class BackupRestore {
     @VisibleForTesting
     static final String STAGED_DATABASE_NAME = "healthconnect_staged.db";
 
+    // Optional incremental backup on top of STAGED_DATABASE_NAME, see BackupDeltaHelper.
+    @VisibleForTesting
+    static final String STAGED_DELTA_DATABASE_NAME = "healthconnect_staged_delta.db";
+
+    // Key for storing the change log row id covered by the last successful database backup.
+    @VisibleForTesting
+    static final String LAST_BACKUP_CHANGE_LOG_ROW_ID_KEY = "last_backup_change_log_row_id_key";
+
     private static final String TAG = "HealthConnectBackupRestore";
     private final ReentrantReadWriteLock mStatesLock = new ReentrantReadWriteLock(true);
     private final FirstGrantTimeManager mFirstGrantTimeManager;
@@ -347,7 +358,15 @@ public final class BackupRestore {
         }
     }
 
-    /** Writes the backup data into files represented by the passed file descriptors. */
+    /**
+     * Writes the backup data into files represented by the passed file descriptors.
+     *
+     * <p>If {@link #STAGED_DELTA_DATABASE_NAME} is requested, only the changes since the last
+     * successful backup of {@link #STAGED_DATABASE_NAME} are written to it. Deltas don't move that
+     * watermark, so each of them can be restored on top of the last full database on its own. The
+     * transport may not keep the full database that moved it though, so each delta records the
+     * change log it starts from and is not restored onto a full database that is behind it.
+     */
     public void getAllDataForBackup(
             @NonNull StageRemoteDataRequest stageRemoteDataRequest,
             @NonNull UserHandle userHandle) {
@@ -355,14 +374,26 @@ public final class BackupRestore {
         Map<String, ParcelFileDescriptor> pfdsByFileName =
                 stageRemoteDataRequest.getPfdsByFileName();
 
-        var backupFilesByFileNames = getBackupFilesByFileNames(userHandle);
+        Map<String, Long> changeLogRowIdsByFileName = new ArrayMap<>();
+        var backupFilesByFileNames =
+                getBackupFilesByFileNames(
+                        userHandle, pfdsByFileName.keySet(), changeLogRowIdsByFileName);
+        long[] backedUpChangeLogRowId = {DEFAULT_LONG};
         pfdsByFileName.forEach(
                 (fileName, pfd) -> {
-                    @SuppressWarnings("NullAway")
-                    Path sourceFilePath = backupFilesByFileNames.get(fileName).toPath();
                     try (FileOutputStream outputStream =
                             new FileOutputStream(pfd.getFileDescriptor())) {
-                        Files.copy(sourceFilePath, outputStream);
+                        File sourceFile = backupFilesByFileNames.get(fileName);
+                        if (sourceFile == null) {
+                            Slog.e(TAG, "No data to send for " + fileName);
+                            return;
+                        }
+                        Files.copy(sourceFile.toPath(), outputStream);
+                        Long changeLogRowId = changeLogRowIdsByFileName.get(fileName);
+                        if (changeLogRowId != null) {
+                            backedUpChangeLogRowId[0] =
+                                    Math.max(backedUpChangeLogRowId[0], changeLogRowId);
+                        }
                     } catch (IOException | SecurityException e) {
                         Slog.e(TAG, "Failed to send " + fileName + " for backup", e);
                     } finally {
@@ -373,6 +404,16 @@ public final class BackupRestore {
                         }
                     }
                 });
+
+        if (backedUpChangeLogRowId[0] != DEFAULT_LONG) {
+            PreferenceHelper.getInstance()
+                    .insertOrReplacePreference(
+                            LAST_BACKUP_CHANGE_LOG_ROW_ID_KEY,
+                            String.valueOf(backedUpChangeLogRowId[0]));
+        }
+        File backupDataDir = getBackupDataDirectoryForUser(userHandle.getIdentifier());
+        new File(backupDataDir, STAGED_DATABASE_NAME).delete();
+        new File(backupDataDir, STAGED_DELTA_DATABASE_NAME).delete();
     }
 
     /** Get the file names of all the files that are transported during backup / restore. */
@@ -380,6 +421,8 @@ public final class BackupRestore {
         ArraySet<String> backupFileNames = new ArraySet<>();
         if (forDeviceToDevice) {
             backupFileNames.add(STAGED_DATABASE_NAME);
+            // Transports that keep the last full database can request only this file.
+            backupFileNames.add(STAGED_DELTA_DATABASE_NAME);
         }
         backupFileNames.add(GRANT_TIME_FILE_NAME);
         return new BackupFileNamesSet(backupFileNames);
@@ -598,22 +641,12 @@ public final class BackupRestore {
         int currentDbVersion = TransactionManager.getInitialisedInstance().getDatabaseVersion();
         File stagedDbFile = mStagedDbContext.getDatabasePath(STAGED_DATABASE_NAME);
         if (stagedDbFile.exists()) {
-            try (SQLiteDatabase stagedDb =
-                         SQLiteDatabase.openDatabase(
-                                 stagedDbFile,
-                                 new SQLiteDatabase.OpenParams.Builder().build())) {
-                int stagedDbVersion = stagedDb.getVersion();
-                Slog.i(
-                        TAG,
-                        "merging staged data, current version = "
-                                + currentDbVersion
-                                + ", staged version = "
-                                + stagedDbVersion);
-                if (currentDbVersion < stagedDbVersion) {
-                    Slog.i(TAG, "Module needs upgrade for merging to version " + stagedDbVersion);
-                    setDataRestoreError(RESTORE_ERROR_VERSION_DIFF);
-                    return;
-                }
+            if (isStagedDbAhead(stagedDbFile, currentDbVersion)) {
+                return;
+            }
+            File stagedDeltaFile = mStagedDbContext.getDatabasePath(STAGED_DELTA_DATABASE_NAME);
+            if (stagedDeltaFile.exists() && isStagedDbAhead(stagedDeltaFile, currentDbVersion)) {
+                return;
             }
         } else {
             Slog.i(TAG, "No database file found to merge.");
@@ -626,14 +659,78 @@ public final class BackupRestore {
         setInternalRestoreState(INTERNAL_RESTORE_STATE_MERGING_DONE, false);
     }
 
-    private Map<String, File> getBackupFilesByFileNames(UserHandle userHandle) {
-        ArrayMap<String, File> backupFilesByFileNames = new ArrayMap<>();
+    /** Returns true, and sets the restore error, if the module is behind the given staged db. */
+    private boolean isStagedDbAhead(@NonNull File stagedDbFile, int currentDbVersion) {
+        try (SQLiteDatabase stagedDb =
+                SQLiteDatabase.openDatabase(
+                        stagedDbFile, new SQLiteDatabase.OpenParams.Builder().build())) {
+            int stagedDbVersion = stagedDb.getVersion();
+            Slog.i(
+                    TAG,
+                    "merging staged data, current version = "
+                            + currentDbVersion
+                            + ", staged version of "
+                            + stagedDbFile.getName()
+                            + " = "
+                            + stagedDbVersion);
+            if (currentDbVersion < stagedDbVersion) {
+                Slog.i(TAG, "Module needs upgrade for merging to version " + stagedDbVersion);
+                setDataRestoreError(RESTORE_ERROR_VERSION_DIFF);
+                return true;
+            }
+            return false;
+        }
+    }
 
-        File databasePath = TransactionManager.getInitialisedInstance().getDatabasePath();
-        backupFilesByFileNames.put(STAGED_DATABASE_NAME, databasePath);
+    private Map<String, File> getBackupFilesByFileNames(
+            UserHandle userHandle,
+            Set<String> requestedFileNames,
+            Map<String, Long> changeLogRowIdsByFileName) {
+        ArrayMap<String, File> backupFilesByFileNames = new ArrayMap<>();
 
         File backupDataDir = getBackupDataDirectoryForUser(userHandle.getIdentifier());
         backupDataDir.mkdirs();
+
+        boolean isDatabaseRequested = requestedFileNames.contains(STAGED_DATABASE_NAME);
+        boolean isDeltaRequested = requestedFileNames.contains(STAGED_DELTA_DATABASE_NAME);
+        // Read the watermark before copying, so that changes made during the copy are covered by
+        // the next delta again.
+        long changeLogRowId = ChangeLogsHelper.getInstance().getLatestRowId();
+        TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
+        File snapshotFile = new File(backupDataDir, STAGED_DATABASE_NAME);
+        boolean hasSnapshot = false;
+        if (isDatabaseRequested) {
+            try {
+                transactionManager.snapshotDatabase(snapshotFile);
+                hasSnapshot = true;
+            } catch (SQLiteException e) {
+                Slog.e(TAG, "Could not snapshot the database.", e);
+            }
+        }
+        if (isDatabaseRequested) {
+            // Only full database backups move the watermark, as a restore applies a single delta
+            // on top of the last full database.
+            changeLogRowIdsByFileName.put(STAGED_DATABASE_NAME, changeLogRowId);
+            backupFilesByFileNames.put(
+                    STAGED_DATABASE_NAME,
+                    hasSnapshot ? snapshotFile : transactionManager.getDatabasePath());
+        }
+        if (isDeltaRequested) {
+            // Delta only requests read the live database within a single read transaction, rather
+            // than snapshotting all of it. If the full database is sent as well, the delta is
+            // written from its snapshot and only has to cover the changes made after it.
+            File deltaFile = new File(backupDataDir, STAGED_DELTA_DATABASE_NAME);
+            try {
+                BackupDeltaHelper.writeDelta(
+                        hasSnapshot ? snapshotFile : transactionManager.getDatabasePath(),
+                        deltaFile,
+                        isDatabaseRequested ? changeLogRowId : getLastBackupChangeLogRowId());
+                backupFilesByFileNames.put(STAGED_DELTA_DATABASE_NAME, deltaFile);
+            } catch (SQLiteException e) {
+                Slog.e(TAG, "Could not create the database delta for backup.", e);
+            }
+        }
+
         File grantTimeFile = new File(backupDataDir, GRANT_TIME_FILE_NAME);
         try {
             grantTimeFile.createNewFile();
@@ -647,6 +744,20 @@ public final class BackupRestore {
         return backupFilesByFileNames;
     }
 
+    private long getLastBackupChangeLogRowId() {
+        String rowIdOnDisk =
+                PreferenceHelper.getInstance().getPreference(LAST_BACKUP_CHANGE_LOG_ROW_ID_KEY);
+        if (rowIdOnDisk == null || rowIdOnDisk.trim().isEmpty()) {
+            return DEFAULT_LONG;
+        }
+        try {
+            return Long.parseLong(rowIdOnDisk);
+        } catch (NumberFormatException e) {
+            Slog.e(TAG, "Exception parsing last backup change log row id " + rowIdOnDisk, e);
+            return DEFAULT_LONG;
+        }
+    }
+
     @DataDownloadState private int getDataDownloadState() {
         mStatesLock.readLock().lock();
         try {
@@ -1005,6 +1116,8 @@ public final class BackupRestore {
             // records from the db - as the upcoming code is guaranteed to understand the records
             // present in the staged db.
 
+            applyStagedDeltaIfExists();
+
             // We are sure to migrate the db now, so prepare
             prepInternalDataPerStagedDb();
 
@@ -1024,6 +1137,34 @@ public final class BackupRestore {
         }
     }
 
+    /** Replays the staged incremental backup, if any, onto the staged database. */
+    @GuardedBy("mMergingLock")
+    private void applyStagedDeltaIfExists() {
+        File stagedDeltaFile = mStagedDbContext.getDatabasePath(STAGED_DELTA_DATABASE_NAME);
+        if (!stagedDeltaFile.exists()) {
+            return;
+        }
+        Slog.i(TAG, "Applying staged delta to the staged db.");
+        try {
+            // The delta and the base may have been written by different module versions, so both
+            // are upgraded to the current version first.
+            getStagedDatabase().getWritableDatabase();
+            HealthConnectDatabase stagedDelta =
+                    new HealthConnectDatabase(mStagedDbContext, STAGED_DELTA_DATABASE_NAME);
+            try {
+                stagedDelta.getWritableDatabase();
+            } finally {
+                stagedDelta.close();
+            }
+            BackupDeltaHelper.applyDelta(
+                    mStagedDbContext.getDatabasePath(STAGED_DATABASE_NAME), stagedDeltaFile);
+        } catch (SQLiteException e) {
+            // The base on its own is still worth merging.
+            Slog.e(TAG, "Failed to apply the staged delta.", e);
+        }
+        SQLiteDatabase.deleteDatabase(stagedDeltaFile);
+    }
+
     private <T extends Record> void mergeRecordsOfType(int recordType, Class<T> recordTypeClass) {
         RecordHelper<?> recordHelper =
                 RecordHelperProvider.getInstance().getRecordHelper(recordType);
@@ -1112,23 +1253,36 @@ public final class BackupRestore {
 
     private Cursor read(ReadTableRequest request) {
         synchronized (mMergingLock) {
-            return getStagedDatabase()
-                    .getReadableDatabase()
-                    .rawQuery(request.getReadCommand(), null);
+            return StorageUtils.rawQuery(
+                    getStagedDatabase().getReadableDatabase(),
+                    request.getReadCommand(),
+                    request.getBindArgs());
 
         }
     }
 
     private void populateInternalRecordsWithExtraData(
             List<RecordInternal<?>> records, ReadTableRequest request) {
+        RecordHelper<?> helper = request.getRecordHelper();
+        for (ReadTableRequest extraDataRequest :
+                helper.getExtraDataReadRequestsForRecords(records)) {
+            try (Cursor cursorExtraData = read(extraDataRequest)) {
+                helper.updateInternalRecordsWithExtraFields(
+                        records, cursorExtraData, extraDataRequest.getTableName());
+            }
+        }
+
         if (request.getExtraReadRequests() == null) {
             return;
         }
         for (ReadTableRequest extraDataRequest : request.getExtraReadRequests()) {
-            Cursor cursorExtraData = read(extraDataRequest);
-            request.getRecordHelper()
-                    .updateInternalRecordsWithExtraFields(
-                            records, cursorExtraData, extraDataRequest.getTableName());
+            if (!extraDataRequest.restrictToParentRecords(records)) {
+                continue;
+            }
+            try (Cursor cursorExtraData = read(extraDataRequest)) {
+                helper.updateInternalRecordsWithExtraFields(
+                        records, cursorExtraData, extraDataRequest.getTableName());
+            }
         }
     }
 
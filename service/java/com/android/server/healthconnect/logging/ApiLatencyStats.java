@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.logging;
+
+import static android.health.HealthFitnessStatsLog.HEALTH_CONNECT_API_CALLED__CALLER_FOREGROUND_STATE__BACKGROUND;
+import static android.health.HealthFitnessStatsLog.HEALTH_CONNECT_API_CALLED__CALLER_FOREGROUND_STATE__FOREGROUND;
+
+import android.annotation.IntDef;
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.os.SystemClock;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.logging.HealthConnectServiceLogger.ApiMethods;
+
+import java.io.PrintWriter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Always-on latency histograms of HealthConnectService API calls, broken down by the stage of the
+ * call in which the time was spent. Dumped by {@code dumpsys healthconnect}.
+ *
+ * <p>Histograms are kept per API method, data type and caller foreground state. Stages which run
+ * deep in the storage layer report their time through {@link #addStageTime}, which attributes it to
+ * the API call running on the current thread, if any.
+ *
+ * @hide
+ */
+public final class ApiLatencyStats {
+    /** Time between the API call and the start of its task in the thread scheduler. */
+    public static final int STAGE_QUEUE_WAIT = 0;
+
+    /** Time spent checking permissions, quotas and the start date of data access. */
+    public static final int STAGE_PERMISSION = 1;
+
+    /** Time spent getting the start date of data access, also part of {@link #STAGE_PERMISSION}. */
+    public static final int STAGE_START_DATE_ACCESS = 2;
+
+    /** Time spent running SQL statements, including filling the cursor windows. */
+    public static final int STAGE_SQL = 3;
+
+    /** Time spent converting cursor rows to records. */
+    public static final int STAGE_DECODE = 4;
+
+    /** Time spent sending the result back to the caller, including parceling it. */
+    public static final int STAGE_PARCEL = 5;
+
+    /** Time of the whole API call, including the queue wait. */
+    public static final int STAGE_TOTAL = 6;
+
+    static final int STAGE_COUNT = 7;
+
+    /** @hide */
+    @IntDef({
+        STAGE_QUEUE_WAIT,
+        STAGE_PERMISSION,
+        STAGE_START_DATE_ACCESS,
+        STAGE_SQL,
+        STAGE_DECODE,
+        STAGE_PARCEL,
+        STAGE_TOTAL,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Stage {}
+
+    private static final String[] STAGE_NAMES = {
+        "queue_wait", "permission", "start_date_access", "sql", "decode", "parcel", "total"
+    };
+
+    private static final double[] DUMPED_PERCENTILES = {50, 90, 99};
+
+    private static final ThreadLocal<long[]> sCurrentCallStageNanos = new ThreadLocal<>();
+
+    private static final ApiLatencyStats sInstance = new ApiLatencyStats();
+
+    private final Map<Long, AtomicReferenceArray<LatencyHistogram>> mHistograms =
+            new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    ApiLatencyStats() {}
+
+    /** Returns the instance collecting the latencies of all API calls. */
+    @NonNull
+    public static ApiLatencyStats getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Adds {@code durationNanos} to {@code stage} of the API call running on the current thread.
+     * Does nothing if no API call is being tracked on this thread.
+     */
+    public static void addStageTime(@Stage int stage, long durationNanos) {
+        long[] stageNanos = sCurrentCallStageNanos.get();
+        if (stageNanos != null) {
+            stageNanos[stage] += durationNanos;
+        }
+    }
+
+    /**
+     * Adds the time elapsed since {@code startTimeNanos}, as returned by {@link
+     * SystemClock#elapsedRealtimeNanos()}, to {@code stage} of the API call running on the current
+     * thread.
+     */
+    public static void addStageTimeSince(@Stage int stage, long startTimeNanos) {
+        addStageTime(stage, SystemClock.elapsedRealtimeNanos() - startTimeNanos);
+    }
+
+    /** Starts attributing stage times reported on the current thread to a new API call. */
+    static void startTrackingCall() {
+        sCurrentCallStageNanos.set(new long[STAGE_COUNT]);
+    }
+
+    /**
+     * Stops attributing stage times reported on the current thread, and returns the times
+     * attributed to the API call so far, or {@code null} if no call was tracked.
+     */
+    @Nullable
+    static long[] stopTrackingCall() {
+        long[] stageNanos = sCurrentCallStageNanos.get();
+        sCurrentCallStageNanos.remove();
+        return stageNanos;
+    }
+
+    /** Records the stage times of a finished API call. */
+    void record(
+            @ApiMethods.ApiMethod int apiMethod,
+            int dataType,
+            int callerForegroundState,
+            @NonNull long[] stageNanos) {
+        AtomicReferenceArray<LatencyHistogram> histograms =
+                mHistograms.computeIfAbsent(
+                        getKey(apiMethod, dataType, callerForegroundState),
+                        key -> new AtomicReferenceArray<>(STAGE_COUNT));
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            // Stages which a call never goes through don't get a histogram.
+            if (stageNanos[stage] == 0 && stage != STAGE_TOTAL) {
+                continue;
+            }
+
+            LatencyHistogram histogram = histograms.get(stage);
+            if (histogram == null) {
+                histograms.compareAndSet(stage, null, new LatencyHistogram());
+                histogram = histograms.get(stage);
+            }
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(stageNanos[stage]));
+        }
+    }
+
+    /** Returns the histogram of {@code stage} for the given key, or {@code null} if none. */
+    @VisibleForTesting
+    @Nullable
+    LatencyHistogram getHistogram(
+            @ApiMethods.ApiMethod int apiMethod,
+            int dataType,
+            int callerForegroundState,
+            @Stage int stage) {
+        AtomicReferenceArray<LatencyHistogram> histograms =
+                mHistograms.get(getKey(apiMethod, dataType, callerForegroundState));
+        return histograms == null ? null : histograms.get(stage);
+    }
+
+    /** Dumps the latency percentiles of every API call key and stage, in microseconds. */
+    public void dump(@NonNull PrintWriter pw) {
+        pw.println("API latencies (us):");
+        List<Long> keys = new ArrayList<>(mHistograms.keySet());
+        keys.sort(null);
+        for (long key : keys) {
+            pw.println("  " + keyToString(key));
+            AtomicReferenceArray<LatencyHistogram> histograms = mHistograms.get(key);
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                LatencyHistogram histogram = histograms.get(stage);
+                if (histogram == null) {
+                    continue;
+                }
+
+                StringBuilder line = new StringBuilder("    ").append(STAGE_NAMES[stage]);
+                line.append(": count=").append(histogram.getCount());
+                line.append(" mean=").append(histogram.getMeanMicros());
+                for (double percentile : DUMPED_PERCENTILES) {
+                    line.append(" p").append((int) percentile).append('=');
+                    line.append(histogram.getValueAtPercentile(percentile));
+                }
+                line.append(" max=").append(histogram.getMaxMicros());
+                pw.println(line);
+            }
+        }
+    }
+
+    /** Packs the histogram key so that the keys sort by API method, data type then state. */
+    private static long getKey(int apiMethod, int dataType, int callerForegroundState) {
+        return ((long) apiMethod << 32) | ((dataType & 0xffffffL) << 8) | callerForegroundState;
+    }
+
+    private static String keyToString(long key) {
+        return "api_method="
+                + (key >>> 32)
+                + " data_type="
+                + ((key >>> 8) & 0xffffff)
+                + " "
+                + getForegroundStateName((int) (key & 0xff));
+    }
+
+    private static String getForegroundStateName(int callerForegroundState) {
+        switch (callerForegroundState) {
+            case HEALTH_CONNECT_API_CALLED__CALLER_FOREGROUND_STATE__FOREGROUND:
+                return "foreground";
+            case HEALTH_CONNECT_API_CALLED__CALLER_FOREGROUND_STATE__BACKGROUND:
+                return "background";
+            default:
+                return "unspecified";
+        }
+    }
+}
@@ -141,6 +141,7 @@ import android.annotation.NonNull;
 import android.health.HealthFitnessStatsLog;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.ratelimiter.RateLimiter;
+import android.os.SystemClock;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -351,6 +352,8 @@ public class HealthConnectServiceLogger {
     public static class Builder {
 
         private final long mStartTime;
+        private final long mStartTimeNanos;
+        private long mStageStartTimeNanos;
         private final int mHealthDataServiceApiMethod;
         private int mHealthDataServiceApiStatus;
         private int mErrorCode;
@@ -364,6 +367,7 @@ public class HealthConnectServiceLogger {
 
         public Builder(boolean holdsDataManagementPermission, @ApiMethods.ApiMethod int apiMethod) {
             mStartTime = System.currentTimeMillis();
+            mStartTimeNanos = SystemClock.elapsedRealtimeNanos();
             mHealthDataServiceApiMethod = apiMethod;
             mHealthDataServiceApiStatus = HEALTH_CONNECT_API_CALLED__API_STATUS__STATUS_UNKNOWN;
             mErrorCode = 0; // Means no error
@@ -496,12 +500,65 @@ public class HealthConnectServiceLogger {
             return this;
         }
 
+        /**
+         * Marks the start of the API call's task in {@link
+         * com.android.server.healthconnect.HealthConnectThreadScheduler}, ending its queue wait.
+         * Stage times reported to {@link ApiLatencyStats} on the current thread are attributed to
+         * this API call until {@link #build()}.
+         */
+        @NonNull
+        public Builder startTask() {
+            ApiLatencyStats.startTrackingCall();
+            mStageStartTimeNanos = SystemClock.elapsedRealtimeNanos();
+            ApiLatencyStats.addStageTime(
+                    ApiLatencyStats.STAGE_QUEUE_WAIT, mStageStartTimeNanos - mStartTimeNanos);
+            return this;
+        }
+
+        /** Marks the start of a stage of the API call, to be ended by {@link #endStage}. */
+        @NonNull
+        public Builder startStage() {
+            mStageStartTimeNanos = SystemClock.elapsedRealtimeNanos();
+            return this;
+        }
+
+        /**
+         * Attributes the time since the last call to {@link #startStage} or {@link #startTask} to
+         * {@code stage}.
+         */
+        @NonNull
+        public Builder endStage(@ApiLatencyStats.Stage int stage) {
+            ApiLatencyStats.addStageTimeSince(stage, mStageStartTimeNanos);
+            return this;
+        }
+
         /** Returns an object of {@link HealthConnectServiceLogger}. */
         public HealthConnectServiceLogger build() {
             mDuration = System.currentTimeMillis() - mStartTime;
+            recordLatency();
             return new HealthConnectServiceLogger(this);
         }
 
+        private void recordLatency() {
+            long[] stageNanos = ApiLatencyStats.stopTrackingCall();
+            if (stageNanos == null) {
+                // The API call didn't mark the start of its task, only its total time is known.
+                stageNanos = new long[ApiLatencyStats.STAGE_COUNT];
+            }
+            stageNanos[ApiLatencyStats.STAGE_TOTAL] =
+                    SystemClock.elapsedRealtimeNanos() - mStartTimeNanos;
+            int dataType =
+                    mRecordTypes[0] == RECORD_TYPE_NOT_ASSIGNED_DEFAULT_VALUE
+                            ? HEALTH_CONNECT_API_INVOKED__DATA_TYPE_ONE__DATA_TYPE_NOT_ASSIGNED
+                            : mRecordTypes[0];
+            ApiLatencyStats.getInstance()
+                    .record(
+                            mHealthDataServiceApiMethod,
+                            dataType,
+                            mCallerForegroundState,
+                            stageNanos);
+        }
+
         private int calculateRateLimitEnum(
                 @RateLimiter.QuotaBucket.Type int quotaBucket, float quotaLimit) {
             int quotient = (int) (quotaLimit / 1000);
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in microseconds.
+ *
+ * <p>Values are recorded into log-linear buckets: every power of two is split into {@link
+ * #SUB_BUCKET_COUNT} linear sub-buckets, so the relative error of a reported percentile is bounded
+ * regardless of the magnitude of the value, as in an HDR histogram. Recording a value is a few
+ * atomic increments and never allocates.
+ *
+ * @hide
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Values of 2^41 us (~25 days) and above all go into the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT =
+            (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mSumMicros = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /** Records a latency of {@code valueMicros}, negative values are recorded as zero. */
+    public void record(long valueMicros) {
+        long value = Math.max(0, valueMicros);
+        mCounts.incrementAndGet(getBucketIndex(value));
+        mTotalCount.incrementAndGet();
+        mSumMicros.addAndGet(value);
+        mMaxMicros.accumulateAndGet(value, Math::max);
+    }
+
+    /** Returns the number of recorded values. */
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    /** Returns the mean of the recorded values, or 0 if nothing was recorded. */
+    public long getMeanMicros() {
+        long count = mTotalCount.get();
+        return count == 0 ? 0 : mSumMicros.get() / count;
+    }
+
+    /** Returns the largest recorded value. */
+    public long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    /**
+     * Returns the highest value which is equivalent, within the precision of the histogram, to the
+     * value at {@code percentile} (between 0 and 100) of the recorded values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = mTotalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long countAtPercentile = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mCounts.get(i);
+            if (count >= countAtPercentile) {
+                return Math.min(getBucketUpperBound(i), getMaxMicros());
+            }
+        }
+        // Values recorded concurrently with this call may not be counted in the buckets yet.
+        return getMaxMicros();
+    }
+
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKET_COUNT + subBucket) * width) + width - 1;
+    }
+}
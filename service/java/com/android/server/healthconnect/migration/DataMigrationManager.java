@@ -20,6 +20,7 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.Constants;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.migration.AppInfoMigrationPayload;
 import android.health.connect.migration.MetadataMigrationPayload;
@@ -28,7 +29,11 @@ import android.health.connect.migration.MigrationPayload;
 import android.health.connect.migration.PermissionMigrationPayload;
 import android.health.connect.migration.PriorityMigrationPayload;
 import android.health.connect.migration.RecordMigrationPayload;
+import android.os.SystemClock;
 import android.os.UserHandle;
+import android.util.ArraySet;
+import android.util.Pair;
+import android.util.Slog;
 
 import com.android.internal.annotations.GuardedBy;
 import com.android.server.healthconnect.permission.FirstGrantTimeManager;
@@ -41,12 +46,14 @@ import com.android.server.healthconnect.storage.datatypehelpers.DeviceInfoHelper
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.InsertStatementCache;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -57,6 +64,7 @@ import java.util.stream.Stream;
  */
 public final class DataMigrationManager {
 
+    private static final String TAG = "HealthConnectDataMigration";
     private static final Object sLock = new Object();
 
     private final Context mUserContext;
@@ -99,35 +107,90 @@ public final class DataMigrationManager {
     /**
      * Parses and applies the provided migration entities.
      *
+     * <p>Entity ids of the whole collection are checked for duplicates with a single lookup, and
+     * the new entity ids and activity dates are written once per collection rather than once per
+     * entity. Rows are inserted through compiled statements shared by the whole collection.
+     *
      * @param entities a collection of {@link MigrationEntity} to be applied.
      */
     public void apply(@NonNull Collection<MigrationEntity> entities) throws EntityWriteException {
+        final long startTimeMillis = SystemClock.elapsedRealtime();
         synchronized (sLock) {
             mTransactionManager.runAsTransaction(
                     db -> {
                         // Grab the lock again to make sure error-prone is happy, and so that tests
                         // break if the following code is run asynchronously
                         synchronized (sLock) {
-                            for (MigrationEntity entity : entities) {
-                                migrateEntity(db, entity);
+                            try (InsertStatementCache statements = new InsertStatementCache(db)) {
+                                final MigrationBatch batch =
+                                        createBatch(db, statements, entities);
+                                for (MigrationEntity entity : entities) {
+                                    migrateEntity(entity, batch);
+                                }
+                                writeBatch(db, batch);
                             }
                         }
                     });
         }
+
+        if (Constants.DEBUG) {
+            final long elapsedMillis = SystemClock.elapsedRealtime() - startTimeMillis;
+            Slog.d(
+                    TAG,
+                    "Migrated "
+                            + entities.size()
+                            + " entities in "
+                            + elapsedMillis
+                            + " ms ("
+                            + (entities.size() * 1000L / Math.max(1L, elapsedMillis))
+                            + " entities/s)");
+        }
+    }
+
+    /**
+     * Creates a {@link MigrationBatch} for the provided entities, preloading the entity ids which
+     * were already migrated.
+     */
+    @GuardedBy("sLock")
+    @NonNull
+    private MigrationBatch createBatch(
+            @NonNull SQLiteDatabase db,
+            @NonNull InsertStatementCache statements,
+            @NonNull Collection<MigrationEntity> entities) {
+        final Set<String> entityIds = new ArraySet<>();
+        for (MigrationEntity entity : entities) {
+            if (!(entity.getPayload() instanceof RecordMigrationPayload)) {
+                entityIds.add(entity.getEntityId());
+            }
+        }
+
+        return new MigrationBatch(
+                statements, mMigrationEntityHelper.getExistingEntityIds(db, entityIds));
+    }
+
+    /** Writes the entity ids and activity dates collected while migrating the batch. */
+    @GuardedBy("sLock")
+    private void writeBatch(@NonNull SQLiteDatabase db, @NonNull MigrationBatch batch) {
+        mMigrationEntityHelper.insertEntityIds(db, batch.mNewEntityIds);
+        for (Pair<Integer, Long> activityDate : batch.mActivityDates) {
+            batch.mStatements.insertOrIgnore(
+                    mActivityDateHelper.getUpsertTableRequest(
+                            activityDate.first, activityDate.second));
+        }
     }
 
     /** Migrates the provided {@link MigrationEntity}. Must be called inside a DB transaction. */
     @GuardedBy("sLock")
-    private void migrateEntity(@NonNull SQLiteDatabase db, @NonNull MigrationEntity entity)
+    private void migrateEntity(@NonNull MigrationEntity entity, @NonNull MigrationBatch batch)
             throws EntityWriteException {
         try {
-            if (checkEntityForDuplicates(db, entity)) {
+            if (checkEntityForDuplicates(entity, batch)) {
                 return;
             }
 
             final MigrationPayload payload = entity.getPayload();
             if (payload instanceof RecordMigrationPayload) {
-                migrateRecord(db, (RecordMigrationPayload) payload);
+                migrateRecord((RecordMigrationPayload) payload, batch);
             } else if (payload instanceof PermissionMigrationPayload) {
                 migratePermissions((PermissionMigrationPayload) payload);
             } else if (payload instanceof AppInfoMigrationPayload) {
@@ -146,11 +209,12 @@ public final class DataMigrationManager {
 
     @GuardedBy("sLock")
     private void migrateRecord(
-            @NonNull SQLiteDatabase db, @NonNull RecordMigrationPayload payload) {
-        long recordRowId = mTransactionManager.insertOrIgnore(db, parseRecord(payload));
+            @NonNull RecordMigrationPayload payload, @NonNull MigrationBatch batch) {
+        long recordRowId = batch.mStatements.insertOrIgnore(parseRecord(payload));
         if (recordRowId != -1) {
-            mTransactionManager.insertOrIgnore(
-                    db, mActivityDateHelper.getUpsertTableRequest(payload.getRecordInternal()));
+            final RecordInternal<?> record = payload.getRecordInternal();
+            batch.mActivityDates.add(
+                    new Pair<>(record.getRecordType(), mActivityDateHelper.getEpochDays(record)));
         }
     }
 
@@ -219,8 +283,9 @@ public final class DataMigrationManager {
     }
 
     /**
-     * Checks the provided entity for duplicates by {@code entityId}. Modifies {@link
-     * MigrationEntityHelper} table as a side effect.
+     * Checks the provided entity for duplicates by {@code entityId}, against both the entities
+     * migrated previously and the ones earlier in the same batch. New entity ids are recorded in
+     * the batch and written to the {@link MigrationEntityHelper} table with it.
      *
      * <p>Entities with the following payload types are exempt from deduplication checks (the result
      * is always {@code false}): {@link RecordMigrationPayload}.
@@ -230,27 +295,41 @@ public final class DataMigrationManager {
      */
     @GuardedBy("sLock")
     private boolean checkEntityForDuplicates(
-            @NonNull SQLiteDatabase db, @NonNull MigrationEntity entity) {
+            @NonNull MigrationEntity entity, @NonNull MigrationBatch batch) {
         final MigrationPayload payload = entity.getPayload();
 
         if (payload instanceof RecordMigrationPayload) {
             return false; // Do not deduplicate records by entityId
         }
 
-        return !insertEntityIdIfNotPresent(db, entity.getEntityId());
+        final String entityId = entity.getEntityId();
+        if (!batch.mKnownEntityIds.add(entityId)) {
+            return true;
+        }
+
+        batch.mNewEntityIds.add(entityId);
+        return false;
     }
 
-    /**
-     * Inserts the provided {@code entity} into the database if it doesn't exist yet. Used for data
-     * deduplication.
-     *
-     * @return {@code true} if inserted successfully, {@code false} otherwise.
-     */
-    @GuardedBy("sLock")
-    private boolean insertEntityIdIfNotPresent(
-            @NonNull SQLiteDatabase db, @NonNull String entityId) {
-        final UpsertTableRequest request = mMigrationEntityHelper.getInsertRequest(entityId);
-        return mTransactionManager.insertOrIgnore(db, request) != -1;
+    /** State shared by all entities applied within a single {@link #apply} call. */
+    private static final class MigrationBatch {
+        /** Statements used to insert the rows of this batch. */
+        private final InsertStatementCache mStatements;
+
+        /** Entity ids either migrated previously or earlier in this batch. */
+        private final Set<String> mKnownEntityIds;
+
+        /** Entity ids first seen in this batch, in the order they were seen. */
+        private final List<String> mNewEntityIds = new ArrayList<>();
+
+        /** Distinct (record type, epoch day) pairs of the records inserted in this batch. */
+        private final Set<Pair<Integer, Long>> mActivityDates = new ArraySet<>();
+
+        MigrationBatch(
+                @NonNull InsertStatementCache statements, @NonNull Set<String> knownEntityIds) {
+            mStatements = statements;
+            mKnownEntityIds = knownEntityIds;
+        }
     }
 
     /** Indicates an error during entity migration. */
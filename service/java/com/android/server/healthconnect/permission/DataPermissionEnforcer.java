@@ -24,6 +24,7 @@ import static java.util.stream.Collectors.toMap;
 import android.annotation.NonNull;
 import android.content.AttributionSource;
 import android.content.Context;
+import android.content.pm.PackageManager;
 import android.health.connect.HealthPermissions;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.RecordMapper;
@@ -40,18 +41,27 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
  * Helper class to force caller of data apis to hold api required permissions.
  *
+ * <p>Permissions found granted are cached per calling UID, until the permissions of the UID
+ * change or its package is removed. Denied permissions are checked again on every call, so that a
+ * permission granted before {@link #onPermissionsChanged} is delivered is never reported as denied.
+ *
  * @hide
  */
-public class DataPermissionEnforcer {
+public class DataPermissionEnforcer implements PackageManager.OnPermissionsChangedListener {
     private final PermissionManager mPermissionManager;
     private final Context mContext;
     private final HealthConnectDeviceConfigManager mDeviceConfigManager;
 
+    // Permissions granted to each calling UID. Runtime permissions are granted per UID, so keying by
+    // UID keeps the cache bounded by the number of apps instead of growing with every process.
+    private final Map<Integer, Set<String>> mGrantedPermissionsCache = new ConcurrentHashMap<>();
+
     public DataPermissionEnforcer(
             @NonNull PermissionManager permissionManager,
             @NonNull Context context,
@@ -61,6 +71,17 @@ public class DataPermissionEnforcer {
         mDeviceConfigManager = deviceConfigManager;
     }
 
+    /** Drops the permissions cached as granted to {@code uid}. */
+    @Override
+    public void onPermissionsChanged(int uid) {
+        mGrantedPermissionsCache.remove(uid);
+    }
+
+    /** Drops the permissions cached as granted to all UIDs. */
+    public void clearGrantedPermissionsCache() {
+        mGrantedPermissionsCache.clear();
+    }
+
     /** Enforces default write permissions for given recordTypeIds */
     public void enforceRecordIdsWritePermissions(
             List<Integer> recordTypeIds, AttributionSource attributionSource) {
@@ -208,8 +229,12 @@ public class DataPermissionEnforcer {
     public Map<String, Boolean> collectExtraWritePermissionStateMapping(
             List<RecordInternal<?>> recordInternals, AttributionSource attributionSource) {
         Map<String, Boolean> mapping = new ArrayMap<>();
+        Set<Integer> recordTypeIds = new ArraySet<>();
         for (RecordInternal<?> recordInternal : recordInternals) {
             int recordTypeId = recordInternal.getRecordType();
+            if (!recordTypeIds.add(recordTypeId)) {
+                continue;
+            }
             RecordHelper<?> recordHelper =
                     RecordHelperProvider.getInstance().getRecordHelper(recordTypeId);
 
@@ -252,6 +277,28 @@ public class DataPermissionEnforcer {
 
     private boolean isPermissionGranted(
             String permissionName, AttributionSource attributionSource) {
+        // Attribution chains are checked on every call, as each app of the chain needs the
+        // permission.
+        if (attributionSource.getNext() != null) {
+            return checkPermission(permissionName, attributionSource);
+        }
+
+        // The set is looked up before the check, so that a grant checked before the permission
+        // gets revoked is added to a set already dropped by onPermissionsChanged.
+        Set<String> grantedPermissions =
+                mGrantedPermissionsCache.computeIfAbsent(
+                        attributionSource.getUid(), unused -> ConcurrentHashMap.newKeySet());
+        if (grantedPermissions.contains(permissionName)) {
+            return true;
+        }
+        boolean granted = checkPermission(permissionName, attributionSource);
+        if (granted) {
+            grantedPermissions.add(permissionName);
+        }
+        return granted;
+    }
+
+    private boolean checkPermission(String permissionName, AttributionSource attributionSource) {
         return mPermissionManager.checkPermissionForDataDelivery(
                         permissionName, attributionSource, null)
                 == PERMISSION_GRANTED;
@@ -73,6 +73,6 @@ public interface FirstGrantTimeDatastore {
      */
     @NonNull
     static FirstGrantTimeDatastore createInstance() {
-        return new FirstGrantTimeDatastoreXmlPersistence();
+        return new FirstGrantTimeDatastoreBinaryPersistence();
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.health.connect.Constants;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.server.healthconnect.utils.FilesUtil;
+
+import libcore.io.IoUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Stores the grant times in a compact binary file per user and data type.
+ *
+ * <p>Replaces the XML files of {@link FirstGrantTimeDatastoreXmlPersistence}, which are still read
+ * until the binary file is first written. The XML files are also kept up to date for a release,
+ * so a module rollback finds the current grant times. They are written before the binary file, so
+ * an XML file newer than the binary file was written by a rolled back module, and is read instead.
+ */
+class FirstGrantTimeDatastoreBinaryPersistence implements FirstGrantTimeDatastore {
+    private static final String TAG = "HealthConnectFirstGrantTimeDatastore";
+    private static final String GRANT_TIME_FILE_NAME = "health-permissions-first-grant-times.bin";
+
+    private static final String STAGED_GRANT_TIME_FILE_NAME =
+            "staged-health-permissions-first-grant-times.bin";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final FirstGrantTimeDatastoreXmlPersistence mXmlDatastore =
+            new FirstGrantTimeDatastoreXmlPersistence();
+
+    FirstGrantTimeDatastoreBinaryPersistence() {}
+
+    /**
+     * Read {@link UserGrantTimeState for given user}.
+     *
+     * @hide
+     */
+    @SuppressWarnings("NullAway")
+    @Nullable
+    @Override
+    public UserGrantTimeState readForUser(@NonNull UserHandle user, @DataType int dataType) {
+        File file = getFile(user, dataType);
+        if (Constants.DEBUG) {
+            Log.d(TAG, "Reading grant times from " + file);
+        }
+        if (file.exists()
+                && mXmlDatastore.getFile(user, dataType).lastModified() > file.lastModified()) {
+            Log.i(TAG, "Grant times were written by an older module, deleting " + file);
+            new AtomicFile(file).delete();
+        }
+        try (DataInputStream inputStream = new DataInputStream(new AtomicFile(file).openRead())) {
+            return readGrantTimeState(inputStream);
+        } catch (FileNotFoundException e) {
+            return mXmlDatastore.readForUser(user, dataType);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + file, e);
+        }
+    }
+
+    /**
+     * Write {@link UserGrantTimeState for given user}.
+     *
+     * @hide
+     */
+    @Override
+    public void writeForUser(
+            @NonNull UserGrantTimeState grantTimesState,
+            @NonNull UserHandle user,
+            @DataType int dataType) {
+        // TODO: stop writing and delete the XML files once the module can no longer be rolled back
+        // to a version without the binary files. Until then, every write pays for both files.
+        mXmlDatastore.writeForUser(grantTimesState, user, dataType);
+
+        File file = getFile(user, dataType);
+        if (Constants.DEBUG) {
+            Log.d(TAG, "Writing grant times to " + file);
+        }
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = atomicFile.startWrite();
+            DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+            writeGrantTimeState(dataOutputStream, grantTimesState);
+            dataOutputStream.flush();
+            atomicFile.finishWrite(outputStream);
+        } catch (IOException e) {
+            Log.wtf(TAG, "Failed to write, restoring backup: " + file, e);
+            atomicFile.failWrite(outputStream);
+        } finally {
+            IoUtils.closeQuietly(outputStream);
+        }
+    }
+
+    @Override
+    public File getFile(@NonNull UserHandle user, @DataType int sourceType) {
+        String fileName =
+                sourceType == FirstGrantTimeDatastore.DATA_TYPE_CURRENT
+                        ? GRANT_TIME_FILE_NAME
+                        : STAGED_GRANT_TIME_FILE_NAME;
+        return new File(
+                FilesUtil.getDataSystemCeHCDirectoryForUser(user.getIdentifier()), fileName);
+    }
+
+    private static void writeGrantTimeState(
+            @NonNull DataOutputStream outputStream, @NonNull UserGrantTimeState grantTimesState)
+            throws IOException {
+        outputStream.writeInt(FORMAT_VERSION);
+        outputStream.writeInt(grantTimesState.getVersion());
+        writeGrantTimes(outputStream, grantTimesState.getPackageGrantTimes());
+        writeGrantTimes(outputStream, grantTimesState.getSharedUserGrantTimes());
+    }
+
+    private static void writeGrantTimes(
+            @NonNull DataOutputStream outputStream, @NonNull Map<String, Instant> grantTimes)
+            throws IOException {
+        outputStream.writeInt(grantTimes.size());
+        for (Map.Entry<String, Instant> entry : grantTimes.entrySet()) {
+            outputStream.writeUTF(entry.getKey());
+            outputStream.writeLong(entry.getValue().getEpochSecond());
+            outputStream.writeInt(entry.getValue().getNano());
+        }
+    }
+
+    @NonNull
+    private static UserGrantTimeState readGrantTimeState(@NonNull DataInputStream inputStream)
+            throws IOException {
+        int formatVersion = inputStream.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unknown format version " + formatVersion);
+        }
+        int version = inputStream.readInt();
+        Map<String, Instant> packageGrantTimes = readGrantTimes(inputStream);
+        Map<String, Instant> sharedUserGrantTimes = readGrantTimes(inputStream);
+        return new UserGrantTimeState(packageGrantTimes, sharedUserGrantTimes, version);
+    }
+
+    @NonNull
+    private static Map<String, Instant> readGrantTimes(@NonNull DataInputStream inputStream)
+            throws IOException {
+        int size = inputStream.readInt();
+        Map<String, Instant> grantTimes = new ArrayMap<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = inputStream.readUTF();
+            long epochSecond = inputStream.readLong();
+            int nanos = inputStream.readInt();
+            grantTimes.put(name, Instant.ofEpochSecond(epochSecond, nanos));
+        }
+        return grantTimes;
+    }
+}
@@ -31,6 +31,7 @@ import android.util.ArraySet;
 import android.util.Log;
 
 import com.android.internal.annotations.GuardedBy;
+import com.android.server.healthconnect.DebouncedInternalTask;
 import com.android.server.healthconnect.HealthConnectThreadScheduler;
 import com.android.server.healthconnect.migration.MigrationStateManager;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
@@ -40,34 +41,53 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Manager class of the health permissions first grant time.
  *
+ * <p>The grant times kept in memory are authoritative once the state of a user is initialized. They
+ * are read without locking, and changes are written to the datastore in the background by {@link
+ * #writePendingGrantTimes}, batched over {@code WRITE_DELAY_MILLIS}.
+ *
  * @hide
  */
 public class FirstGrantTimeManager implements PackageManager.OnPermissionsChangedListener {
     private static final String TAG = "HealthFirstGrantTimeMan";
     private static final int CURRENT_VERSION = 1;
+    private static final long WRITE_DELAY_MILLIS = 1_000;
 
     private final PackageManager mPackageManager;
     private final HealthPermissionIntentAppsTracker mTracker;
 
     private final ReentrantReadWriteLock mGrantTimeLock = new ReentrantReadWriteLock();
 
-    @GuardedBy("mGrantTimeLock")
+    private final DebouncedInternalTask mWriteTask =
+            new DebouncedInternalTask(this::writeChangedUserStates, WRITE_DELAY_MILLIS);
+
     private final FirstGrantTimeDatastore mDatastore;
 
-    @GuardedBy("mGrantTimeLock")
+    // Updated with mGrantTimeLock held, read without it.
     private final UidToGrantTimeCache mUidToGrantTimeCache;
 
+    // Updated with mGrantTimeLock held, read without it.
+    private final Set<Integer> mRestoredAndValidatedUsers = ConcurrentHashMap.newKeySet();
+
     @GuardedBy("mGrantTimeLock")
-    private final Set<Integer> mRestoredAndValidatedUsers = new ArraySet<>();
+    private final Set<UserHandle> mUsersWithPendingWrites = new ArraySet<>();
+
+    // Incremented whenever a grant time is set or removed.
+    private final AtomicLong mGrantTimeVersion = new AtomicLong();
 
     private final PackageInfoUtils mPackageInfoHelper;
     private final Context mContext;
 
+    private final List<PackageManager.OnPermissionsChangedListener> mPermissionsChangedListeners =
+            new CopyOnWriteArrayList<>();
+
     public FirstGrantTimeManager(
             @NonNull Context context,
             @NonNull HealthPermissionIntentAppsTracker tracker,
@@ -98,13 +118,13 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
         initAndValidateUserStateIfNeedLocked(user);
 
-        Instant grantTimeDate = getGrantTimeReadLocked(uid);
+        Instant grantTimeDate = getGrantTime(uid);
         if (grantTimeDate == null) {
             // Check and update the state in case health permission has been granted before
             // onPermissionsChanged callback was propagated.
             onPermissionsChanged(
                     mPackageInfoHelper.getPackageUid(packageName, user, getUserContext(user)));
-            grantTimeDate = getGrantTimeReadLocked(uid);
+            grantTimeDate = getGrantTime(uid);
         }
 
         return grantTimeDate;
@@ -127,15 +147,33 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         mGrantTimeLock.writeLock().lock();
         try {
             mUidToGrantTimeCache.put(uid, time);
-            mDatastore.writeForUser(
-                    mUidToGrantTimeCache.extractUserGrantTimeState(user), user, DATA_TYPE_CURRENT);
+            scheduleWriteForUserLocked(user);
         } finally {
             mGrantTimeLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Returns a version of the grant times, which changes whenever a grant time is set or removed.
+     * Values derived from grant times read after this call are out of date once it changes.
+     */
+    public long getGrantTimeVersion() {
+        return mGrantTimeVersion.get();
+    }
+
+    /**
+     * Registers a listener notified when the permissions of a UID changed, or one of its packages
+     * got removed.
+     */
+    public void addOnPermissionsChangedListener(
+            @NonNull PackageManager.OnPermissionsChangedListener listener) {
+        mPermissionsChangedListeners.add(listener);
+    }
+
     @Override
     public void onPermissionsChanged(int uid) {
+        notifyPermissionsChangedListeners(uid);
+
         String[] packageNames = mPackageManager.getPackagesForUid(uid);
         if (packageNames == null) {
             Log.w(TAG, "onPermissionsChanged: no known packages for UID: " + uid);
@@ -144,8 +182,12 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
         UserHandle user = UserHandle.getUserHandleForUid(uid);
         initAndValidateUserStateIfNeedLocked(user);
+        boolean supportsPermissionUsageIntent =
+                checkSupportPermissionsUsageIntent(packageNames, user);
+        mPackageInfoHelper.updateHealthAppsIndexAfterPermissionsChanged(
+                packageNames, supportsPermissionUsageIntent, user, getUserContext(user));
 
-        if (!checkSupportPermissionsUsageIntent(packageNames, user)) {
+        if (!supportsPermissionUsageIntent) {
             logIfInDebugMode("Cannot find health intent declaration in ", packageNames[0]);
             return;
         }
@@ -156,7 +198,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
                     mPackageInfoHelper.hasGrantedHealthPermissions(
                             packageNames, user, getUserContext(user));
 
-            boolean grantTimeRecorded = (getGrantTimeReadLocked(uid) != null);
+            boolean grantTimeRecorded = (getGrantTime(uid) != null);
             if (grantTimeRecorded != anyHealthPermissionGranted) {
                 if (grantTimeRecorded) {
                     // An app doesn't have health permissions anymore, reset its grant time.
@@ -175,10 +217,8 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
                     }
                 }
 
-                UserGrantTimeState updatedState =
-                        mUidToGrantTimeCache.extractUserGrantTimeState(user);
-                logIfInDebugMode("State after onPermissionsChanged :", updatedState);
-                mDatastore.writeForUser(updatedState, user, DATA_TYPE_CURRENT);
+                logIfInDebugMode("Cache after onPermissionsChanged :", mUidToGrantTimeCache);
+                scheduleWriteForUserLocked(user);
             } else {
                 // Update priority table only if migration is not in progress as it should already
                 // take care of merging permissions
@@ -226,11 +266,48 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
     /** Returns file with grant times data. */
     public File getFile(UserHandle userHandle) {
+        writePendingGrantTimes();
         return mDatastore.getFile(userHandle, DATA_TYPE_CURRENT);
     }
 
+    /**
+     * Writes the grant times changed since the last write to the datastore. Called in the
+     * background after changes, and should be called before the process gets stopped.
+     */
+    public void writePendingGrantTimes() {
+        mWriteTask.runNow();
+    }
+
+    private void writeChangedUserStates() {
+        Map<UserHandle, UserGrantTimeState> pendingStates = new ArrayMap<>();
+        mGrantTimeLock.writeLock().lock();
+        try {
+            for (UserHandle user : mUsersWithPendingWrites) {
+                pendingStates.put(user, mUidToGrantTimeCache.extractUserGrantTimeState(user));
+            }
+            mUsersWithPendingWrites.clear();
+        } finally {
+            mGrantTimeLock.writeLock().unlock();
+        }
+
+        for (Map.Entry<UserHandle, UserGrantTimeState> entry : pendingStates.entrySet()) {
+            logIfInDebugMode("Writing state for " + entry.getKey() + ": ", entry.getValue());
+            mDatastore.writeForUser(entry.getValue(), entry.getKey(), DATA_TYPE_CURRENT);
+        }
+    }
+
+    /** Updates the state kept for {@code packageName} after it got installed or updated. */
+    void onPackageChanged(@NonNull String packageName, @NonNull UserHandle userHandle) {
+        mPackageInfoHelper.updateHealthAppsIndex(
+                new String[] {packageName}, userHandle, getUserContext(userHandle));
+    }
+
     void onPackageRemoved(
             @NonNull String packageName, int removedPackageUid, @NonNull UserHandle userHandle) {
+        notifyPermissionsChangedListeners(removedPackageUid);
+        mPackageInfoHelper.updateHealthAppsIndex(
+                new String[] {packageName}, userHandle, getUserContext(userHandle));
+
         String[] leftSharedUidPackages =
                 mPackageInfoHelper.getPackagesForUid(
                         removedPackageUid, userHandle, getUserContext(userHandle));
@@ -242,29 +319,35 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
         initAndValidateUserStateIfNeedLocked(userHandle);
 
-        if (getGrantTimeReadLocked(removedPackageUid) != null) {
+        if (getGrantTime(removedPackageUid) != null) {
             mGrantTimeLock.writeLock().lock();
             try {
                 mUidToGrantTimeCache.remove(removedPackageUid);
-                UserGrantTimeState updatedState =
-                        mUidToGrantTimeCache.extractUserGrantTimeState(userHandle);
-                logIfInDebugMode("State after package " + packageName + " removed: ", updatedState);
-                mDatastore.writeForUser(updatedState, userHandle, DATA_TYPE_CURRENT);
+                logIfInDebugMode(
+                        "Cache after package " + packageName + " removed: ", mUidToGrantTimeCache);
+                scheduleWriteForUserLocked(userHandle);
             } finally {
                 mGrantTimeLock.writeLock().unlock();
             }
         }
     }
 
+    private void notifyPermissionsChangedListeners(int uid) {
+        for (PackageManager.OnPermissionsChangedListener listener :
+                mPermissionsChangedListeners) {
+            listener.onPermissionsChanged(uid);
+        }
+    }
+
     @SuppressWarnings("NullAway")
+    private Instant getGrantTime(Integer uid) {
+        return mUidToGrantTimeCache.get(uid);
+    }
+
     @GuardedBy("mGrantTimeLock")
-    private Instant getGrantTimeReadLocked(Integer uid) {
-        mGrantTimeLock.readLock().lock();
-        try {
-            return mUidToGrantTimeCache.get(uid);
-        } finally {
-            mGrantTimeLock.readLock().unlock();
-        }
+    private void scheduleWriteForUserLocked(UserHandle user) {
+        mUsersWithPendingWrites.add(user);
+        mWriteTask.schedule();
     }
 
     @GuardedBy("mGrantTimeLock")
@@ -279,8 +362,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
 
         if (stateChanged) {
-            mDatastore.writeForUser(
-                    mUidToGrantTimeCache.extractUserGrantTimeState(user), user, DATA_TYPE_CURRENT);
+            scheduleWriteForUserLocked(user);
         }
     }
 
@@ -323,13 +405,17 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
     /** Initialize first grant time state for given user. */
     private void initAndValidateUserStateIfNeedLocked(UserHandle user) {
-        if (userStateIsInitializedReadLocked(user)) {
+        if (isUserStateInitialized(user)) {
             // This user state is already inited and validated
             return;
         }
 
         mGrantTimeLock.writeLock().lock();
         try {
+            if (isUserStateInitialized(user)) {
+                // Another thread inited and validated it while this one was waiting for the lock.
+                return;
+            }
             Log.i(
                     TAG,
                     "State for user: "
@@ -340,6 +426,14 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
             List<PackageInfo> validHealthApps =
                     mPackageInfoHelper.getPackagesHoldingHealthPermissions(
                             user, getUserContext(user));
+            if (hasGrantTimesOfOtherApps(restoredState, validHealthApps)) {
+                // The index of apps holding health permissions may have missed a grant, scan the
+                // installed packages before dropping the grant times.
+                mPackageInfoHelper.invalidateHealthAppsIndex(user);
+                validHealthApps =
+                        mPackageInfoHelper.getPackagesHoldingHealthPermissions(
+                                user, getUserContext(user));
+            }
             logIfInDebugMode(
                     "Packages holding health perms of user " + user + " :", validHealthApps);
 
@@ -361,13 +455,8 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         }
     }
 
-    private boolean userStateIsInitializedReadLocked(UserHandle user) {
-        mGrantTimeLock.readLock().lock();
-        try {
-            return mRestoredAndValidatedUsers.contains(user.getIdentifier());
-        } finally {
-            mGrantTimeLock.readLock().unlock();
-        }
+    private boolean isUserStateInitialized(UserHandle user) {
+        return mRestoredAndValidatedUsers.contains(user.getIdentifier());
     }
 
     @GuardedBy("mGrantTimeLock")
@@ -435,7 +524,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
         if (stateChanged) {
             logIfInDebugMode("Changed state after validation for " + user + ": ", recordedState);
-            mDatastore.writeForUser(recordedState, user, DATA_TYPE_CURRENT);
+            scheduleWriteForUserLocked(user);
         }
     }
 
@@ -513,6 +602,22 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         return false;
     }
 
+    private static boolean hasGrantTimesOfOtherApps(
+            @NonNull UserGrantTimeState recordedState,
+            @NonNull List<PackageInfo> healthPackagesInfos) {
+        Set<String> packageNames = new ArraySet<>();
+        Set<String> sharedUserIds = new ArraySet<>();
+        for (PackageInfo info : healthPackagesInfos) {
+            if (info.sharedUserId == null) {
+                packageNames.add(info.packageName);
+            } else {
+                sharedUserIds.add(info.sharedUserId);
+            }
+        }
+        return !packageNames.containsAll(recordedState.getPackageGrantTimes().keySet())
+                || !sharedUserIds.containsAll(recordedState.getSharedUserGrantTimes().keySet());
+    }
+
     private boolean checkSupportPermissionsUsageIntent(
             @NonNull String[] names, @NonNull UserHandle user) {
         for (String packageName : names) {
@@ -533,7 +638,7 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
         private final Map<Integer, Instant> mUidToGrantTime;
 
         UidToGrantTimeCache() {
-            mUidToGrantTime = new ArrayMap<>();
+            mUidToGrantTime = new ConcurrentHashMap<>();
         }
 
         @Override
@@ -546,11 +651,18 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
             if (uid == null) {
                 return null;
             }
-            return mUidToGrantTime.remove(uid);
+            Instant removedTime = mUidToGrantTime.remove(uid);
+            if (removedTime != null) {
+                mGrantTimeVersion.incrementAndGet();
+            }
+            return removedTime;
         }
 
         @Nullable
-        Instant get(Integer uid) {
+        Instant get(@Nullable Integer uid) {
+            if (uid == null) {
+                return null;
+            }
             return mUidToGrantTime.get(uid);
         }
 
@@ -563,7 +675,9 @@ public class FirstGrantTimeManager implements PackageManager.OnPermissionsChange
 
         @Nullable
         Instant put(@NonNull Integer uid, @NonNull Instant time) {
-            return mUidToGrantTime.put(uid, time);
+            Instant previousTime = mUidToGrantTime.put(uid, time);
+            mGrantTimeVersion.incrementAndGet();
+            return previousTime;
         }
 
         @NonNull
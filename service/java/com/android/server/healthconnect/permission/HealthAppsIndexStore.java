@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.os.Build;
+import android.os.UserHandle;
+import android.util.ArraySet;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.server.healthconnect.utils.FilesUtil;
+
+import libcore.io.IoUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Persists the package names of the apps of a user holding health permissions, see {@link
+ * PackageInfoUtils#getPackagesHoldingHealthPermissions}.
+ *
+ * <p>The index is written along with the build fingerprint, and ignored after a system update as
+ * the permissions of preinstalled apps may have changed without broadcasts.
+ *
+ * @hide
+ */
+final class HealthAppsIndexStore {
+    private static final String TAG = "HealthAppsIndexStore";
+    private static final String FILE_NAME = "health-apps-index";
+    private static final int VERSION = 1;
+
+    private HealthAppsIndexStore() {}
+
+    /**
+     * Returns the package names written for {@code user}, or null if there are none or they were
+     * written by another build.
+     */
+    @Nullable
+    static Set<String> readForUser(@NonNull UserHandle user) {
+        File file = getFile(user);
+        try (DataInputStream inputStream = new DataInputStream(new AtomicFile(file).openRead())) {
+            if (inputStream.readInt() != VERSION
+                    || !Objects.equals(inputStream.readUTF(), Build.FINGERPRINT)) {
+                return null;
+            }
+            int size = inputStream.readInt();
+            Set<String> packageNames = new ArraySet<>(size);
+            for (int i = 0; i < size; i++) {
+                packageNames.add(inputStream.readUTF());
+            }
+            return packageNames;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + file, e);
+            return null;
+        }
+    }
+
+    /** Writes the package names for {@code user}. */
+    static void writeForUser(@NonNull UserHandle user, @NonNull Set<String> packageNames) {
+        File file = getFile(user);
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = atomicFile.startWrite();
+            DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+            dataOutputStream.writeInt(VERSION);
+            dataOutputStream.writeUTF(Build.FINGERPRINT);
+            dataOutputStream.writeInt(packageNames.size());
+            for (String packageName : packageNames) {
+                dataOutputStream.writeUTF(packageName);
+            }
+            dataOutputStream.flush();
+            atomicFile.finishWrite(outputStream);
+        } catch (IOException e) {
+            // Don't leave an out of date index behind, it's rebuilt from the installed packages
+            // when it can't be read.
+            Log.w(TAG, "Failed to write " + file, e);
+            atomicFile.failWrite(outputStream);
+            atomicFile.delete();
+        } finally {
+            IoUtils.closeQuietly(outputStream);
+        }
+    }
+
+    private static File getFile(@NonNull UserHandle user) {
+        return new File(
+                FilesUtil.getDataSystemCeHCDirectoryForUser(user.getIdentifier()), FILE_NAME);
+    }
+}
@@ -19,6 +19,8 @@ package com.android.server.healthconnect.permission;
 import static android.Manifest.permission.INTERACT_ACROSS_USERS_FULL;
 import static android.content.pm.PackageManager.PERMISSION_GRANTED;
 
+import static com.android.server.healthconnect.logging.ApiLatencyStats.STAGE_START_DATE_ACCESS;
+
 import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.app.ActivityManager;
@@ -29,10 +31,12 @@ import android.content.pm.PackageManager;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.HealthPermissions;
 import android.os.Binder;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 
+import com.android.server.healthconnect.logging.ApiLatencyStats;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 
 import java.time.Instant;
@@ -42,13 +46,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A handler for HealthConnect permission-related logic.
  *
  * @hide
  */
-public final class HealthConnectPermissionHelper {
+public final class HealthConnectPermissionHelper
+        implements PackageManager.OnPermissionsChangedListener {
     private static final Period GRANT_TIME_TO_START_ACCESS_DATE_PERIOD = Period.ofDays(30);
 
     private static final int MASK_PERMISSION_FLAGS =
@@ -62,6 +68,11 @@ public final class HealthConnectPermissionHelper {
     private final HealthPermissionIntentAppsTracker mPermissionIntentAppsTracker;
     private final FirstGrantTimeManager mFirstGrantTimeManager;
 
+    // Start dates of data access returned by getHealthDataStartDateAccessOrThrow, per user and
+    // package name.
+    private final Map<UserHandle, Map<String, CachedStartDateAccess>> mStartDateAccessCache =
+            new ConcurrentHashMap<>();
+
     /**
      * Constructs a {@link HealthConnectPermissionHelper}.
      *
@@ -268,15 +279,45 @@ public final class HealthConnectPermissionHelper {
      * Same as {@link #getHealthDataStartDateAccess(String, UserHandle)} except this method also
      * throws {@link IllegalAccessException} if health permission is in an incorrect state where
      * first grant time can't be fetched.
+     *
+     * <p>The start date is cached per package until a grant time changes, or the permissions of
+     * the package change. The permission and package checks are skipped for cached start dates.
      */
     @SuppressWarnings("NullAway")
     @NonNull
     public Instant getHealthDataStartDateAccessOrThrow(String packageName, UserHandle user) {
-        Instant startDateAccess = getHealthDataStartDateAccess(packageName, user);
-        if (startDateAccess == null) {
-            throwExceptionIncorrectPermissionState();
+        long startTimeNanos = SystemClock.elapsedRealtimeNanos();
+        try {
+            long grantTimeVersion = mFirstGrantTimeManager.getGrantTimeVersion();
+            Map<String, CachedStartDateAccess> userCache =
+                    mStartDateAccessCache.computeIfAbsent(
+                            user, unused -> new ConcurrentHashMap<>());
+            CachedStartDateAccess cached = userCache.get(packageName);
+            if (cached != null && cached.mGrantTimeVersion == grantTimeVersion) {
+                return cached.mStartDateAccess;
+            }
+
+            Instant startDateAccess = getHealthDataStartDateAccess(packageName, user);
+            if (startDateAccess == null) {
+                throwExceptionIncorrectPermissionState();
+            }
+            // Cached with the version read before the grant time, so that it's computed again
+            // if the grant time changes meanwhile.
+            userCache.put(
+                    packageName, new CachedStartDateAccess(grantTimeVersion, startDateAccess));
+            return startDateAccess;
+        } finally {
+            ApiLatencyStats.addStageTimeSince(STAGE_START_DATE_ACCESS, startTimeNanos);
         }
-        return startDateAccess;
+    }
+
+    /**
+     * Drops the start dates of data access cached for the user of {@code uid}. All packages of the
+     * user are dropped, as a removed package is no longer known for {@code uid}.
+     */
+    @Override
+    public void onPermissionsChanged(int uid) {
+        mStartDateAccessCache.remove(UserHandle.getUserHandleForUid(uid));
     }
 
     private void throwExceptionIncorrectPermissionState() {
@@ -474,4 +515,14 @@ public final class HealthConnectPermissionHelper {
             enforceValidHealthPermission(permission);
         }
     }
+
+    private static final class CachedStartDateAccess {
+        final long mGrantTimeVersion;
+        final Instant mStartDateAccess;
+
+        CachedStartDateAccess(long grantTimeVersion, Instant startDateAccess) {
+            mGrantTimeVersion = grantTimeVersion;
+            mStartDateAccess = startDateAccess;
+        }
+    }
 }
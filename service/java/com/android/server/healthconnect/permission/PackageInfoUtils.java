@@ -29,6 +29,9 @@ import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -51,7 +54,22 @@ public class PackageInfoUtils {
      */
     private final Map<UserHandle, PackageManager> mUsersPackageManager = new ArrayMap<>();
 
-    private PackageInfoUtils() {}
+    private final Object mHealthAppsIndexLock = new Object();
+
+    /**
+     * Package names of the apps holding health permissions for each user. The index is persisted
+     * and kept up to date by {@link #updateHealthAppsIndex}, so that the installed packages are
+     * only scanned when it's missing or found out of date.
+     */
+    @GuardedBy("mHealthAppsIndexLock")
+    private final Map<UserHandle, Set<String>> mHealthAppsIndex = new ArrayMap<>();
+
+    /** Users whose persisted index missed updates, as it couldn't be read at the time. */
+    @GuardedBy("mHealthAppsIndexLock")
+    private final Set<UserHandle> mUsersWithOutdatedHealthAppsIndex = new ArraySet<>();
+
+    @VisibleForTesting
+    PackageInfoUtils() {}
 
     @NonNull
     public static synchronized PackageInfoUtils getInstance() {
@@ -79,6 +97,137 @@ public class PackageInfoUtils {
 
     @NonNull
     public List<PackageInfo> getPackagesHoldingHealthPermissions(UserHandle user, Context context) {
+        synchronized (mHealthAppsIndexLock) {
+            Set<String> packageNames = getHealthAppsIndexLocked(user);
+            if (packageNames != null) {
+                List<PackageInfo> healthAppsInfos =
+                        getIndexedHealthAppsInfos(packageNames, user, context);
+                if (healthAppsInfos != null) {
+                    return healthAppsInfos;
+                }
+                Log.w(TAG, "Health apps index out of date for user " + user.getIdentifier());
+            }
+
+            List<PackageInfo> healthAppsInfos = scanPackagesHoldingHealthPermissions(user, context);
+            packageNames = new ArraySet<>(healthAppsInfos.size());
+            for (PackageInfo info : healthAppsInfos) {
+                packageNames.add(info.packageName);
+            }
+            mHealthAppsIndex.put(user, packageNames);
+            mUsersWithOutdatedHealthAppsIndex.remove(user);
+            HealthAppsIndexStore.writeForUser(user, packageNames);
+            return healthAppsInfos;
+        }
+    }
+
+    /**
+     * Updates the index of apps holding health permissions with the current state of {@code
+     * packageNames}, after they were installed, updated or removed, or their permissions changed.
+     */
+    void updateHealthAppsIndex(
+            @NonNull String[] packageNames, @NonNull UserHandle user, @NonNull Context context) {
+        synchronized (mHealthAppsIndexLock) {
+            Set<String> indexedPackageNames = getHealthAppsIndexLocked(user);
+            if (indexedPackageNames == null) {
+                // Don't trust an index persisted before, as it misses this update.
+                mUsersWithOutdatedHealthAppsIndex.add(user);
+                return;
+            }
+
+            boolean changed = false;
+            for (String packageName : packageNames) {
+                PackageInfo info = findPackageInfoWithPermissions(packageName, user, context);
+                if (info != null
+                        && info.requestedPermissions != null
+                        && anyRequestedHealthPermissionGranted(context, info)) {
+                    changed |= indexedPackageNames.add(packageName);
+                } else {
+                    changed |= indexedPackageNames.remove(packageName);
+                }
+            }
+            if (changed) {
+                HealthAppsIndexStore.writeForUser(user, indexedPackageNames);
+            }
+        }
+    }
+
+    /**
+     * Updates the index after the permissions of {@code packageNames}, the packages of a UID,
+     * changed. Apps not declaring the permissions usage intent can't be granted health permissions,
+     * so their packages are only checked if they are in the index.
+     */
+    void updateHealthAppsIndexAfterPermissionsChanged(
+            @NonNull String[] packageNames,
+            boolean supportsPermissionUsageIntent,
+            @NonNull UserHandle user,
+            @NonNull Context context) {
+        synchronized (mHealthAppsIndexLock) {
+            Set<String> indexedPackageNames = getHealthAppsIndexLocked(user);
+            if (indexedPackageNames != null
+                    && !supportsPermissionUsageIntent
+                    && !containsAny(indexedPackageNames, packageNames)) {
+                return;
+            }
+            updateHealthAppsIndex(packageNames, user, context);
+        }
+    }
+
+    /**
+     * Drops the index of {@code user} after it was found to miss an app holding health
+     * permissions, so that the installed packages are scanned again on the next call to {@link
+     * #getPackagesHoldingHealthPermissions}.
+     */
+    void invalidateHealthAppsIndex(@NonNull UserHandle user) {
+        synchronized (mHealthAppsIndexLock) {
+            mHealthAppsIndex.remove(user);
+            mUsersWithOutdatedHealthAppsIndex.add(user);
+        }
+    }
+
+    private static boolean containsAny(
+            @NonNull Set<String> indexedPackageNames, @NonNull String[] packageNames) {
+        for (String packageName : packageNames) {
+            if (indexedPackageNames.contains(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GuardedBy("mHealthAppsIndexLock")
+    @Nullable
+    private Set<String> getHealthAppsIndexLocked(@NonNull UserHandle user) {
+        Set<String> packageNames = mHealthAppsIndex.get(user);
+        if (packageNames == null && !mUsersWithOutdatedHealthAppsIndex.contains(user)) {
+            packageNames = HealthAppsIndexStore.readForUser(user);
+            if (packageNames != null) {
+                mHealthAppsIndex.put(user, packageNames);
+            }
+        }
+        return packageNames;
+    }
+
+    /**
+     * Returns the infos of the packages in the index, or null if any of them no longer holds
+     * health permissions, which means that the index missed updates.
+     */
+    @Nullable
+    private List<PackageInfo> getIndexedHealthAppsInfos(
+            @NonNull Set<String> packageNames, @NonNull UserHandle user, @NonNull Context context) {
+        List<PackageInfo> healthAppsInfos = new ArrayList<>(packageNames.size());
+        for (String packageName : packageNames) {
+            PackageInfo info = findPackageInfoWithPermissions(packageName, user, context);
+            if (info == null || !anyRequestedHealthPermissionGranted(context, info)) {
+                return null;
+            }
+            healthAppsInfos.add(info);
+        }
+        return healthAppsInfos;
+    }
+
+    @NonNull
+    private List<PackageInfo> scanPackagesHoldingHealthPermissions(
+            UserHandle user, Context context) {
         // TODO(b/260707328): replace with getPackagesHoldingPermissions
         List<PackageInfo> allInfos =
                 getPackageManagerAsUser(user, context)
@@ -151,6 +300,19 @@ public class PackageInfoUtils {
         }
     }
 
+    // Same as getPackageInfoWithPermissionsAsUser, for packages that are expected to be missing.
+    @Nullable
+    private PackageInfo findPackageInfoWithPermissions(
+            @NonNull String packageName, @NonNull UserHandle user, @NonNull Context context) {
+        try {
+            return getPackageManagerAsUser(user, context)
+                    .getPackageInfo(
+                            packageName, PackageManager.PackageInfoFlags.of(GET_PERMISSIONS));
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
     @Nullable
     String getSharedUserNameFromUid(int uid, Context context) {
         @SuppressWarnings("NullAway")
@@ -25,6 +25,7 @@ import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelp
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsRequestHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
@@ -66,6 +67,10 @@ public class AutoDeleteService {
             deleteStaleRecordEntries();
             deleteStaleChangeLogEntries();
             deleteStaleAccessLogEntries();
+            dropLegacyExerciseRouteTable();
+            // Refresh the statistics used by the query planner and the daily storage stats logging,
+            // after the deletions so they reflect the remaining rows.
+            updateTableStatistics();
             // Update the recordTypesUsed by packages if required after the deletion of records.
             AppInfoHelper.getInstance().syncAppInfoRecordTypesUsed();
             // Re-sync activity dates table
@@ -134,4 +139,22 @@ public class AutoDeleteService {
             // Don't rethrow as that will crash system_server
         }
     }
+
+    private static void dropLegacyExerciseRouteTable() {
+        try {
+            ExerciseRouteRecordHelper.dropLegacyRouteTableIfExpired();
+        } catch (Exception exception) {
+            Slog.e(TAG, "Dropping the legacy exercise route table failed", exception);
+            // Don't rethrow as that will crash system_server
+        }
+    }
+
+    private static void updateTableStatistics() {
+        try {
+            TransactionManager.getInitialisedInstance().updateTableStatistics();
+        } catch (Exception exception) {
+            Slog.e(TAG, "Updating table statistics failed", exception);
+            // Don't rethrow as that will crash system_server
+        }
+    }
 }
@@ -53,8 +53,12 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
     public static final int DB_VERSION_UUID_BLOB = 9;
 
     public static final int DB_VERSION_GENERATED_LOCAL_TIME = 10;
+
+    public static final int DB_VERSION_ENCODED_EXERCISE_ROUTE = 11;
+
+    public static final int DB_VERSION_TIME_INDEXES = 12;
     private static final String TAG = "HealthConnectDatabase";
-    private static final int DATABASE_VERSION = 10;
+    private static final int DATABASE_VERSION = 12;
     private static final String DEFAULT_DATABASE_NAME = "healthconnect.db";
     @NonNull private final Collection<RecordHelper<?>> mRecordHelpers;
     private final Context mContext;
@@ -74,6 +78,9 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
         for (CreateTableRequest createTableRequest : getCreateTableRequests()) {
             createTable(db, createTableRequest);
         }
+        // Without statistics the query planner can't tell that the app info id index is less
+        // selective than the time indexes.
+        db.execSQL("ANALYZE");
     }
 
     @Override
@@ -85,6 +92,17 @@ public class HealthConnectDatabase extends SQLiteOpenHelper {
         }
 
         mRecordHelpers.forEach(recordHelper -> recordHelper.onUpgrade(db, oldVersion, newVersion));
+        if (oldVersion < DB_VERSION_TIME_INDEXES) {
+            // Indexes are created if they don't exist, so this only adds the time indexes. It runs
+            // after the record helpers, which add the local time columns to older tables.
+            mRecordHelpers.forEach(
+                    recordHelper ->
+                            recordHelper
+                                    .getCreateTableRequest()
+                                    .getCreateIndexStatements()
+                                    .forEach(db::execSQL));
+            db.execSQL("ANALYZE");
+        }
         DatabaseHelper.onUpgrade(db, oldVersion, newVersion);
     }
 
@@ -22,6 +22,8 @@ import static android.health.connect.Constants.PARENT_KEY;
 import static android.health.connect.HealthConnectException.ERROR_INTERNAL;
 
 import static com.android.internal.util.Preconditions.checkArgument;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.STAGE_DECODE;
+import static com.android.server.healthconnect.logging.ApiLatencyStats.STAGE_SQL;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
 
@@ -39,11 +41,14 @@ import android.database.sqlite.SQLiteException;
 import android.health.connect.Constants;
 import android.health.connect.HealthConnectException;
 import android.health.connect.internal.datatypes.RecordInternal;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.util.Pair;
 import android.util.Slog;
 
 import com.android.server.healthconnect.HealthConnectUserContext;
+import com.android.server.healthconnect.logging.ApiLatencyStats;
+import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
@@ -63,6 +68,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
@@ -76,6 +82,8 @@ import java.util.function.BiConsumer;
  */
 public final class TransactionManager {
     private static final String TAG = "HealthConnectTransactionMan";
+    // Number of rows of each index scanned by ANALYZE, in the range suggested by the SQLite docs.
+    private static final String ANALYSIS_LIMIT_PRAGMA = "PRAGMA analysis_limit = 1000";
     private static final ConcurrentHashMap<UserHandle, HealthConnectDatabase>
             mUserHandleToDatabaseMap = new ConcurrentHashMap<>();
 
@@ -117,6 +125,7 @@ public final class TransactionManager {
             Slog.d(TAG, "Inserting " + request.getUpsertRequests().size() + " requests.");
         }
 
+        final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = getWritableDb();
         db.beginTransaction();
         try {
@@ -128,14 +137,12 @@ public final class TransactionManager {
                 insertRecord(db, insertRequestsForChangeLog);
             }
 
-            for (UpsertTableRequest insertRequestsForAccessLogs : request.getAccessLogs()) {
-                insertRecord(db, insertRequestsForAccessLogs);
-            }
-
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            ApiLatencyStats.addStageTimeSince(STAGE_SQL, startTimeNanos);
         }
+        request.addAccessLog();
 
         return request.getUUIdsInOrder();
     }
@@ -192,6 +199,7 @@ public final class TransactionManager {
      */
     @SuppressWarnings("NullAway")
     public int deleteAll(@NonNull DeleteTransactionRequest request) throws SQLiteException {
+        final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = getWritableDb();
         db.beginTransaction();
         int numberOfRecordsDeleted = 0;
@@ -202,7 +210,11 @@ public final class TransactionManager {
                     Delete request needs UUID before the entry can be
                     deleted, fetch and set it in {@code request}
                     */
-                    try (Cursor cursor = db.rawQuery(deleteTableRequest.getReadCommand(), null)) {
+                    try (Cursor cursor =
+                            StorageUtils.rawQuery(
+                                    db,
+                                    deleteTableRequest.getReadCommand(),
+                                    deleteTableRequest.getBindArgs())) {
                         int numberOfUuidsToDelete = 0;
                         while (cursor.moveToNext()) {
                             numberOfUuidsToDelete++;
@@ -224,7 +236,7 @@ public final class TransactionManager {
                     }
                 }
                 numberOfRecordsDeleted += deleteTableRequest.getTotalNumberOfRecordsDeleted();
-                db.execSQL(deleteTableRequest.getDeleteCommand());
+                db.execSQL(deleteTableRequest.getDeleteCommand(), deleteTableRequest.getBindArgs());
             }
 
             request.getChangeLogUpsertRequests()
@@ -233,6 +245,7 @@ public final class TransactionManager {
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            ApiLatencyStats.addStageTimeSince(STAGE_SQL, startTimeNanos);
         }
         return numberOfRecordsDeleted;
     }
@@ -248,11 +261,14 @@ public final class TransactionManager {
         if (!aggregateTableRequest.getRecordHelper().isRecordOperationsEnabled()) {
             return;
         }
+        final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
         try (Cursor cursor = db.rawQuery(aggregateTableRequest.getAggregationCommand(), null);
                 Cursor metaDataCursor =
                         db.rawQuery(
                                 aggregateTableRequest.getCommandToFetchAggregateMetadata(), null)) {
             aggregateTableRequest.onResultsFetched(cursor, metaDataCursor);
+        } finally {
+            ApiLatencyStats.addStageTimeSince(STAGE_SQL, startTimeNanos);
         }
     }
 
@@ -277,7 +293,9 @@ public final class TransactionManager {
             requireNonNull(helper);
             if (helper.isRecordOperationsEnabled()) {
                 try (Cursor cursor = read(readTableRequest)) {
+                    final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
                     List<RecordInternal<?>> internalRecords = helper.getInternalRecords(cursor);
+                    ApiLatencyStats.addStageTimeSince(STAGE_DECODE, startTimeNanos);
                     populateInternalRecordsWithExtraData(internalRecords, readTableRequest);
                     recordInternals.addAll(internalRecords);
                 }
@@ -315,12 +333,14 @@ public final class TransactionManager {
 
         long pageToken;
         try (Cursor cursor = read(readTableRequest)) {
+            final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
             Pair<List<RecordInternal<?>>, Long> readResult =
                     helper.getNextInternalRecordsPageAndToken(
                             cursor,
                             request.getPageSize().orElse(DEFAULT_PAGE_SIZE),
                             // pageToken is never null for read by filter requests
                             requireNonNull(request.getPageToken()));
+            ApiLatencyStats.addStageTimeSince(STAGE_DECODE, startTimeNanos);
             recordInternalList = readResult.first;
             pageToken = readResult.second;
             populateInternalRecordsWithExtraData(recordInternalList, readTableRequest);
@@ -389,7 +409,14 @@ public final class TransactionManager {
         if (Constants.DEBUG) {
             Slog.d(TAG, "Read query: " + request.getReadCommand());
         }
-        return getReadableDb().rawQuery(request.getReadCommand(), null);
+        final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
+        Cursor cursor =
+                StorageUtils.rawQuery(
+                        getReadableDb(), request.getReadCommand(), request.getBindArgs());
+        // Run the query now, so that its time isn't attributed to decoding the rows.
+        cursor.getCount();
+        ApiLatencyStats.addStageTimeSince(STAGE_SQL, startTimeNanos);
+        return cursor;
     }
 
     public long getLastRowIdFor(String tableName) {
@@ -422,9 +449,73 @@ public final class TransactionManager {
         return context.getDatabasePath(getReadableDb().getPath()).length();
     }
 
+    /**
+     * Refreshes the table and index statistics of the database, used by the query planner and by
+     * {@link #getEstimatedNumberOfEntriesInTables()}.
+     *
+     * <p>The number of rows scanned per index is bounded with {@code PRAGMA analysis_limit}, so the
+     * cost doesn't grow with the size of the tables and the collected row counts are estimates.
+     */
+    public void updateTableStatistics() {
+        runAsTransaction(
+                db -> {
+                    // The limit is per connection, so set it in the transaction running ANALYZE.
+                    DatabaseUtils.longForQuery(db, ANALYSIS_LIMIT_PRAGMA, null);
+                    db.execSQL("ANALYZE");
+                });
+    }
+
+    /**
+     * Returns the number of entries in each table, as estimated by the last {@link
+     * #updateTableStatistics()}. Empty tables, tables without an index and tables created after the
+     * last update are missing from the result.
+     */
+    @NonNull
+    public Map<String, Long> getEstimatedNumberOfEntriesInTables() {
+        Map<String, Long> numberOfEntries = new HashMap<>();
+        // The first integer of the stat of each index is the number of rows in its table.
+        try (Cursor cursor =
+                getReadableDb()
+                        .rawQuery(
+                                "SELECT tbl, MAX(CAST(stat AS INTEGER)) FROM sqlite_stat1"
+                                        + " GROUP BY tbl",
+                                null)) {
+            while (cursor.moveToNext()) {
+                numberOfEntries.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } catch (SQLiteException e) {
+            // sqlite_stat1 doesn't exist until the statistics are first collected.
+            Slog.w(TAG, "Unable to read table statistics", e);
+        }
+        return numberOfEntries;
+    }
+
+    /**
+     * Returns the number of bytes used by each table, including its indexes, or an empty map if
+     * the {@code dbstat} virtual table isn't available. Reads every page of the database.
+     */
+    @NonNull
+    public Map<String, Long> getSizeOfTables() {
+        Map<String, Long> sizes = new HashMap<>();
+        try (Cursor cursor =
+                getReadableDb()
+                        .rawQuery(
+                                "SELECT m.tbl_name, SUM(s.pgsize) FROM dbstat s"
+                                        + " JOIN sqlite_master m ON s.name = m.name"
+                                        + " GROUP BY m.tbl_name",
+                                null)) {
+            while (cursor.moveToNext()) {
+                sizes.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } catch (SQLiteException e) {
+            Slog.w(TAG, "Unable to read table sizes", e);
+        }
+        return sizes;
+    }
+
     public void delete(DeleteTableRequest request) {
         final SQLiteDatabase db = getWritableDb();
-        db.execSQL(request.getDeleteCommand());
+        db.execSQL(request.getDeleteCommand(), request.getBindArgs());
     }
 
     /**
@@ -433,6 +524,7 @@ public final class TransactionManager {
      * @param request an update request.
      */
     public void updateAll(@NonNull UpsertTransactionRequest request) {
+        final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
         final SQLiteDatabase db = getWritableDb();
         db.beginTransaction();
         try {
@@ -443,13 +535,12 @@ public final class TransactionManager {
                     request.getInsertRequestsForChangeLogs()) {
                 insertRecord(db, insertRequestsForChangeLog);
             }
-            for (UpsertTableRequest insertRequestsForAccessLogs : request.getAccessLogs()) {
-                insertRecord(db, insertRequestsForAccessLogs);
-            }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            ApiLatencyStats.addStageTimeSince(STAGE_SQL, startTimeNanos);
         }
+        request.addAccessLog();
     }
 
     /**
@@ -502,7 +593,7 @@ public final class TransactionManager {
         db.beginTransaction();
         try {
             for (DeleteTableRequest deleteTableRequest : deleteTableRequests) {
-                db.execSQL(deleteTableRequest.getDeleteCommand());
+                db.execSQL(deleteTableRequest.getDeleteCommand(), deleteTableRequest.getBindArgs());
             }
             db.setTransactionSuccessful();
         } finally {
@@ -510,7 +601,9 @@ public final class TransactionManager {
         }
     }
 
+    /** Closes the database of the previous user, after writing its buffered access logs. */
     public void onUserSwitching() {
+        AccessLogsHelper.getInstance().flushPendingAccessLogs();
         mHealthConnectDatabase.close();
     }
 
@@ -597,6 +690,28 @@ public final class TransactionManager {
         return mHealthConnectDatabase.getDatabasePath();
     }
 
+    /**
+     * Writes a point-in-time consistent copy of the database to {@code destination}, overwriting
+     * it if it exists.
+     *
+     * <p>The copy is made with {@code VACUUM INTO} on a separate read-only connection, so it only
+     * holds a read transaction on the database and writers on the primary connection can carry on
+     * meanwhile. The copy is also compacted, as free pages are not copied over.
+     */
+    public void snapshotDatabase(@NonNull File destination) throws SQLiteException {
+        requireNonNull(destination);
+        destination.delete();
+        try (SQLiteDatabase snapshotSource =
+                SQLiteDatabase.openDatabase(
+                        getDatabasePath(),
+                        new SQLiteDatabase.OpenParams.Builder()
+                                .addOpenFlags(SQLiteDatabase.OPEN_READONLY)
+                                .build())) {
+            snapshotSource.execSQL(
+                    "VACUUM INTO ?", new Object[] {destination.getAbsolutePath()});
+        }
+    }
+
     public void updateTable(UpsertTableRequest upsertTableRequest) {
         getWritableDb()
                 .update(
@@ -660,14 +775,32 @@ public final class TransactionManager {
      */
     private void populateInternalRecordsWithExtraData(
             List<RecordInternal<?>> records, ReadTableRequest request) {
+        RecordHelper<?> helper = request.getRecordHelper();
+        for (ReadTableRequest extraDataRequest :
+                helper.getExtraDataReadRequestsForRecords(records)) {
+            populateInternalRecordsWithExtraData(records, helper, extraDataRequest);
+        }
+
         if (request.getExtraReadRequests() == null) {
             return;
         }
         for (ReadTableRequest extraDataRequest : request.getExtraReadRequests()) {
-            Cursor cursorExtraData = read(extraDataRequest);
-            request.getRecordHelper()
-                    .updateInternalRecordsWithExtraFields(
-                            records, cursorExtraData, extraDataRequest.getTableName());
+            if (!extraDataRequest.restrictToParentRecords(records)) {
+                continue;
+            }
+            populateInternalRecordsWithExtraData(records, helper, extraDataRequest);
+        }
+    }
+
+    private void populateInternalRecordsWithExtraData(
+            List<RecordInternal<?>> records,
+            RecordHelper<?> helper,
+            ReadTableRequest extraDataRequest) {
+        try (Cursor cursorExtraData = read(extraDataRequest)) {
+            final long startTimeNanos = SystemClock.elapsedRealtimeNanos();
+            helper.updateInternalRecordsWithExtraFields(
+                    records, cursorExtraData, extraDataRequest.getTableName());
+            ApiLatencyStats.addStageTimeSince(STAGE_DECODE, startTimeNanos);
         }
     }
 
@@ -32,7 +32,11 @@ import android.health.connect.accesslog.AccessLog;
 import android.health.connect.accesslog.AccessLog.OperationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.util.Pair;
+import android.util.Slog;
 
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.DebouncedInternalTask;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
@@ -43,12 +47,20 @@ import com.android.server.healthconnect.storage.utils.OrderByClause;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
  * A helper class to fetch and store the access logs.
  *
+ * <p>Access logs are buffered in memory and written to the database in batches on the internal
+ * background executor, so that API calls don't each need a write transaction. Accesses by the same
+ * package, with the same operation and record types, which happen before the buffer is flushed
+ * are coalesced into a single access log with the time of the latest access.
+ *
  * @hide
  */
 public final class AccessLogsHelper extends DatabaseHelper {
@@ -59,10 +71,19 @@ public final class AccessLogsHelper extends DatabaseHelper {
     private static final String OPERATION_TYPE_COLUMN_NAME = "operation_type";
     private static final int NUM_COLS = 5;
     private static final int DEFAULT_ACCESS_LOG_TIME_PERIOD_IN_DAYS = 7;
+    private static final long FLUSH_DELAY_MILLIS = 10_000;
+    private static final String TAG = "HealthConnectAccessLogs";
 
     @SuppressWarnings("NullAway.Init")
     private static volatile AccessLogsHelper sAccessLogsHelper;
 
+    private final Object mPendingAccessLogsLock = new Object();
+    private final DebouncedInternalTask mFlushTask =
+            new DebouncedInternalTask(this::writePendingAccessLogs, FLUSH_DELAY_MILLIS);
+
+    @GuardedBy("mPendingAccessLogsLock")
+    private Map<PendingAccessLog, Long> mPendingAccessLogs = new LinkedHashMap<>();
+
     private AccessLogsHelper() {}
 
     @NonNull
@@ -74,6 +95,7 @@ public final class AccessLogsHelper extends DatabaseHelper {
      * @return AccessLog list
      */
     public List<AccessLog> queryAccessLogs() {
+        flushPendingAccessLogs();
         final ReadTableRequest readTableRequest = new ReadTableRequest(TABLE_NAME);
 
         List<AccessLog> accessLogsList = new ArrayList<>();
@@ -104,7 +126,7 @@ public final class AccessLogsHelper extends DatabaseHelper {
      * access log.
      */
     public long getLatestAccessLogTimeStamp() {
-
+        flushPendingAccessLogs();
         final ReadTableRequest readTableRequest =
                 new ReadTableRequest(TABLE_NAME)
                         .setOrderBy(
@@ -123,26 +145,78 @@ public final class AccessLogsHelper extends DatabaseHelper {
         return mostRecentAccessTime;
     }
 
-    /** Adds an entry in to the access logs table for every insert or read operation request */
+    /**
+     * Adds an entry in to the access logs table for every insert or read operation request. The
+     * entry is buffered and written to the table by a later {@link #flushPendingAccessLogs()}.
+     */
     public void addAccessLog(
             String packageName,
             @RecordTypeIdentifier.RecordType List<Integer> recordTypeList,
             @OperationType.OperationTypes int operationType) {
-        UpsertTableRequest request =
-                getUpsertTableRequest(packageName, recordTypeList, operationType);
-        TransactionManager.getInitialisedInstance().insert(request);
+        PendingAccessLog accessLog =
+                new PendingAccessLog(packageName, recordTypeList, operationType);
+        long accessTime = Instant.now().toEpochMilli();
+        synchronized (mPendingAccessLogsLock) {
+            mPendingAccessLogs.merge(accessLog, accessTime, Math::max);
+        }
+        mFlushTask.schedule();
+    }
+
+    /**
+     * Writes the buffered access logs to the access logs table. Called on the internal background
+     * executor after accesses are logged, before the access logs are read and when the access logs
+     * of the current user must be persisted, such as before its database is closed and on
+     * shutdown.
+     */
+    public void flushPendingAccessLogs() {
+        mFlushTask.runNow();
+    }
+
+    private void writePendingAccessLogs() {
+        Map<PendingAccessLog, Long> pendingAccessLogs;
+        synchronized (mPendingAccessLogsLock) {
+            if (mPendingAccessLogs.isEmpty()) {
+                return;
+            }
+            pendingAccessLogs = mPendingAccessLogs;
+            mPendingAccessLogs = new LinkedHashMap<>();
+        }
+
+        List<UpsertTableRequest> requests = new ArrayList<>(pendingAccessLogs.size());
+        pendingAccessLogs.forEach(
+                (accessLog, accessTime) ->
+                        requests.add(
+                                getUpsertTableRequest(
+                                        accessLog.mPackageName,
+                                        accessLog.mRecordTypes,
+                                        accessLog.mOperationType,
+                                        accessTime)));
+        try {
+            TransactionManager.getInitialisedInstance().insertAll(requests);
+        } catch (Exception e) {
+            // Don't rethrow, as failing to persist access logs shouldn't fail the caller.
+            Slog.e(TAG, "Failed to write " + requests.size() + " access logs", e);
+        }
+    }
+
+    /** Returns the number of access logs which aren't written to the access logs table yet. */
+    @VisibleForTesting
+    int getNumberOfPendingAccessLogs() {
+        synchronized (mPendingAccessLogsLock) {
+            return mPendingAccessLogs.size();
+        }
     }
 
     @NonNull
-    public UpsertTableRequest getUpsertTableRequest(
-            String packageName, List<Integer> recordTypeList, int operationType) {
+    private UpsertTableRequest getUpsertTableRequest(
+            String packageName, List<Integer> recordTypeList, int operationType, long accessTime) {
         ContentValues contentValues = new ContentValues();
         contentValues.put(
                 RECORD_TYPE_COLUMN_NAME,
                 recordTypeList.stream().map(String::valueOf).collect(Collectors.joining(",")));
         contentValues.put(
                 APP_ID_COLUMN_NAME, AppInfoHelper.getInstance().getAppInfoId(packageName));
-        contentValues.put(ACCESS_TIME_COLUMN_NAME, Instant.now().toEpochMilli());
+        contentValues.put(ACCESS_TIME_COLUMN_NAME, accessTime);
         contentValues.put(OPERATION_TYPE_COLUMN_NAME, operationType);
 
         return new UpsertTableRequest(TABLE_NAME, contentValues);
@@ -180,6 +254,14 @@ public final class AccessLogsHelper extends DatabaseHelper {
         return TABLE_NAME;
     }
 
+    /** Drops the buffered access logs, which belong to the database being cleared or switched. */
+    @Override
+    protected void clearCache() {
+        synchronized (mPendingAccessLogsLock) {
+            mPendingAccessLogs = new LinkedHashMap<>();
+        }
+    }
+
     public static synchronized AccessLogsHelper getInstance() {
         if (sAccessLogsHelper == null) {
             sAccessLogsHelper = new AccessLogsHelper();
@@ -187,4 +269,32 @@ public final class AccessLogsHelper extends DatabaseHelper {
 
         return sAccessLogsHelper;
     }
+
+    /** An access log waiting to be written, without its access time. */
+    private static final class PendingAccessLog {
+        private final String mPackageName;
+        private final List<Integer> mRecordTypes;
+        private final int mOperationType;
+
+        PendingAccessLog(String packageName, List<Integer> recordTypes, int operationType) {
+            mPackageName = packageName;
+            mRecordTypes = List.copyOf(recordTypes);
+            mOperationType = operationType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PendingAccessLog)) return false;
+            PendingAccessLog that = (PendingAccessLog) o;
+            return mOperationType == that.mOperationType
+                    && mPackageName.equals(that.mPackageName)
+                    && mRecordTypes.equals(that.mRecordTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mPackageName, mRecordTypes, mOperationType);
+        }
+    }
 }
@@ -224,7 +224,11 @@ public final class ActivityDateHelper extends DatabaseHelper {
     /** Creates UpsertTableRequest to insert into activity_date_table table from recordInternal. */
     public UpsertTableRequest getUpsertTableRequest(RecordInternal<?> recordInternal) {
         return getUpsertTableRequest(
-                recordInternal.getRecordType(),
-                ChronoUnit.DAYS.between(LocalDate.EPOCH, recordInternal.getLocalDate()));
+                recordInternal.getRecordType(), getEpochDays(recordInternal));
+    }
+
+    /** Returns the epoch day under which the activity date of {@code recordInternal} is kept. */
+    public long getEpochDays(@NonNull RecordInternal<?> recordInternal) {
+        return ChronoUnit.DAYS.between(LocalDate.EPOCH, recordInternal.getLocalDate());
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import android.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable priority order of the apps of a {@link android.health.connect.HealthDataCategory}, as
+ * kept by {@link HealthDataCategoryPriorityHelper}.
+ *
+ * <p>The version of a snapshot changes whenever the priority order of any category changes, so it
+ * can be used as part of a cache key for values derived from priorities.
+ *
+ * @hide
+ */
+public final class AppIdPrioritySnapshot {
+    /** Priority of apps missing from the priority order. */
+    public static final int NO_PRIORITY = Integer.MIN_VALUE;
+
+    private final long mVersion;
+    private final List<Long> mAppIdPriorityList;
+    // App ids in ascending order, and the priority of each of them.
+    private final long[] mSortedAppIds;
+    private final int[] mPriorities;
+
+    AppIdPrioritySnapshot(long version, @NonNull List<Long> appIdPriorityList) {
+        mVersion = version;
+        mAppIdPriorityList = List.copyOf(appIdPriorityList);
+
+        int size = mAppIdPriorityList.size();
+        mSortedAppIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            mSortedAppIds[i] = mAppIdPriorityList.get(i);
+        }
+        Arrays.sort(mSortedAppIds);
+        mPriorities = new int[size];
+        for (int i = 0; i < size; i++) {
+            // The first app gets the highest priority.
+            mPriorities[Arrays.binarySearch(mSortedAppIds, mAppIdPriorityList.get(i))] = size - i;
+        }
+    }
+
+    /** Returns a snapshot of {@code appIdPriorityList} not kept by any helper, with version 0. */
+    @NonNull
+    public static AppIdPrioritySnapshot of(@NonNull List<Long> appIdPriorityList) {
+        return new AppIdPrioritySnapshot(/* version= */ 0, appIdPriorityList);
+    }
+
+    /** Returns the version of the priority order this snapshot was taken from. */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /** Returns the app ids in the order of their priority, highest first. */
+    @NonNull
+    public List<Long> getAppIdPriorityList() {
+        return mAppIdPriorityList;
+    }
+
+    /**
+     * Returns the priority of {@code appId}, higher for apps with higher priority, or {@link
+     * #NO_PRIORITY} if the app isn't in the priority order.
+     */
+    public int getPriority(long appId) {
+        int index = Arrays.binarySearch(mSortedAppIds, appId);
+        return index >= 0 ? mPriorities[index] : NO_PRIORITY;
+    }
+
+    @Override
+    public String toString() {
+        return "v" + mVersion + " " + mAppIdPriorityList;
+    }
+}
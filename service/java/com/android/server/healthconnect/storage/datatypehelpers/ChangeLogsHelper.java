@@ -32,13 +32,16 @@ import static com.android.server.healthconnect.storage.utils.WhereClauses.Logica
 import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.accesslog.AccessLog.OperationType;
 import android.health.connect.changelog.ChangeLogsRequest;
 import android.health.connect.changelog.ChangeLogsResponse.DeletedLog;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Pair;
 
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
@@ -54,6 +57,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -98,10 +102,13 @@ public final class ChangeLogsHelper extends DatabaseHelper {
         return TABLE_NAME;
     }
 
-    /** Returns change logs post the time when {@code changeLogTokenRequest} was generated */
-    public ChangeLogsResponse getChangeLogs(
-            ChangeLogsRequestHelper.TokenRequest changeLogTokenRequest,
-            ChangeLogsRequest changeLogsRequest) {
+    /**
+     * Returns the request to read a page of {@code pageSize} change logs post the time when {@code
+     * changeLogTokenRequest} was generated, plus one extra change log to tell if there are more.
+     */
+    @VisibleForTesting
+    ReadTableRequest getChangeLogsReadRequest(
+            ChangeLogsRequestHelper.TokenRequest changeLogTokenRequest, int pageSize) {
         long token = changeLogTokenRequest.getRowIdChangeLogs();
         WhereClauses whereClause =
                 new WhereClauses(AND)
@@ -121,9 +128,16 @@ public final class ChangeLogsHelper extends DatabaseHelper {
         // We set limit size to requested pageSize plus extra 1 record so that if number of records
         // queried is more than pageSize we know there are more records available to return for the
         // next read.
+        return new ReadTableRequest(TABLE_NAME).setWhereClause(whereClause).setLimit(pageSize + 1);
+    }
+
+    /** Returns change logs post the time when {@code changeLogTokenRequest} was generated */
+    public ChangeLogsResponse getChangeLogs(
+            ChangeLogsRequestHelper.TokenRequest changeLogTokenRequest,
+            ChangeLogsRequest changeLogsRequest) {
         int pageSize = changeLogsRequest.getPageSize();
         final ReadTableRequest readTableRequest =
-                new ReadTableRequest(TABLE_NAME).setWhereClause(whereClause).setLimit(pageSize + 1);
+                getChangeLogsReadRequest(changeLogTokenRequest, pageSize);
 
         Map<Integer, ChangeLogs> operationToChangeLogMap = new ArrayMap<>();
         TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
@@ -154,6 +168,66 @@ public final class ChangeLogsHelper extends DatabaseHelper {
         return TransactionManager.getInitialisedInstance().getLastRowIdFor(TABLE_NAME);
     }
 
+    /**
+     * Returns the UUIDs of all the records upserted or deleted by the change logs with a row id
+     * greater than {@code rowId}, grouped by record type.
+     *
+     * <p>The change logs table is read from {@code db} under the schema {@code schemaName}, so this
+     * can be used on attached databases as well.
+     */
+    @NonNull
+    public static Map<Integer, Set<UUID>> getUuidsChangedAfter(
+            @NonNull SQLiteDatabase db, @NonNull String schemaName, long rowId) {
+        Map<Integer, Set<UUID>> uuidsByRecordType = new ArrayMap<>();
+        String query =
+                "SELECT "
+                        + RECORD_TYPE_COLUMN_NAME
+                        + ", "
+                        + UUIDS_COLUMN_NAME
+                        + " FROM "
+                        + schemaName
+                        + "."
+                        + TABLE_NAME
+                        + " WHERE "
+                        + PRIMARY_COLUMN_NAME
+                        + " > "
+                        + rowId;
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            while (cursor.moveToNext()) {
+                uuidsByRecordType
+                        .computeIfAbsent(
+                                getCursorInt(cursor, RECORD_TYPE_COLUMN_NAME),
+                                recordType -> new ArraySet<>())
+                        .addAll(StorageUtils.getCursorUUIDList(cursor, UUIDS_COLUMN_NAME));
+            }
+        }
+        return uuidsByRecordType;
+    }
+
+    /**
+     * Returns true if the change logs in {@code schemaName} still contain every entry after {@code
+     * rowId}, i.e. none of them has been removed by auto delete.
+     */
+    public static boolean hasAllChangeLogsAfter(
+            @NonNull SQLiteDatabase db, @NonNull String schemaName, long rowId) {
+        String query =
+                "SELECT MIN("
+                        + PRIMARY_COLUMN_NAME
+                        + ") FROM "
+                        + schemaName
+                        + "."
+                        + TABLE_NAME
+                        + " WHERE "
+                        + PRIMARY_COLUMN_NAME
+                        + " > "
+                        + rowId;
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            // Row ids are AUTOINCREMENT, so a gap right after rowId means that entries were
+            // deleted. An empty result means there were no changes at all.
+            return !cursor.moveToFirst() || cursor.isNull(0) || cursor.getLong(0) == rowId + 1;
+        }
+    }
+
     @SuppressWarnings("NullAway")
     private int addChangeLogs(Cursor cursor, Map<Integer, ChangeLogs> changeLogs) {
         @RecordTypeIdentifier.RecordType
@@ -22,10 +22,8 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
+import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.health.connect.AggregateResult;
@@ -41,9 +39,7 @@ import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for CyclingPedalingCadenceRecord.
@@ -86,31 +82,26 @@ public class CyclingPedalingCadenceRecordHelper
     @Override
     void populateSpecificValues(
             @NonNull Cursor seriesTableCursor, CyclingPedalingCadenceRecordInternal record) {
-        HashSet<CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample>
-                cyclingPedalingCadenceRecordSampleSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
-        do {
-            cyclingPedalingCadenceRecordSampleSet.add(
-                    new CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample(
-                            getCursorDouble(seriesTableCursor, REVOLUTIONS_PER_MINUTE_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
-        } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
-        // In case we hit another record, move the cursor back to read next record in outer
-        // RecordHelper#getInternalRecords loop.
-        seriesTableCursor.moveToPrevious();
-        record.setSamples(cyclingPedalingCadenceRecordSampleSet);
+        int sampleCount = getNumberOfSamples(seriesTableCursor);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(REVOLUTIONS_PER_MINUTE_COLUMN_NAME);
+        long[] epochMillis = new long[sampleCount];
+        double[] revolutionsPerMinute = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            if (i > 0) {
+                seriesTableCursor.moveToNext();
+            }
+            epochMillis[i] = seriesTableCursor.getLong(epochMillisIndex);
+            revolutionsPerMinute[i] = seriesTableCursor.getDouble(valueIndex);
+        }
+        record.setSamples(epochMillis, revolutionsPerMinute);
     }
 
     @Override
     void populateSampleTo(
-            ContentValues contentValues,
-            CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample
-                    cyclingPedalingCadenceRecord) {
-        contentValues.put(
-                REVOLUTIONS_PER_MINUTE_COLUMN_NAME,
-                cyclingPedalingCadenceRecord.getRevolutionsPerMinute());
-        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, cyclingPedalingCadenceRecord.getEpochMillis());
+            ContentValues contentValues, CyclingPedalingCadenceRecordInternal record, int index) {
+        contentValues.put(REVOLUTIONS_PER_MINUTE_COLUMN_NAME, record.getSampleValues()[index]);
+        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, record.getSampleTimes()[index]);
     }
 
     @SuppressWarnings("NullAway")
@@ -16,14 +16,21 @@
 
 package com.android.server.healthconnect.storage.datatypehelpers;
 
+import android.annotation.NonNull;
 import android.content.Context;
 
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 
+import java.util.Map;
+import java.util.function.Predicate;
+
 /**
  * Helper class to collect Health Connect database stats for logging.
  *
+ * <p>Row counts are read from the table statistics collected by {@link
+ * TransactionManager#updateTableStatistics()}, so collecting them doesn't scan the tables.
+ *
  * @hide
  */
 public class DatabaseStatsCollector {
@@ -36,53 +43,64 @@ public class DatabaseStatsCollector {
 
     /** Get the number of interval record entries in Health Connect database. */
     public static long getNumberOfIntervalRecordRows() {
-        final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
-        long count = 0L;
-        for (RecordHelper<?> recordHelper :
-                RecordHelperProvider.getInstance().getRecordHelpers().values()) {
-            if (recordHelper instanceof IntervalRecordHelper
-                    && !(recordHelper instanceof SeriesRecordHelper)) {
-                count +=
-                        transactionManager.getNumberOfEntriesInTheTable(
-                                recordHelper.getMainTableName());
-            }
-        }
-        return count;
+        return getNumberOfRows(
+                recordHelper ->
+                        recordHelper instanceof IntervalRecordHelper
+                                && !(recordHelper instanceof SeriesRecordHelper));
     }
 
     /** Get the number of series record entries in Health Connect database. */
     public static long getNumberOfSeriesRecordRows() {
-        final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
-        long count = 0L;
-        for (RecordHelper<?> recordHelper :
-                RecordHelperProvider.getInstance().getRecordHelpers().values()) {
-            if (recordHelper instanceof SeriesRecordHelper) {
-                count +=
-                        transactionManager.getNumberOfEntriesInTheTable(
-                                recordHelper.getMainTableName());
-            }
-        }
-        return count;
+        return getNumberOfRows(recordHelper -> recordHelper instanceof SeriesRecordHelper);
     }
 
     /** Get the number of instant record entries in Health Connect database. */
     public static long getNumberOfInstantRecordRows() {
+        return getNumberOfRows(recordHelper -> recordHelper instanceof InstantRecordHelper);
+    }
+
+    /** Get the number of change log entries in Health Connect database. */
+    public static long getNumberOfChangeLogs() {
         final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
+        return getNumberOfRows(
+                transactionManager,
+                transactionManager.getEstimatedNumberOfEntriesInTables(),
+                ChangeLogsHelper.TABLE_NAME);
+    }
+
+    /** Get the number of bytes used by each table of Health Connect database, with its indexes. */
+    @NonNull
+    public static Map<String, Long> getSizeOfTables() {
+        return TransactionManager.getInitialisedInstance().getSizeOfTables();
+    }
+
+    private static long getNumberOfRows(@NonNull Predicate<RecordHelper<?>> recordHelperFilter) {
+        final TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
+        final Map<String, Long> estimatedNumberOfRows =
+                transactionManager.getEstimatedNumberOfEntriesInTables();
         long count = 0L;
         for (RecordHelper<?> recordHelper :
                 RecordHelperProvider.getInstance().getRecordHelpers().values()) {
-            if (recordHelper instanceof InstantRecordHelper) {
+            if (recordHelperFilter.test(recordHelper)) {
                 count +=
-                        transactionManager.getNumberOfEntriesInTheTable(
+                        getNumberOfRows(
+                                transactionManager,
+                                estimatedNumberOfRows,
                                 recordHelper.getMainTableName());
             }
         }
         return count;
     }
 
-    /** Get the number of change log entries in Health Connect database. */
-    public static long getNumberOfChangeLogs() {
-        return TransactionManager.getInitialisedInstance()
-                .getNumberOfEntriesInTheTable(ChangeLogsHelper.TABLE_NAME);
+    /**
+     * Returns the number of rows in {@code tableName} from the table statistics, which are updated
+     * by the daily auto delete job, and only counts the rows of tables missing from them.
+     */
+    private static long getNumberOfRows(
+            @NonNull TransactionManager transactionManager,
+            @NonNull Map<String, Long> estimatedNumberOfRows,
+            @NonNull String tableName) {
+        Long count = estimatedNumberOfRows.get(tableName);
+        return count != null ? count : transactionManager.getNumberOfEntriesInTheTable(tableName);
     }
 }
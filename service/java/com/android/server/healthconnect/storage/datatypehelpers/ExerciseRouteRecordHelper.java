@@ -16,46 +16,79 @@
 
 package com.android.server.healthconnect.storage.datatypehelpers;
 
+import static android.health.connect.Constants.DEFAULT_DOUBLE;
+
 import static com.android.server.healthconnect.storage.datatypehelpers.SeriesRecordHelper.PARENT_KEY_COLUMN_NAME;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL_NOT_NULL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_NON_NULL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL_UNIQUE;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorBlob;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.internal.datatypes.ExerciseRouteInternal;
 import android.util.Pair;
+import android.util.Slog;
 
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
+import com.android.server.healthconnect.storage.request.DropTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-class ExerciseRouteRecordHelper {
-    static final String EXERCISE_ROUTE_RECORD_TABLE_NAME = "exercise_route_table";
+/**
+ * Stores the route of an exercise session as a single encoded blob per session.
+ *
+ * <p>Locations are encoded in order. Timestamps are stored as zigzag varint deltas from the
+ * previous location. Coordinates, accuracies and altitude are stored losslessly as varints of the
+ * XOR of their IEEE 754 bits with the previous value of the same field, which is small for nearby
+ * points. Accuracies and altitude are only stored when set.
+ */
+public final class ExerciseRouteRecordHelper {
+    private static final String TAG = "ExerciseRouteRecordHelper";
 
-    // Route locations columns names
-    static final String ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME = "timestamp_millis";
-    static final String ROUTE_LOCATION_LATITUDE_COLUMN_NAME = "latitude";
-    static final String ROUTE_LOCATION_LONGITUDE_COLUMN_NAME = "longitude";
-    static final String ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME = "vertical_accuracy";
-    static final String ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME = "horizontal_accuracy";
-    static final String ROUTE_LOCATION_ALTITUDE_COLUMN_NAME = "altitude";
+    static final String EXERCISE_ROUTE_RECORD_TABLE_NAME = "exercise_route_encoded_table";
+    static final String ENCODED_ROUTE_COLUMN_NAME = "encoded_route";
 
-    static ExerciseRouteInternal.LocationInternal populateLocation(@NonNull Cursor cursor) {
-        return new ExerciseRouteInternal.LocationInternal()
-                .setTime(getCursorLong(cursor, ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME))
-                .setLatitude(getCursorDouble(cursor, ROUTE_LOCATION_LATITUDE_COLUMN_NAME))
-                .setLongitude(getCursorDouble(cursor, ROUTE_LOCATION_LONGITUDE_COLUMN_NAME))
-                .setHorizontalAccuracy(
-                        getCursorDouble(cursor, ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME))
-                .setVerticalAccuracy(
-                        getCursorDouble(cursor, ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME))
-                .setAltitude(getCursorDouble(cursor, ROUTE_LOCATION_ALTITUDE_COLUMN_NAME));
+    // Table and columns which stored one row per route location, before routes were encoded. The
+    // rows are kept after the migration while the module can be rolled back, so that the rolled
+    // back module still finds the routes, see dropLegacyRouteTableIfExpired.
+    private static final String LEGACY_EXERCISE_ROUTE_TABLE_NAME = "exercise_route_table";
+    private static final String ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME = "timestamp_millis";
+    private static final String ROUTE_LOCATION_LATITUDE_COLUMN_NAME = "latitude";
+    private static final String ROUTE_LOCATION_LONGITUDE_COLUMN_NAME = "longitude";
+    private static final String ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME = "vertical_accuracy";
+    private static final String ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME =
+            "horizontal_accuracy";
+    private static final String ROUTE_LOCATION_ALTITUDE_COLUMN_NAME = "altitude";
+
+    // When the daily job first found the legacy table after the migration, in epoch millis.
+    private static final String LEGACY_ROUTE_TABLE_FOUND_TIME_KEY =
+            "legacy_exercise_route_table_found_time_key";
+    // Module updates can be rolled back for 14 days by default.
+    private static final Duration LEGACY_ROUTE_TABLE_RETENTION = Duration.ofDays(30);
+
+    private static final byte ENCODING_VERSION = 1;
+    private static final int FLAG_HAS_HORIZONTAL_ACCURACY = 1;
+    private static final int FLAG_HAS_VERTICAL_ACCURACY = 1 << 1;
+    private static final int FLAG_HAS_ALTITUDE = 1 << 2;
+
+    /** Returns the route stored in the current row of the {@code cursor}. */
+    static ExerciseRouteInternal populateRoute(@NonNull Cursor cursor) {
+        return decodeRoute(getCursorBlob(cursor, ENCODED_ROUTE_COLUMN_NAME));
     }
 
     static CreateTableRequest getCreateRouteTableRequest(String parentTableName) {
@@ -69,41 +102,254 @@ class ExerciseRouteRecordHelper {
     }
 
     static List<UpsertTableRequest> getRouteUpsertRequests(ExerciseRouteInternal route) {
-        List<UpsertTableRequest> requests = new ArrayList<>(route.getRouteLocations().size());
-        route.getRouteLocations()
-                .forEach(
-                        (sample -> {
-                            ContentValues contentValues = new ContentValues();
-                            populateRouteLocationTo(contentValues, sample);
-                            requests.add(
-                                    new UpsertTableRequest(
-                                                    EXERCISE_ROUTE_RECORD_TABLE_NAME, contentValues)
-                                            .setParentColumnForChildTables(PARENT_KEY_COLUMN_NAME));
-                        }));
-        return requests;
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ENCODED_ROUTE_COLUMN_NAME, encodeRoute(route.getRouteLocations()));
+        return Collections.singletonList(
+                new UpsertTableRequest(EXERCISE_ROUTE_RECORD_TABLE_NAME, contentValues)
+                        .setParentColumnForChildTables(PARENT_KEY_COLUMN_NAME));
+    }
+
+    /**
+     * Copies the routes stored one row per location to the encoded route table. Called on DB
+     * upgrade from a version which didn't encode routes.
+     *
+     * <p>The legacy rows are left in place. If the migration runs again, after a rollback and
+     * another upgrade, only the sessions without an encoded route are encoded again from the legacy
+     * rows, so routes written since the first upgrade are kept.
+     */
+    static void migrateToEncodedRoutes(@NonNull SQLiteDatabase db, String parentTableName) {
+        try {
+            HealthConnectDatabase.createTable(db, getCreateRouteTableRequest(parentTableName));
+        } catch (SQLException sqlException) {
+            // Ignore this means the table exists. This is possible via module rollback followed by
+            // an upgrade
+        }
+        // The legacy table is kept for another rollback window from this upgrade.
+        PreferenceHelper.getInstance().removeKey(db, LEGACY_ROUTE_TABLE_FOUND_TIME_KEY);
+
+        try (Cursor cursor =
+                db.rawQuery(
+                        "SELECT * FROM "
+                                + LEGACY_EXERCISE_ROUTE_TABLE_NAME
+                                + " WHERE "
+                                + PARENT_KEY_COLUMN_NAME
+                                + " NOT IN (SELECT "
+                                + PARENT_KEY_COLUMN_NAME
+                                + " FROM "
+                                + EXERCISE_ROUTE_RECORD_TABLE_NAME
+                                + ") ORDER BY "
+                                + PARENT_KEY_COLUMN_NAME
+                                + ", rowid",
+                        null)) {
+            List<ExerciseRouteInternal.LocationInternal> locations = new ArrayList<>();
+            long parentKey = 0;
+            while (cursor.moveToNext()) {
+                long currentParentKey = getCursorLong(cursor, PARENT_KEY_COLUMN_NAME);
+                if (!locations.isEmpty() && currentParentKey != parentKey) {
+                    insertEncodedRoute(db, parentKey, locations);
+                    locations.clear();
+                }
+                parentKey = currentParentKey;
+                locations.add(populateLegacyLocation(cursor));
+            }
+            if (!locations.isEmpty()) {
+                insertEncodedRoute(db, parentKey, locations);
+            }
+        } catch (SQLException sqlException) {
+            Slog.e(TAG, "Unable to read routes to encode", sqlException);
+        }
+    }
+
+    /**
+     * Drops the table which stored routes one row per location, once the module can no longer be
+     * rolled back to a version reading it. Called by the daily auto delete job, which starts the
+     * retention period the first time it finds the table.
+     */
+    public static void dropLegacyRouteTableIfExpired() {
+        PreferenceHelper preferenceHelper = PreferenceHelper.getInstance();
+        TransactionManager transactionManager = TransactionManager.getInitialisedInstance();
+        String foundTime = preferenceHelper.getPreference(LEGACY_ROUTE_TABLE_FOUND_TIME_KEY);
+        if (foundTime == null) {
+            if (hasLegacyRouteTable(transactionManager)) {
+                preferenceHelper.insertOrReplacePreference(
+                        LEGACY_ROUTE_TABLE_FOUND_TIME_KEY,
+                        String.valueOf(Instant.now().toEpochMilli()));
+            }
+            return;
+        }
+        Instant dropTime =
+                Instant.ofEpochMilli(Long.parseLong(foundTime)).plus(LEGACY_ROUTE_TABLE_RETENTION);
+        if (Instant.now().isBefore(dropTime)) {
+            return;
+        }
+        transactionManager.runAsTransaction(
+                db ->
+                        db.execSQL(
+                                new DropTableRequest(LEGACY_EXERCISE_ROUTE_TABLE_NAME)
+                                        .getDropTableCommand()));
+        preferenceHelper.removeKey(LEGACY_ROUTE_TABLE_FOUND_TIME_KEY);
+        Slog.i(TAG, "Dropped the legacy exercise route table");
+    }
+
+    /** Returns the encoded form of {@code locations}. */
+    @VisibleForTesting
+    static byte[] encodeRoute(@NonNull List<ExerciseRouteInternal.LocationInternal> locations) {
+        // Most values take less than their full 8 bytes, so this is usually enough.
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + locations.size() * 24);
+        out.write(ENCODING_VERSION);
+        writeVarint(out, locations.size());
+
+        long previousTime = 0;
+        long[] previousBits = new long[5];
+        for (ExerciseRouteInternal.LocationInternal location : locations) {
+            int flags = 0;
+            if (location.getHorizontalAccuracy() != DEFAULT_DOUBLE) {
+                flags |= FLAG_HAS_HORIZONTAL_ACCURACY;
+            }
+            if (location.getVerticalAccuracy() != DEFAULT_DOUBLE) {
+                flags |= FLAG_HAS_VERTICAL_ACCURACY;
+            }
+            if (location.getAltitude() != DEFAULT_DOUBLE) {
+                flags |= FLAG_HAS_ALTITUDE;
+            }
+            out.write(flags);
+
+            long timeDelta = location.getTime() - previousTime;
+            writeVarint(out, (timeDelta << 1) ^ (timeDelta >> 63));
+            previousTime = location.getTime();
+
+            writeXoredDouble(out, location.getLatitude(), previousBits, 0);
+            writeXoredDouble(out, location.getLongitude(), previousBits, 1);
+            if ((flags & FLAG_HAS_HORIZONTAL_ACCURACY) != 0) {
+                writeXoredDouble(out, location.getHorizontalAccuracy(), previousBits, 2);
+            }
+            if ((flags & FLAG_HAS_VERTICAL_ACCURACY) != 0) {
+                writeXoredDouble(out, location.getVerticalAccuracy(), previousBits, 3);
+            }
+            if ((flags & FLAG_HAS_ALTITUDE) != 0) {
+                writeXoredDouble(out, location.getAltitude(), previousBits, 4);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /** Returns the route encoded with {@link #encodeRoute}. */
+    @VisibleForTesting
+    static ExerciseRouteInternal decodeRoute(@NonNull byte[] encodedRoute) {
+        ByteBuffer in = ByteBuffer.wrap(encodedRoute);
+        byte version = in.get();
+        if (version != ENCODING_VERSION) {
+            throw new IllegalArgumentException("Unknown route encoding version: " + version);
+        }
+
+        int size = (int) readVarint(in);
+        List<ExerciseRouteInternal.LocationInternal> locations = new ArrayList<>(size);
+        long previousTime = 0;
+        long[] previousBits = new long[5];
+        for (int i = 0; i < size; i++) {
+            int flags = in.get();
+
+            long zigzagTimeDelta = readVarint(in);
+            previousTime += (zigzagTimeDelta >>> 1) ^ -(zigzagTimeDelta & 1);
+
+            ExerciseRouteInternal.LocationInternal location =
+                    new ExerciseRouteInternal.LocationInternal()
+                            .setTime(previousTime)
+                            .setLatitude(readXoredDouble(in, previousBits, 0))
+                            .setLongitude(readXoredDouble(in, previousBits, 1));
+            if ((flags & FLAG_HAS_HORIZONTAL_ACCURACY) != 0) {
+                location.setHorizontalAccuracy(readXoredDouble(in, previousBits, 2));
+            }
+            if ((flags & FLAG_HAS_VERTICAL_ACCURACY) != 0) {
+                location.setVerticalAccuracy(readXoredDouble(in, previousBits, 3));
+            }
+            if ((flags & FLAG_HAS_ALTITUDE) != 0) {
+                location.setAltitude(readXoredDouble(in, previousBits, 4));
+            }
+            locations.add(location);
+        }
+
+        return new ExerciseRouteInternal(locations);
+    }
+
+    private static void insertEncodedRoute(
+            @NonNull SQLiteDatabase db,
+            long parentKey,
+            @NonNull List<ExerciseRouteInternal.LocationInternal> locations) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(PARENT_KEY_COLUMN_NAME, parentKey);
+        contentValues.put(ENCODED_ROUTE_COLUMN_NAME, encodeRoute(locations));
+        db.insertWithOnConflict(
+                EXERCISE_ROUTE_RECORD_TABLE_NAME,
+                null,
+                contentValues,
+                SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    private static boolean hasLegacyRouteTable(@NonNull TransactionManager transactionManager) {
+        boolean[] hasTable = {false};
+        transactionManager.runAsTransaction(
+                db -> {
+                    try (Cursor cursor =
+                            db.rawQuery(
+                                    "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+                                    new String[] {LEGACY_EXERCISE_ROUTE_TABLE_NAME})) {
+                        hasTable[0] = cursor.moveToFirst();
+                    }
+                });
+        return hasTable[0];
+    }
+
+    private static ExerciseRouteInternal.LocationInternal populateLegacyLocation(
+            @NonNull Cursor cursor) {
+        return new ExerciseRouteInternal.LocationInternal()
+                .setTime(getCursorLong(cursor, ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME))
+                .setLatitude(getCursorDouble(cursor, ROUTE_LOCATION_LATITUDE_COLUMN_NAME))
+                .setLongitude(getCursorDouble(cursor, ROUTE_LOCATION_LONGITUDE_COLUMN_NAME))
+                .setHorizontalAccuracy(
+                        getCursorDouble(cursor, ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME))
+                .setVerticalAccuracy(
+                        getCursorDouble(cursor, ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME))
+                .setAltitude(getCursorDouble(cursor, ROUTE_LOCATION_ALTITUDE_COLUMN_NAME));
     }
 
     private static List<Pair<String, String>> getRouteTableColumnInfo() {
         List<Pair<String, String>> columnInfo = new ArrayList<>();
-        columnInfo.add(new Pair<>(PARENT_KEY_COLUMN_NAME, INTEGER_NOT_NULL));
-        columnInfo.add(new Pair<>(ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME, INTEGER_NOT_NULL));
-        columnInfo.add(new Pair<>(ROUTE_LOCATION_LONGITUDE_COLUMN_NAME, REAL_NOT_NULL));
-        columnInfo.add(new Pair<>(ROUTE_LOCATION_LATITUDE_COLUMN_NAME, REAL_NOT_NULL));
-        columnInfo.add(new Pair<>(ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME, REAL_NOT_NULL));
-        columnInfo.add(new Pair<>(ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME, REAL_NOT_NULL));
-        columnInfo.add(new Pair<>(ROUTE_LOCATION_ALTITUDE_COLUMN_NAME, REAL_NOT_NULL));
+        columnInfo.add(new Pair<>(PARENT_KEY_COLUMN_NAME, INTEGER_NOT_NULL_UNIQUE));
+        columnInfo.add(new Pair<>(ENCODED_ROUTE_COLUMN_NAME, BLOB_NON_NULL));
         return columnInfo;
     }
 
-    private static void populateRouteLocationTo(
-            ContentValues contentValues, ExerciseRouteInternal.LocationInternal location) {
-        contentValues.put(ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME, location.getTime());
-        contentValues.put(ROUTE_LOCATION_LONGITUDE_COLUMN_NAME, location.getLongitude());
-        contentValues.put(ROUTE_LOCATION_LATITUDE_COLUMN_NAME, location.getLatitude());
-        contentValues.put(
-                ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME, location.getHorizontalAccuracy());
-        contentValues.put(
-                ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME, location.getVerticalAccuracy());
-        contentValues.put(ROUTE_LOCATION_ALTITUDE_COLUMN_NAME, location.getAltitude());
+    private static void writeXoredDouble(
+            ByteArrayOutputStream out, double value, long[] previousBits, int field) {
+        long bits = Double.doubleToRawLongBits(value);
+        writeVarint(out, bits ^ previousBits[field]);
+        previousBits[field] = bits;
+    }
+
+    private static double readXoredDouble(ByteBuffer in, long[] previousBits, int field) {
+        previousBits[field] ^= readVarint(in);
+        return Double.longBitsToDouble(previousBits[field]);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
     }
 }
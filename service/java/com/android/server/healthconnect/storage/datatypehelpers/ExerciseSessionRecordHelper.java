@@ -22,6 +22,7 @@ import static android.health.connect.HealthPermissions.READ_EXERCISE_ROUTE;
 import static android.health.connect.HealthPermissions.WRITE_EXERCISE_ROUTE;
 import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.EXERCISE_SESSION_DURATION_TOTAL;
 
+import static com.android.server.healthconnect.storage.HealthConnectDatabase.DB_VERSION_ENCODED_EXERCISE_ROUTE;
 import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseLapRecordHelper.EXERCISE_LAPS_RECORD_TABLE_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseRouteRecordHelper.EXERCISE_ROUTE_RECORD_TABLE_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.ExerciseSegmentRecordHelper.EXERCISE_SEGMENT_RECORD_TABLE_NAME;
@@ -32,13 +33,12 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGE
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorString;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getIntegerAndConvertToBoolean;
-import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.HealthConnectException;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
 import android.health.connect.datatypes.AggregationType;
@@ -48,8 +48,8 @@ import android.health.connect.internal.datatypes.ExerciseSegmentInternal;
 import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.util.ArrayMap;
-import android.util.ArraySet;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import androidx.annotation.Nullable;
 
@@ -60,18 +60,15 @@ import com.android.server.healthconnect.storage.request.AggregateParams;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
-import com.android.server.healthconnect.storage.utils.StorageUtils;
-import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 /**
  * Helper class for ExerciseSessionRecord.
@@ -99,6 +96,14 @@ public final class ExerciseSessionRecordHelper
         super(RecordTypeIdentifier.RECORD_TYPE_EXERCISE_SESSION);
     }
 
+    @Override
+    public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+        super.onUpgrade(db, oldVersion, newVersion);
+        if (oldVersion < DB_VERSION_ENCODED_EXERCISE_ROUTE) {
+            ExerciseRouteRecordHelper.migrateToEncodedRoutes(db, getMainTableName());
+        }
+    }
+
     /** Returns the table name to be created corresponding to this helper */
     @Override
     String getMainTableName() {
@@ -108,33 +113,12 @@ public final class ExerciseSessionRecordHelper
     @Override
     void populateSpecificRecordValue(
             @NonNull Cursor cursor, @NonNull ExerciseSessionRecordInternal exerciseSessionRecord) {
-        UUID uuid = getCursorUUID(cursor, UUID_COLUMN_NAME);
         exerciseSessionRecord.setNotes(getCursorString(cursor, NOTES_COLUMN_NAME));
         exerciseSessionRecord.setExerciseType(getCursorInt(cursor, EXERCISE_TYPE_COLUMN_NAME));
         exerciseSessionRecord.setTitle(getCursorString(cursor, TITLE_COLUMN_NAME));
         exerciseSessionRecord.setHasRoute(
                 isExerciseRouteFeatureEnabled()
                         && getIntegerAndConvertToBoolean(cursor, HAS_ROUTE_COLUMN_NAME));
-
-        // The table might contain duplicates because of 2 left joins, use sets to remove them.
-        ArraySet<ExerciseLapInternal> lapsSet = new ArraySet<>();
-        ArraySet<ExerciseSegmentInternal> segmentsSet = new ArraySet<>();
-        do {
-            // Populate lap and segments from each row.
-            ExerciseLapRecordHelper.populateLapIfRecorded(cursor, lapsSet);
-            ExerciseSegmentRecordHelper.updateSetWithRecordedSegment(cursor, segmentsSet);
-        } while (cursor.moveToNext() && uuid.equals(getCursorUUID(cursor, UUID_COLUMN_NAME)));
-        // In case we hit another record, move the cursor back to read next record in outer
-        // RecordHelper#getInternalRecords loop.
-        cursor.moveToPrevious();
-
-        if (!lapsSet.isEmpty()) {
-            exerciseSessionRecord.setExerciseLaps(lapsSet.stream().toList());
-        }
-
-        if (!segmentsSet.isEmpty()) {
-            exerciseSessionRecord.setExerciseSegments(segmentsSet.stream().toList());
-        }
     }
 
     @SuppressWarnings("NullAway")
@@ -240,9 +224,11 @@ public final class ExerciseSessionRecordHelper
     }
 
     @Override
-    SqlJoin getJoinForReadRequest() {
-        return ExerciseLapRecordHelper.getJoinReadRequest(getMainTableName())
-                .attachJoin(ExerciseSegmentRecordHelper.getJoinReadRequest(getMainTableName()));
+    List<ReadTableRequest> getExtraDataReadRequests(
+            List<ExerciseSessionRecordInternal> internalRecords) {
+        return List.of(
+                getChildTableReadRequest(EXERCISE_LAPS_RECORD_TABLE_NAME, internalRecords),
+                getChildTableReadRequest(EXERCISE_SEGMENT_RECORD_TABLE_NAME, internalRecords));
     }
 
     @Override
@@ -251,17 +237,7 @@ public final class ExerciseSessionRecordHelper
             String packageName,
             long startDateAccess,
             Map<String, Boolean> extraPermsState) {
-        int routeAccessType = getExerciseRouteReadAccessType(packageName, extraPermsState);
-
-        if (routeAccessType == ROUTE_READ_ACCESS_TYPE_NONE) {
-            return Collections.emptyList();
-        }
-
-        boolean enforceSelfRead = routeAccessType == ROUTE_READ_ACCESS_TYPE_OWN;
-
-        WhereClauses sessionsWithAccessibleRouteClause =
-                getReadTableWhereClause(request, packageName, enforceSelfRead, startDateAccess);
-        return List.of(getRouteReadRequest(sessionsWithAccessibleRouteClause));
+        return getRouteReadRequests(packageName, extraPermsState);
     }
 
     @Override
@@ -318,25 +294,7 @@ public final class ExerciseSessionRecordHelper
             List<UUID> uuids,
             long startDateAccess,
             Map<String, Boolean> extraPermsState) {
-        int routeAccessType = getExerciseRouteReadAccessType(packageName, extraPermsState);
-
-        if (routeAccessType == ROUTE_READ_ACCESS_TYPE_NONE) {
-            return Collections.emptyList();
-        }
-
-        WhereClauses sessionsWithAccessibleRouteClause =
-                new WhereClauses(AND)
-                        .addWhereInClauseWithoutQuotes(
-                                UUID_COLUMN_NAME, StorageUtils.getListOfHexString(uuids))
-                        .addWhereLaterThanTimeClause(getStartTimeColumnName(), startDateAccess);
-
-        if (routeAccessType == ROUTE_READ_ACCESS_TYPE_OWN) {
-            long appId = AppInfoHelper.getInstance().getAppInfoId(packageName);
-            sessionsWithAccessibleRouteClause.addWhereInLongsClause(
-                    APP_INFO_ID_COLUMN_NAME, List.of(appId));
-        }
-
-        return List.of(getRouteReadRequest(sessionsWithAccessibleRouteClause));
+        return getRouteReadRequests(packageName, extraPermsState);
     }
 
     @Override
@@ -344,18 +302,42 @@ public final class ExerciseSessionRecordHelper
             List<ExerciseSessionRecordInternal> internalRecords,
             Cursor cursorExtraData,
             String tableName) {
-        // Collect rowId to Record mapping to understand which record update with route location.
-        Map<Integer, Integer> mapping = new HashMap<>(internalRecords.size());
-        for (int i = 0; i < internalRecords.size(); i++) {
-            mapping.put(internalRecords.get(i).getRowId(), i);
+        SparseArray<ExerciseSessionRecordInternal> recordsByRowId =
+                getRecordsByRowId(internalRecords);
+
+        if (EXERCISE_ROUTE_RECORD_TABLE_NAME.equals(tableName)) {
+            while (cursorExtraData.moveToNext()) {
+                ExerciseSessionRecordInternal record =
+                        recordsByRowId.get(getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME));
+                if (record != null) {
+                    record.setRoute(ExerciseRouteRecordHelper.populateRoute(cursorExtraData));
+                }
+            }
+            return;
         }
 
+        // Laps and segments are ordered by parent key, so the rows of a session are contiguous.
+        boolean isLapsTable = EXERCISE_LAPS_RECORD_TABLE_NAME.equals(tableName);
+        ExerciseSessionRecordInternal currentRecord = null;
+        List<ExerciseLapInternal> laps = new ArrayList<>();
+        List<ExerciseSegmentInternal> segments = new ArrayList<>();
         while (cursorExtraData.moveToNext()) {
             ExerciseSessionRecordInternal record =
-                    internalRecords.get(
-                            mapping.get(getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME)));
-            record.addRouteLocation(ExerciseRouteRecordHelper.populateLocation(cursorExtraData));
+                    recordsByRowId.get(getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME));
+            if (record != currentRecord) {
+                setLapsAndSegments(currentRecord, laps, segments);
+                currentRecord = record;
+                laps = new ArrayList<>();
+                segments = new ArrayList<>();
+            }
+
+            if (isLapsTable) {
+                laps.add(ExerciseLapRecordHelper.populateLap(cursorExtraData));
+            } else {
+                segments.add(ExerciseSegmentRecordHelper.populateSegment(cursorExtraData));
+            }
         }
+        setLapsAndSegments(currentRecord, laps, segments);
     }
 
     private boolean isExerciseRouteFeatureEnabled() {
@@ -407,17 +389,43 @@ public final class ExerciseSessionRecordHelper
         return numberOfRecordsWithExerciseRoutes;
     }
 
-    private ReadTableRequest getRouteReadRequest(WhereClauses clauseToFilterSessionIds) {
-        ReadTableRequest routeReadRequest = new ReadTableRequest(EXERCISE_ROUTE_RECORD_TABLE_NAME);
+    private static void setLapsAndSegments(
+            @Nullable ExerciseSessionRecordInternal record,
+            List<ExerciseLapInternal> laps,
+            List<ExerciseSegmentInternal> segments) {
+        if (record == null) {
+            return;
+        }
 
-        ReadTableRequest sessionsIdsRequest = new ReadTableRequest(getMainTableName());
-        sessionsIdsRequest.setColumnNames(List.of(PRIMARY_COLUMN_NAME));
-        sessionsIdsRequest.setWhereClause(clauseToFilterSessionIds);
+        if (!laps.isEmpty()) {
+            record.setExerciseLaps(laps);
+        }
 
-        WhereClauses inClause = new WhereClauses(AND);
-        inClause.addWhereInSQLRequestClause(PARENT_KEY_COLUMN_NAME, sessionsIdsRequest);
-        routeReadRequest.setWhereClause(inClause);
-        return routeReadRequest;
+        if (!segments.isEmpty()) {
+            record.setExerciseSegments(segments);
+        }
+    }
+
+    /**
+     * Returns a request to read the routes of the sessions on the current page which the calling
+     * app has access to. The sessions are matched once the page has been read, see {@link
+     * ReadTableRequest#restrictToParentRecords}.
+     */
+    private List<ReadTableRequest> getRouteReadRequests(
+            String packageName, Map<String, Boolean> extraPermsState) {
+        int routeAccessType = getExerciseRouteReadAccessType(packageName, extraPermsState);
+
+        if (routeAccessType == ROUTE_READ_ACCESS_TYPE_NONE) {
+            return Collections.emptyList();
+        }
+
+        Predicate<RecordInternal<?>> hasRouteAccess =
+                routeAccessType == ROUTE_READ_ACCESS_TYPE_ALL
+                        ? record -> true
+                        : record -> packageName.equals(record.getPackageName());
+        return List.of(
+                new ReadTableRequest(EXERCISE_ROUTE_RECORD_TABLE_NAME)
+                        .setParentRecordFilter(PARENT_KEY_COLUMN_NAME, hasRouteAccess));
     }
 
     private int getExerciseRouteReadAccessType(
@@ -27,6 +27,7 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMAR
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NOT_NULL;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageInfo;
@@ -38,6 +39,7 @@ import android.os.UserHandle;
 import android.util.Pair;
 import android.util.Slog;
 
+import com.android.internal.annotations.GuardedBy;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
 import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
@@ -86,6 +88,17 @@ public class HealthDataCategoryPriorityHelper extends DatabaseHelper {
      */
     private volatile ConcurrentHashMap<Integer, List<Long>> mHealthDataCategoryToAppIdPriorityMap;
 
+    /**
+     * map of {@link HealthDataCategory} to the snapshot of its priority order, taken on first use
+     * after it changed
+     */
+    private final ConcurrentHashMap<Integer, AppIdPrioritySnapshot> mPrioritySnapshots =
+            new ConcurrentHashMap<>();
+
+    // Incremented whenever the priority order of any category changes.
+    @GuardedBy("this")
+    private long mPriorityVersion;
+
     @SuppressWarnings("NullAway.Init")
     private HealthDataCategoryPriorityHelper() {}
 
@@ -234,6 +247,28 @@ public class HealthDataCategoryPriorityHelper extends DatabaseHelper {
         return packageIds;
     }
 
+    /**
+     * Returns the snapshot of the priority order of app ids for the input {@link
+     * HealthDataCategory}. The snapshot is only rebuilt after the priority order changed.
+     */
+    @NonNull
+    public AppIdPrioritySnapshot getAppIdPrioritySnapshot(@HealthDataCategory.Type int type) {
+        AppIdPrioritySnapshot snapshot = mPrioritySnapshots.get(type);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return takeAppIdPrioritySnapshot(type);
+    }
+
+    // Synchronized with the changes of the priority order, so that the snapshot gets the version of
+    // the order it is taken from.
+    private synchronized AppIdPrioritySnapshot takeAppIdPrioritySnapshot(
+            @HealthDataCategory.Type int type) {
+        return mPrioritySnapshots.computeIfAbsent(
+                type,
+                unused -> new AppIdPrioritySnapshot(mPriorityVersion, getAppIdPriorityOrder(type)));
+    }
+
     /**
      * Sets a new priority order for the given category, and allows adding and removing packages
      * from the priority list.
@@ -295,6 +330,7 @@ public class HealthDataCategoryPriorityHelper extends DatabaseHelper {
     @Override
     public synchronized void clearCache() {
         mHealthDataCategoryToAppIdPriorityMap = null;
+        onPriorityOrderChanged(/* dataCategory= */ null);
     }
 
     @Override
@@ -345,6 +381,7 @@ public class HealthDataCategoryPriorityHelper extends DatabaseHelper {
         try {
             TransactionManager.getInitialisedInstance().insertOrReplace(request);
             getHealthDataCategoryToAppIdPriorityMap().put(dataCategory, newList);
+            onPriorityOrderChanged(dataCategory);
         } catch (Exception e) {
             Slog.e(TAG, "Priority update failed", e);
             throw e;
@@ -356,12 +393,26 @@ public class HealthDataCategoryPriorityHelper extends DatabaseHelper {
         try {
             TransactionManager.getInitialisedInstance().delete(request);
             getHealthDataCategoryToAppIdPriorityMap().remove(dataCategory);
+            onPriorityOrderChanged(dataCategory);
         } catch (Exception e) {
             Slog.e(TAG, "Delete from priority DB failed: ", e);
             throw e;
         }
     }
 
+    /**
+     * Drops the snapshot of {@code dataCategory}, or of all categories if null, to be taken again
+     * with a new version.
+     */
+    private synchronized void onPriorityOrderChanged(@Nullable Integer dataCategory) {
+        mPriorityVersion++;
+        if (dataCategory == null) {
+            mPrioritySnapshots.clear();
+        } else {
+            mPrioritySnapshots.remove(dataCategory);
+        }
+    }
+
     private ContentValues getContentValuesFor(
             @HealthDataCategory.Type int dataCategory, List<Long> priorityList) {
         ContentValues contentValues = new ContentValues();
@@ -18,11 +18,16 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.request.UpsertTableRequest.TYPE_STRING;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.MAX_BIND_ARGS_PER_QUERY;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NOT_NULL_UNIQUE;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.ArraySet;
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -32,8 +37,10 @@ import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A class to help with the DB transaction for storing migration entity identifiers, user for
@@ -92,6 +99,64 @@ public final class MigrationEntityHelper extends DatabaseHelper {
         return new UpsertTableRequest(TABLE_NAME, values, UNIQUE_COLUMN_INFO);
     }
 
+    /**
+     * Returns the subset of the provided {@code entityIds} which are already stored in the table.
+     * The lookup is done with a bounded number of queries regardless of the number of ids.
+     */
+    @NonNull
+    public Set<String> getExistingEntityIds(
+            @NonNull SQLiteDatabase db, @NonNull Collection<String> entityIds) {
+        final Set<String> existingEntityIds = new ArraySet<>();
+        final List<String> ids = new ArrayList<>(entityIds);
+
+        for (int start = 0; start < ids.size(); start += MAX_BIND_ARGS_PER_QUERY) {
+            final List<String> chunk =
+                    ids.subList(start, Math.min(ids.size(), start + MAX_BIND_ARGS_PER_QUERY));
+            final String query =
+                    "SELECT "
+                            + COLUMN_ENTITY_ID
+                            + " FROM "
+                            + TABLE_NAME
+                            + " WHERE "
+                            + COLUMN_ENTITY_ID
+                            + " IN ("
+                            + String.join(",", Collections.nCopies(chunk.size(), "?"))
+                            + ")";
+            try (Cursor cursor = db.rawQuery(query, chunk.toArray(new String[0]))) {
+                while (cursor.moveToNext()) {
+                    existingEntityIds.add(cursor.getString(0));
+                }
+            }
+        }
+
+        return existingEntityIds;
+    }
+
+    /**
+     * Inserts the provided {@code entityIds}, ignoring the ones which already exist. Reuses a single
+     * compiled statement for all rows, must be called inside a DB transaction.
+     */
+    public void insertEntityIds(
+            @NonNull SQLiteDatabase db, @NonNull Collection<String> entityIds) {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+
+        try (SQLiteStatement statement =
+                db.compileStatement(
+                        "INSERT OR IGNORE INTO "
+                                + TABLE_NAME
+                                + " ("
+                                + COLUMN_ENTITY_ID
+                                + ") VALUES (?)")) {
+            for (String entityId : entityIds) {
+                statement.bindString(1, entityId);
+                statement.executeInsert();
+                statement.clearBindings();
+            }
+        }
+    }
+
     /** Returns a shared instance of {@link MigrationEntityHelper}. */
     @NonNull
     public static MigrationEntityHelper getInstance() {
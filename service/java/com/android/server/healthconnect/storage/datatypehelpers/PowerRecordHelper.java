@@ -22,9 +22,6 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
@@ -40,9 +37,7 @@ import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for PowerRecord.
@@ -118,25 +113,24 @@ public class PowerRecordHelper
     /** Populates the {@code record} with values specific to datatype */
     @Override
     void populateSpecificValues(@NonNull Cursor seriesTableCursor, PowerRecordInternal record) {
-        HashSet<PowerRecordInternal.PowerRecordSample> powerRecordSampleSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
-        do {
-            powerRecordSampleSet.add(
-                    new PowerRecordInternal.PowerRecordSample(
-                            getCursorDouble(seriesTableCursor, POWER_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
-        } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
-        // In case we hit another record, move the cursor back to read next record in outer
-        // RecordHelper#getInternalRecords loop.
-        seriesTableCursor.moveToPrevious();
-        record.setSamples(powerRecordSampleSet);
+        int sampleCount = getNumberOfSamples(seriesTableCursor);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(POWER_COLUMN_NAME);
+        long[] epochMillis = new long[sampleCount];
+        double[] watts = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            if (i > 0) {
+                seriesTableCursor.moveToNext();
+            }
+            epochMillis[i] = seriesTableCursor.getLong(epochMillisIndex);
+            watts[i] = seriesTableCursor.getDouble(valueIndex);
+        }
+        record.setSamples(epochMillis, watts);
     }
 
     @Override
-    void populateSampleTo(
-            ContentValues contentValues, PowerRecordInternal.PowerRecordSample powerRecord) {
-        contentValues.put(POWER_COLUMN_NAME, powerRecord.getPower());
-        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, powerRecord.getEpochMillis());
+    void populateSampleTo(ContentValues contentValues, PowerRecordInternal record, int index) {
+        contentValues.put(POWER_COLUMN_NAME, record.getSampleValues()[index]);
+        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, record.getSampleTimes()[index]);
     }
 }
@@ -24,6 +24,7 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.util.Pair;
 
 import com.android.server.healthconnect.storage.TransactionManager;
@@ -77,6 +78,17 @@ public class PreferenceHelper extends DatabaseHelper {
         getPreferences().remove(id);
     }
 
+    /**
+     * Removes key entry from the table of {@code db}, for use while the database is being opened,
+     * when it can't be accessed through {@link TransactionManager} yet.
+     */
+    public synchronized void removeKey(@NonNull SQLiteDatabase db, String id) {
+        db.delete(TABLE_NAME, KEY_COLUMN_NAME + " = ?", new String[] {id});
+        if (mPreferences != null) {
+            mPreferences.remove(id);
+        }
+    }
+
     /** Inserts multiple preferences together in a transaction */
     public synchronized void insertOrReplacePreferencesTransaction(
             HashMap<String, String> keyValues) {
@@ -20,12 +20,14 @@ import static android.health.connect.Constants.DEFAULT_INT;
 import static android.health.connect.Constants.DEFAULT_LONG;
 import static android.health.connect.Constants.MAXIMUM_ALLOWED_CURSOR_COUNT;
 import static android.health.connect.Constants.MAXIMUM_PAGE_SIZE;
+import static android.health.connect.Constants.PARENT_KEY;
 
 import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.END_TIME_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.request.ReadTransactionRequest.TYPE_NOT_PRESENT_PACKAGE_NAME;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_UNIQUE_NON_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_UNIQUE_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.MAX_BIND_ARGS_PER_QUERY;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY_AUTOINCREMENT;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
@@ -42,6 +44,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.AggregateResult;
+import android.health.connect.RecordIdFilter;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
 import android.health.connect.aidl.RecordIdFiltersParcel;
 import android.health.connect.datatypes.AggregationType;
@@ -51,6 +54,7 @@ import android.health.connect.internal.datatypes.utils.RecordMapper;
 import android.os.Trace;
 import android.util.ArrayMap;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import androidx.annotation.Nullable;
 
@@ -67,6 +71,8 @@ import com.android.server.healthconnect.storage.utils.SqlJoin;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
+import com.google.common.collect.Lists;
+
 import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -222,17 +228,22 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
      */
     @NonNull
     public final CreateTableRequest getCreateTableRequest() {
-        return new CreateTableRequest(getMainTableName(), getColumnInfo())
-                .addForeignKey(
-                        DeviceInfoHelper.getInstance().getTableName(),
-                        Collections.singletonList(DEVICE_INFO_ID_COLUMN_NAME),
-                        Collections.singletonList(PRIMARY_COLUMN_NAME))
-                .addForeignKey(
-                        AppInfoHelper.TABLE_NAME,
-                        Collections.singletonList(APP_INFO_ID_COLUMN_NAME),
-                        Collections.singletonList(PRIMARY_COLUMN_NAME))
-                .setChildTableRequests(getChildTableCreateRequests())
-                .setGeneratedColumnInfo(getGeneratedColumnInfo());
+        CreateTableRequest request =
+                new CreateTableRequest(getMainTableName(), getColumnInfo())
+                        .addForeignKey(
+                                DeviceInfoHelper.getInstance().getTableName(),
+                                Collections.singletonList(DEVICE_INFO_ID_COLUMN_NAME),
+                                Collections.singletonList(PRIMARY_COLUMN_NAME))
+                        .addForeignKey(
+                                AppInfoHelper.TABLE_NAME,
+                                Collections.singletonList(APP_INFO_ID_COLUMN_NAME),
+                                Collections.singletonList(PRIMARY_COLUMN_NAME))
+                        .setChildTableRequests(getChildTableCreateRequests())
+                        .setGeneratedColumnInfo(getGeneratedColumnInfo());
+        for (String timeColumnName : getIndexedTimeColumnNames()) {
+            request.createIndexOn(timeColumnName);
+        }
+        return request;
     }
 
     /** Gets {@link UpsertTableRequest} from {@code recordInternal}. */
@@ -336,11 +347,71 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
             boolean enforceSelfRead,
             long startDateAccess,
             Map<String, Boolean> extraPermsState) {
+        RecordIdFiltersParcel recordIdFiltersParcel = request.getRecordIdFiltersParcel();
+        return getReadTableRequest(
+                request,
+                recordIdFiltersParcel == null ? null : recordIdFiltersParcel.getRecordIdFilters(),
+                callingPackageName,
+                enforceSelfRead,
+                startDateAccess,
+                extraPermsState);
+    }
+
+    /**
+     * Returns the ReadSingleTableRequests for {@code request} and package name {@code packageName}.
+     * The ids of a read by ids are split, so that each query binds at most {@link
+     * StorageUtils#MAX_BIND_ARGS_PER_QUERY} of them.
+     */
+    public List<ReadTableRequest> getReadTableRequests(
+            ReadRecordsRequestParcel request,
+            String callingPackageName,
+            boolean enforceSelfRead,
+            long startDateAccess,
+            Map<String, Boolean> extraPermsState) {
+        RecordIdFiltersParcel recordIdFiltersParcel = request.getRecordIdFiltersParcel();
+        if (recordIdFiltersParcel == null
+                || recordIdFiltersParcel.getRecordIdFilters().size() <= MAX_BIND_ARGS_PER_QUERY) {
+            return Collections.singletonList(
+                    getReadTableRequest(
+                            request,
+                            callingPackageName,
+                            enforceSelfRead,
+                            startDateAccess,
+                            extraPermsState));
+        }
+        List<ReadTableRequest> readTableRequests = new ArrayList<>();
+        for (List<RecordIdFilter> chunk :
+                Lists.partition(
+                        recordIdFiltersParcel.getRecordIdFilters(), MAX_BIND_ARGS_PER_QUERY)) {
+            readTableRequests.add(
+                    getReadTableRequest(
+                            request,
+                            chunk,
+                            callingPackageName,
+                            enforceSelfRead,
+                            startDateAccess,
+                            extraPermsState));
+        }
+        return readTableRequests;
+    }
+
+    private ReadTableRequest getReadTableRequest(
+            ReadRecordsRequestParcel request,
+            @Nullable List<RecordIdFilter> recordIdFilters,
+            String callingPackageName,
+            boolean enforceSelfRead,
+            long startDateAccess,
+            Map<String, Boolean> extraPermsState) {
         return new ReadTableRequest(getMainTableName())
                 .setJoinClause(getJoinForReadRequest())
                 .setWhereClause(
                         getReadTableWhereClause(
-                                request, callingPackageName, enforceSelfRead, startDateAccess))
+                                        request,
+                                        recordIdFilters,
+                                        callingPackageName,
+                                        enforceSelfRead,
+                                        startDateAccess)
+                                .addNestedWhereClauses(getReadFilterWhereClauses()))
                 .setOrderBy(getOrderByClause(request))
                 .setLimit(getLimitSize(request))
                 .setRecordHelper(this)
@@ -381,10 +452,10 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                 .setJoinClause(getJoinForReadRequest())
                 .setWhereClause(
                         new WhereClauses(AND)
-                                .addWhereInClauseWithoutQuotes(
-                                        UUID_COLUMN_NAME, StorageUtils.getListOfHexString(uuids))
+                                .addWhereInUuidsClause(UUID_COLUMN_NAME, uuids)
                                 .addWhereLaterThanTimeClause(
-                                        getStartTimeColumnName(), startDateAccess))
+                                        getStartTimeColumnName(), startDateAccess)
+                                .addNestedWhereClauses(getReadFilterWhereClauses()))
                 .setRecordHelper(this)
                 .setExtraReadRequests(
                         getExtraDataReadRequests(
@@ -575,6 +646,21 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         return true;
     }
 
+    /**
+     * Returns requests to read extra data for the given {@code internalRecords}, which have already
+     * been read from the main table. Unlike {@link ReadTableRequest#getExtraReadRequests()}, these
+     * requests only cover the rows of the records that were read.
+     */
+    @SuppressWarnings("unchecked")
+    public final List<ReadTableRequest> getExtraDataReadRequestsForRecords(
+            List<RecordInternal<?>> internalRecords) {
+        if (internalRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return getExtraDataReadRequests((List<T>) internalRecords);
+    }
+
     /** Populate internalRecords fields using extraDataCursor */
     @SuppressWarnings("unchecked")
     public void updateInternalRecordsWithExtraFields(
@@ -599,7 +685,7 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
 
     public DeleteTableRequest getDeleteTableRequest(List<UUID> ids) {
         return new DeleteTableRequest(getMainTableName(), getRecordIdentifier())
-                .setIds(UUID_COLUMN_NAME, StorageUtils.getListOfHexString(ids))
+                .setUuids(UUID_COLUMN_NAME, ids)
                 .setRequiresUuId(UUID_COLUMN_NAME)
                 .setEnforcePackageCheck(APP_INFO_ID_COLUMN_NAME, UUID_COLUMN_NAME);
     }
@@ -622,6 +708,38 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         return null;
     }
 
+    /**
+     * Returns list of ReadTableRequest to populate extra data of {@code internalRecords}, keyed by
+     * their row ids. Called in database read requests once the records are read.
+     */
+    List<ReadTableRequest> getExtraDataReadRequests(List<T> internalRecords) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns a request to read the rows of the child table {@code tableName} which belong to
+     * {@code internalRecords}, ordered by their parent key.
+     */
+    final ReadTableRequest getChildTableReadRequest(String tableName, List<T> internalRecords) {
+        List<Long> rowIds = new ArrayList<>(internalRecords.size());
+        for (T record : internalRecords) {
+            rowIds.add((long) record.getRowId());
+        }
+
+        return new ReadTableRequest(tableName)
+                .setWhereClause(new WhereClauses(AND).addWhereInLongsClause(PARENT_KEY, rowIds))
+                .setOrderBy(new OrderByClause().addOrderByClause(PARENT_KEY, true));
+    }
+
+    /** Returns {@code internalRecords} indexed by their row id. */
+    static <R extends RecordInternal<?>> SparseArray<R> getRecordsByRowId(List<R> internalRecords) {
+        SparseArray<R> recordsByRowId = new SparseArray<>(internalRecords.size());
+        for (R record : internalRecords) {
+            recordsByRowId.put(record.getRowId(), record);
+        }
+        return recordsByRowId;
+    }
+
     /** Populate internalRecords with extra data. */
     void readExtraData(List<T> internalRecords, Cursor cursorExtraData, String tableName) {}
 
@@ -672,6 +790,15 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         return Collections.emptyList();
     }
 
+    /**
+     * Returns the conditions the rows of the main table must meet to be read as records, on top of
+     * the filters of the read request. Applied in the main table where clause, so that pages are
+     * filled with records that are actually returned.
+     */
+    WhereClauses getReadFilterWhereClauses() {
+        return new WhereClauses(AND);
+    }
+
     @SuppressWarnings("NullAway")
     SqlJoin getJoinForReadRequest() {
         return null;
@@ -694,14 +821,14 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
 
     final WhereClauses getReadTableWhereClause(
             ReadRecordsRequestParcel request,
+            @Nullable List<RecordIdFilter> recordIdFilters,
             String callingPackageName,
             boolean enforceSelfRead,
             long startDateAccessMillis) {
         AppInfoHelper appInfoHelper = AppInfoHelper.getInstance();
         long callingAppInfoId = appInfoHelper.getAppInfoId(callingPackageName);
 
-        RecordIdFiltersParcel recordIdFiltersParcel = request.getRecordIdFiltersParcel();
-        if (recordIdFiltersParcel == null) {
+        if (recordIdFilters == null) {
             List<Long> appInfoIds =
                     appInfoHelper.getAppInfoIds(request.getPackageFilters()).stream()
                             .distinct()
@@ -754,15 +881,13 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
 
         // Since for now we don't support mixing IDs and filters, we need to look for IDs now
         List<UUID> ids =
-                recordIdFiltersParcel.getRecordIdFilters().stream()
+                recordIdFilters.stream()
                         .map(
                                 (recordIdFilter) ->
                                         StorageUtils.getUUIDFor(recordIdFilter, callingPackageName))
                         .toList();
         WhereClauses filterByIdsWhereClauses =
-                new WhereClauses(AND)
-                        .addWhereInClauseWithoutQuotes(
-                                UUID_COLUMN_NAME, StorageUtils.getListOfHexString(ids));
+                new WhereClauses(AND).addWhereInUuidsClause(UUID_COLUMN_NAME, ids);
 
         if (enforceSelfRead) {
             if (callingAppInfoId == DEFAULT_LONG) {
@@ -812,6 +937,26 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                 .addOrderByClause(PRIMARY_COLUMN_NAME, /* isAscending= */ true);
     }
 
+    /**
+     * Returns the time columns to index. Reads, aggregations and deletes all filter on a range of
+     * one of them, and the range is usually small compared to the whole table.
+     *
+     * <p>The columns are indexed on their own: appending the app info id to the start time index
+     * would make reads, which are ordered by start time then row id, sort their rows again.
+     */
+    private List<String> getIndexedTimeColumnNames() {
+        List<String> columnNames = new ArrayList<>();
+        columnNames.add(getStartTimeColumnName());
+        columnNames.add(getLocalStartTimeColumnName());
+        // Aggregations of interval records filter on overlap, which only bounds the start time
+        // from above. Without these they read the whole history before the end of the range.
+        if (getEndTimeColumnName() != null) {
+            columnNames.add(getEndTimeColumnName());
+            columnNames.add(getLocalEndTimeColumnName());
+        }
+        return columnNames;
+    }
+
     @NonNull
     private ContentValues getContentValues(@NonNull T recordInternal) {
         ContentValues recordContentValues = new ContentValues();
@@ -19,6 +19,8 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 import static android.health.connect.Constants.PARENT_KEY;
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
+import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
@@ -26,10 +28,12 @@ import android.database.Cursor;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.SeriesRecordInternal;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
+import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
+import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -56,30 +60,54 @@ abstract class SeriesRecordHelper<
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     final List<UpsertTableRequest> getChildTableUpsertRequests(@NonNull T record) {
-        List<? extends SeriesRecordInternal.Sample> samples = record.getSamples().stream().toList();
-        List<UpsertTableRequest> requests = new ArrayList<>(samples.size());
-        samples.forEach(
-                (sample -> {
-                    ContentValues contentValues = new ContentValues();
-                    populateSampleTo(contentValues, (U) sample);
-                    requests.add(
-                            new UpsertTableRequest(getSeriesDataTableName(), contentValues)
-                                    .setParentColumnForChildTables(PARENT_KEY_COLUMN_NAME));
-                }));
+        int sampleCount = record.getSampleCount();
+        List<UpsertTableRequest> requests = new ArrayList<>(sampleCount);
+        for (int i = 0; i < sampleCount; i++) {
+            ContentValues contentValues = new ContentValues();
+            populateSampleTo(contentValues, record, i);
+            requests.add(
+                    new UpsertTableRequest(getSeriesDataTableName(), contentValues)
+                            .setParentColumnForChildTables(PARENT_KEY_COLUMN_NAME));
+        }
 
         return requests;
     }
 
-    /** Returns the INNER JOIN clause for querying from the table for series datatype */
+    /**
+     * Returns a request to read the samples of {@code records} with a single range scan on the
+     * parent key, so that the main table columns are not repeated for every sample.
+     */
     @Override
-    final SqlJoin getJoinForReadRequest() {
-        return new SqlJoin(
-                getMainTableName(),
-                getSeriesDataTableName(),
-                PRIMARY_COLUMN_NAME,
-                PARENT_KEY_COLUMN_NAME);
+    final List<ReadTableRequest> getExtraDataReadRequests(@NonNull List<T> records) {
+        return Collections.singletonList(
+                getChildTableReadRequest(getSeriesDataTableName(), records));
+    }
+
+    /** Populates the samples of {@code records} from the cursor of the series data table. */
+    @Override
+    final void readExtraData(
+            @NonNull List<T> records, @NonNull Cursor cursor, @NonNull String tableName) {
+        SparseArray<T> recordsByRowId = getRecordsByRowId(records);
+        while (cursor.moveToNext()) {
+            T record = recordsByRowId.get(getCursorInt(cursor, PARENT_KEY_COLUMN_NAME));
+            if (record != null) {
+                populateSpecificValues(cursor, record);
+            }
+        }
+    }
+
+    /**
+     * Leaves out the records without any sample, which were not returned when reading through an
+     * INNER JOIN with the series data table.
+     */
+    @Override
+    final WhereClauses getReadFilterWhereClauses() {
+        return new WhereClauses(AND)
+                .addWhereExistsClause(
+                        getSeriesDataTableName(),
+                        PARENT_KEY_COLUMN_NAME,
+                        getMainTableName() + "." + PRIMARY_COLUMN_NAME);
     }
 
     @Override
@@ -88,10 +116,10 @@ abstract class SeriesRecordHelper<
         // Empty as we don't want to populate any additional in the main table
     }
 
-    /** Populates record with datatype specific details */
+    /** Samples are populated separately, see {@link #readExtraData}. */
     @Override
     final void populateSpecificRecordValue(@NonNull Cursor cursor, @NonNull T record) {
-        populateSpecificValues(cursor, record);
+        // Empty as the main table doesn't store any datatype specific details
     }
 
     /**
@@ -115,11 +143,31 @@ abstract class SeriesRecordHelper<
     @NonNull
     abstract String getSeriesDataTableName();
 
-    /** Populates the {@code record} with values specific to dataytpe */
+    /**
+     * Populates the {@code record} with the samples starting at the current position of the series
+     * data table {@code cursor}, leaving the cursor on the last sample of the record.
+     */
     abstract void populateSpecificValues(@NonNull Cursor cursor, T record);
 
-    /** Puts the {@code sample} to the {@code contentValues} */
-    abstract void populateSampleTo(@NonNull ContentValues contentValues, @NonNull U sample);
+    /** Puts the sample at {@code index} of {@code record} to the {@code contentValues} */
+    abstract void populateSampleTo(
+            @NonNull ContentValues contentValues, @NonNull T record, int index);
+
+    /**
+     * Returns the number of samples of the record at the current position of the series data table
+     * {@code cursor}, leaving the cursor at its current position.
+     */
+    static int getNumberOfSamples(@NonNull Cursor cursor) {
+        int parentKeyIndex = cursor.getColumnIndex(PARENT_KEY_COLUMN_NAME);
+        int position = cursor.getPosition();
+        int parentKey = cursor.getInt(parentKeyIndex);
+        int sampleCount = 1;
+        while (cursor.moveToNext() && cursor.getInt(parentKeyIndex) == parentKey) {
+            sampleCount++;
+        }
+        cursor.moveToPosition(position);
+        return sampleCount;
+    }
 
     @NonNull
     private List<Pair<String, String>> getSeriesTableColumnInfo() {
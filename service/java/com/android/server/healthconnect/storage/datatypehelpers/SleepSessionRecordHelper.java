@@ -18,9 +18,11 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 
 import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.SLEEP_SESSION_DURATION_TOTAL;
 
+import static com.android.server.healthconnect.storage.datatypehelpers.SeriesRecordHelper.PARENT_KEY_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.SleepStageRecordHelper.SLEEP_STAGES_RECORD_TABLE_NAME;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorString;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
@@ -31,18 +33,18 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.SleepSessionRecordInternal;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
 import com.android.server.healthconnect.storage.request.AggregateParams;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
+import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Record helper for Sleep session.
@@ -92,18 +94,8 @@ public final class SleepSessionRecordHelper
     @Override
     void populateSpecificRecordValue(
             @NonNull Cursor cursor, @NonNull SleepSessionRecordInternal sleepSessionRecord) {
-        UUID uuid = getCursorUUID(cursor, UUID_COLUMN_NAME);
         sleepSessionRecord.setNotes(getCursorString(cursor, NOTES_COLUMN_NAME));
         sleepSessionRecord.setTitle(getCursorString(cursor, TITLE_COLUMN_NAME));
-
-        do {
-            // Populate stages from each row.
-            sleepSessionRecord.addSleepStage(
-                    SleepStageRecordHelper.populateStageIfRecorded(cursor));
-        } while (cursor.moveToNext() && uuid.equals(getCursorUUID(cursor, UUID_COLUMN_NAME)));
-        // In case we hit another record, move the cursor back to read next record in outer
-        // RecordHelper#getInternalRecords loop.
-        cursor.moveToPrevious();
     }
 
     @Override
@@ -144,8 +136,26 @@ public final class SleepSessionRecordHelper
     }
 
     @Override
-    SqlJoin getJoinForReadRequest() {
-        return SleepStageRecordHelper.getJoinReadRequest(getMainTableName());
+    List<ReadTableRequest> getExtraDataReadRequests(
+            List<SleepSessionRecordInternal> internalRecords) {
+        return Collections.singletonList(
+                getChildTableReadRequest(SLEEP_STAGES_RECORD_TABLE_NAME, internalRecords));
+    }
+
+    @Override
+    void readExtraData(
+            List<SleepSessionRecordInternal> internalRecords,
+            Cursor cursorExtraData,
+            String tableName) {
+        SparseArray<SleepSessionRecordInternal> recordsByRowId =
+                getRecordsByRowId(internalRecords);
+        while (cursorExtraData.moveToNext()) {
+            SleepSessionRecordInternal record =
+                    recordsByRowId.get(getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME));
+            if (record != null) {
+                record.addSleepStage(SleepStageRecordHelper.populateStage(cursorExtraData));
+            }
+        }
     }
 
     @Override
@@ -23,7 +23,6 @@ import static com.android.server.healthconnect.storage.datatypehelpers.SeriesRec
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.isNullValue;
 import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import android.annotation.NonNull;
@@ -32,8 +31,6 @@ import android.database.Cursor;
 import android.health.connect.internal.datatypes.SleepStageInternal;
 import android.util.Pair;
 
-import androidx.annotation.Nullable;
-
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
@@ -49,7 +46,7 @@ import java.util.List;
  * @hide
  */
 public final class SleepStageRecordHelper {
-    private static final String SLEEP_STAGES_RECORD_TABLE_NAME = "sleep_stages_table";
+    static final String SLEEP_STAGES_RECORD_TABLE_NAME = "sleep_stages_table";
     private static final String SLEEP_STAGE_START_TIME = "stage_start_time";
     private static final String SLEEP_STAGE_END_TIME = "stage_end_time";
     private static final String SLEEP_STAGE_TYPE = "stage_type";
@@ -92,12 +89,7 @@ public final class SleepStageRecordHelper {
         return requests;
     }
 
-    @Nullable
-    static SleepStageInternal populateStageIfRecorded(@NonNull Cursor cursor) {
-        if (isNullValue(cursor, SLEEP_STAGE_START_TIME)) {
-            return null;
-        }
-
+    static SleepStageInternal populateStage(@NonNull Cursor cursor) {
         return new SleepStageInternal()
                 .setStartTime(getCursorLong(cursor, SLEEP_STAGE_START_TIME))
                 .setEndTime(getCursorLong(cursor, SLEEP_STAGE_END_TIME))
@@ -22,9 +22,6 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
@@ -41,9 +38,7 @@ import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for SpeedRecord.
@@ -84,19 +79,19 @@ public class SpeedRecordHelper
     /** Populates the {@code record} with values specific to datatype */
     @Override
     void populateSpecificValues(@NonNull Cursor seriesTableCursor, SpeedRecordInternal record) {
-        HashSet<SpeedRecordInternal.SpeedRecordSample> speedRecordSampleSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
-        do {
-            speedRecordSampleSet.add(
-                    new SpeedRecordInternal.SpeedRecordSample(
-                            getCursorDouble(seriesTableCursor, SPEED_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
-        } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
-        // In case we hit another record, move the cursor back to read next record in outer
-        // RecordHelper#getInternalRecords loop.
-        seriesTableCursor.moveToPrevious();
-        record.setSamples(speedRecordSampleSet);
+        int sampleCount = getNumberOfSamples(seriesTableCursor);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(SPEED_COLUMN_NAME);
+        long[] epochMillis = new long[sampleCount];
+        double[] metersPerSecond = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            if (i > 0) {
+                seriesTableCursor.moveToNext();
+            }
+            epochMillis[i] = seriesTableCursor.getLong(epochMillisIndex);
+            metersPerSecond[i] = seriesTableCursor.getDouble(valueIndex);
+        }
+        record.setSamples(epochMillis, metersPerSecond);
     }
 
     @SuppressWarnings("NullAway")
@@ -136,9 +131,8 @@ public class SpeedRecordHelper
     }
 
     @Override
-    void populateSampleTo(
-            ContentValues contentValues, SpeedRecordInternal.SpeedRecordSample speedRecord) {
-        contentValues.put(SPEED_COLUMN_NAME, speedRecord.getSpeed());
-        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, speedRecord.getEpochMillis());
+    void populateSampleTo(ContentValues contentValues, SpeedRecordInternal record, int index) {
+        contentValues.put(SPEED_COLUMN_NAME, record.getSampleValues()[index]);
+        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, record.getSampleTimes()[index]);
     }
 }
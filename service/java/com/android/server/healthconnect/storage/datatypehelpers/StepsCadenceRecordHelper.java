@@ -22,9 +22,6 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.annotation.NonNull;
 import android.content.ContentValues;
@@ -40,9 +37,7 @@ import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for StepsCadenceRecord.
@@ -83,28 +78,26 @@ public class StepsCadenceRecordHelper
     @Override
     void populateSpecificValues(
             @NonNull Cursor seriesTableCursor, StepsCadenceRecordInternal record) {
-        HashSet<StepsCadenceRecordInternal.StepsCadenceRecordSample> stepsCadenceRecordSampleSet =
-                new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
-        do {
-            stepsCadenceRecordSampleSet.add(
-                    new StepsCadenceRecordInternal.StepsCadenceRecordSample(
-                            getCursorDouble(seriesTableCursor, RATE_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
-        } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
-        // In case we hit another record, move the cursor back to read next record in outer
-        // RecordHelper#getInternalRecords loop.
-        seriesTableCursor.moveToPrevious();
-        record.setSamples(stepsCadenceRecordSampleSet);
+        int sampleCount = getNumberOfSamples(seriesTableCursor);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(RATE_COLUMN_NAME);
+        long[] epochMillis = new long[sampleCount];
+        double[] rates = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            if (i > 0) {
+                seriesTableCursor.moveToNext();
+            }
+            epochMillis[i] = seriesTableCursor.getLong(epochMillisIndex);
+            rates[i] = seriesTableCursor.getDouble(valueIndex);
+        }
+        record.setSamples(epochMillis, rates);
     }
 
     @Override
     void populateSampleTo(
-            ContentValues contentValues,
-            StepsCadenceRecordInternal.StepsCadenceRecordSample stepsCadenceRecord) {
-        contentValues.put(RATE_COLUMN_NAME, stepsCadenceRecord.getRate());
-        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, stepsCadenceRecord.getEpochMillis());
+            ContentValues contentValues, StepsCadenceRecordInternal record, int index) {
+        contentValues.put(RATE_COLUMN_NAME, record.getSampleValues()[index]);
+        contentValues.put(EPOCH_MILLIS_COLUMN_NAME, record.getSampleTimes()[index]);
     }
 
     @SuppressWarnings("NullAway")
@@ -28,10 +28,10 @@ import static com.android.server.healthconnect.storage.datatypehelpers.RecordHel
 import android.database.Cursor;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.storage.datatypehelpers.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 
 import java.time.ZoneOffset;
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -73,7 +73,7 @@ public abstract class AggregationRecordData implements Comparable<AggregationRec
     }
 
     void populateAggregationData(
-            Cursor cursor, boolean useLocalTime, Map<Long, Integer> appIdToPriority) {
+            Cursor cursor, boolean useLocalTime, AppIdPrioritySnapshot prioritySnapshot) {
         mRecordStartTime =
                 StorageUtils.getCursorLong(
                         cursor,
@@ -87,9 +87,8 @@ public abstract class AggregationRecordData implements Comparable<AggregationRec
         mLastModifiedTime = StorageUtils.getCursorLong(cursor, LAST_MODIFIED_TIME_COLUMN_NAME);
         mStartTimeZoneOffset = StorageUtils.getZoneOffset(cursor, START_ZONE_OFFSET_COLUMN_NAME);
         mPriority =
-                appIdToPriority.getOrDefault(
-                        StorageUtils.getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME),
-                        Integer.MIN_VALUE);
+                prioritySnapshot.getPriority(
+                        StorageUtils.getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME));
         populateSpecificAggregationData(cursor, useLocalTime);
     }
 
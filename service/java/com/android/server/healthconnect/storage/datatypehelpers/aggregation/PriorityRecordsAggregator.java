@@ -35,6 +35,7 @@ import androidx.annotation.Nullable;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
+import com.android.server.healthconnect.storage.datatypehelpers.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.request.AggregateParams;
 
 import java.time.ZoneOffset;
@@ -51,7 +52,7 @@ public class PriorityRecordsAggregator {
     static final String TAG = "HealthPriorityRecordsAggregator";
 
     private final List<Long> mGroupSplits;
-    private final Map<Long, Integer> mAppIdToPriority;
+    private final AppIdPrioritySnapshot mPrioritySnapshot;
     private final Map<Integer, Double> mGroupToAggregationResult;
     private final Map<Integer, ZoneOffset> mGroupToFirstZoneOffset;
     private final int mNumberOfGroups;
@@ -72,14 +73,24 @@ public class PriorityRecordsAggregator {
             @AggregationType.AggregationTypeIdentifier int aggregationType,
             AggregateParams.PriorityAggregationExtraParams extraParams,
             boolean useLocalTime) {
+        this(
+                groupSplits,
+                AppIdPrioritySnapshot.of(appIdPriorityList),
+                aggregationType,
+                extraParams,
+                useLocalTime);
+    }
+
+    public PriorityRecordsAggregator(
+            List<Long> groupSplits,
+            AppIdPrioritySnapshot prioritySnapshot,
+            @AggregationType.AggregationTypeIdentifier int aggregationType,
+            AggregateParams.PriorityAggregationExtraParams extraParams,
+            boolean useLocalTime) {
         mGroupSplits = groupSplits;
         mAggregationType = aggregationType;
         mExtraParams = extraParams;
-        mAppIdToPriority = new ArrayMap<>();
-        for (int i = 0; i < appIdPriorityList.size(); i++) {
-            // Add to the map with -index, so app with higher priority has higher value in the map.
-            mAppIdToPriority.put(appIdPriorityList.get(i), appIdPriorityList.size() - i);
-        }
+        mPrioritySnapshot = prioritySnapshot;
         mUseLocalTime = useLocalTime;
         mTimestampsBuffer = new TreeSet<>();
         mNumberOfGroups = mGroupSplits.size() - 1;
@@ -93,7 +104,7 @@ public class PriorityRecordsAggregator {
                     "Aggregation request for splits: "
                             + mGroupSplits
                             + " with priorities: "
-                            + appIdPriorityList);
+                            + prioritySnapshot);
         }
     }
 
@@ -205,7 +216,7 @@ public class PriorityRecordsAggregator {
     @VisibleForTesting
     AggregationRecordData readNewData(Cursor cursor) {
         AggregationRecordData data = createAggregationRecordData();
-        data.populateAggregationData(cursor, mUseLocalTime, mAppIdToPriority);
+        data.populateAggregationData(cursor, mUseLocalTime, mPrioritySnapshot);
         return data;
     }
 
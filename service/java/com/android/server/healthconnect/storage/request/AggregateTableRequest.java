@@ -37,6 +37,7 @@ import android.util.Pair;
 import android.util.Slog;
 
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.aggregation.PriorityRecordsAggregator;
@@ -244,12 +245,12 @@ public class AggregateTableRequest {
     }
 
     private void processPriorityRequest(Cursor cursor) {
-        List<Long> priorityList =
-                StorageUtils.getAppIdPriorityList(mRecordHelper.getRecordIdentifier());
+        AppIdPrioritySnapshot prioritySnapshot =
+                StorageUtils.getAppIdPrioritySnapshot(mRecordHelper.getRecordIdentifier());
         PriorityRecordsAggregator aggregator =
                 new PriorityRecordsAggregator(
                         mTimeSplits,
-                        priorityList,
+                        prioritySnapshot,
                         mAggregationType.getAggregationTypeIdentifier(),
                         mPriorityParams,
                         mUseLocalTime);
@@ -331,7 +332,9 @@ public class AggregateTableRequest {
         }
 
         OrderByClause orderByClause = new OrderByClause();
-        orderByClause.addOrderByClause(mTimeColumnName, true);
+        // The unary plus keeps the planner from walking the time index for the order, which reads
+        // the whole history before the range, rather than sorting the few rows in the range.
+        orderByClause.addOrderByClause("+" + mTimeColumnName, true);
         builder.append(orderByClause.getOrderBy());
 
         if (Constants.DEBUG) {
@@ -33,6 +33,7 @@ import com.android.server.healthconnect.storage.utils.WhereClauses;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.UUID;
 
 /**
  * No need to have delete-requests for child tables as ideally they should be following cascaded
@@ -55,6 +56,7 @@ public class DeleteTableRequest {
     private long mEndTime = DEFAULT_LONG;
     private boolean mRequiresUuId;
     private List<String> mIds;
+    private List<UUID> mUuids;
     private boolean mEnforcePackageCheck;
     private int mNumberOfUuidsToDelete;
     private WhereClauses mCustomWhereClauses;
@@ -102,6 +104,19 @@ public class DeleteTableRequest {
         return this;
     }
 
+    /**
+     * Sets the uuids of the rows to delete. Unlike {@link #setIds}, the uuids are bound as
+     * arguments of the commands, see {@link #getBindArgs()}.
+     */
+    public DeleteTableRequest setUuids(@NonNull String idColumnName, @NonNull List<UUID> uuids) {
+        Objects.requireNonNull(uuids);
+        Objects.requireNonNull(idColumnName);
+
+        mUuids = uuids;
+        mIdColumnName = idColumnName;
+        return this;
+    }
+
     public DeleteTableRequest setId(@NonNull String idColumnName, @NonNull String id) {
         Objects.requireNonNull(id);
         Objects.requireNonNull(idColumnName);
@@ -167,12 +182,17 @@ public class DeleteTableRequest {
                 + getWhereCommand();
     }
 
+    /**
+     * Returns the arguments to bind to the placeholders of {@link #getDeleteCommand()} and {@link
+     * #getReadCommand()}.
+     */
+    @NonNull
+    public Object[] getBindArgs() {
+        return getWhereClauses().getBindArgs();
+    }
+
     public String getWhereCommand() {
-        WhereClauses whereClauses =
-                Objects.isNull(mCustomWhereClauses) ? new WhereClauses(AND) : mCustomWhereClauses;
-        whereClauses.addWhereInLongsClause(mPackageColumnName, mPackageFilters);
-        whereClauses.addWhereBetweenTimeClause(mTimeColumnName, mStartTime, mEndTime);
-        whereClauses.addWhereInClauseWithoutQuotes(mIdColumnName, mIds);
+        WhereClauses whereClauses = getWhereClauses();
 
         if (Constants.DEBUG) {
             Slog.d(
@@ -186,6 +206,19 @@ public class DeleteTableRequest {
         return whereClauses.get(true);
     }
 
+    // Builds new clauses on every call, as the commands and bind args are each built from them.
+    private WhereClauses getWhereClauses() {
+        WhereClauses whereClauses = new WhereClauses(AND);
+        if (!Objects.isNull(mCustomWhereClauses)) {
+            whereClauses.addNestedWhereClauses(mCustomWhereClauses);
+        }
+        whereClauses.addWhereInLongsClause(mPackageColumnName, mPackageFilters);
+        whereClauses.addWhereBetweenTimeClause(mTimeColumnName, mStartTime, mEndTime);
+        whereClauses.addWhereInClauseWithoutQuotes(mIdColumnName, mIds);
+        whereClauses.addWhereInUuidsClause(mIdColumnName, mUuids);
+        return whereClauses;
+    }
+
     @NonNull
     public DeleteTableRequest setTimeFilter(
             @NonNull String timeColumnName, long startTime, long endTime) {
@@ -221,6 +254,6 @@ public class DeleteTableRequest {
         if (requiresRead()) {
             return mNumberOfUuidsToDelete;
         }
-        return mIds.size();
+        return mIds != null ? mIds.size() : mUuids.size();
     }
 }
@@ -18,6 +18,8 @@ package com.android.server.healthconnect.storage.request;
 
 import static android.health.connect.Constants.DELETE;
 
+import static com.android.server.healthconnect.storage.utils.StorageUtils.MAX_BIND_ARGS_PER_QUERY;
+
 import android.annotation.NonNull;
 import android.health.connect.Constants;
 import android.health.connect.RecordIdFilter;
@@ -34,6 +36,8 @@ import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 
+import com.google.common.collect.Lists;
+
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -81,9 +85,13 @@ public final class DeleteTransactionRequest {
                 uuidSet.add(uuid);
             }
 
+            // Split the ids so that each statement binds a bounded number of arguments.
             recordTypeToUuids.forEach(
-                    (recordHelper, uuids) ->
-                            mDeleteTableRequests.add(recordHelper.getDeleteTableRequest(uuids)));
+                    (recordHelper, uuids) -> {
+                        for (List<UUID> chunk : Lists.partition(uuids, MAX_BIND_ARGS_PER_QUERY)) {
+                            mDeleteTableRequests.add(recordHelper.getDeleteTableRequest(chunk));
+                        }
+                    });
 
             // We currently only support either using filters or ids, so if we are deleting using
             // ids no need to proceed further.
@@ -23,6 +23,7 @@ import static com.android.server.healthconnect.storage.utils.WhereClauses.Logica
 import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.health.connect.Constants;
+import android.health.connect.internal.datatypes.RecordInternal;
 import android.util.Slog;
 
 import com.android.server.healthconnect.storage.TransactionManager;
@@ -32,8 +33,10 @@ import com.android.server.healthconnect.storage.utils.SqlJoin;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 /**
  * A request for {@link TransactionManager} to read the DB
@@ -54,6 +57,8 @@ public class ReadTableRequest {
     private String mLimitClause = "";
     private List<ReadTableRequest> mExtraReadRequests;
     private List<ReadTableRequest> mUnionReadRequests;
+    private String mParentKeyColumnName;
+    private Predicate<RecordInternal<?>> mParentRecordFilter;
 
     @SuppressWarnings("NullAway.Init")
     public ReadTableRequest(@NonNull String tableName) {
@@ -145,6 +150,22 @@ public class ReadTableRequest {
         return readQuery;
     }
 
+    /** Returns the arguments to bind to the placeholders of {@link #getReadCommand()}. */
+    @NonNull
+    public Object[] getBindArgs() {
+        if (mUnionReadRequests == null || mUnionReadRequests.isEmpty()) {
+            return mWhereClauses.getBindArgs();
+        }
+
+        // Union requests precede this request in the read command.
+        List<Object> bindArgs = new ArrayList<>();
+        for (ReadTableRequest unionReadRequest : mUnionReadRequests) {
+            bindArgs.addAll(Arrays.asList(unionReadRequest.getBindArgs()));
+        }
+        bindArgs.addAll(Arrays.asList(mWhereClauses.getBindArgs()));
+        return bindArgs.toArray();
+    }
+
     /** Get requests for populating extra data */
     @Nullable
     public List<ReadTableRequest> getExtraReadRequests() {
@@ -157,6 +178,48 @@ public class ReadTableRequest {
         return this;
     }
 
+    /**
+     * Restricts this extra data request to the child rows of the records read by the main request
+     * which match {@code parentRecordFilter}. See {@link #restrictToParentRecords}.
+     */
+    @NonNull
+    public ReadTableRequest setParentRecordFilter(
+            @NonNull String parentKeyColumnName,
+            @NonNull Predicate<RecordInternal<?>> parentRecordFilter) {
+        Objects.requireNonNull(parentKeyColumnName);
+        Objects.requireNonNull(parentRecordFilter);
+
+        mParentKeyColumnName = parentKeyColumnName;
+        mParentRecordFilter = parentRecordFilter;
+        return this;
+    }
+
+    /**
+     * Restricts this request to the child rows of the {@code parentRecords} matching the parent
+     * record filter, if one is set. Called once the main request has been read.
+     *
+     * @return {@code false} if no parent record matches, meaning this request doesn't need to run.
+     */
+    public boolean restrictToParentRecords(@NonNull List<RecordInternal<?>> parentRecords) {
+        if (mParentRecordFilter == null) {
+            return true;
+        }
+
+        List<Long> parentRowIds = new ArrayList<>(parentRecords.size());
+        for (RecordInternal<?> parentRecord : parentRecords) {
+            if (mParentRecordFilter.test(parentRecord)) {
+                parentRowIds.add((long) parentRecord.getRowId());
+            }
+        }
+
+        if (parentRowIds.isEmpty()) {
+            return false;
+        }
+
+        mWhereClauses.addWhereInLongsClause(mParentKeyColumnName, parentRowIds);
+        return true;
+    }
+
     /** Get table name of the request */
     public String getTableName() {
         return mTableName;
@@ -18,6 +18,8 @@ package com.android.server.healthconnect.storage.request;
 
 import static android.health.connect.Constants.DEFAULT_INT;
 
+import static com.android.server.healthconnect.storage.utils.StorageUtils.MAX_BIND_ARGS_PER_QUERY;
+
 import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
@@ -27,8 +29,9 @@ import com.android.server.healthconnect.storage.utils.PageTokenUtil;
 import com.android.server.healthconnect.storage.utils.PageTokenWrapper;
 import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 
+import com.google.common.collect.Lists;
+
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -59,13 +62,12 @@ public class ReadTransactionRequest {
         RecordHelper<?> recordHelper =
                 RecordHelperProvider.getInstance().getRecordHelper(request.getRecordType());
         mReadTableRequests =
-                Collections.singletonList(
-                        recordHelper.getReadTableRequest(
-                                request,
-                                callingPackageName,
-                                enforceSelfRead,
-                                startDateAccessMillis,
-                                extraPermsState));
+                recordHelper.getReadTableRequests(
+                        request,
+                        callingPackageName,
+                        enforceSelfRead,
+                        startDateAccessMillis,
+                        extraPermsState);
         if (request.getRecordIdFiltersParcel() == null) {
             mPageToken = PageTokenUtil.decode(request.getPageToken(), request.isAscending());
             mPageSize = request.getPageSize();
@@ -81,16 +83,17 @@ public class ReadTransactionRequest {
             long startDateAccess,
             Map<String, Boolean> extraPermsState) {
         mReadTableRequests = new ArrayList<>();
+        // Split the ids so that each query binds a bounded number of arguments.
         recordTypeToUuids.forEach(
-                (recordType, uuids) ->
+                (recordType, uuids) -> {
+                    RecordHelper<?> recordHelper =
+                            RecordHelperProvider.getInstance().getRecordHelper(recordType);
+                    for (List<UUID> chunk : Lists.partition(uuids, MAX_BIND_ARGS_PER_QUERY)) {
                         mReadTableRequests.add(
-                                RecordHelperProvider.getInstance()
-                                        .getRecordHelper(recordType)
-                                        .getReadTableRequest(
-                                                packageName,
-                                                uuids,
-                                                startDateAccess,
-                                                extraPermsState)));
+                                recordHelper.getReadTableRequest(
+                                        packageName, chunk, startDateAccess, extraPermsState));
+                    }
+                });
         mPageSize = DEFAULT_INT;
         mPageToken = null;
     }
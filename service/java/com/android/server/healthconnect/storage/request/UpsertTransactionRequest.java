@@ -61,7 +61,6 @@ public class UpsertTransactionRequest {
     private static final String TAG = "HealthConnectUTR";
     @NonNull private final List<UpsertTableRequest> mUpsertRequests = new ArrayList<>();
     @NonNull private final String mPackageName;
-    private final List<UpsertTableRequest> mAccessLogs = new ArrayList<>();
     private final boolean mSkipPackageNameAndLogs;
     @RecordTypeIdentifier.RecordType Set<Integer> mRecordTypes = new ArraySet<>();
 
@@ -135,13 +134,6 @@ public class UpsertTransactionRequest {
         }
 
         if (!mRecordTypes.isEmpty()) {
-            if (!mSkipPackageNameAndLogs) {
-                mAccessLogs.add(
-                        AccessLogsHelper.getInstance()
-                                .getUpsertTableRequest(
-                                        packageName, new ArrayList<>(mRecordTypes), UPSERT));
-            }
-
             Slog.d(
                     TAG,
                     "Upserting transaction for "
@@ -151,8 +143,12 @@ public class UpsertTransactionRequest {
         }
     }
 
-    public List<UpsertTableRequest> getAccessLogs() {
-        return mAccessLogs;
+    /** Adds the access log of this request, once the request has been committed. */
+    public void addAccessLog() {
+        if (!mSkipPackageNameAndLogs && !mRecordTypes.isEmpty()) {
+            AccessLogsHelper.getInstance()
+                    .addAccessLog(mPackageName, new ArrayList<>(mRecordTypes), UPSERT);
+        }
     }
 
     @NonNull
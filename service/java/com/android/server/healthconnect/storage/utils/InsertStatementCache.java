@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import android.annotation.NonNull;
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.ArrayMap;
+
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Inserts {@link UpsertTableRequest}s through compiled statements which are reused across requests
+ * with the same table and columns, instead of compiling a statement for every row.
+ *
+ * <p>Statements are bound to the {@link SQLiteDatabase} they were compiled for, so an instance must
+ * only be used within a single transaction and closed before the transaction ends.
+ *
+ * @hide
+ */
+public final class InsertStatementCache implements AutoCloseable {
+    private static final String INSERT = "INSERT";
+    private static final String INSERT_OR_IGNORE = "INSERT OR IGNORE";
+
+    private final SQLiteDatabase mDb;
+    private final Map<String, SQLiteStatement> mStatements = new ArrayMap<>();
+
+    public InsertStatementCache(@NonNull SQLiteDatabase db) {
+        Objects.requireNonNull(db);
+        mDb = db;
+    }
+
+    /**
+     * Inserts {@code request}, ignoring it if it conflicts with an existing row, and then its child
+     * requests if it was inserted.
+     *
+     * @return the row ID of the newly inserted row or {@code -1} if the request was ignored.
+     */
+    public long insertOrIgnore(@NonNull UpsertTableRequest request) {
+        long rowId = insert(INSERT_OR_IGNORE, request);
+        if (rowId != -1) {
+            insertChildren(request, rowId);
+        }
+        return rowId;
+    }
+
+    /** Inserts {@code request} and its child requests, throwing if any of them conflicts. */
+    public long insert(@NonNull UpsertTableRequest request) {
+        long rowId = insert(INSERT, request);
+        insertChildren(request, rowId);
+        return rowId;
+    }
+
+    @Override
+    public void close() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+
+    private void insertChildren(@NonNull UpsertTableRequest request, long rowId) {
+        for (UpsertTableRequest childRequest : request.getChildTableRequests()) {
+            insert(childRequest.withParentKey(rowId));
+        }
+    }
+
+    private long insert(@NonNull String verb, @NonNull UpsertTableRequest request) {
+        ContentValues contentValues = request.getContentValues();
+        List<String> columns = new ArrayList<>(contentValues.keySet());
+        SQLiteStatement statement =
+                mStatements.computeIfAbsent(
+                        getInsertCommand(verb, request.getTable(), columns),
+                        mDb::compileStatement);
+        try {
+            for (int i = 0; i < columns.size(); i++) {
+                DatabaseUtils.bindObjectToProgram(
+                        statement, i + 1, contentValues.get(columns.get(i)));
+            }
+            return statement.executeInsert();
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    @NonNull
+    private static String getInsertCommand(
+            @NonNull String verb, @NonNull String table, @NonNull List<String> columns) {
+        StringBuilder command = new StringBuilder(verb).append(" INTO ").append(table);
+        if (columns.isEmpty()) {
+            return command.append(" DEFAULT VALUES").toString();
+        }
+
+        command.append(" (").append(String.join(", ", columns)).append(") VALUES (?");
+        for (int i = 1; i < columns.size(); i++) {
+            command.append(", ?");
+        }
+        return command.append(')').toString();
+    }
+}
@@ -36,6 +36,9 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.HealthDataCategory;
 import android.health.connect.RecordIdFilter;
 import android.health.connect.internal.datatypes.InstantRecordInternal;
@@ -45,6 +48,7 @@ import android.health.connect.internal.datatypes.utils.RecordMapper;
 import android.health.connect.internal.datatypes.utils.RecordTypeRecordCategoryMapper;
 import android.util.Slog;
 
+import com.android.server.healthconnect.storage.datatypehelpers.AppIdPrioritySnapshot;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 
 import java.nio.ByteBuffer;
@@ -83,6 +87,8 @@ public final class StorageUtils {
     public static final int BOOLEAN_FALSE_VALUE = 0;
     public static final int BOOLEAN_TRUE_VALUE = 1;
     public static final int UUID_BYTE_SIZE = 16;
+    // Stays well below SQLITE_MAX_VARIABLE_NUMBER, which is 999 on older SQLite versions.
+    public static final int MAX_BIND_ARGS_PER_QUERY = 500;
     private static final String TAG = "HealthConnectUtils";
 
     // Returns null if fetching any of the fields resulted in an error
@@ -352,8 +358,13 @@ public final class StorageUtils {
 
     /** Returns list of app Ids of contributing apps for the record type in the priority order */
     public static List<Long> getAppIdPriorityList(int recordType) {
+        return getAppIdPrioritySnapshot(recordType).getAppIdPriorityList();
+    }
+
+    /** Returns the snapshot of the priority order of contributing apps for the record type */
+    public static AppIdPrioritySnapshot getAppIdPrioritySnapshot(int recordType) {
         return HealthDataCategoryPriorityHelper.getInstance()
-                .getAppIdPriorityOrder(
+                .getAppIdPrioritySnapshot(
                         RecordTypeRecordCategoryMapper.getRecordCategoryForRecordType(recordType));
     }
 
@@ -395,13 +406,35 @@ public final class StorageUtils {
         return getHexString(convertUUIDToBytes(uuid));
     }
 
-    public static List<String> getListOfHexString(List<UUID> uuids) {
-        List<String> hexStrings = new ArrayList<>();
+    /** Returns the byte representation of {@code uuids}, to be used as bind arguments. */
+    public static List<byte[]> getListOfBytes(List<UUID> uuids) {
+        List<byte[]> bytes = new ArrayList<>(uuids.size());
         for (UUID uuid : uuids) {
-            hexStrings.add(getHexString(convertUUIDToBytes(uuid)));
+            bytes.add(convertUUIDToBytes(uuid));
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Runs the query {@code sql} with {@code bindArgs}. Unlike {@link SQLiteDatabase#rawQuery},
+     * the arguments aren't bound as strings, so they can be compared with blob columns.
+     */
+    public static Cursor rawQuery(SQLiteDatabase db, String sql, Object[] bindArgs) {
+        if (bindArgs.length == 0) {
+            return db.rawQuery(sql, null);
         }
 
-        return hexStrings;
+        return db.rawQueryWithFactory(
+                (database, driver, editTable, query) -> {
+                    for (int i = 0; i < bindArgs.length; i++) {
+                        DatabaseUtils.bindObjectToProgram(query, i + 1, bindArgs[i]);
+                    }
+                    return new SQLiteCursor(driver, editTable, query);
+                },
+                sql,
+                /* selectionArgs= */ null,
+                /* editTable= */ null);
     }
 
     public static byte[] getSingleByteArray(List<UUID> uuids) {
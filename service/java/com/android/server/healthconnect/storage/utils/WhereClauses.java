@@ -19,8 +19,11 @@ package com.android.server.healthconnect.storage.utils;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /** @hide */
@@ -37,6 +40,7 @@ public final class WhereClauses {
     }
 
     private final List<String> mClauses = new ArrayList<>();
+    private final List<Object> mBindArgs = new ArrayList<>();
     private final LogicalOperator mLogicalOperator;
 
     public WhereClauses(LogicalOperator logicalOperator) {
@@ -88,6 +92,23 @@ public final class WhereClauses {
         return this;
     }
 
+    /**
+     * Adds where in condition for the uuid column. The uuids are bound as blob arguments instead of
+     * being inlined as hex literals, see {@link #getBindArgs()}.
+     */
+    public WhereClauses addWhereInUuidsClause(String columnName, List<UUID> uuids) {
+        if (uuids == null || uuids.isEmpty()) return this;
+
+        mClauses.add(
+                columnName
+                        + " IN ("
+                        + String.join(", ", Collections.nCopies(uuids.size(), "?"))
+                        + ")");
+        mBindArgs.addAll(StorageUtils.getListOfBytes(uuids));
+
+        return this;
+    }
+
     public WhereClauses addWhereEqualsClause(String columnName, String value) {
         if (columnName == null || value == null || value.isEmpty() || columnName.isEmpty()) {
             return this;
@@ -168,6 +189,28 @@ public final class WhereClauses {
      */
     public WhereClauses addWhereInSQLRequestClause(String columnName, ReadTableRequest inRequest) {
         mClauses.add(columnName + " IN (" + inRequest.getReadCommand() + ") ");
+        mBindArgs.addAll(Arrays.asList(inRequest.getBindArgs()));
+
+        return this;
+    }
+
+    /**
+     * Creates EXISTS clause, matching the rows for which {@code tableName} has at least one row
+     * whose {@code columnName} equals {@code outerColumnName} of the row. Returns instance with
+     * extra clauses set.
+     */
+    public WhereClauses addWhereExistsClause(
+            String tableName, String columnName, String outerColumnName) {
+        mClauses.add(
+                "EXISTS (SELECT 1 FROM "
+                        + tableName
+                        + " WHERE "
+                        + tableName
+                        + "."
+                        + columnName
+                        + " = "
+                        + outerColumnName
+                        + ")");
 
         return this;
     }
@@ -181,11 +224,17 @@ public final class WhereClauses {
                 continue;
             }
             mClauses.add("(" + whereClauses.get(/* withWhereKeyword= */ false) + ")");
+            mBindArgs.addAll(whereClauses.mBindArgs);
         }
 
         return this;
     }
 
+    /** Returns the arguments to bind to the placeholders of {@link #get}, in order. */
+    public Object[] getBindArgs() {
+        return mBindArgs.toArray();
+    }
+
     /**
      * Returns where clauses joined by 'AND', if the input parameter isIncludeWHEREinClauses is true
      * then the clauses are preceded by 'WHERE'.
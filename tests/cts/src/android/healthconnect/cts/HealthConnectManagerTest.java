@@ -57,6 +57,7 @@ import android.health.connect.HealthConnectException;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.HealthDataCategory;
 import android.health.connect.HealthPermissions;
+import android.health.connect.InsertRecordsResponse;
 import android.health.connect.LocalTimeRangeFilter;
 import android.health.connect.ReadRecordsRequest;
 import android.health.connect.ReadRecordsRequestUsingFilters;
@@ -137,6 +138,32 @@ public class HealthConnectManagerTest {
         deleteAllRecords();
     }
 
+    /** Inserts {@code records} in chunks, and returns the error if the insert failed. */
+    private static HealthConnectException insertRecordsInChunks(List<Record> records)
+            throws InterruptedException {
+        Context context = ApplicationProvider.getApplicationContext();
+        HealthConnectManager service = context.getSystemService(HealthConnectManager.class);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<HealthConnectException> responseException = new AtomicReference<>();
+        service.insertRecordsInChunks(
+                records,
+                Executors.newSingleThreadExecutor(),
+                new OutcomeReceiver<>() {
+                    @Override
+                    public void onResult(InsertRecordsResponse result) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(HealthConnectException exception) {
+                        responseException.set(exception);
+                        latch.countDown();
+                    }
+                });
+        assertThat(latch.await(3, TimeUnit.SECONDS)).isTrue();
+        return responseException.get();
+    }
+
     private void deleteAllRecords() throws InterruptedException {
         TestUtils.verifyDeleteRecords(
                 new DeleteUsingFiltersRequest.Builder()
@@ -199,6 +226,60 @@ public class HealthConnectManagerTest {
         assertThat(insertRecords.get(0).getMetadata().getId()).isNotEqualTo("abc");
     }
 
+    @Test
+    public void testInsertRecordsInChunks_validRecords_allInsertedWithIds() throws Exception {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(TestUtils.getStepsRecord());
+        }
+
+        assertThat(insertRecordsInChunks(records)).isNull();
+
+        ReadRecordsRequestUsingIds.Builder<StepsRecord> request =
+                new ReadRecordsRequestUsingIds.Builder<>(StepsRecord.class);
+        for (Record record : records) {
+            assertThat(record.getMetadata().getId()).isNotEmpty();
+            request.addId(record.getMetadata().getId());
+        }
+        assertThat(TestUtils.readRecords(request.build())).hasSize(records.size());
+    }
+
+    @Test
+    public void testInsertRecordsInChunks_recordOverSizeLimit_onlyEarlierRecordsInserted()
+            throws Exception {
+        // Strings are written as UTF-16, so this is over the default 1 MB record size limit.
+        StepsRecord oversizedRecord =
+                new StepsRecord.Builder(
+                                new Metadata.Builder()
+                                        .setClientRecordId("a".repeat(600_000))
+                                        .build(),
+                                Instant.now(),
+                                Instant.now().plusMillis(1000),
+                                10)
+                        .build();
+        List<Record> records =
+                List.of(
+                        TestUtils.getStepsRecord(),
+                        TestUtils.getStepsRecord(),
+                        oversizedRecord,
+                        TestUtils.getStepsRecord());
+
+        HealthConnectException exception = insertRecordsInChunks(records);
+
+        assertThat(exception).isNotNull();
+        assertThat(exception.getErrorCode())
+                .isEqualTo(HealthConnectException.ERROR_RATE_LIMIT_EXCEEDED);
+        assertThat(records.get(0).getMetadata().getId()).isNotEmpty();
+        assertThat(records.get(1).getMetadata().getId()).isNotEmpty();
+        assertThat(records.get(2).getMetadata().getId()).isEmpty();
+        assertThat(records.get(3).getMetadata().getId()).isEmpty();
+        assertThat(
+                        TestUtils.readRecords(
+                                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                                        .build()))
+                .hasSize(2);
+    }
+
     /**
      * Test to verify the working of {@link HealthConnectManager#updateRecords(java.util.List,
      * java.util.concurrent.Executor, android.os.OutcomeReceiver)}.
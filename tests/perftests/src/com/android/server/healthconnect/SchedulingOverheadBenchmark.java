@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static android.Manifest.permission.PACKAGE_USAGE_STATS;
+
+import android.app.ActivityManager;
+import android.app.UiAutomation;
+import android.os.Process;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Benchmarks the foreground check {@link HealthConnectThreadScheduler#schedule} makes for every
+ * task of an app, twice for tasks started on the foreground executor. It compares listing the
+ * running app processes, which the scheduler falls back to when uid importance isn't tracked,
+ * with {@link UidImportanceTracker}.
+ *
+ * <p>The cost of listing the running app processes grows with the number of processes running on
+ * the device, so results should be compared on the same device in the same state.
+ */
+public class SchedulingOverheadBenchmark {
+    private static final String REAL_GET_TASKS = "android.permission.REAL_GET_TASKS";
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mUid = Process.myUid();
+    private UiAutomation mUiAutomation;
+    private ActivityManager mActivityManager;
+
+    @Before
+    public void setUp() {
+        // Same permissions as the system server, so that all app processes are listed.
+        mUiAutomation = InstrumentationRegistry.getInstrumentation().getUiAutomation();
+        mUiAutomation.adoptShellPermissionIdentity(PACKAGE_USAGE_STATS, REAL_GET_TASKS);
+        mActivityManager =
+                InstrumentationRegistry.getInstrumentation()
+                        .getContext()
+                        .getSystemService(ActivityManager.class);
+    }
+
+    @After
+    public void tearDown() {
+        mUiAutomation.dropShellPermissionIdentity();
+    }
+
+    @Test
+    public void isUidInForeground_runningAppProcesses() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            isUidInForegroundFromRunningAppProcesses();
+        }
+    }
+
+    @Test
+    public void isUidInForeground_trackedUid() {
+        UidImportanceTracker tracker = new UidImportanceTracker(mActivityManager);
+        tracker.isUidInForeground(mUid);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            tracker.isUidInForeground(mUid);
+        }
+    }
+
+    @Test
+    public void isUidInForeground_untrackedUid() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            UidImportanceTracker tracker = new UidImportanceTracker(mActivityManager);
+            state.resumeTiming();
+
+            tracker.isUidInForeground(mUid);
+        }
+    }
+
+    // Same query as HealthConnectThreadScheduler#isUidInForeground without a tracker.
+    private boolean isUidInForegroundFromRunningAppProcesses() {
+        List<ActivityManager.RunningAppProcessInfo> runningAppProcesses =
+                mActivityManager.getRunningAppProcesses();
+        if (runningAppProcesses == null) {
+            return false;
+        }
+        for (ActivityManager.RunningAppProcessInfo info : runningAppProcesses) {
+            if (info.uid == mUid
+                    && info.importance
+                            == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
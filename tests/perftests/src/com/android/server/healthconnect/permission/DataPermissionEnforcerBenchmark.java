@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static android.content.pm.PackageManager.PERMISSION_GRANTED;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.AttributionSource;
+import android.content.Context;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.permission.PermissionManager;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
+import com.android.server.healthconnect.storage.BenchmarkDatasets;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Benchmarks the permission checks of an insertRecords call of 5,000 records of mixed types, with
+ * all permissions granted. The permission manager is mocked, so the results are the overhead of
+ * the enforcer on top of the permission checks it can't answer from its cache.
+ */
+public class DataPermissionEnforcerBenchmark {
+    // 100 days of hourly steps and heart rate, and daily blood pressure and exercise sessions.
+    private static final Duration DATASET_DURATION = Duration.ofDays(100);
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private DataPermissionEnforcer mEnforcer;
+    private AttributionSource mAttributionSource;
+    private List<RecordInternal<?>> mRecords;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        HealthConnectDeviceConfigManager.initializeInstance(context);
+        PermissionManager permissionManager = mock(PermissionManager.class);
+        when(permissionManager.checkPermissionForDataDelivery(any(), any(), any()))
+                .thenReturn(PERMISSION_GRANTED);
+        mEnforcer =
+                new DataPermissionEnforcer(
+                        permissionManager,
+                        context,
+                        HealthConnectDeviceConfigManager.getInitialisedInstance());
+        mAttributionSource = context.getAttributionSource();
+
+        Instant endTime = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        mRecords = new BenchmarkDatasets().createDataset(endTime.minus(DATASET_DURATION), endTime);
+    }
+
+    @Test
+    public void insertPermissionChecks_firstCall() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            mEnforcer.clearGrantedPermissionsCache();
+            state.resumeTiming();
+
+            enforceInsertPermissions();
+        }
+    }
+
+    @Test
+    public void insertPermissionChecks_repeatedCalls() {
+        enforceInsertPermissions();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            enforceInsertPermissions();
+        }
+    }
+
+    // Same checks as HealthConnectServiceImpl#insertRecords.
+    private void enforceInsertPermissions() {
+        mEnforcer.enforceRecordsWritePermissions(mRecords, mAttributionSource);
+        mEnforcer.collectExtraWritePermissionStateMapping(mRecords, mAttributionSource);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.android.server.healthconnect.storage.StorageBenchmarkRule.TEST_PACKAGE_NAME;
+
+import android.health.connect.AggregateRecordsRequest;
+import android.health.connect.HealthDataCategory;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.aidl.AggregateDataRequestParcel;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
+import com.android.server.healthconnect.storage.request.AggregateTransactionRequest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Benchmarks priority based aggregation of steps through {@link AggregateTransactionRequest},
+ * which runs an aggregate table request per aggregation type and merges the overlapping records
+ * of the apps in priority order.
+ */
+@RunWith(Parameterized.class)
+public class AggregationBenchmark {
+    private static final Duration MAX_GROUPED_SPAN = Duration.ofDays(30);
+
+    @Parameterized.Parameters(name = "{0}")
+    public static DatasetSpan[] spans() {
+        return DatasetSpan.values();
+    }
+
+    @Parameterized.Parameter public DatasetSpan mSpan;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+    @Rule public final StorageBenchmarkRule mStorageRule = new StorageBenchmarkRule();
+
+    private Instant mEndTime;
+
+    @Before
+    public void setUp() {
+        mEndTime = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        mStorageRule.insertRecords(
+                new BenchmarkDatasets().createDataset(mSpan.getStartTime(mEndTime), mEndTime));
+        HealthDataCategoryPriorityHelper.getInstance()
+                .setPriorityOrder(HealthDataCategory.ACTIVITY, List.of(TEST_PACKAGE_NAME));
+    }
+
+    @Test
+    public void stepsCountTotal_wholeSpan() {
+        benchmarkAggregation(
+                new AggregateDataRequestParcel(
+                        getStepsCountTotalRequest(mSpan.getStartTime(mEndTime))));
+    }
+
+    @Test
+    public void stepsCountTotal_groupedByDay() {
+        Duration span = mSpan.getDuration();
+        Instant startTime =
+                mEndTime.minus(span.compareTo(MAX_GROUPED_SPAN) < 0 ? span : MAX_GROUPED_SPAN);
+        benchmarkAggregation(
+                new AggregateDataRequestParcel(
+                        getStepsCountTotalRequest(startTime), Duration.ofDays(1)));
+    }
+
+    private AggregateRecordsRequest<Long> getStepsCountTotalRequest(Instant startTime) {
+        return new AggregateRecordsRequest.Builder<Long>(
+                        new TimeInstantRangeFilter.Builder()
+                                .setStartTime(startTime)
+                                .setEndTime(mEndTime)
+                                .build())
+                .addAggregationType(StepsRecord.STEPS_COUNT_TOTAL)
+                .build();
+    }
+
+    private void benchmarkAggregation(AggregateDataRequestParcel request) {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            AggregateTransactionRequest transactionRequest =
+                    new AggregateTransactionRequest(
+                            TEST_PACKAGE_NAME, request, /* startDateAccess= */ 0);
+            state.resumeTiming();
+
+            transactionRequest.getAggregateDataResponseParcel();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import android.health.connect.internal.datatypes.RecordInternal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks the daily run of {@link AutoDeleteService}, which deletes the records that fell out
+ * of the retention period since the previous run, from datasets of increasing size.
+ */
+@RunWith(Parameterized.class)
+public class AutoDeleteBenchmark {
+    @Parameterized.Parameters(name = "{0}")
+    public static DatasetSpan[] spans() {
+        return DatasetSpan.values();
+    }
+
+    @Parameterized.Parameter public DatasetSpan mSpan;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+    @Rule public final StorageBenchmarkRule mStorageRule = new StorageBenchmarkRule();
+
+    private final BenchmarkDatasets mDatasets = new BenchmarkDatasets();
+    private Instant mExpiredDayStartTime;
+
+    @Before
+    public void setUp() {
+        Instant endTime = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        mStorageRule.insertRecords(mDatasets.createDataset(mSpan.getStartTime(endTime), endTime));
+        // Keep the whole dataset, only the days inserted by the benchmark are out of retention.
+        AutoDeleteService.setRecordRetentionPeriodInDays(mSpan.getDays() + 1);
+        mExpiredDayStartTime = mSpan.getStartTime(endTime).minus(Duration.ofDays(2));
+    }
+
+    @Test
+    public void startAutoDelete_oneExpiredDay() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            Instant expiredDayEndTime = mExpiredDayStartTime.plus(Duration.ofDays(1));
+            List<RecordInternal<?>> expiredRecords = new ArrayList<>();
+            expiredRecords.addAll(
+                    mDatasets.createRecords(
+                            RECORD_TYPE_STEPS, mExpiredDayStartTime, expiredDayEndTime));
+            expiredRecords.addAll(
+                    mDatasets.createRecords(
+                            RECORD_TYPE_HEART_RATE, mExpiredDayStartTime, expiredDayEndTime));
+            mStorageRule.insertRecords(expiredRecords);
+            state.resumeTiming();
+
+            AutoDeleteService.startAutoDelete(mStorageRule.getUserContext());
+        }
+    }
+}
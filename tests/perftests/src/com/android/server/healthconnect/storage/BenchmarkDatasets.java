@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static android.health.connect.datatypes.ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_EXERCISE_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.datatypes.BloodPressureRecordInternal;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal;
+import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the records written by a typical fitness tracker app, for the storage benchmarks.
+ *
+ * <p>Values are drawn from a fixed seed so that every run benchmarks the same data.
+ */
+public final class BenchmarkDatasets {
+    private static final Duration STEPS_INTERVAL = Duration.ofHours(1);
+    private static final Duration HEART_RATE_INTERVAL = Duration.ofHours(1);
+    private static final Duration HEART_RATE_SAMPLE_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration BLOOD_PRESSURE_INTERVAL = Duration.ofDays(1);
+    private static final Duration EXERCISE_SESSION_INTERVAL = Duration.ofDays(1);
+    private static final Duration EXERCISE_SESSION_DURATION = Duration.ofMinutes(30);
+    private static final Duration ROUTE_LOCATION_INTERVAL = Duration.ofMinutes(1);
+
+    private final Random mRandom = new Random(/* seed= */ 42);
+
+    /**
+     * Returns all the records the app writes between {@code startTime} and {@code endTime}: hourly
+     * steps and heart rate series, and daily blood pressure and exercise sessions with routes.
+     */
+    public List<RecordInternal<?>> createDataset(Instant startTime, Instant endTime) {
+        List<RecordInternal<?>> records = new ArrayList<>();
+        records.addAll(createRecords(RECORD_TYPE_STEPS, startTime, endTime));
+        records.addAll(createRecords(RECORD_TYPE_HEART_RATE, startTime, endTime));
+        records.addAll(createRecords(RECORD_TYPE_BLOOD_PRESSURE, startTime, endTime));
+        records.addAll(createRecords(RECORD_TYPE_EXERCISE_SESSION, startTime, endTime));
+        return records;
+    }
+
+    /**
+     * Returns the records of {@code recordType} the app writes between {@code startTime} and
+     * {@code endTime}.
+     */
+    public List<RecordInternal<?>> createRecords(
+            @RecordTypeIdentifier.RecordType int recordType, Instant startTime, Instant endTime) {
+        Duration interval = getInterval(recordType);
+        List<RecordInternal<?>> records = new ArrayList<>();
+        for (Instant time = startTime; time.isBefore(endTime); time = time.plus(interval)) {
+            records.add(createRecord(recordType, time));
+        }
+        return records;
+    }
+
+    /** Returns {@code count} consecutive records of {@code recordType} from {@code startTime}. */
+    public List<RecordInternal<?>> createRecords(
+            @RecordTypeIdentifier.RecordType int recordType, Instant startTime, int count) {
+        return createRecords(
+                recordType, startTime, startTime.plus(getInterval(recordType).multipliedBy(count)));
+    }
+
+    /** Returns the interval at which the app writes records of {@code recordType}. */
+    public static Duration getInterval(@RecordTypeIdentifier.RecordType int recordType) {
+        switch (recordType) {
+            case RECORD_TYPE_STEPS:
+                return STEPS_INTERVAL;
+            case RECORD_TYPE_HEART_RATE:
+                return HEART_RATE_INTERVAL;
+            case RECORD_TYPE_BLOOD_PRESSURE:
+                return BLOOD_PRESSURE_INTERVAL;
+            case RECORD_TYPE_EXERCISE_SESSION:
+                return EXERCISE_SESSION_INTERVAL;
+            default:
+                throw new IllegalArgumentException("Unsupported record type: " + recordType);
+        }
+    }
+
+    private RecordInternal<?> createRecord(
+            @RecordTypeIdentifier.RecordType int recordType, Instant time) {
+        switch (recordType) {
+            case RECORD_TYPE_STEPS:
+                return new StepsRecordInternal()
+                        .setCount(mRandom.nextInt(2000))
+                        .setStartTime(time.toEpochMilli())
+                        .setEndTime(time.plus(STEPS_INTERVAL).toEpochMilli());
+            case RECORD_TYPE_HEART_RATE:
+                return createHeartRateRecord(time);
+            case RECORD_TYPE_BLOOD_PRESSURE:
+                return new BloodPressureRecordInternal()
+                        .setSystolic(100 + mRandom.nextInt(40))
+                        .setDiastolic(60 + mRandom.nextInt(30))
+                        .setTime(time.toEpochMilli());
+            case RECORD_TYPE_EXERCISE_SESSION:
+                return createExerciseSessionRecord(time);
+            default:
+                throw new IllegalArgumentException("Unsupported record type: " + recordType);
+        }
+    }
+
+    private RecordInternal<?> createHeartRateRecord(Instant startTime) {
+        Instant endTime = startTime.plus(HEART_RATE_INTERVAL);
+        int sampleCount =
+                (int) (HEART_RATE_INTERVAL.toMillis() / HEART_RATE_SAMPLE_INTERVAL.toMillis());
+        long[] epochMillis = new long[sampleCount];
+        int[] beatsPerMinute = new int[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            epochMillis[i] = startTime.toEpochMilli() + i * HEART_RATE_SAMPLE_INTERVAL.toMillis();
+            beatsPerMinute[i] = 60 + mRandom.nextInt(100);
+        }
+        return new HeartRateRecordInternal()
+                .setSamples(epochMillis, beatsPerMinute)
+                .setStartTime(startTime.toEpochMilli())
+                .setEndTime(endTime.toEpochMilli());
+    }
+
+    private RecordInternal<?> createExerciseSessionRecord(Instant startTime) {
+        Instant endTime = startTime.plus(EXERCISE_SESSION_DURATION);
+        List<ExerciseRouteInternal.LocationInternal> locations = new ArrayList<>();
+        double latitude = 52.13;
+        double longitude = 0.14;
+        for (Instant time = startTime;
+                time.isBefore(endTime);
+                time = time.plus(ROUTE_LOCATION_INTERVAL)) {
+            latitude += mRandom.nextDouble() * 0.001;
+            longitude += mRandom.nextDouble() * 0.001;
+            locations.add(
+                    new ExerciseRouteInternal.LocationInternal()
+                            .setTime(time.toEpochMilli())
+                            .setLatitude(latitude)
+                            .setLongitude(longitude));
+        }
+        return new ExerciseSessionRecordInternal()
+                .setExerciseType(EXERCISE_SESSION_TYPE_RUNNING)
+                .setRoute(new ExerciseRouteInternal(locations))
+                .setStartTime(startTime.toEpochMilli())
+                .setEndTime(endTime.toEpochMilli());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static android.health.connect.HealthPermissions.READ_EXERCISE_ROUTE;
+
+import static com.android.server.healthconnect.storage.StorageBenchmarkRule.TEST_PACKAGE_NAME;
+
+import android.health.connect.changelog.ChangeLogTokenRequest;
+import android.health.connect.changelog.ChangeLogsRequest;
+import android.health.connect.datatypes.BloodPressureRecord;
+import android.health.connect.datatypes.ExerciseSessionRecord;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsRequestHelper;
+import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Benchmarks an app catching up on all the changes made since it got its changes token, as done
+ * by the getChanges API: reading every page of change logs and the records inserted in it.
+ */
+@RunWith(Parameterized.class)
+public class ChangeLogsBenchmark {
+    private static final int PAGE_SIZE = 1000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static DatasetSpan[] spans() {
+        return DatasetSpan.values();
+    }
+
+    @Parameterized.Parameter public DatasetSpan mSpan;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+    @Rule public final StorageBenchmarkRule mStorageRule = new StorageBenchmarkRule();
+
+    private String mToken;
+
+    @Before
+    public void setUp() {
+        mToken =
+                ChangeLogsRequestHelper.getInstance()
+                        .getToken(
+                                TEST_PACKAGE_NAME,
+                                new ChangeLogTokenRequest.Builder()
+                                        .addRecordType(StepsRecord.class)
+                                        .addRecordType(HeartRateRecord.class)
+                                        .addRecordType(BloodPressureRecord.class)
+                                        .addRecordType(ExerciseSessionRecord.class)
+                                        .build());
+        Instant endTime = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        mStorageRule.insertRecords(
+                new BenchmarkDatasets().createDataset(mSpan.getStartTime(endTime), endTime));
+    }
+
+    @Test
+    public void getChanges_allPages() {
+        TransactionManager transactionManager = mStorageRule.getTransactionManager();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            String token = mToken;
+            boolean hasMorePages = true;
+            while (hasMorePages) {
+                ChangeLogsHelper.ChangeLogsResponse response =
+                        ChangeLogsHelper.getInstance()
+                                .getChangeLogs(
+                                        ChangeLogsRequestHelper.getRequest(
+                                                TEST_PACKAGE_NAME, token),
+                                        new ChangeLogsRequest.Builder(token)
+                                                .setPageSize(PAGE_SIZE)
+                                                .build());
+                transactionManager.readRecordsByIds(
+                        new ReadTransactionRequest(
+                                TEST_PACKAGE_NAME,
+                                ChangeLogsHelper.getRecordTypeToInsertedUuids(
+                                        response.getChangeLogsMap()),
+                                /* startDateAccess= */ 0,
+                                /* extraPermsState= */ Map.of(READ_EXERCISE_ROUTE, true)));
+                token = response.getNextPageToken();
+                hasMorePages = response.hasMorePages();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/** Spans of time an app has been writing data for, over which benchmark datasets are generated. */
+public enum DatasetSpan {
+    ONE_DAY(1),
+    ONE_MONTH(30),
+    ONE_YEAR(365),
+    FIVE_YEARS(5 * 365);
+
+    private final int mDays;
+
+    DatasetSpan(int days) {
+        mDays = days;
+    }
+
+    public int getDays() {
+        return mDays;
+    }
+
+    public Duration getDuration() {
+        return Duration.ofDays(mDays);
+    }
+
+    /** Returns the start of the span ending at {@code endTime}. */
+    public Instant getStartTime(Instant endTime) {
+        return endTime.minus(getDuration());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_EXERCISE_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import android.health.connect.internal.datatypes.RecordInternal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/** Benchmarks inserting records through {@link TransactionManager#insertAll}. */
+@RunWith(Parameterized.class)
+public class InsertRecordsBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Object[][] recordTypes() {
+        return new Object[][] {
+            {"steps", RECORD_TYPE_STEPS},
+            {"heartRate", RECORD_TYPE_HEART_RATE},
+            {"bloodPressure", RECORD_TYPE_BLOOD_PRESSURE},
+            {"exerciseSession", RECORD_TYPE_EXERCISE_SESSION},
+        };
+    }
+
+    @Parameterized.Parameter(0)
+    public String mRecordTypeName;
+
+    @Parameterized.Parameter(1)
+    public int mRecordType;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+    @Rule public final StorageBenchmarkRule mStorageRule = new StorageBenchmarkRule();
+
+    private final BenchmarkDatasets mDatasets = new BenchmarkDatasets();
+
+    @Test
+    public void insertAll_batchOfRecords() {
+        TransactionManager transactionManager = mStorageRule.getTransactionManager();
+        Instant startTime =
+                DatasetSpan.FIVE_YEARS.getStartTime(Instant.now().truncatedTo(ChronoUnit.DAYS));
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            // Each batch is written after the previous one, as an app syncing its data would.
+            List<RecordInternal<?>> records =
+                    mDatasets.createRecords(mRecordType, startTime, BATCH_SIZE);
+            startTime =
+                    startTime.plus(
+                            BenchmarkDatasets.getInterval(mRecordType).multipliedBy(BATCH_SIZE));
+            UpsertTransactionRequest request = mStorageRule.getInsertRequest(records);
+            state.resumeTiming();
+
+            transactionManager.insertAll(request);
+        }
+    }
+}
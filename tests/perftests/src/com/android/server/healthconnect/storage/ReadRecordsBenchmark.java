@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.android.server.healthconnect.storage.StorageBenchmarkRule.TEST_PACKAGE_NAME;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.util.Pair;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks reading a page of records through {@link
+ * TransactionManager#readRecordsAndPageToken}, from datasets of increasing size.
+ */
+@RunWith(Parameterized.class)
+public class ReadRecordsBenchmark {
+    private static final int PAGE_SIZE = 1000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static DatasetSpan[] spans() {
+        return DatasetSpan.values();
+    }
+
+    @Parameterized.Parameter public DatasetSpan mSpan;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+    @Rule public final StorageBenchmarkRule mStorageRule = new StorageBenchmarkRule();
+
+    private Instant mEndTime;
+
+    @Before
+    public void setUp() {
+        mEndTime = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        mStorageRule.insertRecords(
+                new BenchmarkDatasets().createDataset(mSpan.getStartTime(mEndTime), mEndTime));
+    }
+
+    @Test
+    public void readFirstPage_steps_wholeSpan() {
+        benchmarkRead(StepsRecord.class, mSpan.getStartTime(mEndTime));
+    }
+
+    @Test
+    public void readFirstPage_steps_lastDay() {
+        benchmarkRead(StepsRecord.class, mEndTime.minus(Duration.ofDays(1)));
+    }
+
+    @Test
+    public void readFirstPage_heartRate_wholeSpan() {
+        benchmarkRead(HeartRateRecord.class, mSpan.getStartTime(mEndTime));
+    }
+
+    private <T extends Record> void benchmarkRead(Class<T> recordClass, Instant startTime) {
+        ReadRecordsRequestUsingFilters<T> request =
+                new ReadRecordsRequestUsingFilters.Builder<>(recordClass)
+                        .setTimeRangeFilter(
+                                new TimeInstantRangeFilter.Builder()
+                                        .setStartTime(startTime)
+                                        .setEndTime(mEndTime)
+                                        .build())
+                        .setPageSize(PAGE_SIZE)
+                        .build();
+        TransactionManager transactionManager = mStorageRule.getTransactionManager();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            ReadTransactionRequest readTransactionRequest =
+                    new ReadTransactionRequest(
+                            TEST_PACKAGE_NAME,
+                            request.toReadRecordsRequestParcel(),
+                            /* startDateAccessMillis= */ 0,
+                            /* enforceSelfRead= */ false,
+                            /* extraPermsState= */ Map.of());
+            state.resumeTiming();
+
+            Pair<List<RecordInternal<?>>, Long> result =
+                    transactionManager.readRecordsAndPageToken(readTransactionRequest);
+
+            state.pauseTiming();
+            assertThat(result.first).isNotEmpty();
+            state.resumeTiming();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Benchmarks converting heart rate series records of increasing size, as done for every record
+ * read or written through the API. The benchmark output includes the allocation count of each
+ * iteration alongside its time.
+ */
+@RunWith(Parameterized.class)
+public class SeriesRecordBenchmark {
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+
+    @Parameterized.Parameters(name = "{0}Samples")
+    public static Integer[] sampleCounts() {
+        return new Integer[] {100, 10_000};
+    }
+
+    @Parameterized.Parameter public int mSampleCount;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private HeartRateRecordInternal mRecord;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(/* seed= */ 42);
+        long startTime = 1_700_000_000_000L;
+        long[] epochMillis = new long[mSampleCount];
+        int[] beatsPerMinute = new int[mSampleCount];
+        for (int i = 0; i < mSampleCount; i++) {
+            epochMillis[i] = startTime + i * SAMPLE_INTERVAL_MILLIS;
+            beatsPerMinute[i] = 60 + random.nextInt(100);
+        }
+        mRecord =
+                (HeartRateRecordInternal)
+                        new HeartRateRecordInternal()
+                                .setSamples(epochMillis, beatsPerMinute)
+                                .setStartTime(startTime)
+                                .setEndTime(startTime + mSampleCount * SAMPLE_INTERVAL_MILLIS)
+                                .setUuid(UUID.randomUUID())
+                                .setPackageName("android.healthconnect.benchmark");
+    }
+
+    @Test
+    public void parcelRoundTrip() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            Parcel parcel = Parcel.obtain();
+            mRecord.writeToParcel(parcel);
+            parcel.setDataPosition(0);
+            HeartRateRecordInternal record = new HeartRateRecordInternal();
+            record.populateUsing(parcel);
+            parcel.recycle();
+
+            state.pauseTiming();
+            assertThat(record.getSampleCount()).isEqualTo(mSampleCount);
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void toExternalRecord() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HeartRateRecord record = mRecord.toExternalRecord();
+
+            state.pauseTiming();
+            assertThat(record.getSamples()).hasSize(mSampleCount);
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void toRecordInternal() {
+        HeartRateRecord externalRecord = mRecord.toExternalRecord();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            HeartRateRecordInternal record = externalRecord.toRecordInternal();
+
+            state.pauseTiming();
+            assertThat(record.getSampleCount()).isEqualTo(mSampleCount);
+            state.resumeTiming();
+        }
+    }
+}
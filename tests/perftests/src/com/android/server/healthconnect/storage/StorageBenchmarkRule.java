@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper.PACKAGE_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper.UNIQUE_COLUMN_INFO;
+
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.os.Environment;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.dx.mockito.inline.extended.ExtendedMockito;
+import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
+import com.android.server.healthconnect.HealthConnectUserContext;
+import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.DatabaseHelper;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
+
+import com.google.common.collect.Lists;
+
+import org.junit.rules.ExternalResource;
+import org.mockito.MockitoSession;
+import org.mockito.quality.Strictness;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A test rule which sets up an empty Health Connect database in a scratch data directory for the
+ * storage benchmarks, and deletes it afterwards.
+ */
+public final class StorageBenchmarkRule extends ExternalResource {
+    /** The package all benchmark records are attributed to. */
+    public static final String TEST_PACKAGE_NAME = "android.healthconnect.perftests.app";
+
+    // Same as the maximum number of records per insertRecords call from the client library.
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private MockitoSession mStaticMockSession;
+    private File mDataDirectory;
+    private HealthConnectUserContext mContext;
+    private TransactionManager mTransactionManager;
+
+    @Override
+    protected void before() {
+        mStaticMockSession =
+                ExtendedMockito.mockitoSession()
+                        .mockStatic(Environment.class)
+                        .strictness(Strictness.LENIENT)
+                        .startMocking();
+
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        mContext = new HealthConnectUserContext(context, context.getUser());
+        mDataDirectory = mContext.getDir("benchmark_data", Context.MODE_PRIVATE);
+        when(Environment.getDataDirectory()).thenReturn(mDataDirectory);
+
+        HealthConnectDeviceConfigManager.initializeInstance(mContext);
+        mTransactionManager = TransactionManager.getInstance(mContext);
+        insertApp(TEST_PACKAGE_NAME);
+    }
+
+    @Override
+    protected void after() {
+        DatabaseHelper.clearAllData(mTransactionManager);
+        TransactionManager.clearInstance();
+        deleteDir(mDataDirectory);
+        mStaticMockSession.finishMocking();
+    }
+
+    public HealthConnectUserContext getUserContext() {
+        return mContext;
+    }
+
+    public TransactionManager getTransactionManager() {
+        return mTransactionManager;
+    }
+
+    /** Returns an insert request for {@code records}, as built by the insertRecords API. */
+    public UpsertTransactionRequest getInsertRequest(List<RecordInternal<?>> records) {
+        return new UpsertTransactionRequest(
+                TEST_PACKAGE_NAME,
+                records,
+                mContext,
+                /* isInsertRequest= */ true,
+                /* skipPackageNameAndLogs= */ false);
+    }
+
+    /** Inserts {@code records} in batches of the size used by the insertRecords API. */
+    public void insertRecords(List<RecordInternal<?>> records) {
+        for (List<RecordInternal<?>> batch : Lists.partition(records, INSERT_BATCH_SIZE)) {
+            mTransactionManager.insertAll(getInsertRequest(batch));
+        }
+    }
+
+    private void insertApp(String packageName) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(PACKAGE_COLUMN_NAME, packageName);
+        mTransactionManager.insert(
+                new UpsertTableRequest(
+                        AppInfoHelper.TABLE_NAME, contentValues, UNIQUE_COLUMN_INFO));
+        AppInfoHelper.getInstance().clearCache();
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDir(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+}
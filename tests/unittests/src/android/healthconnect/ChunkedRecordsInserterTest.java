@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import android.content.AttributionSource;
+import android.health.connect.ChunkedRecordsInserter;
+import android.health.connect.HealthConnectException;
+import android.health.connect.InsertRecordsResponse;
+import android.health.connect.aidl.HealthConnectExceptionParcel;
+import android.health.connect.aidl.IHealthConnectService;
+import android.health.connect.aidl.IInsertRecordsResponseCallback;
+import android.health.connect.aidl.InsertRecordsResponseParcel;
+import android.health.connect.aidl.RecordsParcel;
+import android.health.connect.datatypes.Metadata;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+import android.os.OutcomeReceiver;
+import android.os.Process;
+import android.os.RemoteException;
+
+import androidx.annotation.NonNull;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(AndroidJUnit4.class)
+public class ChunkedRecordsInserterTest {
+    private static final int NUMBER_OF_RECORDS = 300;
+    private static final long MAX_CHUNK_SIZE = 2000;
+    private static final long MAX_RECORD_SIZE = 1000;
+
+    private final List<Chunk> mChunks = new ArrayList<>();
+    private final List<InsertRecordsResponse> mResponses = new ArrayList<>();
+    private final List<HealthConnectException> mErrors = new ArrayList<>();
+    private List<Record> mRecords;
+    private ChunkedRecordsInserter mInserter;
+
+    @Before
+    public void setUp() throws RemoteException {
+        IHealthConnectService service = mock(IHealthConnectService.class);
+        doAnswer(
+                        invocation -> {
+                            RecordsParcel chunk = invocation.getArgument(1);
+                            int fromIndex =
+                                    mChunks.isEmpty()
+                                            ? 0
+                                            : mChunks.get(mChunks.size() - 1).getToIndex();
+                            mChunks.add(
+                                    new Chunk(
+                                            fromIndex,
+                                            chunk.getRecords().size(),
+                                            invocation.getArgument(2)));
+                            return null;
+                        })
+                .when(service)
+                .insertRecords(any(), any(), any());
+
+        mRecords = createStepsRecords();
+        mInserter =
+                new ChunkedRecordsInserter(
+                        service,
+                        new AttributionSource.Builder(Process.myUid()).build(),
+                        mRecords,
+                        mRecords.stream()
+                                .map(Record::toRecordInternal)
+                                .collect(Collectors.toList()),
+                        Runnable::run,
+                        new OutcomeReceiver<>() {
+                            @Override
+                            public void onResult(InsertRecordsResponse result) {
+                                mResponses.add(result);
+                            }
+
+                            @Override
+                            public void onError(@NonNull HealthConnectException error) {
+                                mErrors.add(error);
+                            }
+                        },
+                        MAX_CHUNK_SIZE,
+                        MAX_RECORD_SIZE);
+    }
+
+    @Test
+    public void testStart_sendsTwoChunks_nextChunkSentWhenOneCompletes() throws Exception {
+        mInserter.start();
+        assertThat(mChunks).hasSize(2);
+
+        mChunks.get(0).succeed();
+        assertThat(mChunks).hasSize(3);
+        assertThat(mResponses).isEmpty();
+
+        mChunks.get(1).succeed();
+        assertThat(mChunks).hasSize(4);
+    }
+
+    @Test
+    public void testStart_allChunksSucceed_allIdsSetInOrder() throws Exception {
+        mInserter.start();
+        // Complete the chunks in flight in reverse order.
+        while (mResponses.isEmpty()) {
+            List<Chunk> chunksInFlight =
+                    mChunks.stream().filter(chunk -> !chunk.mCompleted).toList();
+            for (int i = chunksInFlight.size() - 1; i >= 0; i--) {
+                chunksInFlight.get(i).succeed();
+            }
+        }
+
+        assertThat(mErrors).isEmpty();
+        assertThat(mResponses).hasSize(1);
+        List<Record> insertedRecords = mResponses.get(0).getRecords();
+        assertThat(insertedRecords).hasSize(NUMBER_OF_RECORDS);
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+            assertThat(insertedRecords.get(i).getMetadata().getId()).isEqualTo(getId(i));
+        }
+    }
+
+    @Test
+    public void testStart_chunkFailsWithNextInFlight_errorDeliveredOnceNextCompletes()
+            throws Exception {
+        mInserter.start();
+        Chunk failedChunk = mChunks.get(0);
+        Chunk inFlightChunk = mChunks.get(1);
+
+        failedChunk.fail();
+        assertThat(mErrors).isEmpty();
+        inFlightChunk.succeed();
+
+        assertThat(mChunks).hasSize(2);
+        assertThat(mResponses).isEmpty();
+        assertThat(mErrors).hasSize(1);
+        assertThat(mErrors.get(0).getMessage()).contains(failedChunk.getErrorMessage());
+        for (int i = 0; i < inFlightChunk.getToIndex(); i++) {
+            String expectedId = i < failedChunk.getToIndex() ? "" : getId(i);
+            assertThat(mRecords.get(i).getMetadata().getId()).isEqualTo(expectedId);
+        }
+    }
+
+    @Test
+    public void testStart_laterChunkFailsFirst_earliestFailureReported() throws Exception {
+        mInserter.start();
+        Chunk firstChunk = mChunks.get(0);
+
+        mChunks.get(1).fail();
+        firstChunk.fail();
+
+        assertThat(mErrors).hasSize(1);
+        assertThat(mErrors.get(0).getMessage()).contains(firstChunk.getErrorMessage());
+    }
+
+    @Test
+    public void testStart_earlierChunkSucceedsAfterLaterFails_laterFailureReported()
+            throws Exception {
+        mInserter.start();
+        Chunk secondChunk = mChunks.get(1);
+
+        secondChunk.fail();
+        mChunks.get(0).succeed();
+
+        assertThat(mChunks).hasSize(2);
+        assertThat(mErrors).hasSize(1);
+        assertThat(mErrors.get(0).getMessage()).contains(secondChunk.getErrorMessage());
+        assertThat(mRecords.get(0).getMetadata().getId()).isEqualTo(getId(0));
+    }
+
+    private static String getId(int index) {
+        return "id" + index;
+    }
+
+    private static List<Record> createStepsRecords() {
+        Instant startTime = Instant.ofEpochSecond((long) 1e9);
+        List<Record> records = new ArrayList<>(NUMBER_OF_RECORDS);
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+            records.add(
+                    new StepsRecord.Builder(
+                                    new Metadata.Builder().build(),
+                                    startTime.plusSeconds(i * 60L),
+                                    startTime.plusSeconds(i * 60L + 30),
+                                    i + 1)
+                            .build());
+        }
+        return records;
+    }
+
+    private static final class Chunk {
+        private final int mFromIndex;
+        private final int mCount;
+        private final IInsertRecordsResponseCallback mCallback;
+        private boolean mCompleted;
+
+        Chunk(int fromIndex, int count, IInsertRecordsResponseCallback callback) {
+            mFromIndex = fromIndex;
+            mCount = count;
+            mCallback = callback;
+        }
+
+        int getToIndex() {
+            return mFromIndex + mCount;
+        }
+
+        String getErrorMessage() {
+            return "Records " + mFromIndex + " to " + (getToIndex() - 1) + " were not inserted";
+        }
+
+        void succeed() throws RemoteException {
+            List<String> ids = new ArrayList<>(mCount);
+            for (int i = mFromIndex; i < getToIndex(); i++) {
+                ids.add(getId(i));
+            }
+            mCompleted = true;
+            mCallback.onResult(new InsertRecordsResponseParcel(ids));
+        }
+
+        void fail() throws RemoteException {
+            mCompleted = true;
+            mCallback.onError(
+                    new HealthConnectExceptionParcel(
+                            new HealthConnectException(
+                                    HealthConnectException.ERROR_INTERNAL, "failed")));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import android.health.connect.HealthConnectException;
+import android.health.connect.HealthConnectManager;
+import android.health.connect.ReadRecordsPageIterator;
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.ReadRecordsResponse;
+import android.health.connect.datatypes.StepsRecord;
+import android.os.OutcomeReceiver;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@RunWith(AndroidJUnit4.class)
+public class ReadRecordsPageIteratorTest {
+    private static final long FIRST_PAGE_TOKEN = 100;
+
+    // Requests sent to the service, and the callbacks of the ones which haven't completed.
+    private final List<ReadRecordsRequestUsingFilters<StepsRecord>> mRequests = new ArrayList<>();
+    private final List<OutcomeReceiver<ReadRecordsResponse<StepsRecord>, HealthConnectException>>
+            mPendingReads = new ArrayList<>();
+    private HealthConnectManager mHealthConnectManager;
+
+    @Before
+    public void setUp() {
+        mHealthConnectManager = mock(HealthConnectManager.class, CALLS_REAL_METHODS);
+        doAnswer(
+                        invocation -> {
+                            mRequests.add(invocation.getArgument(0));
+                            mPendingReads.add(invocation.getArgument(2));
+                            return null;
+                        })
+                .when(mHealthConnectManager)
+                .readRecords(any(), any(), any());
+    }
+
+    @Test
+    public void testIterate_threePages_followsPageTokens() {
+        ReadRecordsPageIterator<StepsRecord> iterator = readInPages(/* prefetchDepth= */ 1);
+
+        List<ReadRecordsResponse<StepsRecord>> pages = new ArrayList<>();
+        completeNextRead(/* nextPageToken= */ 1);
+        pages.add(iterator.next());
+        completeNextRead(/* nextPageToken= */ 2);
+        pages.add(iterator.next());
+        completeNextRead(DEFAULT_LONG);
+        pages.add(iterator.next());
+
+        assertThat(iterator.hasNext()).isFalse();
+        assertThat(getPageTokens()).containsExactly(FIRST_PAGE_TOKEN, 1L, 2L).inOrder();
+        assertThat(pages.get(0).getNextPageToken()).isEqualTo(1);
+        assertThat(pages.get(2).getNextPageToken()).isEqualTo(DEFAULT_LONG);
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void testIterate_prefetchDepthTwo_readsAheadUntilTwoPagesWaiting() {
+        ReadRecordsPageIterator<StepsRecord> iterator = readInPages(/* prefetchDepth= */ 2);
+        assertThat(mRequests).hasSize(1);
+
+        completeNextRead(/* nextPageToken= */ 1);
+        assertThat(mRequests).hasSize(2);
+        completeNextRead(/* nextPageToken= */ 2);
+        // Two pages are waiting to be taken, so no further page is read.
+        assertThat(mRequests).hasSize(2);
+        assertThat(mPendingReads).isEmpty();
+
+        iterator.next();
+        assertThat(mRequests).hasSize(3);
+        assertThat(getPageTokens()).containsExactly(FIRST_PAGE_TOKEN, 1L, 2L).inOrder();
+    }
+
+    @Test
+    public void testClose_midIteration_noFurtherPagesReadOrReturned() {
+        ReadRecordsPageIterator<StepsRecord> iterator = readInPages(/* prefetchDepth= */ 2);
+        completeNextRead(/* nextPageToken= */ 1);
+        iterator.next();
+        assertThat(mPendingReads).hasSize(1);
+
+        iterator.close();
+        completeNextRead(/* nextPageToken= */ 2);
+
+        assertThat(mRequests).hasSize(2);
+        assertThat(iterator.hasNext()).isFalse();
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void testIterate_pageFails_errorThrownAfterEarlierPages() {
+        ReadRecordsPageIterator<StepsRecord> iterator = readInPages(/* prefetchDepth= */ 2);
+        completeNextRead(/* nextPageToken= */ 1);
+        HealthConnectException error =
+                new HealthConnectException(
+                        HealthConnectException.ERROR_RATE_LIMIT_EXCEEDED, "quota exceeded");
+        failNextRead(error);
+
+        assertThat(iterator.hasNext()).isTrue();
+        assertThat(iterator.next().getNextPageToken()).isEqualTo(1);
+        HealthConnectException thrown =
+                assertThrows(HealthConnectException.class, iterator::hasNext);
+
+        assertThat(thrown).isSameInstanceAs(error);
+        assertThat(iterator.hasNext()).isFalse();
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertThat(mRequests).hasSize(2);
+    }
+
+    @Test
+    public void testReadRecordsInPages_prefetchDepthZero_throws() {
+        assertThrows(IllegalArgumentException.class, () -> readInPages(/* prefetchDepth= */ 0));
+        assertThat(mRequests).isEmpty();
+    }
+
+    private ReadRecordsPageIterator<StepsRecord> readInPages(int prefetchDepth) {
+        return mHealthConnectManager.readRecordsInPages(
+                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                        .setPageSize(10)
+                        .setPageToken(FIRST_PAGE_TOKEN)
+                        .build(),
+                prefetchDepth);
+    }
+
+    private void completeNextRead(long nextPageToken) {
+        mPendingReads.remove(0).onResult(new ReadRecordsResponse<>(List.of(), nextPageToken));
+    }
+
+    private void failNextRead(HealthConnectException error) {
+        mPendingReads.remove(0).onError(error);
+    }
+
+    private List<Long> getPageTokens() {
+        List<Long> pageTokens = new ArrayList<>();
+        for (ReadRecordsRequestUsingFilters<StepsRecord> request : mRequests) {
+            pageTokens.add(request.getPageToken());
+        }
+        return pageTokens;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.HealthConnectException;
+import android.health.connect.aidl.RecordsParcel;
+import android.health.connect.internal.ParcelUtils;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.os.Parcel;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@RunWith(AndroidJUnit4.class)
+public class RecordsParcelTest {
+    private static final String APP_PACKAGE_NAME = "android.healthconnect.cts.app";
+
+    @Test
+    public void testRecordsParcel_writeAndRead_isIdentical() {
+        List<RecordInternal<?>> records = createStepsRecords(/* count= */ 10);
+        records.get(0).setUuid((UUID) null).setManufacturer(null);
+
+        RecordsParcel restoredRecordsParcel = writeAndRead(new RecordsParcel(records));
+        List<RecordInternal<?>> restoredRecords = restoredRecordsParcel.getRecords();
+
+        assertThat(restoredRecords).hasSize(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            StepsRecordInternal record = (StepsRecordInternal) records.get(i);
+            StepsRecordInternal restoredRecord = (StepsRecordInternal) restoredRecords.get(i);
+            assertThat(restoredRecord.getUuid()).isEqualTo(record.getUuid());
+            assertThat(restoredRecord.getPackageName()).isEqualTo(record.getPackageName());
+            assertThat(restoredRecord.getAppName()).isEqualTo(record.getAppName());
+            assertThat(restoredRecord.getManufacturer()).isEqualTo(record.getManufacturer());
+            assertThat(restoredRecord.getModel()).isEqualTo(record.getModel());
+            assertThat(restoredRecord.getClientRecordId()).isEqualTo(record.getClientRecordId());
+            assertThat(restoredRecord.getCount()).isEqualTo(record.getCount());
+        }
+        assertThat(restoredRecordsParcel.getRecordsSize()).hasSize(records.size());
+    }
+
+    @Test
+    public void testRecordsParcel_readOriginalLayout_isIdentical() {
+        List<RecordInternal<?>> records = createStepsRecords(/* count= */ 10);
+        Parcel parcel = Parcel.obtain();
+        parcel.writeInt(ParcelUtils.USING_PARCEL);
+        writeOriginalLayout(parcel, records);
+        parcel.setDataPosition(0);
+
+        List<RecordInternal<?>> restoredRecords =
+                RecordsParcel.CREATOR.createFromParcel(parcel).getRecords();
+        parcel.recycle();
+
+        assertThat(restoredRecords).hasSize(records.size());
+        assertThat(restoredRecords.get(9).getUuid()).isEqualTo(records.get(9).getUuid());
+        assertThat(restoredRecords.get(9).getPackageName()).isEqualTo(APP_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testRecordsParcel_manyRecordsOfOneApp_smallerThanOriginalLayout() {
+        List<RecordInternal<?>> records = createStepsRecords(/* count= */ 1000);
+        Parcel parcel = Parcel.obtain();
+        new RecordsParcel(records).writeToParcel(parcel, 0);
+        Parcel originalLayoutParcel = Parcel.obtain();
+        originalLayoutParcel.writeInt(ParcelUtils.USING_PARCEL);
+        writeOriginalLayout(originalLayoutParcel, records);
+
+        assertThat(parcel.dataSize()).isLessThan(originalLayoutParcel.dataSize() * 2 / 3);
+        parcel.recycle();
+        originalLayoutParcel.recycle();
+    }
+
+    @Test
+    public void testChunkEncoder_chunksWithinLimits_containAllRecordsInOrder() {
+        List<RecordInternal<?>> records = createStepsRecords(/* count= */ 1000);
+        long maxChunkSize = 20_000;
+        long maxRecordSize = 1000;
+        RecordsParcel.ChunkEncoder chunkEncoder =
+                new RecordsParcel.ChunkEncoder(records, maxChunkSize, maxRecordSize);
+
+        List<RecordInternal<?>> restoredRecords = new ArrayList<>();
+        int numberOfChunks = 0;
+        while (chunkEncoder.hasNext()) {
+            RecordsParcel chunk = chunkEncoder.next();
+            RecordsParcel restoredChunk = writeAndRead(chunk);
+            chunk.recycle();
+            numberOfChunks++;
+
+            assertThat(restoredChunk.getRecordsChunkSize()).isAtMost(maxChunkSize);
+            if (chunkEncoder.hasNext()) {
+                assertThat(restoredChunk.getRecordsChunkSize())
+                        .isGreaterThan(maxChunkSize * 9 / 10);
+            }
+            for (long recordSize : restoredChunk.getRecordsSize()) {
+                assertThat(recordSize).isAtMost(maxRecordSize);
+            }
+            restoredRecords.addAll(restoredChunk.getRecords());
+        }
+
+        assertThat(numberOfChunks).isGreaterThan(1);
+        assertThat(restoredRecords).hasSize(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertThat(restoredRecords.get(i).getUuid()).isEqualTo(records.get(i).getUuid());
+        }
+    }
+
+    @Test
+    public void testChunkEncoder_recordOverLimit_throwsAfterPreviousRecords() {
+        List<RecordInternal<?>> records = createStepsRecords(/* count= */ 3);
+        records.get(2).setClientRecordId("a".repeat(1000));
+        RecordsParcel.ChunkEncoder chunkEncoder =
+                new RecordsParcel.ChunkEncoder(
+                        records, /* maxChunkSize= */ 20_000, /* maxRecordSize= */ 1000);
+
+        RecordsParcel chunk = chunkEncoder.next();
+        assertThat(chunk.getRecords()).hasSize(2);
+        chunk.recycle();
+        HealthConnectException exception =
+                assertThrows(HealthConnectException.class, chunkEncoder::next);
+        assertThat(exception.getErrorCode())
+                .isEqualTo(HealthConnectException.ERROR_RATE_LIMIT_EXCEEDED);
+    }
+
+    private static RecordsParcel writeAndRead(RecordsParcel recordsParcel) {
+        Parcel parcel = Parcel.obtain();
+        recordsParcel.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        RecordsParcel restoredRecordsParcel = RecordsParcel.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+        return restoredRecordsParcel;
+    }
+
+    private static void writeOriginalLayout(Parcel parcel, List<RecordInternal<?>> records) {
+        parcel.writeInt(records.size());
+        for (RecordInternal<?> record : records) {
+            parcel.writeInt(record.getRecordType());
+            record.writeToParcel(parcel);
+        }
+    }
+
+    private static List<RecordInternal<?>> createStepsRecords(int count) {
+        List<RecordInternal<?>> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(
+                    new StepsRecordInternal()
+                            .setCount(i)
+                            .setStartTime(i * 1000L)
+                            .setEndTime((i + 1) * 1000L)
+                            .setUuid(UUID.randomUUID())
+                            .setPackageName(APP_PACKAGE_NAME)
+                            .setAppName("Example App")
+                            .setManufacturer("Manufacturer")
+                            .setModel("Model")
+                            .setClientRecordId("client.id." + i));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect.internal.datatypes;
+
+import static android.health.connect.datatypes.BloodPressureRecord.BloodPressureMeasurementLocation.BLOOD_PRESSURE_MEASUREMENT_LOCATION_LEFT_WRIST;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.datatypes.BloodPressureRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.internal.datatypes.BasalBodyTemperatureRecordInternal;
+import android.health.connect.internal.datatypes.BloodGlucoseRecordInternal;
+import android.health.connect.internal.datatypes.BloodPressureRecordInternal;
+import android.health.connect.internal.datatypes.BodyTemperatureRecordInternal;
+import android.health.connect.internal.datatypes.CervicalMucusRecordInternal;
+import android.health.connect.internal.datatypes.InstantRecordInternal;
+import android.health.connect.internal.datatypes.IntervalRecordInternal;
+import android.health.connect.internal.datatypes.MenstruationFlowRecordInternal;
+import android.health.connect.internal.datatypes.NutritionRecordInternal;
+import android.health.connect.internal.datatypes.OvulationTestRecordInternal;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.SexualActivityRecordInternal;
+import android.health.connect.internal.datatypes.Vo2MaxRecordInternal;
+import android.health.connect.internal.datatypes.utils.InternalExternalRecordConverter;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+public class InternalExternalRecordConverterTest {
+    private static final int UNKNOWN_INTDEF_VALUE = 1000;
+
+    @Test
+    public void testGetExternalRecords_validRecord_converted() {
+        BloodPressureRecordInternal record = createBloodPressureRecord();
+
+        List<Record> records =
+                InternalExternalRecordConverter.getInstance().getExternalRecords(List.of(record));
+
+        assertThat(records).hasSize(1);
+        BloodPressureRecord externalRecord = (BloodPressureRecord) records.get(0);
+        assertThat(externalRecord.getMetadata().getId()).isEqualTo(record.getUuid().toString());
+        assertThat(externalRecord.getMeasurementLocation())
+                .isEqualTo(BLOOD_PRESSURE_MEASUREMENT_LOCATION_LEFT_WRIST);
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownIntDefValues_recordsLeftOut() {
+        RecordInternal<?> validRecord = createBloodPressureRecord();
+        RecordInternal<?> unknownRecordingMethod =
+                createBloodPressureRecord().setRecordingMethod(UNKNOWN_INTDEF_VALUE);
+        RecordInternal<?> unknownDeviceType =
+                createBloodPressureRecord().setDeviceType(UNKNOWN_INTDEF_VALUE);
+        RecordInternal<?> unknownMeasurementLocation =
+                createBloodPressureRecord().setMeasurementLocation(UNKNOWN_INTDEF_VALUE);
+        RecordInternal<?> unknownBodyPosition =
+                createBloodPressureRecord().setBodyPosition(UNKNOWN_INTDEF_VALUE);
+
+        List<Record> records =
+                InternalExternalRecordConverter.getInstance()
+                        .getExternalRecords(
+                                List.of(
+                                        unknownRecordingMethod,
+                                        validRecord,
+                                        unknownDeviceType,
+                                        unknownMeasurementLocation,
+                                        unknownBodyPosition));
+
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getMetadata().getId())
+                .isEqualTo(validRecord.getUuid().toString());
+    }
+
+    @Test
+    public void testGetExternalRecords_knownIntDefValuesOfEachType_converted() {
+        List<RecordInternal<?>> records =
+                List.of(
+                        instant(new BloodGlucoseRecordInternal().setLevel(5)),
+                        instant(new Vo2MaxRecordInternal()),
+                        instant(new CervicalMucusRecordInternal()),
+                        interval(new NutritionRecordInternal().setMealType(0)),
+                        instant(new BodyTemperatureRecordInternal().setTemperature(37)),
+                        instant(new BasalBodyTemperatureRecordInternal().setTemperature(37)),
+                        instant(new MenstruationFlowRecordInternal()),
+                        instant(new OvulationTestRecordInternal()),
+                        instant(new SexualActivityRecordInternal()));
+
+        assertThat(InternalExternalRecordConverter.getInstance().getExternalRecords(records))
+                .hasSize(records.size());
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownBloodGlucoseValues_recordsLeftOut() {
+        assertLeftOut(
+                instant(new BloodGlucoseRecordInternal().setSpecimenSource(UNKNOWN_INTDEF_VALUE)),
+                instant(new BloodGlucoseRecordInternal().setRelationToMeal(UNKNOWN_INTDEF_VALUE)),
+                instant(new BloodGlucoseRecordInternal().setMealType(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownVo2MaxMeasurementMethod_recordLeftOut() {
+        assertLeftOut(
+                instant(new Vo2MaxRecordInternal().setMeasurementMethod(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownCervicalMucusValues_recordsLeftOut() {
+        assertLeftOut(
+                instant(new CervicalMucusRecordInternal().setSensation(UNKNOWN_INTDEF_VALUE)),
+                instant(new CervicalMucusRecordInternal().setAppearance(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownNutritionMealType_recordLeftOut() {
+        assertLeftOut(interval(new NutritionRecordInternal().setMealType(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownBodyTemperatureLocation_recordLeftOut() {
+        assertLeftOut(
+                instant(
+                        new BodyTemperatureRecordInternal()
+                                .setMeasurementLocation(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownBasalBodyTemperatureLocation_recordLeftOut() {
+        assertLeftOut(
+                instant(
+                        new BasalBodyTemperatureRecordInternal()
+                                .setMeasurementLocation(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownMenstruationFlow_recordLeftOut() {
+        assertLeftOut(instant(new MenstruationFlowRecordInternal().setFlow(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownOvulationTestResult_recordLeftOut() {
+        assertLeftOut(instant(new OvulationTestRecordInternal().setResult(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    @Test
+    public void testGetExternalRecords_unknownSexualActivityProtection_recordLeftOut() {
+        assertLeftOut(
+                instant(
+                        new SexualActivityRecordInternal()
+                                .setProtectionUsed(UNKNOWN_INTDEF_VALUE)));
+    }
+
+    private static void assertLeftOut(RecordInternal<?>... records) {
+        InternalExternalRecordConverter converter = InternalExternalRecordConverter.getInstance();
+        assertThat(converter.getExternalRecords(List.of(records))).isEmpty();
+    }
+
+    private static RecordInternal<?> instant(InstantRecordInternal<?> record) {
+        record.setTime(1_700_000_000_000L)
+                .setZoneOffset(0)
+                .setUuid(UUID.randomUUID())
+                .setPackageName("package.name");
+        return record;
+    }
+
+    private static RecordInternal<?> interval(IntervalRecordInternal<?> record) {
+        record.setStartTime(1_700_000_000_000L)
+                .setStartZoneOffset(0)
+                .setEndTime(1_700_000_060_000L)
+                .setEndZoneOffset(0)
+                .setUuid(UUID.randomUUID())
+                .setPackageName("package.name");
+        return record;
+    }
+
+    private static BloodPressureRecordInternal createBloodPressureRecord() {
+        BloodPressureRecordInternal record =
+                new BloodPressureRecordInternal()
+                        .setMeasurementLocation(BLOOD_PRESSURE_MEASUREMENT_LOCATION_LEFT_WRIST)
+                        .setSystolic(120)
+                        .setDiastolic(80);
+        record.setTime(1_700_000_000_000L)
+                .setZoneOffset(0)
+                .setUuid(UUID.randomUUID())
+                .setPackageName("package.name");
+        return record;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect.internal.datatypes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.datatypes.PowerRecord;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.PowerRecordInternal;
+import android.os.Parcel;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public class SeriesRecordInternalTest {
+
+    @Test
+    public void testSetSamples_sortsByTimeAndKeepsFirstSampleOfEachTime() {
+        HeartRateRecordInternal record =
+                new HeartRateRecordInternal()
+                        .setSamples(new long[] {30, 10, 20, 10, 30}, new int[] {3, 1, 2, 4, 5});
+
+        assertThat(record.getSampleTimes()).asList().containsExactly(10L, 20L, 30L).inOrder();
+        assertThat(record.getSampleValues()).asList().containsExactly(1, 2, 3).inOrder();
+    }
+
+    @Test
+    public void testSetSamples_sortedInput_keptAsIs() {
+        long[] epochMillis = {10, 20, 30};
+        double[] watts = {1.5, 2.5, 3.5};
+
+        PowerRecordInternal record = new PowerRecordInternal().setSamples(epochMillis, watts);
+
+        assertThat(record.getSampleTimes()).isSameInstanceAs(epochMillis);
+        assertThat(record.getSampleValues()).isSameInstanceAs(watts);
+    }
+
+    @Test
+    public void testSetSamples_differentLengths_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HeartRateRecordInternal().setSamples(new long[] {10}, new int[0]));
+    }
+
+    @Test
+    public void testWriteToParcel_writeReadFromParcel_isIdentical() {
+        HeartRateRecordInternal record = createHeartRateRecord();
+        Parcel parcel = Parcel.obtain();
+        record.writeToParcel(parcel);
+        parcel.setDataPosition(0);
+
+        HeartRateRecordInternal restoredRecord = new HeartRateRecordInternal();
+        restoredRecord.populateUsing(parcel);
+        parcel.recycle();
+
+        assertThat(restoredRecord.getSampleTimes()).isEqualTo(record.getSampleTimes());
+        assertThat(restoredRecord.getSampleValues()).isEqualTo(record.getSampleValues());
+    }
+
+    @Test
+    public void testConvertToExternalAndBack_isIdentical() {
+        PowerRecordInternal record =
+                (PowerRecordInternal)
+                        new PowerRecordInternal()
+                                .setSamples(new long[] {1000, 2000}, new double[] {100, 150.5})
+                                .setStartTime(0)
+                                .setEndTime(3000)
+                                .setUuid(UUID.randomUUID())
+                                .setPackageName("package.name");
+
+        PowerRecord externalRecord = record.toExternalRecord();
+        PowerRecordInternal convertedRecord = externalRecord.toRecordInternal();
+
+        assertThat(externalRecord.getSamples().get(1).getTime())
+                .isEqualTo(Instant.ofEpochMilli(2000));
+        assertThat(convertedRecord.getSampleTimes()).isEqualTo(record.getSampleTimes());
+        assertThat(convertedRecord.getSampleValues()).isEqualTo(record.getSampleValues());
+    }
+
+    private static HeartRateRecordInternal createHeartRateRecord() {
+        int sampleCount = 1000;
+        long[] epochMillis = new long[sampleCount];
+        int[] beatsPerMinute = new int[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            epochMillis[i] = 1_700_000_000_000L + i * 1000L;
+            beatsPerMinute[i] = 60 + i % 100;
+        }
+        return (HeartRateRecordInternal)
+                new HeartRateRecordInternal()
+                        .setSamples(epochMillis, beatsPerMinute)
+                        .setStartTime(epochMillis[0])
+                        .setEndTime(epochMillis[sampleCount - 1] + 1)
+                        .setUuid(UUID.randomUUID())
+                        .setPackageName("package.name");
+    }
+}
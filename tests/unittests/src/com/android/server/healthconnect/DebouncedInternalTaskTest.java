@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.modules.utils.BackgroundThread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(AndroidJUnit4.class)
+public class DebouncedInternalTaskTest {
+    private final AtomicInteger mRuns = new AtomicInteger();
+    private final DebouncedInternalTask mTask =
+            new DebouncedInternalTask(mRuns::incrementAndGet, /* delayMillis= */ 0);
+
+    @Before
+    public void setUp() {
+        HealthConnectThreadScheduler.resetThreadPools();
+    }
+
+    @After
+    public void tearDown() {
+        HealthConnectThreadScheduler.resetThreadPools();
+    }
+
+    @Test
+    public void testSchedule_calledTwiceBeforeRun_runsOnce() throws Exception {
+        mTask.schedule();
+        mTask.schedule();
+
+        waitForScheduledRuns();
+        assertThat(mRuns.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSchedule_afterRun_runsAgain() throws Exception {
+        mTask.schedule();
+        waitForScheduledRuns();
+
+        mTask.schedule();
+        waitForScheduledRuns();
+
+        assertThat(mRuns.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSchedule_threadPoolsShutDown_skippedAndScheduledAgainLater() throws Exception {
+        HealthConnectThreadScheduler.shutdownThreadPools();
+        mTask.schedule();
+        waitForBackgroundThread();
+        assertThat(mRuns.get()).isEqualTo(0);
+
+        HealthConnectThreadScheduler.resetThreadPools();
+        mTask.schedule();
+        waitForScheduledRuns();
+
+        assertThat(mRuns.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRunNow_runsOnCallingThread() {
+        mTask.runNow();
+
+        assertThat(mRuns.get()).isEqualTo(1);
+    }
+
+    private static void waitForScheduledRuns() throws Exception {
+        waitForBackgroundThread();
+        // Tasks run in order on the single internal executor thread.
+        CountDownLatch latch = new CountDownLatch(1);
+        HealthConnectThreadScheduler.scheduleInternalTask(latch::countDown);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void waitForBackgroundThread() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        BackgroundThread.getHandler().post(latch::countDown);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static com.android.server.healthconnect.HealthConnectRoundRobinScheduler.MAX_PENDING_TASKS_PER_UID;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class HealthConnectRoundRobinSchedulerTest {
+    private static final int HEAVY_UID = 10001;
+    private static final int LIGHT_UID = 10002;
+    private static final long HEAVY_TASK_NANOS = 100_000_000L; // 100 ms
+    private static final long LIGHT_TASK_NANOS = 1_000_000L; // 1 ms
+
+    private long mFakeTimeNanos;
+    private HealthConnectRoundRobinScheduler mScheduler;
+    private List<Integer> mExecutedUids;
+
+    @Before
+    public void setUp() {
+        mFakeTimeNanos = 0;
+        mScheduler = new HealthConnectRoundRobinScheduler(() -> mFakeTimeNanos);
+        mExecutedUids = new ArrayList<>();
+    }
+
+    @Test
+    public void testGetNextTask_equalCosts_alternatesBetweenUids() {
+        for (int i = 0; i < 3; i++) {
+            addTask(HEAVY_UID, HEAVY_TASK_NANOS);
+            addTask(LIGHT_UID, HEAVY_TASK_NANOS);
+        }
+
+        runTasks(6);
+
+        assertThat(mExecutedUids)
+                .containsExactly(
+                        HEAVY_UID, LIGHT_UID, HEAVY_UID, LIGHT_UID, HEAVY_UID, LIGHT_UID)
+                .inOrder();
+    }
+
+    @Test
+    public void testGetNextTask_heavyUid_doesNotStarveLightUid() {
+        // Simulate a heavy background syncer and a light client competing for the executor.
+        for (int i = 0; i < 100; i++) {
+            addTask(HEAVY_UID, HEAVY_TASK_NANOS);
+            addTask(LIGHT_UID, LIGHT_TASK_NANOS);
+        }
+
+        runTasks(105);
+
+        long heavyTasks = mExecutedUids.stream().filter(uid -> uid == HEAVY_UID).count();
+        long lightTasks = mExecutedUids.stream().filter(uid -> uid == LIGHT_UID).count();
+        // Plain round robin would run both the same number of times. With fair queuing both uids
+        // get a similar share of the execution time instead.
+        assertThat(lightTasks).isEqualTo(100);
+        assertThat(heavyTasks).isEqualTo(5);
+    }
+
+    @Test
+    public void testAddTask_tooManyPendingTasks_rejected() {
+        for (int i = 0; i < MAX_PENDING_TASKS_PER_UID; i++) {
+            assertThat(mScheduler.addTask(HEAVY_UID, () -> {})).isTrue();
+        }
+
+        assertThat(mScheduler.addTask(HEAVY_UID, () -> {})).isFalse();
+        assertThat(mScheduler.addTask(LIGHT_UID, () -> {})).isTrue();
+
+        mScheduler.getNextTask().run();
+        assertThat(mScheduler.addTask(HEAVY_UID, () -> {})).isTrue();
+    }
+
+    @Test
+    public void testAddTask_schedulerPaused_rejected() {
+        mScheduler.killTasksAndPauseScheduler();
+        assertThat(mScheduler.addTask(HEAVY_UID, () -> {})).isFalse();
+
+        mScheduler.resume();
+        assertThat(mScheduler.addTask(HEAVY_UID, () -> {})).isTrue();
+    }
+
+    @Test
+    public void testGetNextTask_queueDrained_uidRemoved() {
+        addTask(HEAVY_UID, /* costNanos= */ 0);
+        addTask(LIGHT_UID, LIGHT_TASK_NANOS);
+        addTask(LIGHT_UID, LIGHT_TASK_NANOS);
+
+        runTasks(2);
+
+        assertThat(mExecutedUids).containsExactly(HEAVY_UID, LIGHT_UID).inOrder();
+        assertThat(mScheduler.hasEntryForUid(HEAVY_UID)).isFalse();
+        assertThat(mScheduler.hasEntryForUid(LIGHT_UID)).isTrue();
+    }
+
+    @Test
+    public void testGetNextTask_idleUidInDebt_removedOnceDebtRepaid() {
+        addTask(HEAVY_UID, HEAVY_TASK_NANOS);
+        runTasks(1);
+        for (int i = 0; i < 200; i++) {
+            addTask(LIGHT_UID, LIGHT_TASK_NANOS);
+        }
+
+        runTasks(10);
+        assertThat(mScheduler.hasEntryForUid(HEAVY_UID)).isTrue();
+
+        runTasks(190);
+        assertThat(mScheduler.hasEntryForUid(HEAVY_UID)).isFalse();
+    }
+
+    @Test
+    public void testAddTask_afterUidRemoved_taskRun() {
+        addTask(HEAVY_UID, /* costNanos= */ 0);
+        addTask(LIGHT_UID, LIGHT_TASK_NANOS);
+        runTasks(2);
+        assertThat(mScheduler.hasEntryForUid(HEAVY_UID)).isFalse();
+
+        addTask(HEAVY_UID, /* costNanos= */ 0);
+        runTasks(1);
+
+        assertThat(mExecutedUids).containsExactly(HEAVY_UID, LIGHT_UID, HEAVY_UID).inOrder();
+    }
+
+    private void addTask(int uid, long costNanos) {
+        assertThat(
+                        mScheduler.addTask(
+                                uid,
+                                () -> {
+                                    mExecutedUids.add(uid);
+                                    mFakeTimeNanos += costNanos;
+                                }))
+                .isTrue();
+    }
+
+    private void runTasks(int count) {
+        for (int i = 0; i < count; i++) {
+            mScheduler.getNextTask().run();
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.android.server.healthconnect;
 
+import static com.android.server.healthconnect.HealthConnectRoundRobinScheduler.MAX_PENDING_TASKS_PER_UID;
+
 import static org.mockito.Mockito.when;
 
 import android.app.ActivityManager;
@@ -33,8 +35,12 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RunWith(AndroidJUnit4.class)
 public class HealthConnectThreadSchedulerTest {
@@ -86,7 +92,8 @@ public class HealthConnectThreadSchedulerTest {
                         throw new RuntimeException();
                     }
                 });
-        HealthConnectThreadScheduler.schedule(mContext, () -> {}, Process.myUid(), false);
+        HealthConnectThreadScheduler.schedule(
+                mContext, () -> {}, Process.myUid(), false, e -> {});
         TestUtils.waitForTaskToFinishSuccessfully(
                 () -> {
                     if (mBackgroundTaskScheduler.getCompletedTaskCount()
@@ -103,7 +110,8 @@ public class HealthConnectThreadSchedulerTest {
                 ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
         when(mActivityManager.getRunningAppProcesses()).thenReturn(List.of(runningAppProcessInfo));
 
-        HealthConnectThreadScheduler.schedule(mMockContext, () -> {}, Process.myUid(), false);
+        HealthConnectThreadScheduler.schedule(
+                mMockContext, () -> {}, Process.myUid(), false, e -> {});
         TestUtils.waitForTaskToFinishSuccessfully(
                 () -> {
                     if (mForegroundTaskScheduler.getCompletedTaskCount()
@@ -128,6 +136,47 @@ public class HealthConnectThreadSchedulerTest {
                 });
     }
 
+    @Test
+    public void testSchedule_uidFloodsBackgroundQueue_extraTaskFailedNotRun() throws Exception {
+        when(mMockContext.getSystemService(ActivityManager.class)).thenReturn(mActivityManager);
+        when(mActivityManager.getRunningAppProcesses()).thenReturn(List.of());
+        int uid = Process.myUid();
+        CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlockingTask = new CountDownLatch(1);
+        List<Exception> rejections = new ArrayList<>();
+        HealthConnectThreadScheduler.schedule(
+                mMockContext,
+                () -> {
+                    blockingTaskStarted.countDown();
+                    awaitUninterruptibly(releaseBlockingTask);
+                },
+                uid,
+                false,
+                rejections::add);
+        Truth.assertThat(blockingTaskStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            for (int i = 0; i < MAX_PENDING_TASKS_PER_UID; i++) {
+                HealthConnectThreadScheduler.schedule(
+                        mMockContext, () -> {}, uid, false, rejections::add);
+            }
+            Truth.assertThat(rejections).isEmpty();
+
+            AtomicReference<Thread> rejectedTaskThread = new AtomicReference<>();
+            HealthConnectThreadScheduler.schedule(
+                    mMockContext,
+                    () -> rejectedTaskThread.set(Thread.currentThread()),
+                    uid,
+                    false,
+                    rejections::add);
+
+            Truth.assertThat(rejections).hasSize(1);
+            Truth.assertThat(rejectedTaskThread.get()).isNull();
+        } finally {
+            releaseBlockingTask.countDown();
+        }
+    }
+
     @Test
     public void testHealthConnectSchedulerClear() {
         Truth.assertThat(mInternalTaskSchedulerCompletedJobs).isEqualTo(0);
@@ -135,4 +184,12 @@ public class HealthConnectThreadSchedulerTest {
         Truth.assertThat(mForegroundTaskSchedulerCompletedJobs).isEqualTo(0);
         Truth.assertThat(mBackgroundTaskSchedulerCompletedJobs).isEqualTo(0);
     }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import static android.health.connect.Constants.DEFAULT_LONG;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper.STEPS_TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createStepsRecord;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.RecordIdFilter;
+import android.health.connect.aidl.DeleteUsingFiltersRequestParcel;
+import android.health.connect.aidl.RecordIdFiltersParcel;
+import android.health.connect.datatypes.StepsRecord;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.server.healthconnect.HealthConnectUserContext;
+import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.DatabaseHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.HealthConnectDatabaseTestRule;
+import com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils;
+import com.android.server.healthconnect.storage.request.DeleteTransactionRequest;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class BackupDeltaHelperTest {
+    private static final String TEST_PACKAGE_NAME = "package.name";
+
+    @Rule public final HealthConnectDatabaseTestRule testRule = new HealthConnectDatabaseTestRule();
+
+    private TransactionTestUtils mTransactionTestUtils;
+    private TransactionManager mTransactionManager;
+    private File mBaseFile;
+    private File mSnapshotFile;
+    private File mDeltaFile;
+
+    @Before
+    public void setup() {
+        HealthConnectUserContext context = testRule.getUserContext();
+        mTransactionManager = TransactionManager.getInstance(context);
+        mTransactionTestUtils = new TransactionTestUtils(context, mTransactionManager);
+        mTransactionTestUtils.insertApp(TEST_PACKAGE_NAME);
+        File dir = context.getDir("backup_delta", Context.MODE_PRIVATE);
+        mBaseFile = new File(dir, "base.db");
+        mSnapshotFile = new File(dir, "snapshot.db");
+        mDeltaFile = new File(dir, "delta.db");
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteDatabase.deleteDatabase(mBaseFile);
+        SQLiteDatabase.deleteDatabase(mSnapshotFile);
+        SQLiteDatabase.deleteDatabase(mDeltaFile);
+        DatabaseHelper.clearAllData(mTransactionManager);
+        TransactionManager.clearInstance();
+    }
+
+    @Test
+    public void testWriteAndApplyDelta_insertsAndDeletes_baseMatchesSource() {
+        List<String> baseUuids =
+                mTransactionTestUtils.insertRecords(
+                        TEST_PACKAGE_NAME,
+                        createStepsRecord(1000, 2000, 100),
+                        createStepsRecord(3000, 4000, 200));
+        mTransactionManager.snapshotDatabase(mBaseFile);
+        long watermark = ChangeLogsHelper.getInstance().getLatestRowId();
+
+        String insertedUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(5000, 6000, 300))
+                        .get(0);
+        deleteStepsRecord(baseUuids.get(0));
+        writeDelta(watermark);
+
+        BackupDeltaHelper.applyDelta(mBaseFile, mDeltaFile);
+
+        assertThat(getStepsUuids(mBaseFile)).containsExactly(baseUuids.get(1), insertedUuid);
+    }
+
+    @Test
+    public void testWriteAndApplyDelta_secondDeltaSinceSameBase_coversBothChanges() {
+        List<String> baseUuids =
+                mTransactionTestUtils.insertRecords(
+                        TEST_PACKAGE_NAME, createStepsRecord(1000, 2000, 100));
+        mTransactionManager.snapshotDatabase(mBaseFile);
+        long watermark = ChangeLogsHelper.getInstance().getLatestRowId();
+
+        String firstUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(3000, 4000, 200))
+                        .get(0);
+        writeDelta(watermark);
+        String secondUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(5000, 6000, 300))
+                        .get(0);
+        // Only the last delta is restored, on top of the last full database.
+        writeDelta(watermark);
+
+        BackupDeltaHelper.applyDelta(mBaseFile, mDeltaFile);
+
+        assertThat(getStepsUuids(mBaseFile))
+                .containsExactly(baseUuids.get(0), firstUuid, secondUuid);
+    }
+
+    @Test
+    public void testWriteAndApplyDelta_noWatermark_replacesAllRecords() {
+        String baseUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(1000, 2000, 100))
+                        .get(0);
+        mTransactionManager.snapshotDatabase(mBaseFile);
+        deleteStepsRecord(baseUuid);
+        String insertedUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(3000, 4000, 200))
+                        .get(0);
+        writeDelta(DEFAULT_LONG);
+
+        BackupDeltaHelper.applyDelta(mBaseFile, mDeltaFile);
+
+        assertThat(getStepsUuids(mBaseFile)).containsExactly(insertedUuid);
+    }
+
+    @Test
+    public void testWriteDeltaFromLiveDatabase_applied_baseMatchesSource() {
+        String baseUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(1000, 2000, 100))
+                        .get(0);
+        mTransactionManager.snapshotDatabase(mBaseFile);
+        long watermark = ChangeLogsHelper.getInstance().getLatestRowId();
+        String insertedUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(3000, 4000, 200))
+                        .get(0);
+
+        BackupDeltaHelper.writeDelta(mTransactionManager.getDatabasePath(), mDeltaFile, watermark);
+        // The live database is only read, so it can still be written to.
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(5000, 6000, 300));
+        BackupDeltaHelper.applyDelta(mBaseFile, mDeltaFile);
+
+        assertThat(getStepsUuids(mBaseFile)).containsExactly(baseUuid, insertedUuid);
+    }
+
+    @Test
+    public void testApplyDelta_baseBehindDeltaStart_deltaSkipped() {
+        String baseUuid =
+                mTransactionTestUtils
+                        .insertRecords(TEST_PACKAGE_NAME, createStepsRecord(1000, 2000, 100))
+                        .get(0);
+        mTransactionManager.snapshotDatabase(mBaseFile);
+        // A later full database moved the watermark, but the transport didn't keep it.
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(3000, 4000, 200));
+        long watermark = ChangeLogsHelper.getInstance().getLatestRowId();
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(5000, 6000, 300));
+        writeDelta(watermark);
+
+        BackupDeltaHelper.applyDelta(mBaseFile, mDeltaFile);
+
+        assertThat(getStepsUuids(mBaseFile)).containsExactly(baseUuid);
+    }
+
+    private void writeDelta(long sinceChangeLogRowId) {
+        mTransactionManager.snapshotDatabase(mSnapshotFile);
+        BackupDeltaHelper.writeDelta(mSnapshotFile, mDeltaFile, sinceChangeLogRowId);
+    }
+
+    private void deleteStepsRecord(String uuid) {
+        mTransactionManager.deleteAll(
+                new DeleteTransactionRequest(
+                                TEST_PACKAGE_NAME,
+                                new DeleteUsingFiltersRequestParcel(
+                                        new RecordIdFiltersParcel(
+                                                List.of(
+                                                        RecordIdFilter.fromId(
+                                                                StepsRecord.class, uuid))),
+                                        TEST_PACKAGE_NAME))
+                        .setHasManageHealthDataPermission(true));
+    }
+
+    private static List<String> getStepsUuids(File dbFile) {
+        List<String> uuids = new ArrayList<>();
+        try (SQLiteDatabase db =
+                        SQLiteDatabase.openDatabase(
+                                dbFile, new SQLiteDatabase.OpenParams.Builder().build());
+                Cursor cursor =
+                        db.rawQuery(
+                                "SELECT " + UUID_COLUMN_NAME + " FROM " + STEPS_TABLE_NAME,
+                                null)) {
+            while (cursor.moveToNext()) {
+                uuids.add(StorageUtils.convertBytesToUUID(cursor.getBlob(0)).toString());
+            }
+        }
+        return uuids;
+    }
+}
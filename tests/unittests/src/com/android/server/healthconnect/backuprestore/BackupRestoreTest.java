@@ -41,13 +41,16 @@ import static com.android.server.healthconnect.backuprestore.BackupRestore.INTER
 import static com.android.server.healthconnect.backuprestore.BackupRestore.INTERNAL_RESTORE_STATE_STAGING_DONE;
 import static com.android.server.healthconnect.backuprestore.BackupRestore.INTERNAL_RESTORE_STATE_STAGING_IN_PROGRESS;
 import static com.android.server.healthconnect.backuprestore.BackupRestore.INTERNAL_RESTORE_STATE_WAITING_FOR_STAGING;
+import static com.android.server.healthconnect.backuprestore.BackupRestore.LAST_BACKUP_CHANGE_LOG_ROW_ID_KEY;
 import static com.android.server.healthconnect.backuprestore.BackupRestore.STAGED_DATABASE_NAME;
+import static com.android.server.healthconnect.backuprestore.BackupRestore.STAGED_DELTA_DATABASE_NAME;
 
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -81,6 +84,7 @@ import com.android.server.healthconnect.permission.GrantTimeXmlHelper;
 import com.android.server.healthconnect.permission.UserGrantTimeState;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.PreferenceHelper;
 import com.android.server.healthconnect.utils.FilesUtil;
 
@@ -97,6 +101,8 @@ import org.mockito.quality.Strictness;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.Map;
 
@@ -155,6 +161,8 @@ public class BackupRestoreTest {
                 .thenReturn(mStagedDbContext);
         when(mStagedDbContext.getDatabasePath(STAGED_DATABASE_NAME))
                 .thenReturn(new File(mMockStagedDataDirectory, STAGED_DATABASE_NAME));
+        when(mStagedDbContext.getDatabasePath(STAGED_DELTA_DATABASE_NAME))
+                .thenReturn(new File(mMockStagedDataDirectory, STAGED_DELTA_DATABASE_NAME));
 
         mBackupRestore =
                 new BackupRestore(mFirstGrantTimeManager, mMigrationStateManager, mServiceContext);
@@ -174,8 +182,9 @@ public class BackupRestoreTest {
         BackupFileNamesSet backupFileNamesSet = mBackupRestore.getAllBackupFileNames(true);
 
         assertThat(backupFileNamesSet).isNotNull();
-        assertThat(backupFileNamesSet.getFileNames()).hasSize(2);
+        assertThat(backupFileNamesSet.getFileNames()).hasSize(3);
         assertThat(backupFileNamesSet.getFileNames()).contains(STAGED_DATABASE_NAME);
+        assertThat(backupFileNamesSet.getFileNames()).contains(STAGED_DELTA_DATABASE_NAME);
         assertThat(backupFileNamesSet.getFileNames()).contains(GRANT_TIME_FILE_NAME);
     }
 
@@ -197,6 +206,7 @@ public class BackupRestoreTest {
                 createAndGetEmptyFile(mMockBackedDataDirectory, GRANT_TIME_FILE_NAME);
 
         when(mTransactionManager.getDatabasePath()).thenReturn(dbFileToBackup);
+        stubDatabaseSnapshot(dbFileToBackup);
         UserGrantTimeState userGrantTimeState =
                 new UserGrantTimeState(Map.of("package", Instant.now()), Map.of(), 1);
         when(mFirstGrantTimeManager.createBackupState(mUserHandle)).thenReturn(userGrantTimeState);
@@ -217,6 +227,27 @@ public class BackupRestoreTest {
                 .isEqualTo(userGrantTimeState.toString());
     }
 
+    @Test
+    public void testGetAllBackupData_forDeviceToDevice_storesChangeLogWatermark() throws Exception {
+        File dbFileToBackup = createAndGetNonEmptyFile(mMockDataDirectory, DATABASE_NAME);
+        File dbFileBacked = createAndGetEmptyFile(mMockBackedDataDirectory, STAGED_DATABASE_NAME);
+        when(mTransactionManager.getDatabasePath()).thenReturn(dbFileToBackup);
+        stubDatabaseSnapshot(dbFileToBackup);
+        when(mTransactionManager.getLastRowIdFor(ChangeLogsHelper.TABLE_NAME)).thenReturn(42L);
+        when(mFirstGrantTimeManager.createBackupState(mUserHandle))
+                .thenReturn(new UserGrantTimeState(Map.of(), Map.of(), 1));
+
+        Map<String, ParcelFileDescriptor> pfdsByFileName = new ArrayMap<>();
+        pfdsByFileName.put(
+                dbFileBacked.getName(),
+                ParcelFileDescriptor.open(dbFileBacked, ParcelFileDescriptor.MODE_READ_WRITE));
+
+        mBackupRestore.getAllDataForBackup(new StageRemoteDataRequest(pfdsByFileName), mUserHandle);
+
+        assertThat(mFakePreferenceHelper.getPreference(LAST_BACKUP_CHANGE_LOG_ROW_ID_KEY))
+                .isEqualTo("42");
+    }
+
     @Test
     public void testSetDataDownloadState_downloadStarted_schedulesDownloadTimeoutJob() {
         @HealthConnectManager.DataDownloadState int testDownloadStateSet = DATA_DOWNLOAD_STARTED;
@@ -731,6 +762,20 @@ public class BackupRestoreTest {
         assertThat(result).isFalse();
     }
 
+    private void stubDatabaseSnapshot(File dbFile) {
+        doAnswer(
+                        invocation -> {
+                            File destination = invocation.getArgument(0);
+                            Files.copy(
+                                    dbFile.toPath(),
+                                    destination.toPath(),
+                                    StandardCopyOption.REPLACE_EXISTING);
+                            return null;
+                        })
+                .when(mTransactionManager)
+                .snapshotDatabase(any());
+    }
+
     private static File createAndGetNonEmptyFile(File dir, String fileName) throws IOException {
         File file = new File(dir, fileName);
         FileWriter fileWriter = new FileWriter(file);
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package healthconnect.logging;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.server.healthconnect.logging.LatencyHistogram;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram_returnsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount()).isEqualTo(0L);
+        assertThat(histogram.getMeanMicros()).isEqualTo(0L);
+        assertThat(histogram.getMaxMicros()).isEqualTo(0L);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(0L);
+    }
+
+    @Test
+    public void testSmallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+
+        assertThat(histogram.getCount()).isEqualTo(4L);
+        assertThat(histogram.getValueAtPercentile(25)).isEqualTo(0L);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(1L);
+        assertThat(histogram.getValueAtPercentile(75)).isEqualTo(2L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(3L);
+    }
+
+    @Test
+    public void testPercentiles_withinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100L);
+        assertThat(histogram.getMeanMicros()).isEqualTo(50L);
+        assertThat(histogram.getMaxMicros()).isEqualTo(100L);
+        // 50 is in the bucket [48, 55].
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(55L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100L);
+    }
+
+    @Test
+    public void testLargeValues_relativeErrorBounded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = {1_000, 37_000, 5_000_000, 123_456_789};
+        for (long value : values) {
+            histogram.record(value);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            long reported = histogram.getValueAtPercentile(100.0 * (i + 1) / values.length);
+            assertThat(reported).isAtLeast(values[i]);
+            assertThat(reported).isAtMost(values[i] + values[i] / 4);
+        }
+    }
+
+    @Test
+    public void testNegativeValue_recordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertThat(histogram.getCount()).isEqualTo(1L);
+        assertThat(histogram.getMaxMicros()).isEqualTo(0L);
+        assertThat(histogram.getValueAtPercentile(99)).isEqualTo(0L);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.migration;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.HeartRateRecordHelper.TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper.STEPS_TABLE_NAME;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.Metadata;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.migration.MigrationEntity;
+import android.health.connect.migration.RecordMigrationPayload;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.server.healthconnect.HealthConnectUserContext;
+import com.android.server.healthconnect.permission.FirstGrantTimeManager;
+import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
+import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.DatabaseHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.DeviceInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.HealthConnectDatabaseTestRule;
+import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.MigrationEntityHelper;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class DataMigrationManagerTest {
+    private static final String APP_PACKAGE_NAME = "android.healthconnect.mocked.app";
+    private static final String APP_NAME = "Mocked app";
+    private static final String HEART_RATE_SERIES_TABLE_NAME = "heart_rate_record_series_table";
+    private static final Instant START_TIME = Instant.parse("2023-06-01T10:00:00Z");
+
+    @Rule public final HealthConnectDatabaseTestRule testRule = new HealthConnectDatabaseTestRule();
+
+    private TransactionManager mTransactionManager;
+    private DataMigrationManager mDataMigrationManager;
+
+    @Before
+    public void setUp() {
+        HealthConnectUserContext context = testRule.getUserContext();
+        mTransactionManager = TransactionManager.getInstance(context);
+        mDataMigrationManager =
+                new DataMigrationManager(
+                        context,
+                        mTransactionManager,
+                        mock(HealthConnectPermissionHelper.class),
+                        mock(FirstGrantTimeManager.class),
+                        DeviceInfoHelper.getInstance(),
+                        AppInfoHelper.getInstance(),
+                        MigrationEntityHelper.getInstance(),
+                        RecordHelperProvider.getInstance(),
+                        mock(HealthDataCategoryPriorityHelper.class),
+                        mock(PriorityMigrationHelper.class),
+                        ActivityDateHelper.getInstance());
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.clearAllData(mTransactionManager);
+        TransactionManager.clearInstance();
+    }
+
+    @Test
+    public void testApply_recordsWithoutClientId_allInserted() throws Exception {
+        mDataMigrationManager.apply(
+                List.of(
+                        createRecordEntity("steps1", createStepsRecord(null, 0, 100)),
+                        createRecordEntity("steps2", createStepsRecord(null, 1, 200)),
+                        createRecordEntity("steps3", createStepsRecord(null, 2, 300))));
+
+        assertThat(mTransactionManager.getNumberOfEntriesInTheTable(STEPS_TABLE_NAME))
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void testApply_sameRecordEntityIdTwiceInBatch_notDeduplicated() throws Exception {
+        mDataMigrationManager.apply(
+                List.of(
+                        createRecordEntity("steps", createStepsRecord(null, 0, 100)),
+                        createRecordEntity("steps", createStepsRecord(null, 1, 200))));
+
+        assertThat(mTransactionManager.getNumberOfEntriesInTheTable(STEPS_TABLE_NAME))
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testApply_sameClientIdInLaterBatch_insertedOnce() throws Exception {
+        mDataMigrationManager.apply(
+                List.of(createRecordEntity("steps1", createStepsRecord("client.id", 0, 100))));
+        mDataMigrationManager.apply(
+                List.of(createRecordEntity("steps2", createStepsRecord("client.id", 0, 100))));
+
+        assertThat(mTransactionManager.getNumberOfEntriesInTheTable(STEPS_TABLE_NAME))
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void testApply_recordsOnTwoDays_activityDatesWritten() throws Exception {
+        mDataMigrationManager.apply(
+                List.of(
+                        createRecordEntity("steps1", createStepsRecord(null, 0, 100)),
+                        createRecordEntity("steps2", createStepsRecord(null, 1, 200)),
+                        createRecordEntity("steps3", createStepsRecord(null, 24, 300))));
+
+        LocalDate startDate = LocalDate.ofInstant(START_TIME, ZoneOffset.UTC);
+        assertThat(ActivityDateHelper.getInstance().getActivityDates(List.of(StepsRecord.class)))
+                .containsExactly(startDate, startDate.plusDays(1));
+    }
+
+    @Test
+    public void testApply_recordWithSamples_childRowsInserted() throws Exception {
+        HeartRateRecord heartRateRecord =
+                new HeartRateRecord.Builder(
+                                new Metadata.Builder().build(),
+                                START_TIME,
+                                START_TIME.plusSeconds(60),
+                                List.of(
+                                        new HeartRateRecord.HeartRateSample(70, START_TIME),
+                                        new HeartRateRecord.HeartRateSample(
+                                                75, START_TIME.plusSeconds(30))))
+                        .build();
+
+        mDataMigrationManager.apply(
+                List.of(
+                        createRecordEntity("heartRate1", heartRateRecord),
+                        createRecordEntity("heartRate2", heartRateRecord)));
+
+        assertThat(mTransactionManager.getNumberOfEntriesInTheTable(TABLE_NAME)).isEqualTo(2);
+        assertThat(mTransactionManager.getNumberOfEntriesInTheTable(HEART_RATE_SERIES_TABLE_NAME))
+                .isEqualTo(4);
+    }
+
+    private static MigrationEntity createRecordEntity(String entityId, Record record) {
+        return new MigrationEntity(
+                entityId,
+                new RecordMigrationPayload.Builder(APP_PACKAGE_NAME, APP_NAME, record).build());
+    }
+
+    private static StepsRecord createStepsRecord(String clientId, int hoursFromStart, long count) {
+        Instant startTime = START_TIME.plusSeconds(hoursFromStart * 3600L);
+        return new StepsRecord.Builder(
+                        new Metadata.Builder().setClientRecordId(clientId).build(),
+                        startTime,
+                        startTime.plusSeconds(60),
+                        count)
+                .setStartZoneOffset(ZoneOffset.UTC)
+                .setEndZoneOffset(ZoneOffset.UTC)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static android.content.pm.PackageManager.PERMISSION_DENIED;
+import static android.content.pm.PackageManager.PERMISSION_GRANTED;
+import static android.health.connect.HealthPermissions.READ_STEPS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.AttributionSource;
+import android.content.Context;
+import android.permission.PermissionManager;
+
+import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+public class DataPermissionEnforcerTest {
+    private static final String PACKAGE_NAME = "android.healthconnect.test.app";
+    private static final int UID = 10123;
+    private static final int PID = 4567;
+
+    @Mock private PermissionManager mPermissionManager;
+    @Mock private Context mContext;
+    @Mock private HealthConnectDeviceConfigManager mDeviceConfigManager;
+    private DataPermissionEnforcer mEnforcer;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mEnforcer = new DataPermissionEnforcer(mPermissionManager, mContext, mDeviceConfigManager);
+    }
+
+    @Test
+    public void testEnforceReadPermissions_granted_checkedOncePerUid() {
+        setReadStepsPermissionState(PERMISSION_GRANTED);
+        AttributionSource attributionSource = createAttributionSource(UID, PID);
+
+        enforceReadStepsPermission(attributionSource);
+        enforceReadStepsPermission(attributionSource);
+        enforceReadStepsPermission(createAttributionSource(UID, PID + 1));
+        enforceReadStepsPermission(createAttributionSource(UID + 1, PID + 2));
+
+        verify(mPermissionManager, times(2))
+                .checkPermissionForDataDelivery(eq(READ_STEPS), any(), any());
+    }
+
+    @Test
+    public void testEnforceReadPermissions_denied_checkedOnEveryCall() {
+        setReadStepsPermissionState(PERMISSION_DENIED);
+        AttributionSource attributionSource = createAttributionSource(UID, PID);
+
+        assertThrows(
+                SecurityException.class, () -> enforceReadStepsPermission(attributionSource));
+        setReadStepsPermissionState(PERMISSION_GRANTED);
+        enforceReadStepsPermission(attributionSource);
+
+        verify(mPermissionManager, times(2))
+                .checkPermissionForDataDelivery(eq(READ_STEPS), any(), any());
+    }
+
+    @Test
+    public void testEnforceReadPermissions_permissionsChanged_checkedAgain() {
+        setReadStepsPermissionState(PERMISSION_GRANTED);
+        AttributionSource attributionSource = createAttributionSource(UID, PID);
+        enforceReadStepsPermission(attributionSource);
+
+        setReadStepsPermissionState(PERMISSION_DENIED);
+        mEnforcer.onPermissionsChanged(UID + 1);
+        enforceReadStepsPermission(attributionSource);
+        mEnforcer.onPermissionsChanged(UID);
+
+        assertThrows(
+                SecurityException.class, () -> enforceReadStepsPermission(attributionSource));
+    }
+
+    private void enforceReadStepsPermission(AttributionSource attributionSource) {
+        mEnforcer.enforceRecordIdsReadPermissions(List.of(RECORD_TYPE_STEPS), attributionSource);
+    }
+
+    private void setReadStepsPermissionState(int permissionState) {
+        when(mPermissionManager.checkPermissionForDataDelivery(eq(READ_STEPS), any(), any()))
+                .thenReturn(permissionState);
+    }
+
+    private static AttributionSource createAttributionSource(int uid, int pid) {
+        return new AttributionSource.Builder(uid).setPid(pid).setPackageName(PACKAGE_NAME).build();
+    }
+}
@@ -23,6 +23,8 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -124,6 +126,7 @@ public class FirstGrantTimeUnitTest {
                 .isGreaterThan(Instant.now().minusSeconds((long) 1e3));
         assertThat(mGrantTimeManager.getFirstGrantTime(SELF_PACKAGE_NAME, CURRENT_USER))
                 .isLessThan(Instant.now().plusSeconds((long) 1e3));
+        mGrantTimeManager.writePendingGrantTimes();
         verify(mDatastore)
                 .writeForUser(
                         ArgumentMatchers.any(),
@@ -180,6 +183,29 @@ public class FirstGrantTimeUnitTest {
                 .isEqualTo(stateTime);
     }
 
+    @Test
+    public void testSetFirstGrantTime_writtenOnlyWhenPendingWritesFlushed() {
+        Instant stateTime = Instant.now().minusSeconds((long) 1e5);
+        setupGrantTimeState(stateTime, null);
+        Instant newTime = stateTime.plusSeconds(10);
+
+        mGrantTimeManager.setFirstGrantTime(SELF_PACKAGE_NAME, newTime, CURRENT_USER);
+        assertThat(mGrantTimeManager.getFirstGrantTime(SELF_PACKAGE_NAME, CURRENT_USER))
+                .isEqualTo(newTime);
+        verify(mDatastore, never()).writeForUser(any(), eq(CURRENT_USER), eq(DATA_TYPE_CURRENT));
+
+        mGrantTimeManager.writePendingGrantTimes();
+        verify(mDatastore)
+                .writeForUser(
+                        ArgumentMatchers.argThat(
+                                state ->
+                                        newTime.equals(
+                                                state.getPackageGrantTimes()
+                                                        .get(SELF_PACKAGE_NAME))),
+                        eq(CURRENT_USER),
+                        eq(DATA_TYPE_CURRENT));
+    }
+
     @Test
     public void testWriteStagedData_getStagedStateForCurrentPackage_returnsCorrectState() {
         Instant stateTime = Instant.now().minusSeconds((long) 1e5);
@@ -190,6 +190,45 @@ public class GrantTimePersistenceUnitTest {
         assertRestoredStateIsCorrect(state, DEFAULT_STATE);
     }
 
+    @Test
+    public void testReadData_onlyXmlStateWritten_xmlStateRestored() {
+        new FirstGrantTimeDatastoreXmlPersistence()
+                .writeForUser(DEFAULT_STATE, mUser, DATA_TYPE_CURRENT);
+        FirstGrantTimeDatastore datastore = FirstGrantTimeDatastore.createInstance();
+        assertRestoredStateIsCorrect(
+                datastore.readForUser(mUser, DATA_TYPE_CURRENT), DEFAULT_STATE);
+    }
+
+    @Test
+    public void testWriteData_xmlStateWritten_xmlFileUpdated() {
+        FirstGrantTimeDatastoreXmlPersistence xmlDatastore =
+                new FirstGrantTimeDatastoreXmlPersistence();
+        xmlDatastore.writeForUser(DEFAULT_STATE, mUser, DATA_TYPE_CURRENT);
+        FirstGrantTimeDatastore datastore = FirstGrantTimeDatastore.createInstance();
+
+        datastore.writeForUser(PACKAGES_STATE, mUser, DATA_TYPE_CURRENT);
+
+        assertRestoredStateIsCorrect(
+                xmlDatastore.readForUser(mUser, DATA_TYPE_CURRENT), PACKAGES_STATE);
+        assertRestoredStateIsCorrect(
+                datastore.readForUser(mUser, DATA_TYPE_CURRENT), PACKAGES_STATE);
+    }
+
+    @Test
+    public void testReadData_xmlNewerThanBinaryFile_xmlStateRead() {
+        FirstGrantTimeDatastore datastore = FirstGrantTimeDatastore.createInstance();
+        datastore.writeForUser(DEFAULT_STATE, mUser, DATA_TYPE_CURRENT);
+        File binaryFile = datastore.getFile(mUser, DATA_TYPE_CURRENT);
+        // A rolled back module only writes the XML file.
+        new FirstGrantTimeDatastoreXmlPersistence()
+                .writeForUser(PACKAGES_STATE, mUser, DATA_TYPE_CURRENT);
+        binaryFile.setLastModified(binaryFile.lastModified() - 1000);
+
+        assertRestoredStateIsCorrect(
+                datastore.readForUser(mUser, DATA_TYPE_CURRENT), PACKAGES_STATE);
+        assertThat(binaryFile.exists()).isFalse();
+    }
+
     @Test
     public void testGetFile_getAllTypes_allFilesNonNullAndDifferent() {
         FirstGrantTimeDatastore datastore = FirstGrantTimeDatastore.createInstance();
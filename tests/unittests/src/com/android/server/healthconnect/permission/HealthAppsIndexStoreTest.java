@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Environment;
+import android.os.UserHandle;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.modules.utils.testing.ExtendedMockitoRule;
+import com.android.server.healthconnect.utils.FilesUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.quality.Strictness;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Set;
+
+@RunWith(AndroidJUnit4.class)
+public class HealthAppsIndexStoreTest {
+    @Rule
+    public final ExtendedMockitoRule mExtendedMockitoRule =
+            new ExtendedMockitoRule.Builder(this)
+                    .mockStatic(Environment.class)
+                    .setStrictness(Strictness.LENIENT)
+                    .build();
+
+    private final UserHandle mUser = UserHandle.of(UserHandle.myUserId());
+    private File mMockDataDirectory;
+
+    @Before
+    public void mockApexEnvironment() {
+        Context context = InstrumentationRegistry.getContext();
+        mMockDataDirectory = context.getDir("mock_data", Context.MODE_PRIVATE);
+        Mockito.when(Environment.getDataDirectory()).thenReturn(mMockDataDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        FilesUtil.deleteDir(mMockDataDirectory);
+    }
+
+    @Test
+    public void testReadForUser_nothingWritten_returnsNull() {
+        assertThat(HealthAppsIndexStore.readForUser(mUser)).isNull();
+    }
+
+    @Test
+    public void testWriteReadForUser_packageNames_restored() {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of("package1", "package2"));
+
+        assertThat(HealthAppsIndexStore.readForUser(mUser))
+                .containsExactly("package1", "package2");
+    }
+
+    @Test
+    public void testWriteReadForUser_noPackageNames_restoredEmpty() {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of());
+
+        assertThat(HealthAppsIndexStore.readForUser(mUser)).isEmpty();
+    }
+
+    @Test
+    public void testWriteForUser_writtenTwice_lastPackageNamesRestored() {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of("package1"));
+        HealthAppsIndexStore.writeForUser(mUser, Set.of("package2"));
+
+        assertThat(HealthAppsIndexStore.readForUser(mUser)).containsExactly("package2");
+    }
+
+    @Test
+    public void testReadForUser_writtenByAnotherBuild_returnsNull() throws Exception {
+        File directory = FilesUtil.getDataSystemCeHCDirectoryForUser(mUser.getIdentifier());
+        directory.mkdirs();
+        try (DataOutputStream outputStream =
+                new DataOutputStream(
+                        new FileOutputStream(new File(directory, "health-apps-index")))) {
+            outputStream.writeInt(1);
+            outputStream.writeUTF("another/build/fingerprint");
+            outputStream.writeInt(1);
+            outputStream.writeUTF("package1");
+        }
+
+        assertThat(HealthAppsIndexStore.readForUser(mUser)).isNull();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.os.UserHandle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+public class HealthConnectPermissionHelperTest {
+    private static final String PACKAGE_NAME = "android.healthconnect.test.app";
+    private static final UserHandle CURRENT_USER = Process.myUserHandle();
+    private static final Instant GRANT_TIME = Instant.ofEpochSecond((long) 1e9);
+
+    @Mock private Context mContext;
+    @Mock private PackageManager mPackageManager;
+    @Mock private HealthPermissionIntentAppsTracker mTracker;
+    @Mock private FirstGrantTimeManager mFirstGrantTimeManager;
+    private HealthConnectPermissionHelper mPermissionHelper;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(mContext.createContextAsUser(any(), anyInt())).thenReturn(mContext);
+        when(mContext.getPackageManager()).thenReturn(mPackageManager);
+        when(mPackageManager.getPackageInfo(
+                        eq(PACKAGE_NAME), any(PackageManager.PackageInfoFlags.class)))
+                .thenReturn(new PackageInfo());
+        when(mFirstGrantTimeManager.getFirstGrantTime(PACKAGE_NAME, CURRENT_USER))
+                .thenReturn(GRANT_TIME);
+        mPermissionHelper =
+                new HealthConnectPermissionHelper(
+                        mContext, mPackageManager, Set.of(), mTracker, mFirstGrantTimeManager);
+    }
+
+    @Test
+    public void testGetHealthDataStartDateAccessOrThrow_calledTwice_grantTimeReadOnce() {
+        assertThat(getStartDateAccess()).isEqualTo(GRANT_TIME.minus(Duration.ofDays(30)));
+        assertThat(getStartDateAccess()).isEqualTo(GRANT_TIME.minus(Duration.ofDays(30)));
+
+        verify(mFirstGrantTimeManager, times(1)).getFirstGrantTime(PACKAGE_NAME, CURRENT_USER);
+    }
+
+    @Test
+    public void testGetHealthDataStartDateAccessOrThrow_grantTimeChanged_grantTimeReadAgain() {
+        getStartDateAccess();
+
+        Instant newGrantTime = GRANT_TIME.plusSeconds(10);
+        when(mFirstGrantTimeManager.getFirstGrantTime(PACKAGE_NAME, CURRENT_USER))
+                .thenReturn(newGrantTime);
+        when(mFirstGrantTimeManager.getGrantTimeVersion()).thenReturn(1L);
+
+        assertThat(getStartDateAccess()).isEqualTo(newGrantTime.minus(Duration.ofDays(30)));
+        verify(mFirstGrantTimeManager, times(2)).getFirstGrantTime(PACKAGE_NAME, CURRENT_USER);
+    }
+
+    @Test
+    public void testGetHealthDataStartDateAccessOrThrow_permissionsChanged_grantTimeReadAgain() {
+        getStartDateAccess();
+
+        mPermissionHelper.onPermissionsChanged(CURRENT_USER.getUid(Process.FIRST_APPLICATION_UID));
+        getStartDateAccess();
+
+        verify(mFirstGrantTimeManager, times(2)).getFirstGrantTime(PACKAGE_NAME, CURRENT_USER);
+    }
+
+    private Instant getStartDateAccess() {
+        return mPermissionHelper.getHealthDataStartDateAccessOrThrow(PACKAGE_NAME, CURRENT_USER);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static android.health.connect.HealthPermissions.READ_STEPS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Environment;
+import android.os.UserHandle;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.modules.utils.testing.ExtendedMockitoRule;
+import com.android.server.healthconnect.utils.FilesUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.quality.Strictness;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(AndroidJUnit4.class)
+public class PackageInfoUtilsTest {
+    private static final String HEALTH_APP_PACKAGE_NAME = "android.healthconnect.test.app";
+    private static final String OTHER_APP_PACKAGE_NAME = "android.healthconnect.test.app2";
+
+    @Rule
+    public final ExtendedMockitoRule mExtendedMockitoRule =
+            new ExtendedMockitoRule.Builder(this)
+                    .mockStatic(Environment.class)
+                    .setStrictness(Strictness.LENIENT)
+                    .build();
+
+    private final UserHandle mUser = UserHandle.of(UserHandle.myUserId());
+    @Mock private Context mContext;
+    @Mock private PackageManager mPackageManager;
+    private File mMockDataDirectory;
+    private PackageInfoUtils mPackageInfoUtils;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getContext();
+        mMockDataDirectory = context.getDir("mock_data", Context.MODE_PRIVATE);
+        when(Environment.getDataDirectory()).thenReturn(mMockDataDirectory);
+        // Health permissions are looked up through the application context.
+        when(mContext.getApplicationContext()).thenReturn(context);
+        when(mContext.getPackageManager()).thenReturn(mPackageManager);
+        doThrow(new PackageManager.NameNotFoundException())
+                .when(mPackageManager)
+                .getPackageInfo(anyString(), any(PackageManager.PackageInfoFlags.class));
+        mPackageInfoUtils = new PackageInfoUtils();
+    }
+
+    @After
+    public void tearDown() {
+        FilesUtil.deleteDir(mMockDataDirectory);
+    }
+
+    @Test
+    public void testGetPackagesHoldingHealthPermissions_noIndex_scansAndWritesIndex()
+            throws Exception {
+        setInstalledPackages(
+                createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ true),
+                createPackageInfo(OTHER_APP_PACKAGE_NAME, /* granted= */ false));
+
+        assertThat(getPackageNamesHoldingHealthPermissions(mPackageInfoUtils))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME);
+        assertThat(HealthAppsIndexStore.readForUser(mUser))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testGetPackagesHoldingHealthPermissions_indexWritten_installedPackagesNotScanned()
+            throws Exception {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of(HEALTH_APP_PACKAGE_NAME));
+        setInstalledPackages(createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ true));
+
+        assertThat(getPackageNamesHoldingHealthPermissions(mPackageInfoUtils))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME);
+        verify(mPackageManager, never())
+                .getInstalledPackages(any(PackageManager.PackageInfoFlags.class));
+    }
+
+    @Test
+    public void testGetPackagesHoldingHealthPermissions_indexedAppRevoked_rescans()
+            throws Exception {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of(HEALTH_APP_PACKAGE_NAME));
+        setInstalledPackages(
+                createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ false),
+                createPackageInfo(OTHER_APP_PACKAGE_NAME, /* granted= */ true));
+
+        assertThat(getPackageNamesHoldingHealthPermissions(mPackageInfoUtils))
+                .containsExactly(OTHER_APP_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testInvalidateHealthAppsIndex_missedGrant_rescansAndFindsApp() throws Exception {
+        setInstalledPackages(createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ true));
+        getPackageNamesHoldingHealthPermissions(mPackageInfoUtils);
+        setInstalledPackages(
+                createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ true),
+                createPackageInfo(OTHER_APP_PACKAGE_NAME, /* granted= */ true));
+
+        assertThat(getPackageNamesHoldingHealthPermissions(mPackageInfoUtils))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME);
+        mPackageInfoUtils.invalidateHealthAppsIndex(mUser);
+
+        assertThat(getPackageNamesHoldingHealthPermissions(mPackageInfoUtils))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME, OTHER_APP_PACKAGE_NAME);
+        assertThat(getPackageNamesHoldingHealthPermissions(new PackageInfoUtils()))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME, OTHER_APP_PACKAGE_NAME);
+        verify(mPackageManager, times(2))
+                .getInstalledPackages(any(PackageManager.PackageInfoFlags.class));
+    }
+
+    @Test
+    public void testUpdateAfterPermissionsChanged_appWithoutIntentNotIndexed_notLookedUp()
+            throws Exception {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of(HEALTH_APP_PACKAGE_NAME));
+
+        mPackageInfoUtils.updateHealthAppsIndexAfterPermissionsChanged(
+                new String[] {OTHER_APP_PACKAGE_NAME},
+                /* supportsPermissionUsageIntent= */ false,
+                mUser,
+                mContext);
+
+        verify(mPackageManager, never())
+                .getPackageInfo(anyString(), any(PackageManager.PackageInfoFlags.class));
+    }
+
+    @Test
+    public void testUpdateAfterPermissionsChanged_appWithIntentGranted_addedToIndex()
+            throws Exception {
+        HealthAppsIndexStore.writeForUser(mUser, Set.of(HEALTH_APP_PACKAGE_NAME));
+        setInstalledPackages(
+                createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ true),
+                createPackageInfo(OTHER_APP_PACKAGE_NAME, /* granted= */ true));
+
+        mPackageInfoUtils.updateHealthAppsIndexAfterPermissionsChanged(
+                new String[] {OTHER_APP_PACKAGE_NAME},
+                /* supportsPermissionUsageIntent= */ true,
+                mUser,
+                mContext);
+
+        assertThat(HealthAppsIndexStore.readForUser(mUser))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME, OTHER_APP_PACKAGE_NAME);
+    }
+
+    @Test
+    public void testUpdateAfterPermissionsChanged_indexedAppWithoutIntentRevoked_removed()
+            throws Exception {
+        HealthAppsIndexStore.writeForUser(
+                mUser, Set.of(HEALTH_APP_PACKAGE_NAME, OTHER_APP_PACKAGE_NAME));
+        setInstalledPackages(
+                createPackageInfo(HEALTH_APP_PACKAGE_NAME, /* granted= */ true),
+                createPackageInfo(OTHER_APP_PACKAGE_NAME, /* granted= */ false));
+
+        mPackageInfoUtils.updateHealthAppsIndexAfterPermissionsChanged(
+                new String[] {OTHER_APP_PACKAGE_NAME},
+                /* supportsPermissionUsageIntent= */ false,
+                mUser,
+                mContext);
+
+        assertThat(HealthAppsIndexStore.readForUser(mUser))
+                .containsExactly(HEALTH_APP_PACKAGE_NAME);
+    }
+
+    private List<String> getPackageNamesHoldingHealthPermissions(
+            PackageInfoUtils packageInfoUtils) {
+        List<String> packageNames = new ArrayList<>();
+        for (PackageInfo info :
+                packageInfoUtils.getPackagesHoldingHealthPermissions(mUser, mContext)) {
+            packageNames.add(info.packageName);
+        }
+        return packageNames;
+    }
+
+    private void setInstalledPackages(PackageInfo... infos) throws Exception {
+        for (PackageInfo info : infos) {
+            doReturn(info)
+                    .when(mPackageManager)
+                    .getPackageInfo(
+                            eq(info.packageName), any(PackageManager.PackageInfoFlags.class));
+        }
+        when(mPackageManager.getInstalledPackages(any(PackageManager.PackageInfoFlags.class)))
+                .thenReturn(List.of(infos));
+    }
+
+    private static PackageInfo createPackageInfo(String packageName, boolean granted) {
+        PackageInfo info = new PackageInfo();
+        info.packageName = packageName;
+        info.requestedPermissions = new String[] {READ_STEPS};
+        info.requestedPermissionsFlags =
+                new int[] {granted ? PackageInfo.REQUESTED_PERMISSION_GRANTED : 0};
+        return info;
+    }
+}
@@ -18,6 +18,7 @@ package com.android.server.healthconnect.permission;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
@@ -97,6 +98,12 @@ public class PermissionPackageChangesOrchestratorTest {
                 .onPackageRemoved(eq(SELF_PACKAGE_NAME), eq(mCurrentUid), eq(CURRENT_USER));
     }
 
+    @Test
+    public void testPackageAdded_updatesHealthAppsState() {
+        mOrchestrator.onReceive(mContext, buildPackageIntent(Intent.ACTION_PACKAGE_ADDED));
+        verify(mFirstGrantTimeManager).onPackageChanged(eq(SELF_PACKAGE_NAME), eq(CURRENT_USER));
+    }
+
     @Test
     public void testPackageChanged_intentWasRemoved_revokesPerms() {
         setIntentWasRemoved(/* isIntentRemoved= */ true);
@@ -114,6 +121,7 @@ public class PermissionPackageChangesOrchestratorTest {
                 buildPackageIntent(Intent.ACTION_PACKAGE_REMOVED, /* isReplaced= */ false));
         verify(mFirstGrantTimeManager)
                 .onPackageRemoved(eq(SELF_PACKAGE_NAME), eq(mCurrentUid), eq(CURRENT_USER));
+        verify(mFirstGrantTimeManager, never()).onPackageChanged(any(), any());
     }
 
     @Test
@@ -16,6 +16,9 @@
 
 package com.android.server.healthconnect.storage;
 
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createBloodPressureRecord;
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createStepsRecord;
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.getReadTransactionRequest;
@@ -42,6 +45,7 @@ import com.android.server.healthconnect.storage.datatypehelpers.TransactionTestU
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.utils.PageTokenUtil;
 import com.android.server.healthconnect.storage.utils.PageTokenWrapper;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -54,6 +58,7 @@ import org.junit.runner.RunWith;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RunWith(AndroidJUnit4.class)
@@ -195,4 +200,25 @@ public class TransactionManagerTest {
                         () -> mTransactionManager.readRecordsAndPageToken(readTransactionRequest));
         assertThat(thrown).hasMessageThat().contains("Expect read by filter request");
     }
+
+    @Test
+    public void getEstimatedNumberOfEntriesInTables_returnsRowCountsOfLastUpdate() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord(100, 200, 10),
+                createStepsRecord(200, 300, 20),
+                createStepsRecord(300, 400, 30));
+        mTransactionManager.updateTableStatistics();
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(400, 500, 40));
+
+        Map<String, Long> numberOfEntries =
+                mTransactionManager.getEstimatedNumberOfEntriesInTables();
+
+        assertThat(numberOfEntries).containsEntry(getMainTableName(RECORD_TYPE_STEPS), 3L);
+        assertThat(numberOfEntries).doesNotContainKey(getMainTableName(RECORD_TYPE_BLOOD_PRESSURE));
+    }
+
+    private static String getMainTableName(int recordType) {
+        return RecordHelperProvider.getInstance().getRecordHelper(recordType).getMainTableName();
+    }
 }
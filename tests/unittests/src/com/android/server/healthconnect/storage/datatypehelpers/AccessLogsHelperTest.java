@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.Constants.READ;
+import static android.health.connect.Constants.UPSERT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createStepsRecord;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.accesslog.AccessLog;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.server.healthconnect.HealthConnectUserContext;
+import com.android.server.healthconnect.storage.TransactionManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class AccessLogsHelperTest {
+    private static final String TEST_PACKAGE_NAME = "package.name";
+
+    @Rule public final HealthConnectDatabaseTestRule testRule = new HealthConnectDatabaseTestRule();
+
+    private TransactionTestUtils mTransactionTestUtils;
+    private TransactionManager mTransactionManager;
+    private AccessLogsHelper mAccessLogsHelper;
+
+    @Before
+    public void setup() {
+        HealthConnectUserContext context = testRule.getUserContext();
+        mTransactionManager = TransactionManager.getInstance(context);
+        mTransactionTestUtils = new TransactionTestUtils(context, mTransactionManager);
+        mTransactionTestUtils.insertApp(TEST_PACKAGE_NAME);
+        mAccessLogsHelper = AccessLogsHelper.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.clearAllData(mTransactionManager);
+        TransactionManager.clearInstance();
+    }
+
+    @Test
+    public void addAccessLog_sameAccess_coalescedUntilFlushed() {
+        mAccessLogsHelper.addAccessLog(TEST_PACKAGE_NAME, List.of(RECORD_TYPE_STEPS), READ);
+        mAccessLogsHelper.addAccessLog(TEST_PACKAGE_NAME, List.of(RECORD_TYPE_STEPS), READ);
+        mAccessLogsHelper.addAccessLog(
+                TEST_PACKAGE_NAME, List.of(RECORD_TYPE_BLOOD_PRESSURE), READ);
+
+        assertThat(mAccessLogsHelper.getNumberOfPendingAccessLogs()).isEqualTo(2);
+
+        mAccessLogsHelper.flushPendingAccessLogs();
+        mAccessLogsHelper.addAccessLog(TEST_PACKAGE_NAME, List.of(RECORD_TYPE_STEPS), READ);
+
+        assertThat(mAccessLogsHelper.getNumberOfPendingAccessLogs()).isEqualTo(1);
+    }
+
+    @Test
+    public void queryAccessLogs_includesPendingAccessLogs() {
+        mAccessLogsHelper.addAccessLog(TEST_PACKAGE_NAME, List.of(RECORD_TYPE_STEPS), READ);
+
+        List<AccessLog> accessLogs = mAccessLogsHelper.queryAccessLogs();
+
+        assertThat(accessLogs).hasSize(1);
+        assertThat(accessLogs.get(0).getPackageName()).isEqualTo(TEST_PACKAGE_NAME);
+        assertThat(accessLogs.get(0).getOperationType()).isEqualTo(READ);
+        assertThat(mAccessLogsHelper.getNumberOfPendingAccessLogs()).isEqualTo(0);
+    }
+
+    @Test
+    public void insertRecords_addsUpsertAccessLogAfterCommit() {
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(100, 200, 10));
+
+        assertThat(mAccessLogsHelper.getNumberOfPendingAccessLogs()).isEqualTo(1);
+        List<AccessLog> accessLogs = mAccessLogsHelper.queryAccessLogs();
+        assertThat(accessLogs).hasSize(1);
+        assertThat(accessLogs.get(0).getOperationType()).isEqualTo(UPSERT);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.AppIdPrioritySnapshot.NO_PRIORITY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class AppIdPrioritySnapshotTest {
+    @Test
+    public void testGetPriority_appsInList_higherPriorityFirst() {
+        AppIdPrioritySnapshot snapshot = AppIdPrioritySnapshot.of(List.of(30L, 10L, 20L));
+
+        assertThat(snapshot.getPriority(30L)).isEqualTo(3);
+        assertThat(snapshot.getPriority(10L)).isEqualTo(2);
+        assertThat(snapshot.getPriority(20L)).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetPriority_appNotInList_noPriority() {
+        AppIdPrioritySnapshot snapshot = AppIdPrioritySnapshot.of(List.of(30L, 10L));
+
+        assertThat(snapshot.getPriority(20L)).isEqualTo(NO_PRIORITY);
+        assertThat(AppIdPrioritySnapshot.of(List.of()).getPriority(10L)).isEqualTo(NO_PRIORITY);
+    }
+
+    @Test
+    public void testGetAppIdPriorityList_returnsListInPriorityOrder() {
+        assertThat(AppIdPrioritySnapshot.of(List.of(30L, 10L, 20L)).getAppIdPriorityList())
+                .containsExactly(30L, 10L, 20L)
+                .inOrder();
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.Constants.DEFAULT_DOUBLE;
+import static android.health.connect.datatypes.ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal.LocationInternal;
+import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.server.healthconnect.storage.TransactionManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class ExerciseRouteRecordHelperTest {
+    private static final String TEST_PACKAGE_NAME = "package.name";
+    private static final String LEGACY_ROUTE_TABLE_NAME = "exercise_route_table";
+
+    @Rule public final HealthConnectDatabaseTestRule testRule = new HealthConnectDatabaseTestRule();
+
+    private TransactionManager mTransactionManager;
+    private TransactionTestUtils mTransactionTestUtils;
+
+    @Before
+    public void setup() {
+        mTransactionManager = TransactionManager.getInstance(testRule.getUserContext());
+        mTransactionTestUtils =
+                new TransactionTestUtils(testRule.getUserContext(), mTransactionManager);
+        mTransactionTestUtils.insertApp(TEST_PACKAGE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.clearAllData(mTransactionManager);
+        TransactionManager.clearInstance();
+    }
+
+    @Test
+    public void testEncodeRoute_decodesToSameLocations() {
+        List<LocationInternal> locations =
+                List.of(
+                        new LocationInternal()
+                                .setTime(1_700_000_000_000L)
+                                .setLatitude(52.13)
+                                .setLongitude(0.14),
+                        new LocationInternal()
+                                .setTime(1_700_000_001_000L)
+                                .setLatitude(52.131)
+                                .setLongitude(-0.141)
+                                .setHorizontalAccuracy(3.5)
+                                .setAltitude(12.25),
+                        new LocationInternal()
+                                // Out of order timestamps must survive the delta encoding.
+                                .setTime(1_699_999_999_000L)
+                                .setLatitude(-89.999999)
+                                .setLongitude(179.999999)
+                                .setVerticalAccuracy(0.1));
+
+        ExerciseRouteInternal decoded =
+                ExerciseRouteRecordHelper.decodeRoute(
+                        ExerciseRouteRecordHelper.encodeRoute(locations));
+
+        assertThat(decoded).isEqualTo(new ExerciseRouteInternal(locations));
+    }
+
+    @Test
+    public void testEncodeRoute_emptyRoute() {
+        ExerciseRouteInternal decoded =
+                ExerciseRouteRecordHelper.decodeRoute(
+                        ExerciseRouteRecordHelper.encodeRoute(List.of()));
+
+        assertThat(decoded.getRouteLocations()).isEmpty();
+    }
+
+    @Test
+    public void testEncodeRoute_nearbyLocations_smallerThanRawValues() {
+        List<LocationInternal> locations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            locations.add(
+                    new LocationInternal()
+                            .setTime(1_700_000_000_000L + i * 1000L)
+                            .setLatitude(52.13 + 0.00001 * i)
+                            .setLongitude(0.14 + 0.00001 * i)
+                            .setAltitude(30 + 0.1 * i));
+        }
+
+        byte[] encoded = ExerciseRouteRecordHelper.encodeRoute(locations);
+
+        // Time, latitude, longitude and altitude take 32 bytes per location when stored raw.
+        assertThat(encoded.length).isLessThan(locations.size() * 32);
+        assertThat(ExerciseRouteRecordHelper.decodeRoute(encoded))
+                .isEqualTo(new ExerciseRouteInternal(locations));
+    }
+
+    @Test
+    public void testMigrateToEncodedRoutes_encodedRoutesMatchLegacyRows() {
+        long firstSessionRowId = insertSessionWithoutRoute(1_700_000_000_000L);
+        long secondSessionRowId = insertSessionWithoutRoute(1_700_001_000_000L);
+        List<LocationInternal> firstRoute =
+                List.of(
+                        createLegacyLocation(1_700_000_000_000L, 52.13, 0.14, 3.5, 1.5, 12.25),
+                        createLegacyLocation(
+                                1_700_000_001_000L,
+                                52.131,
+                                -0.141,
+                                DEFAULT_DOUBLE,
+                                DEFAULT_DOUBLE,
+                                DEFAULT_DOUBLE));
+        List<LocationInternal> secondRoute =
+                List.of(createLegacyLocation(1_700_001_000_000L, -33.9, 151.2, 5, 2, -3));
+        String sessionTableName = new ExerciseSessionRecordHelper().getMainTableName();
+
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    createLegacyRouteTable(db, sessionTableName);
+                    // Interleave the rows of both routes, as sessions may be written concurrently.
+                    insertLegacyLocation(db, firstSessionRowId, firstRoute.get(0));
+                    insertLegacyLocation(db, secondSessionRowId, secondRoute.get(0));
+                    insertLegacyLocation(db, firstSessionRowId, firstRoute.get(1));
+
+                    ExerciseRouteRecordHelper.migrateToEncodedRoutes(db, sessionTableName);
+
+                    assertThat(readEncodedRoute(db, firstSessionRowId))
+                            .isEqualTo(new ExerciseRouteInternal(firstRoute));
+                    assertThat(readEncodedRoute(db, secondSessionRowId))
+                            .isEqualTo(new ExerciseRouteInternal(secondRoute));
+                    assertThat(DatabaseUtils.queryNumEntries(db, LEGACY_ROUTE_TABLE_NAME))
+                            .isEqualTo(3);
+                });
+    }
+
+    @Test
+    public void testMigrateToEncodedRoutes_runTwice_routesNotDuplicated() {
+        long sessionRowId = insertSessionWithoutRoute(1_700_000_000_000L);
+        LocationInternal location =
+                createLegacyLocation(1_700_000_000_000L, 52.13, 0.14, 3.5, 1.5, 12.25);
+        String sessionTableName = new ExerciseSessionRecordHelper().getMainTableName();
+
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    createLegacyRouteTable(db, sessionTableName);
+                    insertLegacyLocation(db, sessionRowId, location);
+
+                    ExerciseRouteRecordHelper.migrateToEncodedRoutes(db, sessionTableName);
+                    ExerciseRouteRecordHelper.migrateToEncodedRoutes(db, sessionTableName);
+
+                    assertThat(
+                                    DatabaseUtils.queryNumEntries(
+                                            db,
+                                            ExerciseRouteRecordHelper
+                                                    .EXERCISE_ROUTE_RECORD_TABLE_NAME))
+                            .isEqualTo(1);
+                    assertThat(readEncodedRoute(db, sessionRowId))
+                            .isEqualTo(new ExerciseRouteInternal(List.of(location)));
+                });
+    }
+
+    @Test
+    public void testMigrateToEncodedRoutes_runAgainAfterRouteUpdated_updatedRouteKept() {
+        long sessionRowId = insertSessionWithoutRoute(1_700_000_000_000L);
+        LocationInternal legacyLocation =
+                createLegacyLocation(1_700_000_000_000L, 52.13, 0.14, 3.5, 1.5, 12.25);
+        List<LocationInternal> updatedRoute =
+                List.of(new LocationInternal().setTime(1_700_000_100_000L).setLatitude(1));
+        String sessionTableName = new ExerciseSessionRecordHelper().getMainTableName();
+
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    createLegacyRouteTable(db, sessionTableName);
+                    insertLegacyLocation(db, sessionRowId, legacyLocation);
+                    ExerciseRouteRecordHelper.migrateToEncodedRoutes(db, sessionTableName);
+                    ContentValues contentValues = new ContentValues();
+                    contentValues.put(
+                            ExerciseRouteRecordHelper.ENCODED_ROUTE_COLUMN_NAME,
+                            ExerciseRouteRecordHelper.encodeRoute(updatedRoute));
+                    db.update(
+                            ExerciseRouteRecordHelper.EXERCISE_ROUTE_RECORD_TABLE_NAME,
+                            contentValues,
+                            null,
+                            null);
+
+                    ExerciseRouteRecordHelper.migrateToEncodedRoutes(db, sessionTableName);
+
+                    assertThat(readEncodedRoute(db, sessionRowId))
+                            .isEqualTo(new ExerciseRouteInternal(updatedRoute));
+                });
+    }
+
+    @Test
+    public void testDropLegacyRouteTableIfExpired_droppedOnlyAfterRetention() {
+        String sessionTableName = new ExerciseSessionRecordHelper().getMainTableName();
+        mTransactionManager.runAsTransaction(db -> createLegacyRouteTable(db, sessionTableName));
+
+        ExerciseRouteRecordHelper.dropLegacyRouteTableIfExpired();
+        ExerciseRouteRecordHelper.dropLegacyRouteTableIfExpired();
+        assertThat(hasLegacyRouteTable()).isTrue();
+
+        PreferenceHelper.getInstance()
+                .insertOrReplacePreference(
+                        "legacy_exercise_route_table_found_time_key",
+                        String.valueOf(Instant.now().minus(Duration.ofDays(31)).toEpochMilli()));
+        ExerciseRouteRecordHelper.dropLegacyRouteTableIfExpired();
+        assertThat(hasLegacyRouteTable()).isFalse();
+    }
+
+    private boolean hasLegacyRouteTable() {
+        boolean[] hasTable = {false};
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    try (Cursor cursor =
+                            db.rawQuery(
+                                    "SELECT 1 FROM sqlite_master WHERE name = ?",
+                                    new String[] {LEGACY_ROUTE_TABLE_NAME})) {
+                        hasTable[0] = cursor.moveToFirst();
+                    }
+                });
+        return hasTable[0];
+    }
+
+    private long insertSessionWithoutRoute(long startTimeMillis) {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                new ExerciseSessionRecordInternal()
+                        .setExerciseType(EXERCISE_SESSION_TYPE_RUNNING)
+                        .setStartTime(startTimeMillis)
+                        .setEndTime(startTimeMillis + 600_000L));
+        return mTransactionManager.getLastRowIdFor(
+                new ExerciseSessionRecordHelper().getMainTableName());
+    }
+
+    private static LocationInternal createLegacyLocation(
+            long time,
+            double latitude,
+            double longitude,
+            double horizontalAccuracy,
+            double verticalAccuracy,
+            double altitude) {
+        return new LocationInternal()
+                .setTime(time)
+                .setLatitude(latitude)
+                .setLongitude(longitude)
+                .setHorizontalAccuracy(horizontalAccuracy)
+                .setVerticalAccuracy(verticalAccuracy)
+                .setAltitude(altitude);
+    }
+
+    /** Creates the route table as it was before routes were encoded. */
+    private static void createLegacyRouteTable(SQLiteDatabase db, String sessionTableName) {
+        db.execSQL(
+                "CREATE TABLE "
+                        + LEGACY_ROUTE_TABLE_NAME
+                        + " (row_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + " parent_key INTEGER NOT NULL,"
+                        + " timestamp_millis INTEGER NOT NULL,"
+                        + " longitude REAL NOT NULL,"
+                        + " latitude REAL NOT NULL,"
+                        + " horizontal_accuracy REAL NOT NULL,"
+                        + " vertical_accuracy REAL NOT NULL,"
+                        + " altitude REAL NOT NULL,"
+                        + " FOREIGN KEY (parent_key) REFERENCES "
+                        + sessionTableName
+                        + " (row_id) ON DELETE CASCADE)");
+    }
+
+    private static void insertLegacyLocation(
+            SQLiteDatabase db, long sessionRowId, LocationInternal location) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put("parent_key", sessionRowId);
+        contentValues.put("timestamp_millis", location.getTime());
+        contentValues.put("longitude", location.getLongitude());
+        contentValues.put("latitude", location.getLatitude());
+        contentValues.put("horizontal_accuracy", location.getHorizontalAccuracy());
+        contentValues.put("vertical_accuracy", location.getVerticalAccuracy());
+        contentValues.put("altitude", location.getAltitude());
+        db.insertOrThrow(LEGACY_ROUTE_TABLE_NAME, null, contentValues);
+    }
+
+    private static ExerciseRouteInternal readEncodedRoute(SQLiteDatabase db, long sessionRowId) {
+        try (Cursor cursor =
+                db.rawQuery(
+                        "SELECT * FROM "
+                                + ExerciseRouteRecordHelper.EXERCISE_ROUTE_RECORD_TABLE_NAME
+                                + " WHERE parent_key = ?",
+                        new String[] {String.valueOf(sessionRowId)})) {
+            assertThat(cursor.moveToFirst()).isTrue();
+            return ExerciseRouteRecordHelper.populateRoute(cursor);
+        }
+    }
+}
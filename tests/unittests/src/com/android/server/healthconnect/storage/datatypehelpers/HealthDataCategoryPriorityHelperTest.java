@@ -573,6 +573,40 @@ public class HealthDataCategoryPriorityHelperTest {
                 .isEqualTo(List.of(APP_PACKAGE_NAME_3, APP_PACKAGE_NAME));
     }
 
+    @Test
+    public void testGetAppIdPrioritySnapshot_rebuiltOnlyAfterSetPriority() {
+        Map<Integer, List<Long>> priorityList = new HashMap<>();
+        priorityList.put(HealthDataCategory.ACTIVITY, List.of(APP_PACKAGE_ID_3, APP_PACKAGE_ID));
+        setupPriorityList(priorityList);
+        when(mHealthConnectDeviceConfigManager.isAggregationSourceControlsEnabled())
+                .thenReturn(true);
+
+        AppIdPrioritySnapshot snapshot =
+                mHealthDataCategoryPriorityHelper.getAppIdPrioritySnapshot(
+                        HealthDataCategory.ACTIVITY);
+        assertThat(snapshot.getAppIdPriorityList())
+                .containsExactly(APP_PACKAGE_ID_3, APP_PACKAGE_ID)
+                .inOrder();
+        assertThat(
+                        mHealthDataCategoryPriorityHelper.getAppIdPrioritySnapshot(
+                                HealthDataCategory.ACTIVITY))
+                .isSameInstanceAs(snapshot);
+
+        List<String> newPriorityOrder = List.of(APP_PACKAGE_NAME, APP_PACKAGE_NAME_3);
+        when(mAppInfoHelper.getAppInfoIds(eq(newPriorityOrder)))
+                .thenReturn(new ArrayList<>(List.of(APP_PACKAGE_ID, APP_PACKAGE_ID_3)));
+        mHealthDataCategoryPriorityHelper.setPriorityOrder(
+                HealthDataCategory.ACTIVITY, newPriorityOrder);
+
+        AppIdPrioritySnapshot newSnapshot =
+                mHealthDataCategoryPriorityHelper.getAppIdPrioritySnapshot(
+                        HealthDataCategory.ACTIVITY);
+        assertThat(newSnapshot.getAppIdPriorityList())
+                .containsExactly(APP_PACKAGE_ID, APP_PACKAGE_ID_3)
+                .inOrder();
+        assertThat(newSnapshot.getVersion()).isNotEqualTo(snapshot.getVersion());
+    }
+
     @Test
     public void testNewSetPriority_additionalPackages_addsToPriorityList() {
         List<String> newPriorityOrder =
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.HealthPermissions.READ_EXERCISE_ROUTE;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.Manifest;
+import android.annotation.Nullable;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.LocalTimeRangeFilter;
+import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.aidl.ReadRecordsRequestParcel;
+import android.health.connect.datatypes.AggregationType;
+import android.health.connect.datatypes.Record;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.utils.RecordMapper;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.server.healthconnect.HealthConnectDeviceConfigManager;
+import com.android.server.healthconnect.HealthConnectUserContext;
+import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.request.AggregateTableRequest;
+import com.android.server.healthconnect.storage.request.DeleteTableRequest;
+import com.android.server.healthconnect.storage.request.ReadTableRequest;
+import com.android.server.healthconnect.storage.utils.RecordHelperProvider;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs {@code EXPLAIN QUERY PLAN} on the representative queries of every {@link RecordHelper} and
+ * of the change logs, and fails on full table scans and temp B-tree sorts which aren't in {@link
+ * #ALLOWED_PROBLEMS}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    private static final String TEST_PACKAGE_NAME = "package.name";
+    private static final Map<String, Boolean> EXTRA_PERMS = Map.of(READ_EXERCISE_ROUTE, true);
+
+    private static final LocalDateTime LOCAL_START_TIME = LocalDateTime.of(2023, 11, 1, 0, 0);
+    private static final LocalDateTime LOCAL_END_TIME = LOCAL_START_TIME.plusDays(7);
+    private static final Instant START_TIME = LOCAL_START_TIME.toInstant(ZoneOffset.UTC);
+    private static final Instant END_TIME = LOCAL_END_TIME.toInstant(ZoneOffset.UTC);
+    private static final long START_DATE_ACCESS =
+            START_TIME.minus(Duration.ofDays(30)).toEpochMilli();
+
+    private static final String READ_TABLE_NAMES_QUERY =
+            "SELECT name FROM sqlite_master WHERE type = 'table'";
+
+    private static final String FULL_SCAN = "full table scan";
+    private static final String TEMP_B_TREE = "temp b-tree";
+
+    // "SCAN TABLE x" before SQLite 3.36, "SCAN x" since. Scans using an index don't match.
+    private static final Pattern FULL_SCAN_PATTERN =
+            Pattern.compile("^SCAN (?:TABLE )?(\\w+)(?: AS \\w+)?$");
+
+    /** Plan problems which are known and accepted, keyed by query kind and problem. */
+    private static final Map<String, String> ALLOWED_PROBLEMS =
+            Map.ofEntries(
+                    Map.entry(
+                            "read_local_time " + TEMP_B_TREE,
+                            "Reads by local time are still ordered by physical time."),
+                    Map.entry(
+                            "aggregate " + TEMP_B_TREE,
+                            "Aggregations sort the rows in range by time, rather than walking"
+                                    + " the time index over the whole history."),
+                    Map.entry(
+                            "aggregate_metadata " + TEMP_B_TREE,
+                            "The distinct apps are sorted by time, which isn't the index order."),
+                    Map.entry(
+                            "aggregate_grouped " + FULL_SCAN,
+                            "Without statistics, series aggregations by local time may read the"
+                                    + " samples before their parent rows."),
+                    Map.entry(
+                            "aggregate_grouped " + TEMP_B_TREE,
+                            "Groups are computed by a CASE expression, which can't be indexed."),
+                    Map.entry(
+                            "change_logs_auto_delete " + FULL_SCAN,
+                            "Change logs aren't indexed by time, deleted once a day."));
+
+    @Rule public final HealthConnectDatabaseTestRule testRule = new HealthConnectDatabaseTestRule();
+
+    private TransactionManager mTransactionManager;
+
+    @Before
+    public void setup() {
+        InstrumentationRegistry.getInstrumentation()
+                .getUiAutomation()
+                .adoptShellPermissionIdentity(Manifest.permission.READ_DEVICE_CONFIG);
+        HealthConnectUserContext context = testRule.getUserContext();
+        mTransactionManager = TransactionManager.getInstance(context);
+        new TransactionTestUtils(context, mTransactionManager).insertApp(TEST_PACKAGE_NAME);
+        HealthConnectDeviceConfigManager.initializeInstance(context);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.clearAllData(mTransactionManager);
+        TransactionManager.clearInstance();
+    }
+
+    @Test
+    public void recordHelperQueries_noUnexpectedScansOrSorts() {
+        List<Query> queries = new ArrayList<>();
+        for (RecordHelper<?> helper :
+                RecordHelperProvider.getInstance().getRecordHelpers().values()) {
+            addRecordHelperQueries(helper, queries);
+        }
+
+        assertWithMessage("Unexpected query plans, fix the query or allow-list the problem")
+                .that(getUnexpectedProblems(queries))
+                .isEmpty();
+    }
+
+    @Test
+    public void changeLogsQueries_noUnexpectedScansOrSorts() {
+        ChangeLogsHelper helper = ChangeLogsHelper.getInstance();
+        ChangeLogsRequestHelper.TokenRequest tokenRequest =
+                new ChangeLogsRequestHelper.TokenRequest(
+                        List.of(TEST_PACKAGE_NAME),
+                        new ArrayList<>(
+                                RecordHelperProvider.getInstance().getRecordHelpers().keySet()),
+                        TEST_PACKAGE_NAME,
+                        /* rowIdChangeLogs= */ 100);
+        List<Query> queries = new ArrayList<>();
+        queries.add(
+                new Query(
+                        "change_logs",
+                        helper.getChangeLogsReadRequest(tokenRequest, /* pageSize= */ 1000)));
+        addDeleteQueries(
+                "change_logs_auto_delete", helper.getDeleteRequestForAutoDelete(), queries);
+
+        assertWithMessage("Unexpected query plans, fix the query or allow-list the problem")
+                .that(getUnexpectedProblems(queries))
+                .isEmpty();
+    }
+
+    private static void addRecordHelperQueries(RecordHelper<?> helper, List<Query> queries) {
+        int recordType = helper.getRecordIdentifier();
+        Class<? extends Record> recordClass =
+                RecordMapper.getInstance().getRecordIdToExternalRecordClassMap().get(recordType);
+
+        ReadRecordsRequestParcel readRequest =
+                new ReadRecordsRequestUsingFilters.Builder<>(recordClass)
+                        .setTimeRangeFilter(
+                                new TimeInstantRangeFilter.Builder()
+                                        .setStartTime(START_TIME)
+                                        .setEndTime(END_TIME)
+                                        .build())
+                        .build()
+                        .toReadRecordsRequestParcel();
+        ReadTableRequest read =
+                helper.getReadTableRequest(
+                        readRequest,
+                        TEST_PACKAGE_NAME,
+                        /* enforceSelfRead= */ false,
+                        START_DATE_ACCESS,
+                        EXTRA_PERMS);
+        queries.add(new Query("read", read));
+
+        ReadRecordsRequestParcel readLocalTimeRequest =
+                new ReadRecordsRequestUsingFilters.Builder<>(recordClass)
+                        .setTimeRangeFilter(
+                                new LocalTimeRangeFilter.Builder()
+                                        .setStartTime(LOCAL_START_TIME)
+                                        .setEndTime(LOCAL_END_TIME)
+                                        .build())
+                        .build()
+                        .toReadRecordsRequestParcel();
+        queries.add(
+                new Query(
+                        "read_local_time",
+                        helper.getReadTableRequest(
+                                readLocalTimeRequest,
+                                TEST_PACKAGE_NAME,
+                                /* enforceSelfRead= */ false,
+                                START_DATE_ACCESS,
+                                EXTRA_PERMS)));
+
+        List<UUID> uuids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        queries.add(
+                new Query(
+                        "read_by_ids",
+                        helper.getReadTableRequest(
+                                TEST_PACKAGE_NAME, uuids, START_DATE_ACCESS, EXTRA_PERMS)));
+        queries.add(new Query("read_app_ids", helper.getReadTableRequestWithDistinctAppInfoIds()));
+
+        // Child tables and the exercise routes are read once the records of a page are read.
+        List<RecordInternal<?>> records = createInternalRecords(recordType);
+        for (ReadTableRequest childRead : helper.getExtraDataReadRequestsForRecords(records)) {
+            queries.add(new Query("read_child", childRead));
+        }
+        if (read.getExtraReadRequests() != null) {
+            for (ReadTableRequest extraRead : read.getExtraReadRequests()) {
+                if (extraRead.restrictToParentRecords(records)) {
+                    queries.add(new Query("read_child", extraRead));
+                }
+            }
+        }
+
+        for (AggregationType<?> aggregationType : getAggregationTypes(recordClass, recordType)) {
+            AggregateTableRequest aggregate =
+                    helper.getAggregateTableRequest(
+                            aggregationType,
+                            TEST_PACKAGE_NAME,
+                            List.of(),
+                            START_TIME.toEpochMilli(),
+                            END_TIME.toEpochMilli(),
+                            START_DATE_ACCESS,
+                            /* useLocalTime= */ false);
+            queries.add(new Query("aggregate", aggregate.getAggregationCommand()));
+            queries.add(
+                    new Query(
+                            "aggregate_metadata", aggregate.getCommandToFetchAggregateMetadata()));
+
+            AggregateTableRequest grouped =
+                    helper.getAggregateTableRequest(
+                            aggregationType,
+                            TEST_PACKAGE_NAME,
+                            List.of(),
+                            START_TIME.toEpochMilli(),
+                            END_TIME.toEpochMilli(),
+                            START_DATE_ACCESS,
+                            /* useLocalTime= */ true);
+            grouped.setGroupBy(
+                    helper.getPeriodGroupByColumnName(),
+                    Period.ofDays(1),
+                    /* duration= */ null,
+                    new LocalTimeRangeFilter.Builder()
+                            .setStartTime(LOCAL_START_TIME)
+                            .setEndTime(LOCAL_END_TIME)
+                            .build());
+            queries.add(new Query("aggregate_grouped", grouped.getAggregationCommand()));
+        }
+
+        addDeleteQueries(
+                "delete",
+                helper.getDeleteTableRequest(
+                        List.of(TEST_PACKAGE_NAME),
+                        START_TIME.toEpochMilli(),
+                        END_TIME.toEpochMilli(),
+                        /* usesLocalTimeFilter= */ false),
+                queries);
+        addDeleteQueries("delete_by_ids", helper.getDeleteTableRequest(uuids), queries);
+        addDeleteQueries(
+                "auto_delete",
+                helper.getDeleteRequestForAutoDelete(/* recordAutoDeletePeriodInDays= */ 30),
+                queries);
+    }
+
+    private static void addDeleteQueries(
+            String kind, DeleteTableRequest request, List<Query> queries) {
+        if (request.requiresRead()) {
+            queries.add(new Query(kind, request.getReadCommand(), request.getBindArgs()));
+        }
+        queries.add(new Query(kind, request.getDeleteCommand(), request.getBindArgs()));
+    }
+
+    /** Returns records of {@code recordType} to read the extra data of, with distinct row ids. */
+    private static List<RecordInternal<?>> createInternalRecords(int recordType) {
+        List<RecordInternal<?>> records = new ArrayList<>();
+        for (int rowId = 1; rowId <= 3; rowId++) {
+            try {
+                RecordInternal<?> record =
+                        RecordMapper.getInstance()
+                                .getRecordIdToInternalRecordClassMap()
+                                .get(recordType)
+                                .getConstructor()
+                                .newInstance();
+                record.setRowId(rowId);
+                record.setPackageName(TEST_PACKAGE_NAME);
+                records.add(record);
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return records;
+    }
+
+    /** Returns the aggregation types declared by {@code recordClass} which apply to it alone. */
+    private static List<AggregationType<?>> getAggregationTypes(
+            Class<? extends Record> recordClass, int recordType) {
+        List<AggregationType<?>> aggregationTypes = new ArrayList<>();
+        for (Field field : recordClass.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers())
+                    || field.getType() != AggregationType.class) {
+                continue;
+            }
+
+            try {
+                AggregationType<?> aggregationType = (AggregationType<?>) field.get(null);
+                if (aggregationType.getApplicableRecordTypeIds().equals(List.of(recordType))) {
+                    aggregationTypes.add(aggregationType);
+                }
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return aggregationTypes;
+    }
+
+    /**
+     * Returns a description of every full table scan and temp B-tree in the plans of {@code
+     * queries} which isn't in {@link #ALLOWED_PROBLEMS}.
+     */
+    private List<String> getUnexpectedProblems(List<Query> queries) {
+        List<String> unexpectedProblems = new ArrayList<>();
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    Set<String> tableNames = getTableNames(db);
+                    for (Query query : queries) {
+                        List<String> plan = getQueryPlan(db, query);
+                        for (String step : plan) {
+                            String problem = getProblem(step, tableNames);
+                            if (problem == null
+                                    || ALLOWED_PROBLEMS.containsKey(query.mKind + " " + problem)) {
+                                continue;
+                            }
+                            unexpectedProblems.add(
+                                    query.mKind
+                                            + " "
+                                            + problem
+                                            + ": "
+                                            + query.mSql
+                                            + "\n    plan: "
+                                            + plan);
+                        }
+                    }
+                });
+        return unexpectedProblems;
+    }
+
+    /** Returns the problem {@code step} of a query plan is, or {@code null} if none. */
+    @Nullable
+    private static String getProblem(String step, Set<String> tableNames) {
+        Matcher matcher = FULL_SCAN_PATTERN.matcher(step);
+        if (matcher.matches() && tableNames.contains(matcher.group(1))) {
+            return FULL_SCAN;
+        }
+        if (step.contains("USE TEMP B-TREE")) {
+            return TEMP_B_TREE;
+        }
+        return null;
+    }
+
+    private static Set<String> getTableNames(SQLiteDatabase db) {
+        Set<String> tableNames = new HashSet<>();
+        try (Cursor cursor = db.rawQuery(READ_TABLE_NAMES_QUERY, null)) {
+            while (cursor.moveToNext()) {
+                tableNames.add(StorageUtils.getCursorString(cursor, "name"));
+            }
+        }
+        return tableNames;
+    }
+
+    private static List<String> getQueryPlan(SQLiteDatabase db, Query query) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor =
+                StorageUtils.rawQuery(db, "EXPLAIN QUERY PLAN " + query.mSql, query.mBindArgs)) {
+            while (cursor.moveToNext()) {
+                plan.add(StorageUtils.getCursorString(cursor, "detail"));
+            }
+        }
+        return plan;
+    }
+
+    private static final class Query {
+        private final String mKind;
+        private final String mSql;
+        private final Object[] mBindArgs;
+
+        Query(String kind, String sql, Object[] bindArgs) {
+            mKind = kind;
+            mSql = sql;
+            mBindArgs = bindArgs;
+        }
+
+        Query(String kind, String sql) {
+            this(kind, sql, new Object[0]);
+        }
+
+        Query(String kind, ReadTableRequest request) {
+            this(kind, request.getReadCommand(), request.getBindArgs());
+        }
+    }
+}
@@ -21,6 +21,8 @@ import static android.health.connect.Constants.MAXIMUM_ALLOWED_CURSOR_COUNT;
 
 import static com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper.STEPS_TABLE_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createStepsRecord;
+import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.getReadTransactionRequest;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.MAX_BIND_ARGS_PER_QUERY;
 import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -29,9 +31,12 @@ import static org.junit.Assert.assertThrows;
 
 import android.database.Cursor;
 import android.health.connect.ReadRecordsRequestUsingFilters;
+import android.health.connect.ReadRecordsRequestUsingIds;
 import android.health.connect.TimeInstantRangeFilter;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
+import android.health.connect.datatypes.HeartRateRecord;
 import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.StepsRecordInternal;
 import android.util.Pair;
@@ -55,6 +60,7 @@ import org.junit.runner.RunWith;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RunWith(AndroidJUnit4.class)
@@ -117,6 +123,27 @@ public class RecordHelperTest {
         }
     }
 
+    @Test
+    public void getReadTableRequest_byUuids_onlyMatchingRecordsReturned() {
+        RecordHelper<?> helper = new StepsRecordHelper();
+        List<String> uuids =
+                mTransactionTestUtils.insertRecords(
+                        TEST_PACKAGE_NAME,
+                        createStepsRecord(4000, 5000, 100),
+                        createStepsRecord(6000, 7000, 200));
+        ReadTableRequest request =
+                helper.getReadTableRequest(
+                        TEST_PACKAGE_NAME,
+                        List.of(UUID.fromString(uuids.get(1)), UUID.randomUUID()),
+                        DEFAULT_LONG,
+                        Map.of());
+        try (Cursor cursor = mTransactionManager.read(request)) {
+            List<RecordInternal<?>> records = helper.getInternalRecords(cursor);
+            assertThat(records).hasSize(1);
+            assertThat(records.get(0).getUuid()).isEqualTo(UUID.fromString(uuids.get(1)));
+        }
+    }
+
     @Test
     public void getInternalRecords_cursorHasTooManyData_throws() {
         RecordHelper<?> helper = new StepsRecordHelper();
@@ -300,6 +327,77 @@ public class RecordHelperTest {
         }
     }
 
+    @Test
+    public void getReadTableRequests_moreIdsThanBindArgsLimit_splitAndAllRecordsRead() {
+        RecordHelper<?> helper = new StepsRecordHelper();
+        List<String> uuids =
+                mTransactionTestUtils.insertRecords(
+                        TEST_PACKAGE_NAME,
+                        createStepsRecord(1000, 2000, 100),
+                        createStepsRecord(3000, 4000, 200));
+        ReadRecordsRequestUsingIds.Builder<StepsRecord> builder =
+                new ReadRecordsRequestUsingIds.Builder<>(StepsRecord.class);
+        uuids.forEach(builder::addId);
+        for (int i = 0; i < MAX_BIND_ARGS_PER_QUERY; i++) {
+            builder.addId(UUID.randomUUID().toString());
+        }
+
+        List<ReadTableRequest> requests =
+                helper.getReadTableRequests(
+                        builder.build().toReadRecordsRequestParcel(),
+                        TEST_PACKAGE_NAME,
+                        /* enforceSelfRead= */ false,
+                        /* startDateAccess= */ 0,
+                        /* extraPermsState= */ null);
+
+        assertThat(requests).hasSize(2);
+        List<RecordInternal<?>> records = new ArrayList<>();
+        for (ReadTableRequest request : requests) {
+            try (Cursor cursor = mTransactionManager.read(request)) {
+                records.addAll(helper.getInternalRecords(cursor));
+            }
+        }
+        assertThat(records).hasSize(2);
+    }
+
+    @Test
+    public void readRecordsAndPageToken_seriesRecordWithoutSamples_leftOutOfFullPage() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createHeartRateRecord(/* startTimeMillis= */ 1000, new long[0], new int[0]),
+                createHeartRateRecord(
+                        /* startTimeMillis= */ 2000, new long[] {2500}, new int[] {60}));
+        ReadRecordsRequestUsingFilters<HeartRateRecord> readRequest =
+                new ReadRecordsRequestUsingFilters.Builder<>(HeartRateRecord.class)
+                        .setTimeRangeFilter(
+                                new TimeInstantRangeFilter.Builder()
+                                        .setStartTime(Instant.EPOCH)
+                                        .setEndTime(Instant.ofEpochMilli(5000))
+                                        .build())
+                        .setPageSize(1)
+                        .setAscending(true)
+                        .build();
+
+        List<RecordInternal<?>> records =
+                mTransactionManager.readRecordsAndPageToken(
+                                getReadTransactionRequest(
+                                        readRequest.toReadRecordsRequestParcel()))
+                        .first;
+
+        assertThat(records).hasSize(1);
+        assertThat(((HeartRateRecordInternal) records.get(0)).getStartTimeInMillis())
+                .isEqualTo(2000);
+    }
+
+    private static HeartRateRecordInternal createHeartRateRecord(
+            long startTimeMillis, long[] epochMillis, int[] beatsPerMinute) {
+        return (HeartRateRecordInternal)
+                new HeartRateRecordInternal()
+                        .setSamples(epochMillis, beatsPerMinute)
+                        .setStartTime(startTimeMillis)
+                        .setEndTime(startTimeMillis + 1000);
+    }
+
     private static ReadTableRequest getReadTableRequest(
             RecordHelper<?> helper, ReadRecordsRequestParcel request) {
         return helper.getReadTableRequest(
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+public class DeleteTableRequestTest {
+    private static final String TABLE_NAME = "sample_table";
+    private static final String ID_COLUMN_NAME = "uuid";
+    private static final String TIME_COLUMN_NAME = "start_time";
+
+    @Test
+    public void testGetCommands_calledRepeatedly_sameClausesAndBindArgs() {
+        DeleteTableRequest request =
+                new DeleteTableRequest(TABLE_NAME)
+                        .setUuids(ID_COLUMN_NAME, List.of(UUID.randomUUID(), UUID.randomUUID()))
+                        .setTimeFilter(TIME_COLUMN_NAME, 100, 200);
+
+        String readCommand = request.getReadCommand();
+        String deleteCommand = request.getDeleteCommand();
+        Object[] bindArgs = request.getBindArgs();
+
+        assertThat(request.getReadCommand()).isEqualTo(readCommand);
+        assertThat(request.getDeleteCommand()).isEqualTo(deleteCommand);
+        assertThat(request.getBindArgs()).hasLength(2);
+        assertThat(request.getBindArgs()).isEqualTo(bindArgs);
+        assertThat(deleteCommand).containsMatch(ID_COLUMN_NAME + " IN \\(\\?, \\?\\)");
+        assertThat(deleteCommand.split(TIME_COLUMN_NAME, -1)).hasLength(2);
+    }
+}
@@ -17,6 +17,7 @@
 package com.android.server.healthconnect.storage.request;
 
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.getReadTransactionRequest;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.MAX_BIND_ARGS_PER_QUERY;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -41,6 +42,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -115,4 +117,21 @@ public class ReadTransactionRequestTest {
         assertThat(request.getPageToken()).isNull();
         assertThat(request.getPageSize()).isEqualTo(Optional.empty());
     }
+
+    @Test
+    public void createReadByIdRequest_manyUuids_splitIntoBoundedRequests() {
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 2 * MAX_BIND_ARGS_PER_QUERY + 1; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        ReadTransactionRequest request =
+                getReadTransactionRequest(
+                        ImmutableMap.of(RecordTypeIdentifier.RECORD_TYPE_STEPS, uuids));
+
+        assertThat(request.getReadRequests()).hasSize(3);
+        for (ReadTableRequest readTableRequest : request.getReadRequests()) {
+            assertThat(readTableRequest.getBindArgs().length)
+                    .isAtMost(MAX_BIND_ARGS_PER_QUERY);
+        }
+    }
 }